@@ -0,0 +1,170 @@
+package de.ovgu.skunk.detection.data;
+
+import java.util.Arrays;
+
+/**
+ * A reduced ordered binary decision diagram (BDD) package.  Nodes are identified by <code>int</code>s and stored in
+ * parallel arrays; {@link #FALSE} and {@link #TRUE} are the terminals.  A unique table guarantees that each function
+ * is represented by exactly one node, so two formulas are equivalent iff their nodes are equal.  The results of
+ * {@link #ite(int, int, int)} are memoized in a fixed-size operation cache.
+ * <p>
+ * Variables are numbered from 0; smaller numbers are closer to the root.  Nodes are never freed, which suits the
+ * comparatively small conditions of preprocessor directives.  Not thread-safe.
+ */
+public class Bdd {
+    public static final int FALSE = 0;
+    public static final int TRUE = 1;
+
+    private static final int TERMINAL_VAR = Integer.MAX_VALUE;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final int MAX_CACHE_SIZE = 1 << 20;
+
+    private int[] var;
+    private int[] low;
+    private int[] high;
+    /**
+     * Next node in the same bucket of the unique table, or <code>-1</code>
+     */
+    private int[] next;
+    /**
+     * First node of each bucket of the unique table, or <code>-1</code>
+     */
+    private int[] buckets;
+    private int size;
+
+    private int[] cacheF;
+    private int[] cacheG;
+    private int[] cacheH;
+    private int[] cacheResult;
+
+    public Bdd() {
+        var = new int[INITIAL_CAPACITY];
+        low = new int[INITIAL_CAPACITY];
+        high = new int[INITIAL_CAPACITY];
+        next = new int[INITIAL_CAPACITY];
+        buckets = new int[INITIAL_CAPACITY];
+        Arrays.fill(buckets, -1);
+        var[FALSE] = var[TRUE] = TERMINAL_VAR;
+        low[TRUE] = high[TRUE] = TRUE;
+        size = 2;
+        allocateCache(INITIAL_CAPACITY);
+    }
+
+    private void allocateCache(int cacheSize) {
+        cacheF = new int[cacheSize];
+        cacheG = new int[cacheSize];
+        cacheH = new int[cacheSize];
+        cacheResult = new int[cacheSize];
+        // No valid entry has f == FALSE since such calls never reach the cache
+        Arrays.fill(cacheF, FALSE);
+    }
+
+    /**
+     * @return the number of nodes, including the terminals
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param v a variable
+     * @return the function that is true iff the variable is
+     */
+    public int var(int v) {
+        if (v < 0 || v == TERMINAL_VAR) throw new IllegalArgumentException("Invalid variable: " + v);
+        return mk(v, FALSE, TRUE);
+    }
+
+    public int not(int f) {
+        return ite(f, FALSE, TRUE);
+    }
+
+    public int and(int f, int g) {
+        return ite(f, g, FALSE);
+    }
+
+    public int or(int f, int g) {
+        return ite(f, TRUE, g);
+    }
+
+    /**
+     * @return the function <code>f &amp;&amp; g || !f &amp;&amp; h</code>
+     */
+    public int ite(int f, int g, int h) {
+        // Terminal cases
+        if (f == TRUE) return g;
+        if (f == FALSE) return h;
+        if (g == h) return g;
+        if (g == TRUE && h == FALSE) return f;
+        if (f == g) g = TRUE;
+        else if (f == h) h = FALSE;
+
+        final int slot = cacheSlot(f, g, h);
+        if (cacheF[slot] == f && cacheG[slot] == g && cacheH[slot] == h) return cacheResult[slot];
+
+        final int v = Math.min(var[f], Math.min(var[g], var[h]));
+        final int lo = ite(cofactor(f, v, false), cofactor(g, v, false), cofactor(h, v, false));
+        final int hi = ite(cofactor(f, v, true), cofactor(g, v, true), cofactor(h, v, true));
+        final int result = mk(v, lo, hi);
+
+        // The cache may have been replaced while recursing
+        final int resultSlot = cacheSlot(f, g, h);
+        cacheF[resultSlot] = f;
+        cacheG[resultSlot] = g;
+        cacheH[resultSlot] = h;
+        cacheResult[resultSlot] = result;
+        return result;
+    }
+
+    private int cofactor(int f, int v, boolean value) {
+        if (var[f] != v) return f;
+        return value ? high[f] : low[f];
+    }
+
+    private int cacheSlot(int f, int g, int h) {
+        return hash(f, g, h) & (cacheF.length - 1);
+    }
+
+    private static int hash(int a, int b, int c) {
+        int h = a * 0x9E3779B1 + b * 0x85EBCA77 + c * 0xC2B2AE3D;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the unique node with the given variable and children
+     */
+    private int mk(int v, int lo, int hi) {
+        if (lo == hi) return lo;
+        int bucket = hash(v, lo, hi) & (buckets.length - 1);
+        for (int node = buckets[bucket]; node != -1; node = next[node]) {
+            if (var[node] == v && low[node] == lo && high[node] == hi) return node;
+        }
+        if (size == var.length) {
+            grow();
+            bucket = hash(v, lo, hi) & (buckets.length - 1);
+        }
+        final int node = size++;
+        var[node] = v;
+        low[node] = lo;
+        high[node] = hi;
+        next[node] = buckets[bucket];
+        buckets[bucket] = node;
+        return node;
+    }
+
+    private void grow() {
+        final int capacity = 2 * var.length;
+        var = Arrays.copyOf(var, capacity);
+        low = Arrays.copyOf(low, capacity);
+        high = Arrays.copyOf(high, capacity);
+        next = Arrays.copyOf(next, capacity);
+        buckets = new int[capacity];
+        Arrays.fill(buckets, -1);
+        for (int node = 2; node < size; node++) {
+            int bucket = hash(var[node], low[node], high[node]) & (capacity - 1);
+            next[node] = buckets[bucket];
+            buckets[bucket] = node;
+        }
+        if (capacity <= MAX_CACHE_SIZE) allocateCache(capacity);
+    }
+}
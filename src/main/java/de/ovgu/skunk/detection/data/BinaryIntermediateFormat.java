@@ -0,0 +1,586 @@
+package de.ovgu.skunk.detection.data;
+
+import de.ovgu.skunk.util.BinaryDecoder;
+import de.ovgu.skunk.util.BinaryEncoder;
+import de.ovgu.skunk.util.LineSet;
+import de.ovgu.skunk.util.OrderedIntSet;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * <p>
+ * Compact binary representation of the features, functions and files of a {@link Context}, i.e., of the data that is
+ * otherwise saved as XStream XML.  Unlike the XML files, a single binary file holds one consistent object graph, so
+ * a feature reference, its function and its file refer to the same objects after loading.
+ * </p>
+ * <p>
+ * A file consists of
+ * </p>
+ * <ol>
+ * <li>a header: the bytes <code>SKIB</code>, followed by the format version;</li>
+ * <li>the sections listed in {@link Section}, in any order;</li>
+ * <li>an index: the number of sections, followed by id, offset and length of each section;</li>
+ * <li>the offset of the index, as a 4-byte big-endian integer.</li>
+ * </ol>
+ * <p>
+ * Except for the trailing index offset, all integers are variable-length quantities, see {@link BinaryEncoder}.
+ * Strings (paths, function signatures, feature names and names of enum constants) are stored once in the string
+ * table and referred to by their position in the table plus one; zero denotes <code>null</code>.  The lines of
+ * annotated code and the empty lines of files and functions are not saved, only their number is, as in the XML
+ * files.  The code of a function is usually saved as its position in the srcML file, see {@link SourceText}.
+ * </p>
+ */
+public final class BinaryIntermediateFormat {
+    private static final byte[] MAGIC = {'S', 'K', 'I', 'B'};
+    /**
+     * Version of the format.  Increase whenever the layout of a section changes.  Version 1 saved the code of each
+     * function, version 2 saves its position in the srcML file instead.  Version 3 adds the presence condition
+     * metrics of functions and files.  Version 4 adds the size and modification time of the srcML file to the position
+     * of a function.
+     */
+    public static final int VERSION = 4;
+    private static final int OLDEST_READABLE_VERSION = 1;
+
+    /**
+     * Sections of the file, with their ids.  The layout of each section is documented in its encoding method.
+     */
+    private enum Section {
+        STRINGS(1), GENERAL(2), FEATURES(3), FUNCTIONS(4), REFERENCES(5), FILES(6);
+
+        final int id;
+
+        Section(int id) {
+            this.id = id;
+        }
+    }
+
+    private BinaryIntermediateFormat() {
+    }
+
+    /**
+     * Encodes the processed data of the given context.  As the XML serialization does, this clears the lines of
+     * annotated code and the empty lines of all files and functions, which are no longer needed at this point.
+     *
+     * @param ctx the context
+     * @return the binary representation
+     */
+    public static byte[] Encode(Context ctx) {
+        return Encode(ctx, VERSION);
+    }
+
+    /**
+     * Encodes the processed data in an older version of the format, to test that such files can still be read.  Data
+     * that the given version does not hold is omitted.
+     *
+     * @param ctx     the context
+     * @param version the format version, between the oldest readable version and {@link #VERSION}
+     * @return the binary representation
+     */
+    static byte[] Encode(Context ctx, int version) {
+        if (version < OLDEST_READABLE_VERSION || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported version of binary intermediate format: " + version);
+        }
+        return new Writer(ctx, version).encode();
+    }
+
+    /**
+     * Restores processed data from its binary representation into the given context, which must be empty.
+     *
+     * @param ctx  the context
+     * @param data the binary representation, as produced by {@link #Encode(Context)}
+     * @throws IOException if the data is not in this format, has an unsupported version or is corrupted
+     */
+    public static void Decode(Context ctx, byte[] data) throws IOException {
+        new Reader(ctx, data).decode();
+    }
+
+    private static final class Writer {
+        private final Context ctx;
+        /**
+         * Format version to write, see {@link #VERSION}
+         */
+        private final int version;
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final Map<Feature, Integer> featureIndexes = new IdentityHashMap<>();
+        private final Map<Method, Integer> functionIndexes = new IdentityHashMap<>();
+
+        Writer(Context ctx, int version) {
+            this.ctx = ctx;
+            this.version = version;
+        }
+
+        byte[] encode() {
+            // The string table is filled while encoding the other sections, so it is encoded last.
+            Map<Section, BinaryEncoder> sections = new EnumMap<>(Section.class);
+            sections.put(Section.GENERAL, encodeGeneral());
+            sections.put(Section.FEATURES, encodeFeatures());
+            sections.put(Section.FUNCTIONS, encodeFunctions());
+            sections.put(Section.REFERENCES, encodeReferences());
+            sections.put(Section.FILES, encodeFiles());
+            sections.put(Section.STRINGS, encodeStrings());
+
+            BinaryEncoder out = new BinaryEncoder();
+            out.writeBytes(MAGIC);
+            out.writeVarInt(version);
+            BinaryEncoder index = new BinaryEncoder();
+            index.writeVarInt(sections.size());
+            for (Map.Entry<Section, BinaryEncoder> e : sections.entrySet()) {
+                index.writeVarInt(e.getKey().id);
+                index.writeVarInt(out.size());
+                index.writeVarInt(e.getValue().size());
+                e.getValue().writeTo(out);
+            }
+            final int indexOffset = out.size();
+            index.writeTo(out);
+            out.writeByte(indexOffset >>> 24);
+            out.writeByte(indexOffset >>> 16);
+            out.writeByte(indexOffset >>> 8);
+            out.writeByte(indexOffset);
+            return out.toByteArray();
+        }
+
+        private void writeString(BinaryEncoder out, String value) {
+            if (value == null) {
+                out.writeVarInt(0);
+                return;
+            }
+            Integer id = stringIds.get(value);
+            if (id == null) {
+                strings.add(value);
+                id = strings.size();
+                stringIds.put(value, id);
+            }
+            out.writeVarInt(id);
+        }
+
+        private void writeEnum(BinaryEncoder out, Enum<?> value) {
+            writeString(out, (value == null) ? null : value.name());
+        }
+
+        private void writeIds(BinaryEncoder out, OrderedIntSet ids) {
+            out.writeVarInt(ids.size());
+            for (int i = 0; i < ids.size(); i++)
+                out.writeVarInt(ids.get(i));
+        }
+
+        /**
+         * Number of strings, then each string as UTF-8.
+         */
+        private BinaryEncoder encodeStrings() {
+            BinaryEncoder out = new BinaryEncoder();
+            out.writeVarInt(strings.size());
+            for (String s : strings)
+                out.writeUtf8(s);
+            return out;
+        }
+
+        /**
+         * Total LOC, mean LOFC and number of feature constant references.
+         */
+        private BinaryEncoder encodeGeneral() {
+            BinaryEncoder out = new BinaryEncoder();
+            final FeatureExpressionCollection features = ctx.featureExpressions;
+            out.writeSignedVarInt(features.GetLoc());
+            out.writeSignedVarInt(features.GetMeanLofc());
+            out.writeSignedVarInt(features.numberOfFeatureConstantReferences);
+            return out;
+        }
+
+        /**
+         * Number of features, then name, LOFC, min and max nesting depth, min and max granularity and compilation
+         * files of each feature.  The references of a feature are restored from the references section.
+         */
+        private BinaryEncoder encodeFeatures() {
+            BinaryEncoder out = new BinaryEncoder();
+            Collection<Feature> features = ctx.featureExpressions.GetFeatures();
+            out.writeVarInt(features.size());
+            for (Feature feat : features) {
+                featureIndexes.put(feat, featureIndexes.size());
+                writeString(out, feat.Name);
+                out.writeSignedVarInt(feat._lofc);
+                out.writeSignedVarInt(feat.minNestingDepth);
+                out.writeSignedVarInt(feat.maxNestingDepth);
+                writeEnum(out, feat.minGranularity);
+                writeEnum(out, feat.maxGranularity);
+                out.writeVarInt(feat.compilationFiles.size());
+                for (String compilationFile : feat.compilationFiles)
+                    writeString(out, compilationFile);
+            }
+            return out;
+        }
+
+        /**
+         * Kind of the source text (0: code in memory, 1: position in srcML file), then the code or the path, size and
+         * modification time of the file (since version 4), offset and length, then the number of lines.
+         */
+        private void writeSourceText(BinaryEncoder out, SourceText source) {
+            if (source.isInMemory()) {
+                out.writeVarInt(0);
+                writeString(out, source.get());
+            } else {
+                out.writeVarInt(1);
+                writeString(out, source.getSrcMlPath());
+                if (version >= 4) {
+                    out.writeSignedVarLong(source.getFileStamp().size);
+                    out.writeSignedVarLong(source.getFileStamp().lastModified);
+                }
+                out.writeVarInt(source.getOffset());
+                out.writeVarInt(source.getLength());
+            }
+            out.writeVarInt(source.getLineCount());
+        }
+
+        /**
+         * Number of files with functions, then for each file its key, the number of its functions and the fields of
+         * each function.
+         */
+        private BinaryEncoder encodeFunctions() {
+            BinaryEncoder out = new BinaryEncoder();
+            Map<String, List<Method>> functionsByFileKey = ctx.functions.FunctionsByFileKey();
+            out.writeVarInt(functionsByFileKey.size());
+            for (Map.Entry<String, List<Method>> e : functionsByFileKey.entrySet()) {
+                writeString(out, e.getKey());
+                out.writeVarInt(e.getValue().size());
+                for (Method meth : e.getValue()) {
+                    meth.loac.clear();
+                    functionIndexes.put(meth, functionIndexes.size());
+                    writeString(out, meth.originalFunctionSignature);
+                    writeString(out, meth.uniqueFunctionSignature);
+                    writeString(out, meth.functionName);
+                    writeString(out, meth.filePath);
+                    if (version == 1) writeString(out, meth.getSourceCode());
+                    else writeSourceText(out, meth.getSourceText());
+                    out.writeSignedVarInt(meth.start1);
+                    out.writeSignedVarInt(meth.end1);
+                    out.writeSignedVarInt(meth.grossLoc);
+                    out.writeSignedVarInt(meth.signatureGrossLinesOfCode);
+                    out.writeSignedVarInt(meth.netLoc);
+                    out.writeSignedVarLong(meth.lofc);
+                    out.writeSignedVarInt(meth.nestingSum);
+                    out.writeSignedVarInt(meth.nestingDepthMax);
+                    out.writeSignedVarInt(meth.processedLoac);
+                    writeIds(out, meth.featureReferences);
+                    out.writeSignedVarInt(meth.numberFeatureConstantsNonDup);
+                    out.writeSignedVarInt(meth.numberFeatureLocations);
+                    out.writeSignedVarInt(meth.negationCount);
+                    if (version >= 3) {
+                        out.writeSignedVarInt(meth.numberOfPresenceConditions);
+                        out.writeSignedVarInt(meth.lovc);
+                    }
+                }
+            }
+            return out;
+        }
+
+        /**
+         * Number of references, then the fields of each reference, in order of ids.  The feature and the function of
+         * a reference are stored as their positions in the features and functions sections.
+         */
+        private BinaryEncoder encodeReferences() {
+            BinaryEncoder out = new BinaryEncoder();
+            final FeatureExpressionCollection features = ctx.featureExpressions;
+            final int count = features.GetReferenceCount();
+            out.writeVarInt(count);
+            for (int id = 0; id < count; id++) {
+                FeatureReference ref = features.GetFeatureConstant(id);
+                out.writeVarInt(featureIndexes.get(ref.feature));
+                writeString(out, ref.filePath);
+                out.writeSignedVarInt(ref.start);
+                out.writeSignedVarInt(ref.end);
+                out.writeSignedVarInt(ref.nestingDepth);
+                out.writeVarInt((ref.notFlag == null) ? 0 : (ref.notFlag ? 2 : 1));
+                out.writeVarInt(ref.combinedWith.size());
+                for (Integer combined : ref.combinedWith)
+                    out.writeSignedVarInt(combined);
+                writeEnum(out, ref.granularity);
+                writeEnum(out, ref.discipline);
+                out.writeVarInt((ref.inMethod == null) ? 0 : functionIndexes.get(ref.inMethod) + 1);
+            }
+            return out;
+        }
+
+        /**
+         * Number of files, then the fields of each file.  Functions are stored as their positions in the functions
+         * section.
+         */
+        private BinaryEncoder encodeFiles() {
+            BinaryEncoder out = new BinaryEncoder();
+            Collection<File> files = ctx.files.AllFiles();
+            out.writeVarInt(files.size());
+            for (File file : files) {
+                file.emptyLines.clear();
+                file.loac.clear();
+                writeString(out, file.filePath);
+                out.writeSignedVarInt(file.loc);
+                out.writeSignedVarInt(file.lofc);
+                out.writeSignedVarInt(file.nestingSum);
+                out.writeSignedVarInt(file.nestingDepthMax);
+                out.writeSignedVarInt(file.processedLoac);
+                writeIds(out, file.featureConstants);
+                out.writeVarInt(file.methods.size());
+                for (Method meth : file.methods)
+                    out.writeVarInt(functionIndexes.get(meth));
+                out.writeSignedVarInt(file.numberFeatureConstantsNonDup);
+                out.writeSignedVarInt(file.numberOfFeatureLocations);
+                out.writeSignedVarInt(file.negationCount);
+                if (version >= 3) {
+                    out.writeSignedVarInt(file.numberOfPresenceConditions);
+                    out.writeSignedVarInt(file.lovc);
+                }
+            }
+            return out;
+        }
+    }
+
+    private static final class Reader {
+        private final Context ctx;
+        private final BinaryDecoder in;
+        private final int dataLength;
+        /**
+         * Format version of the data, see {@link #VERSION}
+         */
+        private int version;
+        private final Map<Integer, int[]> sectionRanges = new HashMap<>();
+        private String[] strings;
+        private final List<Feature> features = new ArrayList<>();
+        private final List<Method> functions = new ArrayList<>();
+
+        Reader(Context ctx, byte[] data) {
+            this.ctx = ctx;
+            this.in = new BinaryDecoder(data);
+            this.dataLength = data.length;
+        }
+
+        void decode() throws IOException {
+            readHeaderAndIndex();
+            decodeStrings();
+            decodeFeatures();
+            decodeFunctions();
+            decodeReferences();
+            decodeFiles();
+            decodeGeneral();
+        }
+
+        private void readHeaderAndIndex() throws IOException {
+            byte[] magic = in.readBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a binary Skunk intermediate file");
+            version = in.readVarInt();
+            if (version < OLDEST_READABLE_VERSION || version > VERSION) {
+                throw new IOException("Unsupported version of binary intermediate format: " + version
+                        + " (supported: " + OLDEST_READABLE_VERSION + " to " + VERSION + ")");
+            }
+            if (in.remaining() < 4) throw new IOException("Truncated binary intermediate file");
+            in.seek(dataLength - 4, 4);
+            int indexOffset = (in.readByte() << 24) | (in.readByte() << 16) | (in.readByte() << 8) | in.readByte();
+            in.seek(indexOffset, dataLength - 4 - indexOffset);
+            int numSections = in.readVarInt();
+            for (int i = 0; i < numSections; i++) {
+                int id = in.readVarInt();
+                int offset = in.readVarInt();
+                int length = in.readVarInt();
+                sectionRanges.put(id, new int[]{offset, length});
+            }
+        }
+
+        private void enterSection(Section section) throws IOException {
+            int[] range = sectionRanges.get(section.id);
+            if (range == null) throw new IOException("Missing section " + section);
+            in.seek(range[0], range[1]);
+        }
+
+        private void leaveSection(Section section) throws IOException {
+            if (in.remaining() != 0) {
+                throw new IOException("Unexpected " + in.remaining() + " trailing bytes in section " + section);
+            }
+        }
+
+        private String readString() throws IOException {
+            int id = in.readVarInt();
+            if (id == 0) return null;
+            if (id > strings.length) throw new IOException("Invalid string reference: " + id);
+            return strings[id - 1];
+        }
+
+        private <E extends Enum<E>> E readEnum(Class<E> enumType) throws IOException {
+            String name = readString();
+            if (name == null) return null;
+            try {
+                return Enum.valueOf(enumType, name);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown constant of " + enumType.getSimpleName() + ": " + name, e);
+            }
+        }
+
+        private OrderedIntSet readIds() throws IOException {
+            OrderedIntSet ids = new OrderedIntSet();
+            int count = in.readVarInt();
+            for (int i = 0; i < count; i++)
+                ids.add(in.readVarInt());
+            return ids;
+        }
+
+        private <T> T elementAt(List<T> elements, int index, String what) throws IOException {
+            if (index < 0 || index >= elements.size()) throw new IOException("Invalid " + what + " index: " + index);
+            return elements.get(index);
+        }
+
+        private void decodeStrings() throws IOException {
+            enterSection(Section.STRINGS);
+            strings = new String[in.readVarInt()];
+            for (int i = 0; i < strings.length; i++)
+                strings[i] = in.readUtf8();
+            leaveSection(Section.STRINGS);
+        }
+
+        private void decodeGeneral() throws IOException {
+            enterSection(Section.GENERAL);
+            final FeatureExpressionCollection featureExpressions = ctx.featureExpressions;
+            featureExpressions.AddLoc(in.readSignedVarInt());
+            featureExpressions.SetMeanLofc(in.readSignedVarInt());
+            featureExpressions.numberOfFeatureConstantReferences = in.readSignedVarInt();
+            leaveSection(Section.GENERAL);
+        }
+
+        private void decodeFeatures() throws IOException {
+            enterSection(Section.FEATURES);
+            int count = in.readVarInt();
+            for (int i = 0; i < count; i++) {
+                Feature feat = new Feature(ctx, readString());
+                feat._lofc = in.readSignedVarInt();
+                feat.minNestingDepth = in.readSignedVarInt();
+                feat.maxNestingDepth = in.readSignedVarInt();
+                feat.minGranularity = readEnum(EnumGranularity.class);
+                feat.maxGranularity = readEnum(EnumGranularity.class);
+                int numCompilationFiles = in.readVarInt();
+                for (int j = 0; j < numCompilationFiles; j++)
+                    feat.compilationFiles.add(readString());
+                features.add(feat);
+            }
+            leaveSection(Section.FEATURES);
+        }
+
+        private SourceText readSourceText() throws IOException {
+            final int kind = in.readVarInt();
+            switch (kind) {
+                case 0: {
+                    String text = readString();
+                    return SourceText.of(text, in.readVarInt());
+                }
+                case 1: {
+                    String srcMlPath = readString();
+                    // Older versions did not save the stamp of the file, so its current stamp has to do.
+                    SourceText.FileStamp stamp = (version >= 4)
+                            ? new SourceText.FileStamp(in.readSignedVarLong(), in.readSignedVarLong())
+                            : SourceText.FileStamp.of(srcMlPath);
+                    int offset = in.readVarInt();
+                    int length = in.readVarInt();
+                    return SourceText.inSrcMlFile(srcMlPath, stamp, offset, length, in.readVarInt());
+                }
+                default:
+                    throw new IOException("Invalid kind of function source text: " + kind);
+            }
+        }
+
+        private void decodeFunctions() throws IOException {
+            enterSection(Section.FUNCTIONS);
+            int numFiles = in.readVarInt();
+            for (int i = 0; i < numFiles; i++) {
+                String fileKey = readString();
+                int numFunctions = in.readVarInt();
+                List<Method> functionsInFile = new ArrayList<>(numFunctions);
+                for (int j = 0; j < numFunctions; j++) {
+                    String originalSignature = readString();
+                    String uniqueSignature = readString();
+                    String functionName = readString();
+                    String filePath = readString();
+                    SourceText source = (version == 1) ? null : readSourceText();
+                    String sourceCode = (version == 1) ? readString() : null;
+                    int start1 = in.readSignedVarInt();
+                    int end1 = in.readSignedVarInt();
+                    int grossLoc = in.readSignedVarInt();
+                    int signatureGrossLinesOfCode = in.readSignedVarInt();
+                    if (source == null) source = SourceText.of(sourceCode, grossLoc);
+                    Method meth = new Method(ctx, originalSignature, filePath, start1, grossLoc,
+                            signatureGrossLinesOfCode, source);
+                    meth.uniqueFunctionSignature = uniqueSignature;
+                    meth.functionName = functionName;
+                    meth.end1 = end1;
+                    meth.netLoc = in.readSignedVarInt();
+                    meth.lofc = in.readSignedVarLong();
+                    meth.nestingSum = in.readSignedVarInt();
+                    meth.nestingDepthMax = in.readSignedVarInt();
+                    meth.processedLoac = in.readSignedVarInt();
+                    meth.featureReferences = readIds();
+                    meth.numberFeatureConstantsNonDup = in.readSignedVarInt();
+                    meth.numberFeatureLocations = in.readSignedVarInt();
+                    meth.negationCount = in.readSignedVarInt();
+                    if (version >= 3) {
+                        meth.numberOfPresenceConditions = in.readSignedVarInt();
+                        meth.lovc = in.readSignedVarInt();
+                    }
+                    functionsInFile.add(meth);
+                    functions.add(meth);
+                }
+                ctx.functions.AddRestoredFunctions(fileKey, functionsInFile);
+            }
+            leaveSection(Section.FUNCTIONS);
+        }
+
+        private void decodeReferences() throws IOException {
+            enterSection(Section.REFERENCES);
+            int count = in.readVarInt();
+            for (int id = 0; id < count; id++) {
+                Feature feat = elementAt(features, in.readVarInt(), "feature");
+                String filePath = readString();
+                int start = in.readSignedVarInt();
+                int end = in.readSignedVarInt();
+                int nestingDepth = in.readSignedVarInt();
+                int notFlag = in.readVarInt();
+                FeatureReference ref = new FeatureReference(filePath, start, end, nestingDepth,
+                        (notFlag == 0) ? null : (notFlag == 2));
+                ref.id = id;
+                ref.feature = feat;
+                int numCombined = in.readVarInt();
+                for (int i = 0; i < numCombined; i++)
+                    ref.combinedWith.add(in.readSignedVarInt());
+                ref.granularity = readEnum(EnumGranularity.class);
+                ref.discipline = readEnum(EnumDiscipline.class);
+                int functionIndex = in.readVarInt();
+                if (functionIndex > 0) ref.inMethod = elementAt(functions, functionIndex - 1, "function");
+                // ids are assigned in the order in which references are added to their features
+                feat.references.add(ref);
+            }
+            leaveSection(Section.REFERENCES);
+            for (Feature feat : features)
+                ctx.featureExpressions.AddRestoredFeature(feat);
+        }
+
+        private void decodeFiles() throws IOException {
+            enterSection(Section.FILES);
+            int count = in.readVarInt();
+            for (int i = 0; i < count; i++) {
+                File file = new File(ctx, readString(), new LineSet());
+                file.loc = in.readSignedVarInt();
+                file.lofc = in.readSignedVarInt();
+                file.nestingSum = in.readSignedVarInt();
+                file.nestingDepthMax = in.readSignedVarInt();
+                file.processedLoac = in.readSignedVarInt();
+                file.featureConstants = readIds();
+                int numFunctions = in.readVarInt();
+                for (int j = 0; j < numFunctions; j++)
+                    file.methods.add(elementAt(functions, in.readVarInt(), "function"));
+                file.numberFeatureConstantsNonDup = in.readSignedVarInt();
+                file.numberOfFeatureLocations = in.readSignedVarInt();
+                file.negationCount = in.readSignedVarInt();
+                if (version >= 3) {
+                    file.numberOfPresenceConditions = in.readSignedVarInt();
+                    file.lovc = in.readSignedVarInt();
+                }
+                ctx.files.AddRestoredFile(file);
+            }
+            leaveSection(Section.FILES);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package de.ovgu.skunk.detection.data;
+
+/**
+ * The condition of a preprocessor directive, such as <code>defined(A) &amp;&amp; !(B &gt; 2)</code>, as a tree of
+ * expressions.  Conditions are hash-consed by a {@link ConditionTable}: the table holds a single instance of each
+ * distinct (sub-)expression.  Thus, two conditions of the same table are structurally equal iff they are the same
+ * object, and comparing them takes constant time.
+ */
+public final class Condition {
+    public enum Kind {
+        /**
+         * A number or character literal, see {@link #getText()}
+         */
+        NUMBER,
+        /**
+         * <code>defined(SYMBOL)</code> or <code>defined SYMBOL</code>
+         */
+        DEFINED,
+        /**
+         * A symbol used as a value, i.e., without <code>defined</code>
+         */
+        MACRO,
+        /**
+         * A function-like macro applied to the operands, such as <code>KERNEL_VERSION(2,6,0)</code>
+         */
+        CALL,
+        NOT,
+        AND,
+        OR,
+        /**
+         * Any other operator, such as <code>&gt;</code> or <code>+</code>, applied to the operands.  The operator
+         * is given by {@link #getText()}.  The conditional operator is written <code>?:</code>.  Unary minus, plus and
+         * complement have a single operand.
+         */
+        OPERATOR,
+        /**
+         * A condition that could not be parsed, see {@link #getText()}
+         */
+        UNKNOWN
+    }
+
+    private static final Condition[] NO_OPERANDS = new Condition[0];
+
+    public final Kind kind;
+    /**
+     * The symbol of {@link Kind#DEFINED}, {@link Kind#MACRO} and {@link Kind#CALL} conditions, or
+     * <code>null</code>
+     */
+    public final FeatureSymbol symbol;
+    private final String text;
+    private final Condition[] operands;
+    private final int hash;
+
+    Condition(Kind kind, FeatureSymbol symbol, String text, Condition... operands) {
+        this.kind = kind;
+        this.symbol = symbol;
+        this.text = text;
+        this.operands = (operands.length == 0) ? NO_OPERANDS : operands;
+        int h = kind.hashCode();
+        h = 31 * h + System.identityHashCode(symbol);
+        h = 31 * h + ((text == null) ? 0 : text.hashCode());
+        for (Condition operand : operands) {
+            h = 31 * h + System.identityHashCode(operand);
+        }
+        this.hash = h;
+    }
+
+    /**
+     * @return the literal of {@link Kind#NUMBER} conditions, the operator of {@link Kind#OPERATOR} conditions and the
+     * text of {@link Kind#UNKNOWN} conditions, or <code>null</code>
+     */
+    public String getText() {
+        return text;
+    }
+
+    public int getOperandCount() {
+        return operands.length;
+    }
+
+    public Condition getOperand(int i) {
+        return operands[i];
+    }
+
+    /**
+     * Compares the kind, symbol, text and operands of both conditions.  Since operands are hash-consed, they are
+     * compared by identity.  Used by {@link ConditionTable} to find existing instances.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Condition)) return false;
+        Condition other = (Condition) o;
+        if (hash != other.hash || kind != other.kind || symbol != other.symbol) return false;
+        if ((text == null) ? (other.text != null) : !text.equals(other.text)) return false;
+        if (operands.length != other.operands.length) return false;
+        for (int i = 0; i < operands.length; i++) {
+            if (operands[i] != other.operands[i]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case NUMBER:
+            case UNKNOWN:
+                return text;
+            case DEFINED:
+                return "defined(" + symbol + ")";
+            case MACRO:
+                return symbol.name;
+            case CALL: {
+                StringBuilder result = new StringBuilder(symbol.name).append('(');
+                for (int i = 0; i < operands.length; i++) {
+                    if (i > 0) result.append(", ");
+                    result.append(operands[i]);
+                }
+                return result.append(')').toString();
+            }
+            case NOT:
+                return "!" + operands[0].toOperandString();
+            case AND:
+                return operands[0].toOperandString() + " && " + operands[1].toOperandString();
+            case OR:
+                return operands[0].toOperandString() + " || " + operands[1].toOperandString();
+            case OPERATOR:
+                if (operands.length == 1) return text + operands[0].toOperandString();
+                if (operands.length == 3) {
+                    return operands[0].toOperandString() + " ? " + operands[1].toOperandString() + " : "
+                            + operands[2].toOperandString();
+                }
+                return operands[0].toOperandString() + " " + text + " " + operands[1].toOperandString();
+            default:
+                throw new IllegalStateException("Unknown kind of condition: " + kind);
+        }
+    }
+
+    private String toOperandString() {
+        switch (kind) {
+            case AND:
+            case OR:
+            case OPERATOR:
+                return "(" + this + ")";
+            default:
+                return toString();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package de.ovgu.skunk.detection.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns the symbols and {@link Condition conditions} of a project, so that each distinct symbol and each distinct
+ * (sub-)condition exists only once.  All methods are thread-safe.
+ */
+public class ConditionTable {
+    private final Map<String, FeatureSymbol> symbolsByName = new HashMap<>();
+    private final List<FeatureSymbol> symbolsById = new ArrayList<>();
+    private final Map<Condition, Condition> conditions = new HashMap<>();
+
+    /**
+     * @param name the name of a symbol
+     * @return the symbol of the given name.  If there is none yet, a new symbol is created and numbered.
+     */
+    public synchronized FeatureSymbol symbol(String name) {
+        FeatureSymbol existing = symbolsByName.get(name);
+        if (existing != null) return existing;
+        FeatureSymbol newSymbol = new FeatureSymbol(symbolsById.size(), name);
+        symbolsByName.put(name, newSymbol);
+        symbolsById.add(newSymbol);
+        return newSymbol;
+    }
+
+    /**
+     * @param id the number of a symbol
+     * @return the symbol of the given number
+     * @throws IndexOutOfBoundsException if there is no such symbol
+     */
+    public synchronized FeatureSymbol symbol(int id) {
+        return symbolsById.get(id);
+    }
+
+    /**
+     * @return the number of symbols
+     */
+    public synchronized int symbolCount() {
+        return symbolsById.size();
+    }
+
+    /**
+     * @return the number of distinct conditions and sub-conditions
+     */
+    public synchronized int size() {
+        return conditions.size();
+    }
+
+    private synchronized Condition intern(Condition candidate) {
+        Condition existing = conditions.putIfAbsent(candidate, candidate);
+        return (existing == null) ? candidate : existing;
+    }
+
+    public Condition number(String literal) {
+        return intern(new Condition(Condition.Kind.NUMBER, null, literal));
+    }
+
+    public Condition defined(FeatureSymbol symbol) {
+        return intern(new Condition(Condition.Kind.DEFINED, symbol, null));
+    }
+
+    public Condition macro(FeatureSymbol symbol) {
+        return intern(new Condition(Condition.Kind.MACRO, symbol, null));
+    }
+
+    public Condition call(FeatureSymbol symbol, Condition... arguments) {
+        return intern(new Condition(Condition.Kind.CALL, symbol, null, arguments.clone()));
+    }
+
+    public Condition not(Condition operand) {
+        return intern(new Condition(Condition.Kind.NOT, null, null, operand));
+    }
+
+    public Condition and(Condition left, Condition right) {
+        return intern(new Condition(Condition.Kind.AND, null, null, left, right));
+    }
+
+    public Condition or(Condition left, Condition right) {
+        return intern(new Condition(Condition.Kind.OR, null, null, left, right));
+    }
+
+    /**
+     * @param operator an operator other than <code>!</code>, <code>&amp;&amp;</code> and <code>||</code>, such as
+     *                 <code>&gt;=</code>
+     * @param operands the operands of the operator
+     */
+    public Condition operator(String operator, Condition... operands) {
+        return intern(new Condition(Condition.Kind.OPERATOR, null, operator, operands.clone()));
+    }
+
+    /**
+     * @param text a condition that cannot be parsed
+     */
+    public Condition unknown(String text) {
+        return intern(new Condition(Condition.Kind.UNKNOWN, null, text));
+    }
+}
@@ -2,6 +2,7 @@ package de.ovgu.skunk.detection.data;
 
 import de.ovgu.skunk.detection.detector.DetectionConfig;
 import de.ovgu.skunk.detection.output.ProcessedDataHandler;
+import de.ovgu.skunk.util.MappedInput;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -16,17 +17,77 @@ public class Context {
     public final MethodCollection functions;
     public final FeatureExpressionCollection featureExpressions;
     public final ProcessedDataHandler processedDataHandler;
-    private final Map<String, FilePath> filePathByActualPath = new HashMap<>();
+    /**
+     * Number of bytes of input files read, by phase
+     */
+    public final transient MappedInput.Statistics inputStatistics;
+    /**
+     * The interned conditions of the preprocessor directives read so far
+     */
+    public final transient ConditionTable conditions;
+    /**
+     * The presence conditions of the conditional blocks read so far
+     */
+    public final transient PresenceConditions presenceConditions;
+    private final Map<String, FilePath> filePathByActualPath;
+    /**
+     * Directory in which output files are written, or <code>null</code> for the current working directory
+     */
+    private final transient java.io.File outputDir;
 
     public Context(DetectionConfig config) {
+        this(config, null);
+    }
+
+    /**
+     * @param config    the smell detection configuration, may be <code>null</code>
+     * @param outputDir directory in which output files are written, or <code>null</code> for the current working
+     *                  directory
+     */
+    public Context(DetectionConfig config, java.io.File outputDir) {
         this.config = config;
+        this.outputDir = outputDir;
+        this.inputStatistics = new MappedInput.Statistics();
+        this.conditions = new ConditionTable();
+        this.presenceConditions = new PresenceConditions();
+        this.filePathByActualPath = new HashMap<>();
         this.files = new FileCollection(this);
         this.functions = new MethodCollection();
         this.featureExpressions = new FeatureExpressionCollection(this);
         this.processedDataHandler = new ProcessedDataHandler(this);
     }
 
-    public FilePath internFilePath(String actualFilePath) {
+    private Context(Context data, DetectionConfig config, java.io.File outputDir) {
+        this.config = config;
+        this.outputDir = outputDir;
+        this.inputStatistics = data.inputStatistics;
+        this.conditions = data.conditions;
+        this.presenceConditions = data.presenceConditions;
+        this.filePathByActualPath = data.filePathByActualPath;
+        this.files = data.files;
+        this.functions = data.functions;
+        this.featureExpressions = data.featureExpressions;
+        this.processedDataHandler = new ProcessedDataHandler(this);
+    }
+
+    /**
+     * Allows running detections with different configurations on data that has been loaded only once.
+     *
+     * @param config    the smell detection configuration
+     * @param outputDir directory in which output files are written, or <code>null</code> for the current working
+     *                  directory
+     * @return a context that shares the features, functions and files of this context, but uses the given
+     * configuration and output directory
+     */
+    public Context withConfig(DetectionConfig config, java.io.File outputDir) {
+        return new Context(this, config, outputDir);
+    }
+
+    /**
+     * @param actualFilePath path of a source file or of the srcML file generated from it
+     * @return the interned path object for the given path.  This method is thread-safe.
+     */
+    public synchronized FilePath internFilePath(String actualFilePath) {
         FilePath existing = filePathByActualPath.get(actualFilePath);
         if (existing != null) {
             return existing;
@@ -40,6 +101,15 @@ public class Context {
     }
 
 
+    /**
+     * @param filename name of an output file, such as <code>getMetricsOutputFilenamePrefix() + "files.csv"</code>
+     * @return the file of that name in this context's output directory
+     */
+    public java.io.File getOutputFile(String filename) {
+        if (outputDir == null) return new java.io.File(filename);
+        return new java.io.File(outputDir, filename);
+    }
+
     public String getMetricsOutputFilenamePrefix() {
         return getGeneralOutputFilenamePrefix() + "metrics_";
     }
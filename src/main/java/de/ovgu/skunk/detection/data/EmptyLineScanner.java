@@ -0,0 +1,244 @@
+package de.ovgu.skunk.detection.data;
+
+import de.ovgu.skunk.util.LineSet;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds the empty lines of a C file, i.e., lines without any characters and lines that contain nothing but comments
+ * and white space, and counts the remaining lines of code.  Lines that hold only white space count as code, as they
+ * always did.  Works directly on the bytes of the file, which are passed to {@link #scan(ByteBuffer)}
+ * in one or more chunks, without decoding them.  Since the bytes of multi-byte UTF-8 sequences are never ASCII
+ * characters, this gives the same result as looking at the decoded characters.
+ * <p>
+ * Block comments are tracked across lines and within lines, so code before a comment starts or after it ends makes a
+ * line non-empty.  Comment delimiters within string and character literals are ignored.  Lines end at
+ * <code>\n</code>, <code>\r</code> or <code>\r\n</code>, like in {@link java.io.BufferedReader#readLine()}.
+ * <p>
+ * For srcML files, markup is skipped when looking for comments and code, and entity references count as the characters
+ * they stand for.  Thus, the line numbers refer to the lines of the srcML file, and a line holding a comment in markup
+ * is empty.  Lines that hold only markup count as code, like lines that hold only white space.
+ */
+public class EmptyLineScanner {
+    private static final int CODE = 0;
+    private static final int BLOCK_COMMENT = 1;
+    private static final int LINE_COMMENT = 2;
+    private static final int STRING_LITERAL = 3;
+    private static final int CHAR_LITERAL = 4;
+
+    private final LineSet emptyLines;
+    private final boolean srcMl;
+
+    private int state = CODE;
+    /**
+     * In code: the last character was a <code>/</code> that may start a comment.  In a block comment: the last
+     * character was a <code>*</code> that may end it.
+     */
+    private boolean pendingDelimiter = false;
+    /**
+     * Within a literal: the last character was a backslash.
+     */
+    private boolean escaped = false;
+    /**
+     * The last character of the current line, excluding markup, or 0
+     */
+    private int lastChar = 0;
+    /**
+     * The last byte was <code>\r</code>, so a following <code>\n</code> does not end another line.
+     */
+    private boolean afterCarriageReturn = false;
+    /**
+     * Within an srcML tag, and the quote character of the attribute value we are in, if any
+     */
+    private boolean inTag = false;
+    private int tagQuote = 0;
+    /**
+     * Within an srcML entity reference, and the first letter of its name
+     */
+    private boolean inEntity = false;
+    private int entityStart = 0;
+    private int entityLength = 0;
+
+    private boolean lineHasCode = false;
+    /**
+     * The current line starts within a comment or opens one
+     */
+    private boolean lineHasComment = false;
+    private boolean lineHasBytes = false;
+    private int line = 0;
+    private int loc = 0;
+
+    /**
+     * @param emptyLines receives the numbers of the empty lines, starting at 0
+     * @param srcMl      <code>true</code> if the file is a srcML file
+     */
+    public EmptyLineScanner(LineSet emptyLines, boolean srcMl) {
+        this.emptyLines = emptyLines;
+        this.srcMl = srcMl;
+    }
+
+    /**
+     * Scans the next bytes of the file, from the chunk's position to its limit.  The chunk's position is not changed.
+     */
+    public void scan(ByteBuffer chunk) {
+        final int limit = chunk.limit();
+        for (int i = chunk.position(); i < limit; i++) {
+            final int b = chunk.get(i) & 0xFF;
+            if (b == '\n' || b == '\r') {
+                final boolean skip = (b == '\n') && afterCarriageReturn;
+                afterCarriageReturn = (b == '\r');
+                if (!skip) endLine();
+                continue;
+            }
+            afterCarriageReturn = false;
+            lineHasBytes = true;
+            if (srcMl) {
+                scanMarkup(b);
+            } else {
+                scanCode(b);
+            }
+        }
+    }
+
+    private void scanMarkup(int b) {
+        if (inTag) {
+            if (tagQuote != 0) {
+                if (b == tagQuote) tagQuote = 0;
+            } else if (b == '"' || b == '\'') {
+                tagQuote = b;
+            } else if (b == '>') {
+                inTag = false;
+            }
+        } else if (inEntity) {
+            if (b == ';') {
+                inEntity = false;
+                scanCode(decodeEntity());
+            } else {
+                if (entityLength == 0) entityStart = b;
+                entityLength++;
+            }
+        } else if (b == '<') {
+            inTag = true;
+        } else if (b == '&') {
+            inEntity = true;
+            entityLength = 0;
+        } else {
+            scanCode(b);
+        }
+    }
+
+    /**
+     * @return the character the entity reference stands for, as far as it matters for finding comments and literals
+     */
+    private int decodeEntity() {
+        if (entityLength == 2 && entityStart == 'l') return '<';
+        if (entityLength == 2 && entityStart == 'g') return '>';
+        if (entityLength == 4 && entityStart == 'q') return '"';
+        if (entityLength == 4 && entityStart == 'a') return '\'';
+        // &amp; and character references
+        return '&';
+    }
+
+    private void scanCode(int b) {
+        lastChar = b;
+        switch (state) {
+            case CODE:
+                if (pendingDelimiter) {
+                    pendingDelimiter = false;
+                    if (b == '*') {
+                        state = BLOCK_COMMENT;
+                        lineHasComment = true;
+                        return;
+                    } else if (b == '/') {
+                        state = LINE_COMMENT;
+                        lineHasComment = true;
+                        return;
+                    }
+                    // The slash was a division operator.
+                    lineHasCode = true;
+                }
+                if (b == '/') {
+                    pendingDelimiter = true;
+                    return;
+                }
+                if (b == '"') {
+                    state = STRING_LITERAL;
+                } else if (b == '\'') {
+                    state = CHAR_LITERAL;
+                }
+                if (b > ' ') lineHasCode = true;
+                break;
+            case BLOCK_COMMENT:
+                if (pendingDelimiter && b == '/') {
+                    state = CODE;
+                    pendingDelimiter = false;
+                } else {
+                    pendingDelimiter = (b == '*');
+                }
+                break;
+            case LINE_COMMENT:
+                break;
+            case STRING_LITERAL:
+            case CHAR_LITERAL:
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == ((state == STRING_LITERAL) ? '"' : '\'')) {
+                    state = CODE;
+                }
+                if (b > ' ') lineHasCode = true;
+                break;
+            default:
+                throw new IllegalStateException("Unknown state: " + state);
+        }
+    }
+
+    private void endLine() {
+        if (state == CODE && pendingDelimiter) {
+            lineHasCode = true;
+            pendingDelimiter = false;
+        }
+        if ((state == LINE_COMMENT || state == STRING_LITERAL || state == CHAR_LITERAL) && lastChar != '\\') {
+            // Line comments end here, unless the line is continued, and so do unterminated literals.
+            state = CODE;
+        }
+        if (state == BLOCK_COMMENT) {
+            // A `*' at the end of a line does not end the comment together with a `/' on the next line.
+            pendingDelimiter = false;
+        }
+        escaped = false;
+        lastChar = 0;
+        inEntity = false;
+        if (lineHasCode || (lineHasBytes && !lineHasComment)) {
+            loc++;
+        } else {
+            emptyLines.add(line);
+        }
+        line++;
+        lineHasCode = false;
+        lineHasComment = (state == BLOCK_COMMENT || state == LINE_COMMENT);
+        lineHasBytes = false;
+    }
+
+    /**
+     * Concludes scanning after the last chunk.  A last line without a line break counts as a line.
+     */
+    public void finish() {
+        if (lineHasBytes) endLine();
+    }
+
+    /**
+     * @return the number of non-empty lines scanned so far
+     */
+    public int getLoc() {
+        return loc;
+    }
+
+    /**
+     * @return the number of lines scanned so far
+     */
+    public int getLineCount() {
+        return line;
+    }
+}
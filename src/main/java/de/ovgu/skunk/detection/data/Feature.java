@@ -14,11 +14,11 @@ public class Feature implements Comparable<Feature> {
     /**
      * The lines of feature code.
      */
-    private int _lofc;
+    int _lofc;
     /**
-     * The places that reference this feature
+     * The places that reference this feature, in the order in which they were added
      */
-    public Map<UUID, FeatureReference> references;
+    public List<FeatureReference> references;
     /**
      * nesting Depth informations
      */
@@ -44,10 +44,10 @@ public class Feature implements Comparable<Feature> {
     /**
      * Gets all references to the feature
      *
-     * @return the locs
+     * @return the locs, in the order in which they were added.  The list is not modifiable.
      */
     public List<FeatureReference> getReferences() {
-        return new ArrayList<>(this.references.values());
+        return Collections.unmodifiableList(this.references);
     }
 
     /**
@@ -57,7 +57,7 @@ public class Feature implements Comparable<Feature> {
      */
     public Feature(Context ctx, String name) {
         this.Name = name;
-        this.references = new HashMap<>();
+        this.references = new ArrayList<>();
         this.compilationFiles = new ArrayList<>();
         this.maxNestingDepth = -1;
         this.minNestingDepth = -1;
@@ -72,12 +72,12 @@ public class Feature implements Comparable<Feature> {
     public void AddReference(FeatureReference ref) {
         // connect constant with this feature (both directions)
         ref.feature = this;
+        ctx.featureExpressions.RegisterReference(ref);
         // set loc for the feature
-        this.references.put(ref.id, ref);
+        this.references.add(ref);
         this._lofc += ref.end - ref.start + 1;
         de.ovgu.skunk.detection.data.File file = ctx.files.FindFile(ref.filePath);
-        for (int current : file.emptyLines)
-            if (current > ref.start && current < ref.end) this._lofc--;
+        this._lofc -= file.CountEmptyLines(ref.start + 1, ref.end - 1);
         // assign nesting depth
         if (this.minNestingDepth == -1) this.minNestingDepth = ref.nestingDepth;
         if (this.maxNestingDepth == -1) this.maxNestingDepth = ref.nestingDepth;
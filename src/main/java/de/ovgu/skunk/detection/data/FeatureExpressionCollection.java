@@ -1,6 +1,8 @@
 package de.ovgu.skunk.detection.data;
 
 import com.thoughtworks.xstream.XStream;
+import de.ovgu.skunk.util.LineSetConverter;
+import de.ovgu.skunk.util.OrderedIntSetConverter;
 
 import java.io.Reader;
 import java.io.Writer;
@@ -13,6 +15,17 @@ import java.util.function.Consumer;
 public class FeatureExpressionCollection {
     private final Context ctx;
     private Map<String, Feature> _features;
+    /**
+     * References to feature constants, grouped by the path of the file in which they occur.  Each list is sorted by
+     * start line.  References with the same start line are kept in the order in which they were added.  Not
+     * serialized, see {@link #ensureIndexes()}.
+     */
+    private transient Map<String, List<FeatureReference>> _referencesByFilePath;
+    /**
+     * References to feature constants.  The index of each reference is its id.  Not serialized, see {@link
+     * #ensureIndexes()}.
+     */
+    private transient ArrayList<FeatureReference> _referencesById;
     private int _loc;
     private int _meanLofc;
     /**
@@ -81,17 +94,73 @@ public class FeatureExpressionCollection {
     }
 
     /**
-     * Gets the feature constant of the specified feature
+     * Gets the feature constant reference with the given id.  Takes constant time.
      *
-     * @param name the name
-     * @param id   the id of the constant reference
+     * @param id the id of the constant reference
      * @return the feature constant or <code>null</code>
      */
-    public FeatureReference GetFeatureConstant(String name, UUID id) {
-        for (Feature feature : _features.values()) {
-            if (feature.references.containsKey(id)) return feature.references.get(id);
+    public FeatureReference GetFeatureConstant(int id) {
+        ensureIndexes();
+        if (id < 0 || id >= _referencesById.size()) return null;
+        return _referencesById.get(id);
+    }
+
+    /**
+     * @return the number of feature constant references.  Their ids range from zero to this number minus one.
+     */
+    int GetReferenceCount() {
+        ensureIndexes();
+        return _referencesById.size();
+    }
+
+    /**
+     * Gets all references to feature constants within the given file, sorted by start line.
+     *
+     * @param filePath the path of the file, as in {@link FeatureReference#filePath}
+     * @return the references in the file, or an empty list if there are none.  The list is not modifiable.
+     */
+    public List<FeatureReference> GetReferencesInFile(String filePath) {
+        ensureIndexes();
+        List<FeatureReference> refs = _referencesByFilePath.get(filePath);
+        if (refs == null) return Collections.emptyList();
+        return Collections.unmodifiableList(refs);
+    }
+
+    /**
+     * Assigns the next free id to the reference and adds it to the indexes.  Called by {@link
+     * Feature#AddReference(FeatureReference)}.  Ids are handed out sequentially, starting at zero.
+     *
+     * @param ref the reference
+     */
+    void RegisterReference(FeatureReference ref) {
+        ensureIndexes();
+        ref.id = _referencesById.size();
+        IndexReference(ref);
+    }
+
+    /**
+     * Adds the reference to the index by id and to the per-file index.
+     *
+     * @param ref the reference, whose id has already been assigned
+     */
+    private void IndexReference(FeatureReference ref) {
+        ensureIndexes();
+        while (_referencesById.size() <= ref.id) _referencesById.add(null);
+        _referencesById.set(ref.id, ref);
+        List<FeatureReference> refs = _referencesByFilePath.get(ref.filePath);
+        if (refs == null) {
+            refs = new ArrayList<>();
+            _referencesByFilePath.put(ref.filePath, refs);
         }
-        return null;
+        // cppstats lists the references of a file in ascending order, so this usually finds the end of the list.
+        int lo = 0;
+        int hi = refs.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (refs.get(mid).start <= ref.start) lo = mid + 1;
+            else hi = mid;
+        }
+        refs.add(lo, ref);
     }
 
     /**
@@ -109,10 +178,34 @@ public class FeatureExpressionCollection {
     public FeatureExpressionCollection(Context ctx) {
         this.ctx = ctx;
         _features = new LinkedHashMap<>();
+        clearIndexes();
         _loc = 0;
         numberOfFeatureConstantReferences = 0;
     }
 
+    private void clearIndexes() {
+        _referencesByFilePath = new HashMap<>();
+        _referencesById = new ArrayList<>();
+    }
+
+    /**
+     * Rebuilds the reference indexes if necessary.  The indexes are not serialized.  Yet, copies of this collection
+     * are deserialized by XStream, because features, files and functions hold a reference to the {@link Context}.
+     * XStream does not invoke our constructor, so the indexes of these copies are <code>null</code> at first.
+     * Synchronized because the SrcML files, and hence the references of a copy, may be looked up by several threads at
+     * once.  Every access to the indexes calls this method first, which also makes the indexes visible to the calling
+     * thread.
+     */
+    private synchronized void ensureIndexes() {
+        if (_referencesById != null) return;
+        clearIndexes();
+        for (Feature feature : _features.values()) {
+            for (FeatureReference ref : feature.references) {
+                IndexReference(ref);
+            }
+        }
+    }
+
     /**
      * Misc operations (calculate mean lofc)
      */
@@ -129,6 +222,8 @@ public class FeatureExpressionCollection {
      */
     public Consumer<Writer> SerializeFeatures() {
         XStream stream = new XStream();
+        stream.registerConverter(new LineSetConverter());
+        stream.registerConverter(new OrderedIntSetConverter());
         ArrayList<Feature> listOfFeatures = new ArrayList<>(_features.values());
 
         return (writer -> stream.toXML(listOfFeatures, writer));
@@ -141,9 +236,23 @@ public class FeatureExpressionCollection {
      */
     public void DeserializeFeatures(Reader xmlFileReader) {
         XStream stream = new XStream();
+        stream.registerConverter(new LineSetConverter());
+        stream.registerConverter(new OrderedIntSetConverter());
         List<Feature> listOfFeatures = (List<Feature>) stream.fromXML(xmlFileReader);
         for (Feature feature : listOfFeatures) {
-            _features.put(feature.Name, feature);
+            AddRestoredFeature(feature);
+        }
+    }
+
+    /**
+     * Adds a feature restored from intermediate results.  Its references must already have been assigned their ids.
+     *
+     * @param feature the feature
+     */
+    void AddRestoredFeature(Feature feature) {
+        _features.put(feature.Name, feature);
+        for (FeatureReference ref : feature.references) {
+            IndexReference(ref);
         }
     }
 }
@@ -4,7 +4,6 @@ import org.w3c.dom.Node;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * A reference to a feature, i.e., a place, such as the condition of an
@@ -20,9 +19,10 @@ public class FeatureReference implements Comparable<FeatureReference> {
      */
     public String filePath;
     /**
-     * The unique ID of this feature reference.
+     * The unique ID of this feature reference.  Assigned by the {@link FeatureExpressionCollection} when the
+     * reference is added to its feature; <code>-1</code> before that.
      */
-    public UUID id;
+    public int id;
     /**
      * The start1 position.
      */
@@ -39,11 +39,16 @@ public class FeatureReference implements Comparable<FeatureReference> {
      * The negation flag.
      */
     public Boolean notFlag;
+    /**
+     * The complete condition of the directive, shared by all references of the directive and by all directives with
+     * the same condition.  Not serialized; <code>null</code> for references restored from processed data.
+     */
+    public transient Condition condition;
     /**
      * The list of features of combined feature constants in a location (i.e.
      * Feature 1 && Feature 2.
      */
-    public List<UUID> combinedWith;
+    public List<Integer> combinedWith;
     public EnumGranularity granularity;
     public EnumDiscipline discipline;
     /**
@@ -63,7 +68,7 @@ public class FeatureReference implements Comparable<FeatureReference> {
      */
     public FeatureReference(String filePath, int start, int end, int nestingDepth, Boolean notFlag) {
         this.filePath = filePath;
-        this.id = java.util.UUID.randomUUID();
+        this.id = -1;
         this.start = start;
         this.end = end;
         this.nestingDepth = nestingDepth;
@@ -89,88 +94,28 @@ public class FeatureReference implements Comparable<FeatureReference> {
      * @param node the node name
      */
     public void SetGranularity(Node node) {
-        // decide the granularity of the node based on the nodeName
-        EnumGranularity glValue = EnumGranularity.NOTDEFINED;
-        switch (node.getNodeName()) {
-            case "name":
-                String parent = node.getParentNode().getNodeName();
-                if (parent.equals("function"))
-                    glValue = EnumGranularity.FUNCTIONSIGNATURE;
-                else if (parent.equals("expr"))
-                    glValue = EnumGranularity.EXPRESSION;
-                else if (parent.equals("type")) glValue = EnumGranularity.STATEMENT;
-                break;
-            case "parameter_list":
-                glValue = EnumGranularity.FUNCTIONSIGNATURE;
-                break;
-            case "param":
-                glValue = EnumGranularity.FUNCTIONSIGNATURE;
-                break;
-            case "argument":
-                glValue = EnumGranularity.EXPRESSION;
-                break;
-            case "argument_list":
-                glValue = EnumGranularity.EXPRESSION;
-                break;
-            case "call":
-                glValue = EnumGranularity.EXPRESSION;
-                break;
-            case "expr":
-                glValue = EnumGranularity.EXPRESSION;
-                break;
-            case "empty_stmt":
-                glValue = EnumGranularity.FUNCTION;
-                break;
-            case "do":
-                glValue = EnumGranularity.FUNCTION;
-                break;
-            case "case":
-                glValue = EnumGranularity.FUNCTION;
-                break;
-            case "block":
-                glValue = EnumGranularity.FUNCTION;
-                break;
-            case "switch":
-                glValue = EnumGranularity.FUNCTION;
-                break;
-            case "return":
-                glValue = EnumGranularity.FUNCTION;
-                break;
-            case "expr_stmt":
-                glValue = EnumGranularity.FUNCTION;
-                break;
-            case "decl_stmt":
-                glValue = EnumGranularity.FUNCTION;
-                break;
-            case "if":
-                glValue = EnumGranularity.FUNCTION;
-                break;
-            case "else":
-                glValue = EnumGranularity.FUNCTION;
-                break;
-            case "while":
-                glValue = EnumGranularity.FUNCTION;
-                break;
-            case "function":
-                glValue = EnumGranularity.GLOBAL;
-                break;
-            case "typedef":
-                glValue = EnumGranularity.GLOBAL;
-                break;
-            case "struct":
-                glValue = EnumGranularity.GLOBAL;
-                break;
-            case "union":
-                glValue = EnumGranularity.GLOBAL;
-                break;
-            case "function_decl":
-                glValue = EnumGranularity.GLOBAL;
-                break;
-            default:
-                if (!node.getNodeName().contains("cpp:"))
-                    // TODO System.out.println(node.getNodeName());
-                    break;
-        }
+        SetGranularity(node.getNodeName(), node.getParentNode().getNodeName());
+    }
+
+    /**
+     * Sets the granularity based on the name of a srcML element
+     *
+     * @param nodeName       the name of the element, e.g., <code>expr</code>
+     * @param parentNodeName the name of the element's parent element
+     */
+    public void SetGranularity(String nodeName, String parentNodeName) {
+        SetGranularity(SrcMlElement.fromName(nodeName), SrcMlElement.fromName(parentNodeName));
+    }
+
+    /**
+     * Sets the granularity based on a srcML element
+     *
+     * @param element the element
+     * @param parent  the element's parent element
+     */
+    public void SetGranularity(SrcMlElement element, SrcMlElement parent) {
+        // decide the granularity of the node based on the element
+        final EnumGranularity glValue = element.granularity(parent);
         // only assign new granularity if value is higher than the current
         if (this.granularity.GetValue() < glValue.GetValue()) this.granularity = glValue;
         // reassign feature max/min granularity if necessary
@@ -197,52 +142,41 @@ public class FeatureReference implements Comparable<FeatureReference> {
         // if not notdefined or disciplined, check for undisciplined node
         // annotations
         if (this.discipline.GetValue() < 0) return;
-        // decide on the basis of the siblings of each annotation
-        EnumDiscipline discValue = EnumDiscipline.NOTDEFINED;
-        switch (node.getNodeName()) {
-            case "else":
-                discValue = EnumDiscipline.UNDISC_ELSE_IF;
-                break;
-            case "case":
-                discValue = EnumDiscipline.UNDISC_CASE;
-                break;
-            case "expr":
-                discValue = EnumDiscipline.UNDISC_EXPRESSION;
-                break;
-            case "parameter_list":
-                discValue = EnumDiscipline.UNDISC_PARAM;
-                break;
-            case "param":
-                discValue = EnumDiscipline.UNDISC_PARAM;
-                break;
-            case "argument":
-                discValue = EnumDiscipline.UNDISC_PARAM;
-                break;
-            case "argument_list":
-                discValue = EnumDiscipline.UNDISC_PARAM;
-                break;
-            case "if":
-                // check if the if node has a child node. If the previous
-                // sibling of the <else> child node is not the <then> node, it
-                // is undisciplined
-                for (int current = 0; current < node.getChildNodes().getLength(); current++) {
-                    Node child = node.getChildNodes().item(current);
-                    if (child.getNodeName().equals("else")) {
-                        if (!node.getChildNodes().item(current - 1).equals("then")) {
-                            discValue = EnumDiscipline.UNDISC_IF;
-                            break;
-                        } else {
-                            discValue = EnumDiscipline.DISCIPLINED;
-                            break;
-                        }
-                    }
-                }
-                break;
-            default:
-                discValue = EnumDiscipline.DISCIPLINED;
-                break;
-        }
-        this.discipline = discValue;
+        final SrcMlElement element = SrcMlElement.fromName(node.getNodeName());
+        final Node elseChild = (element == SrcMlElement.IF) ? SrcMlElement.findElseChild(node) : null;
+        SetDiscipline(element, elseChild != null, (elseChild != null) && SrcMlElement.isPrecededByThen(elseChild));
+    }
+
+    /**
+     * Sets the discipline of the feature constant based on a srcML element
+     * inside the feature (e.g, a FeatureLocation containing one case is
+     * undisciplined)
+     *
+     * @param nodeName      the name of the element, e.g., <code>case</code>
+     * @param hasElseChild  whether the element has an <code>else</code> child
+     *                      element.  Only relevant for <code>if</code> elements.
+     * @param elseAfterThen whether the element preceding the first
+     *                      <code>else</code> child is a <code>then</code> element
+     */
+    public void SetDiscipline(String nodeName, boolean hasElseChild, boolean elseAfterThen) {
+        SetDiscipline(SrcMlElement.fromName(nodeName), hasElseChild, elseAfterThen);
+    }
+
+    /**
+     * Sets the discipline of the feature constant based on a srcML element
+     * inside the feature
+     *
+     * @param element       the element
+     * @param hasElseChild  whether the element has an <code>else</code> child
+     *                      element.  Only relevant for <code>if</code> elements.
+     * @param elseAfterThen whether the element preceding the first
+     *                      <code>else</code> child is a <code>then</code> element
+     */
+    public void SetDiscipline(SrcMlElement element, boolean hasElseChild, boolean elseAfterThen) {
+        if (this.discipline.GetValue() < 0) return;
+        // decide on the basis of the siblings of each annotation.  An if
+        // is undisciplined if its else does not directly follow its then.
+        this.discipline = element.discipline(hasElseChild, elseAfterThen);
     }
 
     public String FilePathForDisplay() {
@@ -258,6 +192,15 @@ public class FeatureReference implements Comparable<FeatureReference> {
         else return 0;
     }
 
+    /**
+     * Consistent with the inherited, identity-based {@link #equals(Object)}, but makes the order of hash-based
+     * collections of references reproducible.
+     */
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
     @Override
     public String toString() {
         return String.format("FeatureReference [filePath=%s, feature=%s, start=%s, end=%s]", filePath, feature, start,
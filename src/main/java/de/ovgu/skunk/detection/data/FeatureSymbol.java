@@ -0,0 +1,24 @@
+package de.ovgu.skunk.detection.data;
+
+/**
+ * A name mentioned in the condition of a preprocessor directive, such as the name of a feature.  Symbols are interned
+ * by a {@link ConditionTable}, which numbers them consecutively, starting at 0.  Thus, two symbols of the same table
+ * are equal iff they are the same object.
+ */
+public final class FeatureSymbol {
+    /**
+     * Number of this symbol within its table
+     */
+    public final int id;
+    public final String name;
+
+    FeatureSymbol(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -1,12 +1,15 @@
 package de.ovgu.skunk.detection.data;
 
+import de.ovgu.skunk.util.LineSet;
+import de.ovgu.skunk.util.MappedInput;
+import de.ovgu.skunk.util.OrderedIntSet;
 import org.apache.commons.io.FileUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 public class File {
     private final Context ctx;
@@ -34,12 +37,12 @@ public class File {
      * The lines of visible annotated code. (amount of loc that is inside
      * annotations)
      */
-    public ArrayList<Integer> loac;
-    private int processedLoac;
+    public LineSet loac;
+    int processedLoac;
     /**
-     * The feature constants.
+     * Ids of the feature constant references in this file, in the order in which they were added
      */
-    public LinkedHashMap<UUID, String> featureConstants;
+    public OrderedIntSet featureConstants;
     /**
      * The methods.
      */
@@ -57,16 +60,49 @@ public class File {
      */
     public int negationCount;
     /**
-     * The line numbers of empty lines (whitespace or comments), in ascending order.
+     * The number of distinct presence conditions of the non-empty lines, see {@link PresenceConditions}
      */
-    public List<Integer> emptyLines;
+    public int numberOfPresenceConditions;
+    /**
+     * The lines of variable code, i.e., the non-empty lines whose presence condition is not <code>true</code>.
+     * Unlike {@link #lofc}, each line is counted once, however many blocks enclose it.
+     */
+    public int lovc;
+    /**
+     * The line numbers of empty lines (no characters at all, or only comments and white space)
+     */
+    public LineSet emptyLines;
+    /**
+     * Prefix counts of {@link #emptyLines}: element <code>i</code> is the number of empty lines before line
+     * <code>i</code>.  Not serialized; rebuilt on demand.
+     */
+    private transient int[] emptyLinesBefore;
+    /**
+     * Reads the file to find its {@link #emptyLines} and {@link #loc}, or <code>null</code> if these are known.  Run
+     * by {@link FileCollection} in the background or by the first thread that needs the results.
+     */
+    transient volatile FutureTask<Void> emptyLinesScan;
 
     /**
-     * Instantiates a new file.
+     * Instantiates a new file.  The file is read later, see {@link #AwaitEmptyLines()}.
      *
      * @param filePath the file path
      */
     public File(Context ctx, String filePath) {
+        this(ctx, filePath, new LineSet());
+        this.emptyLinesScan = new FutureTask<>(() -> {
+            getEmptyLines(filePath);
+            indexEmptyLines();
+        }, null);
+    }
+
+    /**
+     * Instantiates a file without reading it from disk, e.g., when restoring a file from intermediate results.
+     *
+     * @param filePath   the file path
+     * @param emptyLines the line numbers of empty lines
+     */
+    File(Context ctx, String filePath, LineSet emptyLines) {
         this.ctx = ctx;
         this.filePath = filePath;
         this.methods = new ArrayList<>();
@@ -77,12 +113,67 @@ public class File {
         this.numberFeatureConstantsNonDup = 0;
         this.numberOfFeatureLocations = 0;
         this.negationCount = 0;
-        this.featureConstants = new LinkedHashMap<>();
-        this.loac = new ArrayList<>();
-        this.emptyLines = new ArrayList<>();
-        this.getEmptyLines(filePath);
+        this.featureConstants = new OrderedIntSet();
+        this.loac = new LineSet();
+        this.emptyLines = emptyLines;
+    }
+
+    private void indexEmptyLines() {
+        final int len = emptyLines.length();
+        int[] before = new int[len + 1];
+        for (int line = 0; line < len; line++) {
+            before[line + 1] = before[line] + (emptyLines.contains(line) ? 1 : 0);
+        }
+        this.emptyLinesBefore = before;
+    }
+
+    /**
+     * Waits until the {@link #emptyLines} and the {@link #loc} of this file are known.  If no other thread is reading
+     * the file yet, the calling thread reads it.
+     */
+    public void AwaitEmptyLines() {
+        final FutureTask<Void> scan = this.emptyLinesScan;
+        if (scan == null) return;
+        scan.run();
+        try {
+            scan.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for file " + filePath + " to be read", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeException("Error reading file " + filePath, cause);
+        }
+        this.emptyLinesScan = null;
+    }
+
+    private int countEmptyLinesBefore(int line) {
+        AwaitEmptyLines();
+        if (emptyLinesBefore == null) indexEmptyLines();
+        return emptyLinesBefore[Math.min(line, emptyLinesBefore.length - 1)];
     }
 
+    /**
+     * Counts the empty lines (whitespace or comments) within the given range of lines.  Takes constant time.
+     *
+     * @param from first line of the range
+     * @param to   last line of the range (inclusive)
+     * @return the number of empty lines from <code>from</code> to <code>to</code>, or zero if <code>from &gt;
+     * to</code>
+     */
+    public int CountEmptyLines(int from, int to) {
+        from = Math.max(from, 0);
+        if (from > to) return 0;
+        return countEmptyLinesBefore(to + 1) - countEmptyLinesBefore(from);
+    }
+
+    /**
+     * Name of the phase under which reading files to find their empty lines is accounted for in
+     * {@link Context#inputStatistics}
+     */
+    public static final String EMPTY_LINES_INPUT_PHASE = "source files";
+
     /**
      * Gets the empty lines and assign loc
      *
@@ -91,26 +182,10 @@ public class File {
     private void getEmptyLines(String filePath) {
         java.io.File file = FileUtils.getFile(filePath);
         try {
-            int index = 0;
-            boolean multiline = false;
-            for (String line : de.ovgu.skunk.util.FileUtils.readLines(file)) {
-                // TODO Gucken ob hier ein caller auf ne methode ist --> hashmap
-                // speichern
-                if (multiline) {
-                    this.emptyLines.add(index);
-                    if (line.contains("*/")) multiline = false;
-                } else if (line.isEmpty())
-                    this.emptyLines.add(index);
-                    // single line comment
-                else if (line.trim().startsWith("//"))
-                    this.emptyLines.add(index);
-                    // multiline comment
-                else if (line.trim().startsWith("/*")) {
-                    this.emptyLines.add(index);
-                    if (!line.contains("*/")) multiline = true;
-                } else loc++;
-                index++;
-            }
+            EmptyLineScanner scanner = new EmptyLineScanner(this.emptyLines, filePath.endsWith(".xml"));
+            MappedInput.open(filePath, ctx.inputStatistics, EMPTY_LINES_INPUT_PHASE).forEachChunk(scanner::scan);
+            scanner.finish();
+            this.loc = scanner.getLoc();
         } catch (IOException e) {
             String pathForErrorMsg;
             try {
@@ -128,22 +203,18 @@ public class File {
      * @param constant the feature constant
      */
     public void AddFeatureConstant(FeatureReference constant) {
-        if (!this.featureConstants.containsKey(constant.id)) {
-            // connect feature to the method
-            this.featureConstants.put(constant.id, constant.feature.Name);
+        // connect feature to the method
+        if (this.featureConstants.add(constant.id)) {
             // assign nesting depth values
             if (constant.nestingDepth > this.nestingDepthMax) this.nestingDepthMax = constant.nestingDepth;
             // calculate lines of feature code (if the feature is longer than
             // the method, use the method end1)
             this.lofc += constant.end - constant.start + 1;
-            for (int current : this.emptyLines)
-                if (current > constant.start && current < constant.end) this.lofc--;
+            this.lofc -= CountEmptyLines(constant.start + 1, constant.end - 1);
             // add lines of visibile annotated code (amount of loc that is
             // inside annotations) until end1 of feature constant or end1 of
             // method
-            for (int current = constant.start; current <= constant.end; current++) {
-                if (!(this.loac.contains(current)) && !(this.emptyLines.contains(current))) this.loac.add(current);
-            }
+            this.loac.addRangeExcept(constant.start, constant.end, this.emptyLines);
         }
     }
 
@@ -182,8 +253,7 @@ public class File {
      */
     public void SetNumberOfFeatureConstants() {
         ArrayList<String> constants = new ArrayList<>();
-        for (UUID id : featureConstants.keySet()) {
-            FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(featureConstants.get(id), id);
+        for (FeatureReference constant : ctx.featureExpressions.GetReferencesInFile(filePath)) {
             if (!constants.contains(constant.feature.Name)) constants.add(constant.feature.Name);
         }
         this.processedLoac = this.loac.size();
@@ -200,8 +270,7 @@ public class File {
         ArrayList<Integer> noLoc = new ArrayList<>();
         // remember the starting position of each feature constant, but do not
         // add it twice
-        for (UUID id : featureConstants.keySet()) {
-            FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(featureConstants.get(id), id);
+        for (FeatureReference constant : ctx.featureExpressions.GetReferencesInFile(filePath)) {
             if (!noLoc.contains(constant.start)) noLoc.add(constant.start);
         }
         this.numberOfFeatureLocations = noLoc.size();
@@ -214,8 +283,7 @@ public class File {
      */
     public void SetNegationCount() {
         int result = 0;
-        for (UUID id : featureConstants.keySet()) {
-            FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(featureConstants.get(id), id);
+        for (FeatureReference constant : ctx.featureExpressions.GetReferencesInFile(filePath)) {
             if (constant.notFlag) result++;
         }
         this.negationCount = result;
@@ -229,8 +297,7 @@ public class File {
         // depths are file based)
         int res = 0;
         // add each nesting to the nesting sum
-        for (UUID id : featureConstants.keySet()) {
-            FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(featureConstants.get(id), id);
+        for (FeatureReference constant : ctx.featureExpressions.GetReferencesInFile(filePath)) {
             res += constant.nestingDepth;
         }
         this.nestingSum = res;
@@ -2,10 +2,14 @@ package de.ovgu.skunk.detection.data;
 
 import com.thoughtworks.xstream.XStream;
 import de.ovgu.skunk.util.FileUtils;
+import de.ovgu.skunk.util.LineSetConverter;
+import de.ovgu.skunk.util.OrderedIntSetConverter;
 
 import java.io.Reader;
 import java.io.Writer;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 public class FileCollection {
@@ -16,6 +20,11 @@ public class FileCollection {
      */
     private Map<String, File> Files;
 
+    /**
+     * Reads newly interned files in the background, or <code>null</code> if files are read on demand
+     */
+    private ExecutorService scanExecutor;
+
     /**
      * Instantiates a new method collection.
      */
@@ -36,11 +45,44 @@ public class FileCollection {
         if (existingFile != null) return existingFile;
         File newFile = new File(ctx, srcMlFilePath);
         Files.put(keyPath, newFile);
+        if (scanExecutor != null) scanExecutor.execute(newFile.emptyLinesScan);
         // System.out.println("Added file #" + Files.size() + ": " + keyPath + "
         // (" + srcMlFilePath + ")");
         return newFile;
     }
 
+    /**
+     * Starts reading files interned from now on in the background, so that their empty lines are known when they
+     * are needed.  Until {@link #FinishScanning()} is called, the empty lines of a file must only be accessed through
+     * {@link File#CountEmptyLines(int, int)} or after calling {@link File#AwaitEmptyLines()}.
+     *
+     * @param numThreads number of threads reading files; if 1, files are read on demand by the thread that needs
+     *                   them
+     */
+    public void StartScanning(int numThreads) {
+        if (numThreads > 1) scanExecutor = Executors.newFixedThreadPool(numThreads);
+    }
+
+    /**
+     * Waits until all files have been read.  Files not yet read are read on the calling thread.
+     */
+    public void FinishScanning() {
+        for (File file : Files.values()) {
+            file.AwaitEmptyLines();
+        }
+        StopScanning();
+    }
+
+    /**
+     * Stops reading files in the background.  Files not yet read will be read on demand.
+     */
+    public void StopScanning() {
+        if (scanExecutor != null) {
+            scanExecutor.shutdownNow();
+            scanExecutor = null;
+        }
+    }
+
     /**
      * Gets the file.
      *
@@ -98,6 +140,7 @@ public class FileCollection {
             file.SetNumberOfFeatureConstants();
             file.SetNumberOfFeatureLocations();
             file.SetNestingSum();
+            ctx.presenceConditions.SetMetrics(file);
         }
     }
 
@@ -114,6 +157,8 @@ public class FileCollection {
             file.loac.clear();
         }
         XStream stream = new XStream();
+        stream.registerConverter(new LineSetConverter());
+        stream.registerConverter(new OrderedIntSetConverter());
         return (writer -> stream.toXML(fileList, writer));
     }
 
@@ -124,13 +169,24 @@ public class FileCollection {
      */
     public void DeserializeFiles(Reader xmlFileReader) {
         XStream stream = new XStream();
+        stream.registerConverter(new LineSetConverter());
+        stream.registerConverter(new OrderedIntSetConverter());
         List<File> fileList = (List<File>) stream.fromXML(xmlFileReader);
         for (File f : fileList) {
-            String key = KeyFromFilePath(f.filePath);
-            Files.put(key, f);
+            AddRestoredFile(f);
         }
     }
 
+    /**
+     * Adds a file restored from intermediate results.
+     *
+     * @param f the file
+     */
+    void AddRestoredFile(File f) {
+        String key = KeyFromFilePath(f.filePath);
+        Files.put(key, f);
+    }
+
     /**
      * @return All files, in the order they have been added
      */
@@ -1,6 +1,8 @@
 package de.ovgu.skunk.detection.data;
 
 import de.ovgu.skunk.util.FileUtils;
+import de.ovgu.skunk.util.LineSet;
+import de.ovgu.skunk.util.OrderedIntSet;
 import org.apache.log4j.Logger;
 
 import java.util.*;
@@ -47,9 +49,9 @@ public class Method {
     private final Context ctx;
 
     /**
-     * Source code of the functions, as returned from the srcml function node
+     * Source code of the function, i.e., the text content of the srcML function node
      */
-    private final String sourceCode;
+    private final SourceText sourceText;
 
     /**
      * The original function signature, as it appears in the file
@@ -78,12 +80,12 @@ public class Method {
     /**
      * The lines of code of the method, including empty lines.
      */
-    private int grossLoc;
+    int grossLoc;
 
     /**
      * The lines of code of just the signature, including empty lines, line breaks, etc.
      */
-    private int signatureGrossLinesOfCode;
+    int signatureGrossLinesOfCode;
 
     /**
      * The lines of code of the function, excluding empty lines.
@@ -105,12 +107,12 @@ public class Method {
     /**
      * The lines of visible annotated code. (amount of loc that is inside annotations)
      */
-    public List<Integer> loac;
-    private int processedLoac;
+    public LineSet loac;
+    int processedLoac;
     /**
      * The map of the feature constants, by order of appearance
      */
-    public Map<UUID, String> featureReferences;
+    public OrderedIntSet featureReferences;
     /**
      * The number feature constants in the method (non-duplicated).
      */
@@ -123,6 +125,15 @@ public class Method {
      * The number of negations in the method
      */
     public int negationCount;
+    /**
+     * The number of distinct presence conditions of the non-empty lines, see {@link PresenceConditions}
+     */
+    public int numberOfPresenceConditions;
+    /**
+     * The lines of variable code, i.e., the non-empty lines whose presence condition is not <code>true</code>.
+     * Unlike {@link #lofc}, each line is counted once, however many blocks enclose it.
+     */
+    public int lovc;
     /**
      * The file path.
      */
@@ -142,6 +153,23 @@ public class Method {
      */
     public Method(Context ctx, String signature, String filePath, int start1, int grossLoc
             , int signatureGrossLinesOfCode, String sourceCode) {
+        this(ctx, signature, filePath, start1, grossLoc, signatureGrossLinesOfCode, SourceText.of(sourceCode, grossLoc));
+    }
+
+    /**
+     * Method.
+     *
+     * @param signature                 the signature
+     * @param start1                    the starting line of the function within it's file (first line in the file is
+     *                                  counted as 1)
+     * @param grossLoc                  length of the function in lines of code, may include empty lines
+     * @param signatureGrossLinesOfCode length of the function signature in lines of code, as it appears in the file
+     *                                  (including line breaks, comments, etc.)
+     * @param filePath                  name of the file in which the function is defined
+     * @param sourceText                Raw C code of the complete function definition, possibly read on demand
+     */
+    public Method(Context ctx, String signature, String filePath, int start1, int grossLoc
+            , int signatureGrossLinesOfCode, SourceText sourceText) {
         this.ctx = ctx;
         this.originalFunctionSignature = signature;
         this.uniqueFunctionSignature = signature;
@@ -153,8 +181,8 @@ public class Method {
         this.end1 = start1 + grossLoc - 1;
         // initialize loc
         this.lofc = 0;
-        this.featureReferences = new LinkedHashMap<>();
-        this.loac = new ArrayList<>();
+        this.featureReferences = new OrderedIntSet();
+        this.loac = new LineSet();
         this.numberFeatureConstantsNonDup = 0;
         this.numberFeatureLocations = 0;
         this.negationCount = 0;
@@ -167,7 +195,7 @@ public class Method {
         } else {
             this.functionName = originalFunctionSignature;
         }
-        this.sourceCode = sourceCode;
+        this.sourceText = sourceText;
     }
 
     public void maybeAdjustMethodEndBasedOnNextFunction(Method nextFunction) {
@@ -189,14 +217,14 @@ public class Method {
      * @param featureRef the loc
      */
     public void AddFeatureConstant(FeatureReference featureRef) {
-        if (this.featureReferences.containsKey(featureRef.id)) {
+        if (this.featureReferences.contains(featureRef.id)) {
             return;
         }
 
         assertFeatureRefMatchesFile(featureRef);
 
         // connect feature to the method
-        this.featureReferences.put(featureRef.id, featureRef.feature.Name);
+        this.featureReferences.add(featureRef.id);
         featureRef.inMethod = this;
         // assign nesting depth values
         if (featureRef.nestingDepth > this.nestingDepthMax) this.nestingDepthMax = featureRef.nestingDepth;
@@ -229,21 +257,14 @@ public class Method {
         // inside annotations) until end of feature constant or end of
         // method
         File file = ctx.files.FindFile(this.filePath);
-        for (int current = lofcStart; current <= lofcEnd; current++) {
-            if (!(this.loac.contains(current)) && !file.emptyLines.contains(current))
-                this.loac.add(current);
-        }
+        this.loac.addRangeExcept(lofcStart, lofcEnd, file.emptyLines);
     }
 
     private int computeLofcIncrement(int lofcStart, int lofcEnd) {
         int lofcIncrement = lofcEnd - lofcStart + 1;
         File file = ctx.files.FindFile(this.filePath);
         // Subtract empty lines (do not count them as feature code)
-        for (int current : file.emptyLines) {
-            if (current <= lofcStart) continue;
-            if (current >= lofcEnd) break;
-            lofcIncrement--;
-        }
+        lofcIncrement -= file.CountEmptyLines(lofcStart + 1, lofcEnd - 1);
         return lofcIncrement;
     }
 
@@ -280,8 +301,8 @@ public class Method {
      */
     public void SetNumberOfFeatureConstantsNonDup() {
         ArrayList<String> constants = new ArrayList<>();
-        for (UUID id : featureReferences.keySet()) {
-            FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(featureReferences.get(id), id);
+        for (int id : featureReferences.toArray()) {
+            FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
             if (!constants.contains(constant.feature.Name)) constants.add(constant.feature.Name);
         }
         this.numberFeatureConstantsNonDup = constants.size();
@@ -296,8 +317,8 @@ public class Method {
         ArrayList<Integer> noLocs = new ArrayList<>();
         // remember the starting position of each feature location, but do not
         // add it twice
-        for (UUID id : featureReferences.keySet()) {
-            FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(featureReferences.get(id), id);
+        for (int id : featureReferences.toArray()) {
+            FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
             if (!noLocs.contains(constant.start)) noLocs.add(constant.start);
         }
         this.processedLoac = this.loac.size();
@@ -311,8 +332,8 @@ public class Method {
      */
     public void SetNegationCount() {
         int result = 0;
-        for (UUID id : featureReferences.keySet()) {
-            FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(featureReferences.get(id), id);
+        for (int id : featureReferences.toArray()) {
+            FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
             if (constant.notFlag) result++;
         }
         this.negationCount = result;
@@ -327,8 +348,8 @@ public class Method {
         int res = 0;
         int minNesting = 5000;
         // add each nesting to the nesting sum
-        for (UUID id : featureReferences.keySet()) {
-            FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(featureReferences.get(id), id);
+        for (int id : featureReferences.toArray()) {
+            FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
             res += constant.nestingDepth;
             if (constant.nestingDepth < minNesting) minNesting = constant.nestingDepth;
         }
@@ -339,10 +360,7 @@ public class Method {
 
     public void InitializeNetLocMetric() {
         de.ovgu.skunk.detection.data.File file = ctx.files.FindFile(this.filePath);
-        this.netLoc = this.grossLoc;
-        for (int empty : file.emptyLines) {
-            if (empty >= this.start1 && empty <= this.end1) this.netLoc--;
-        }
+        this.netLoc = this.grossLoc - file.CountEmptyLines(this.start1, this.end1);
     }
 
     public int getNetLoc() {
@@ -441,6 +459,13 @@ public class Method {
      * @return Source code of the function as parsed by src2srcml
      */
     public String getSourceCode() {
-        return sourceCode;
+        return sourceText.get();
+    }
+
+    /**
+     * @return Handle of the source code of the function, which does not necessarily hold the code itself
+     */
+    public SourceText getSourceText() {
+        return sourceText;
     }
 }
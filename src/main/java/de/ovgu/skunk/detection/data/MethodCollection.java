@@ -2,6 +2,8 @@ package de.ovgu.skunk.detection.data;
 
 import com.thoughtworks.xstream.XStream;
 import de.ovgu.skunk.detection.input.ParsedFunctionSignature;
+import de.ovgu.skunk.util.LineSetConverter;
+import de.ovgu.skunk.util.OrderedIntSetConverter;
 import de.ovgu.skunk.util.LinkedGroupingListMap;
 
 import java.io.Reader;
@@ -113,16 +115,9 @@ public class MethodCollection {
             meth.loac.clear();
         }
         XStream stream = new XStream();
-        Map<String, List<Method>> methodsForSerialization = new LinkedHashMap<>();
-        for (Map.Entry<String, LinkedGroupingListMap<String, Method>> e : methodsPerFile.entrySet()) {
-            String filename = e.getKey();
-            LinkedGroupingListMap<String, Method> methodBySig = e.getValue();
-            List<Method> methodList = new ArrayList<>();
-            for (List<Method> methods : methodBySig.getMap().values()) {
-                methodList.addAll(methods);
-            }
-            methodsForSerialization.put(filename, methodList);
-        }
+        stream.registerConverter(new LineSetConverter());
+        stream.registerConverter(new OrderedIntSetConverter());
+        Map<String, List<Method>> methodsForSerialization = FunctionsByFileKey();
 
         return (writer -> stream.toXML(methodsForSerialization, writer));
     }
@@ -176,13 +171,41 @@ public class MethodCollection {
      */
     public void deserializeMethods(Reader xmlFileReader) {
         XStream stream = new XStream();
+        stream.registerConverter(new LineSetConverter());
+        stream.registerConverter(new OrderedIntSetConverter());
         Map<String, List<Method>> deserializedMethods = (Map<String, List<Method>>) stream.fromXML(xmlFileReader);
         for (Map.Entry<String, List<Method>> e : deserializedMethods.entrySet()) {
-            final LinkedGroupingListMap<String, Method> methodsBySignature = new LinkedGroupingListMap<>();
-            methodsPerFile.put(e.getKey(), methodsBySignature);
-            for (Method f : e.getValue()) {
-                methodsBySignature.put(f.originalFunctionSignature, f);
+            AddRestoredFunctions(e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Adds the functions of a file restored from intermediate results.
+     *
+     * @param fileKey   the key of the file, as in {@link FilePath#pathKey}
+     * @param functions the functions of the file, in order of appearance
+     */
+    void AddRestoredFunctions(String fileKey, List<Method> functions) {
+        final LinkedGroupingListMap<String, Method> methodsBySignature = new LinkedGroupingListMap<>();
+        methodsPerFile.put(fileKey, methodsBySignature);
+        for (Method f : functions) {
+            methodsBySignature.put(f.originalFunctionSignature, f);
+        }
+    }
+
+    /**
+     * @return the keys of all files that contain functions, in the order they have been added, each with the
+     * functions of the file
+     */
+    Map<String, List<Method>> FunctionsByFileKey() {
+        Map<String, List<Method>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, LinkedGroupingListMap<String, Method>> e : methodsPerFile.entrySet()) {
+            List<Method> methodList = new ArrayList<>();
+            for (List<Method> methods : e.getValue().getMap().values()) {
+                methodList.addAll(methods);
             }
+            result.put(e.getKey(), methodList);
         }
+        return result;
     }
 }
@@ -0,0 +1,251 @@
+package de.ovgu.skunk.detection.data;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the presence condition of each line, i.e., the condition under which the preprocessor keeps the line.
+ * The presence condition of a line is the conjunction of the conditions of all directives enclosing the line, where
+ * the condition of an <code>#elif</code> or <code>#else</code> branch includes the negation of the preceding branches
+ * of the same <code>#if</code>.  Presence conditions are represented as {@link Bdd} nodes, so two lines have
+ * equivalent presence conditions iff they have the same node.
+ * <p>
+ * Directives are reported by {@link #AddDirective(String, String, int, int, Condition)} in the order of the
+ * <code>cppstats_featurelocations.csv</code> file.  As Skunk does elsewhere, a symbol used as a value and the same
+ * symbol tested by <code>defined</code> are considered the same feature.  Comparisons, arithmetic, calls of
+ * function-like macros and unparseable conditions are treated as opaque variables.  Not thread-safe.
+ */
+public class PresenceConditions {
+    private static final Logger LOG = Logger.getLogger(PresenceConditions.class);
+
+    private final Bdd bdd = new Bdd();
+    private final Map<Condition, Integer> bddByCondition = new IdentityHashMap<>();
+    private final Map<FeatureSymbol, Integer> varBySymbol = new IdentityHashMap<>();
+    private int numVars = 0;
+
+    /**
+     * The <code>#if</code>, <code>#elif</code>, ... blocks of each file, by file path
+     */
+    private final Map<String, Blocks> blocksByFile = new HashMap<>();
+    /**
+     * The blocks of the current file enclosing the current directive, innermost on top
+     */
+    private final Deque<Block> open = new ArrayDeque<>();
+    private String currentFile = null;
+
+    private static class Block {
+        final int start;
+        final int end;
+        /**
+         * Presence condition of the block's lines
+         */
+        final int presenceCondition;
+        /**
+         * Disjunction of the conditions of this and the preceding branches of the same <code>#if</code>
+         */
+        final int branchesTaken;
+
+        Block(int start, int end, int presenceCondition, int branchesTaken) {
+            this.start = start;
+            this.end = end;
+            this.presenceCondition = presenceCondition;
+            this.branchesTaken = branchesTaken;
+        }
+    }
+
+    /**
+     * Start, end and presence condition of the blocks of a file, in the order of their start lines
+     */
+    private static class Blocks {
+        int[] starts = new int[8];
+        int[] ends = new int[8];
+        int[] presenceConditions = new int[8];
+        int size = 0;
+
+        void add(int start, int end, int presenceCondition) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * size);
+                ends = Arrays.copyOf(ends, 2 * size);
+                presenceConditions = Arrays.copyOf(presenceConditions, 2 * size);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            presenceConditions[size] = presenceCondition;
+            size++;
+        }
+    }
+
+    /**
+     * Records a conditional block.  Blocks of the same file must be reported in the order of their start lines, and
+     * all blocks of a file must be reported consecutively.
+     *
+     * @param filePath  the file containing the directive
+     * @param type      the directive, e.g., <code>#ifdef</code> or <code>#elif</code>
+     * @param start     the line of the directive
+     * @param end       the line of the directive ending the block, i.e., of the next <code>#elif</code>,
+     *                  <code>#else</code> or <code>#endif</code> of the same <code>#if</code>
+     * @param condition the condition of the directive, or <code>null</code> if unknown
+     * @return the presence condition of the lines in the block
+     */
+    public int AddDirective(String filePath, String type, int start, int end, Condition condition) {
+        if (!filePath.equals(currentFile)) {
+            open.clear();
+            currentFile = filePath;
+        }
+        Block previousBranch = null;
+        while (!open.isEmpty() && open.peek().end <= start) {
+            previousBranch = open.pop();
+        }
+        final int enclosing = open.isEmpty() ? Bdd.TRUE : open.peek().presenceCondition;
+        int local = (condition == null) ? freshVar() : toBdd(condition);
+        int branchesTaken = local;
+        if (type.equals("#elif") || type.equals("#else")) {
+            if (previousBranch != null && previousBranch.end == start) {
+                local = bdd.and(local, bdd.not(previousBranch.branchesTaken));
+                branchesTaken = bdd.or(previousBranch.branchesTaken, branchesTaken);
+            } else {
+                LOG.debug("No preceding branch for " + type + " in " + filePath + ":" + start);
+            }
+        }
+        final int presenceCondition = bdd.and(enclosing, local);
+        open.push(new Block(start, end, presenceCondition, branchesTaken));
+        Blocks blocks = blocksByFile.get(filePath);
+        if (blocks == null) {
+            blocks = new Blocks();
+            blocksByFile.put(filePath, blocks);
+        }
+        blocks.add(start, end, presenceCondition);
+        return presenceCondition;
+    }
+
+    /**
+     * @param condition a condition
+     * @return the BDD node of the condition, interpreted as a truth value
+     */
+    public int toBdd(Condition condition) {
+        Integer known = bddByCondition.get(condition);
+        if (known != null) return known;
+        final int result;
+        switch (condition.kind) {
+            case NUMBER:
+                result = numberToBdd(condition);
+                break;
+            case DEFINED:
+            case MACRO:
+                result = symbolToBdd(condition.symbol);
+                break;
+            case NOT:
+                result = bdd.not(toBdd(condition.getOperand(0)));
+                break;
+            case AND:
+                result = bdd.and(toBdd(condition.getOperand(0)), toBdd(condition.getOperand(1)));
+                break;
+            case OR:
+                result = bdd.or(toBdd(condition.getOperand(0)), toBdd(condition.getOperand(1)));
+                break;
+            case OPERATOR:
+                if (condition.getText().equals("?:")) {
+                    result = bdd.ite(toBdd(condition.getOperand(0)), toBdd(condition.getOperand(1)),
+                            toBdd(condition.getOperand(2)));
+                } else {
+                    result = freshVar();
+                }
+                break;
+            default:
+                result = freshVar();
+        }
+        bddByCondition.put(condition, result);
+        return result;
+    }
+
+    private int numberToBdd(Condition condition) {
+        String literal = condition.getText();
+        if (literal.startsWith("'")) return literal.equals("'\\0'") ? Bdd.FALSE : Bdd.TRUE;
+        int end = literal.length();
+        while (end > 0 && "uUlL".indexOf(literal.charAt(end - 1)) >= 0) end--;
+        try {
+            return (Long.decode(literal.substring(0, end)) == 0) ? Bdd.FALSE : Bdd.TRUE;
+        } catch (NumberFormatException e) {
+            LOG.debug("Treating number " + literal + " as unknown value");
+            return freshVar();
+        }
+    }
+
+    private int symbolToBdd(FeatureSymbol symbol) {
+        Integer v = varBySymbol.get(symbol);
+        if (v == null) {
+            v = freshVar();
+            varBySymbol.put(symbol, v);
+        }
+        return v;
+    }
+
+    private int freshVar() {
+        return bdd.var(numVars++);
+    }
+
+    /**
+     * Computes the presence condition metrics of the given file and of its functions.  Afterwards, the blocks of the
+     * file are discarded.
+     *
+     * @param file a file whose empty lines are known
+     */
+    public void SetMetrics(File file) {
+        Blocks blocks = blocksByFile.remove(file.filePath);
+        int maxLine = 0;
+        if (blocks != null) {
+            for (int i = 0; i < blocks.size; i++)
+                maxLine = Math.max(maxLine, blocks.ends[i]);
+        }
+        for (Method meth : file.methods)
+            maxLine = Math.max(maxLine, meth.end1);
+        // Paint the lines of each block with its presence condition.  Inner blocks start after the blocks enclosing
+        // them and are therefore painted later.
+        int[] lines = new int[maxLine + 1];
+        Arrays.fill(lines, Bdd.TRUE);
+        if (blocks != null) {
+            for (int i = 0; i < blocks.size; i++) {
+                Arrays.fill(lines, blocks.starts[i] + 1, Math.max(blocks.starts[i] + 1, blocks.ends[i]),
+                        blocks.presenceConditions[i]);
+            }
+        }
+        int[] fileMetrics = countPresenceConditions(file, lines, 1, maxLine);
+        file.numberOfPresenceConditions = fileMetrics[0];
+        file.lovc = fileMetrics[1];
+        for (Method meth : file.methods) {
+            int[] functionMetrics = countPresenceConditions(file, lines, meth.start1, meth.end1);
+            meth.numberOfPresenceConditions = functionMetrics[0];
+            meth.lovc = functionMetrics[1];
+        }
+    }
+
+    /**
+     * @return the number of distinct presence conditions and the number of lines whose presence condition is not
+     * <code>true</code>, among the non-empty lines in the given range
+     */
+    private static int[] countPresenceConditions(File file, int[] lines, int first, int last) {
+        Set<Integer> distinct = new HashSet<>();
+        int variable = 0;
+        for (int line = Math.max(first, 1); line <= last; line++) {
+            if (file.emptyLines.contains(line)) continue;
+            distinct.add(lines[line]);
+            if (lines[line] != Bdd.TRUE) variable++;
+        }
+        return new int[]{distinct.size(), variable};
+    }
+
+    /**
+     * @return the number of BDD nodes created so far
+     */
+    public int size() {
+        return bdd.size();
+    }
+}
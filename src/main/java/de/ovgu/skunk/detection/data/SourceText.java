@@ -0,0 +1,325 @@
+package de.ovgu.skunk.detection.data;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The C code of a function definition.  Usually, only the position of the function's <code>function</code> element in
+ * its srcML file is kept, and the code is read from the file whenever {@link #get()} is called.  The size and
+ * modification time of the file are recorded along with the position, so that reading the code fails if the file has
+ * changed since.
+ */
+public final class SourceText {
+    /**
+     * Number of srcML files kept mapped into memory, see {@link #mappedView(String)}
+     */
+    private static final int MAX_MAPPED_FILES = 16;
+    private static final Map<String, MappedFile> mappedFiles = new LinkedHashMap<String, MappedFile>(
+            MAX_MAPPED_FILES, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MappedFile> eldest) {
+            return size() > MAX_MAPPED_FILES;
+        }
+    };
+
+    /**
+     * A srcML file mapped into memory, along with the stamp of the file when it was mapped
+     */
+    private static class MappedFile {
+        final MappedByteBuffer view;
+        final FileStamp stamp;
+
+        MappedFile(MappedByteBuffer view, FileStamp stamp) {
+            this.view = view;
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * Size and modification time of a srcML file
+     */
+    public static final class FileStamp {
+        public final long size;
+        public final long lastModified;
+
+        public FileStamp(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @param path path of the file
+         * @return the current size and modification time of the file
+         */
+        public static FileStamp of(String path) {
+            java.io.File file = new java.io.File(path);
+            return new FileStamp(file.length(), file.lastModified());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FileStamp)) return false;
+            FileStamp other = (FileStamp) o;
+            return size == other.size && lastModified == other.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(size) + Long.hashCode(lastModified);
+        }
+
+        @Override
+        public String toString() {
+            return size + " bytes, modified " + new java.util.Date(lastModified);
+        }
+    }
+
+    /**
+     * The code, or <code>null</code> if the code is read from the srcML file
+     */
+    private final String text;
+    private final String srcMlPath;
+    /**
+     * Size and modification time of the srcML file when the position of the function was determined
+     */
+    private final FileStamp stamp;
+    /**
+     * Offset of the first byte of the <code>function</code> element within the srcML file
+     */
+    private final int offset;
+    /**
+     * Length of the <code>function</code> element in bytes, including its tags
+     */
+    private final int length;
+    /**
+     * Number of lines of the code
+     */
+    private final int lineCount;
+
+    private SourceText(String text, String srcMlPath, FileStamp stamp, int offset, int length, int lineCount) {
+        this.text = text;
+        this.srcMlPath = srcMlPath;
+        this.stamp = stamp;
+        this.offset = offset;
+        this.length = length;
+        this.lineCount = lineCount;
+    }
+
+    /**
+     * @param text      the code
+     * @param lineCount number of lines of the code
+     * @return source text that is kept in memory
+     */
+    public static SourceText of(String text, int lineCount) {
+        return new SourceText(text, null, null, -1, -1, lineCount);
+    }
+
+    /**
+     * @param srcMlPath path of the srcML file
+     * @param stamp     size and modification time of the srcML file when the position of the function was determined
+     * @param offset    offset of the first byte of the <code>function</code> element within the srcML file
+     * @param length    length of the <code>function</code> element in bytes, including its tags
+     * @param lineCount number of lines of the code
+     * @return source text that is read from the srcML file on demand
+     */
+    public static SourceText inSrcMlFile(String srcMlPath, FileStamp stamp, int offset, int length, int lineCount) {
+        return new SourceText(null, srcMlPath, stamp, offset, length, lineCount);
+    }
+
+    /**
+     * @return <code>true</code> if the code is kept in memory, <code>false</code> if it is read from the srcML file
+     */
+    public boolean isInMemory() {
+        return text != null;
+    }
+
+    public String getSrcMlPath() {
+        return srcMlPath;
+    }
+
+    public FileStamp getFileStamp() {
+        return stamp;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return the code, i.e., the text content of the function's srcML element
+     * @throws RuntimeException if the srcML file has changed since the position of the function was determined
+     */
+    public String get() {
+        if (text != null) return text;
+        final MappedFile mapped = mappedFile(srcMlPath);
+        if (!mapped.stamp.equals(stamp)) {
+            throw new RuntimeException("SrcML file " + srcMlPath + " has changed since the position of function at"
+                    + " offset " + offset + " was determined (was " + stamp + ", is " + mapped.stamp + ").");
+        }
+        final ByteBuffer view = mapped.view.duplicate();
+        if (offset < 0 || length < 0 || offset > view.limit() - length) {
+            throw new RuntimeException("Function at offset " + offset + "+" + length + " exceeds srcML file "
+                    + srcMlPath + ". Has the file changed?");
+        }
+        byte[] element = new byte[length];
+        view.position(offset);
+        view.get(element);
+        return textContentOf(new String(element, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return a read-only view of the given file, shared by all source texts of the file.  The file is mapped again
+     * if its size or modification time has changed since it was last mapped.
+     */
+    private static MappedFile mappedFile(String path) {
+        final FileStamp current = FileStamp.of(path);
+        synchronized (mappedFiles) {
+            MappedFile mapped = mappedFiles.get(path);
+            if (mapped == null || !mapped.stamp.equals(current)) {
+                try (RandomAccessFile file = new RandomAccessFile(path, "r");
+                     FileChannel channel = file.getChannel()) {
+                    final long size = channel.size();
+                    mapped = new MappedFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, size),
+                            new FileStamp(size, current.lastModified));
+                } catch (IOException e) {
+                    throw new RuntimeException("Error mapping srcML file " + path, e);
+                }
+                mappedFiles.put(path, mapped);
+            }
+            return mapped;
+        }
+    }
+
+    /**
+     * @param xml a fragment of a srcML file, consisting of complete elements
+     * @return the text content of the fragment, as an XML parser would report it: tags, comments and processing
+     * instructions are removed, entity and character references are resolved and line breaks are normalized to
+     * <code>\n</code>
+     */
+    public static String textContentOf(String xml) {
+        final int len = xml.length();
+        StringBuilder result = new StringBuilder(len);
+        int i = 0;
+        while (i < len) {
+            final char c = xml.charAt(i);
+            switch (c) {
+                case '<':
+                    if (xml.startsWith("<![CDATA[", i)) {
+                        int end = indexOrEnd(xml, "]]>", i + 9);
+                        appendNormalizingLineBreaks(result, xml, i + 9, end);
+                        i = end + 3;
+                    } else if (xml.startsWith("<!--", i)) {
+                        i = indexOrEnd(xml, "-->", i + 4) + 3;
+                    } else if (xml.startsWith("<?", i)) {
+                        i = indexOrEnd(xml, "?>", i + 2) + 2;
+                    } else {
+                        i = endOfTag(xml, i + 1);
+                    }
+                    break;
+                case '&': {
+                    int end = xml.indexOf(';', i);
+                    if (end == -1) throw new IllegalArgumentException("Unterminated reference at " + i);
+                    appendReference(result, xml.substring(i + 1, end));
+                    i = end + 1;
+                    break;
+                }
+                case '\r':
+                    result.append('\n');
+                    i++;
+                    if (i < len && xml.charAt(i) == '\n') i++;
+                    break;
+                default:
+                    result.append(c);
+                    i++;
+            }
+        }
+        return result.toString();
+    }
+
+    private static int indexOrEnd(String s, String what, int from) {
+        int ix = s.indexOf(what, from);
+        return (ix == -1) ? s.length() : ix;
+    }
+
+    /**
+     * @return the position after the <code>&gt;</code> that ends the tag, skipping quoted attribute values
+     */
+    private static int endOfTag(String xml, int i) {
+        final int len = xml.length();
+        char quote = 0;
+        while (i < len) {
+            char c = xml.charAt(i++);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static void appendNormalizingLineBreaks(StringBuilder result, String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '\r') {
+                result.append('\n');
+                if (i + 1 < to && s.charAt(i + 1) == '\n') i++;
+            } else {
+                result.append(c);
+            }
+        }
+    }
+
+    private static void appendReference(StringBuilder result, String name) {
+        switch (name) {
+            case "lt":
+                result.append('<');
+                break;
+            case "gt":
+                result.append('>');
+                break;
+            case "amp":
+                result.append('&');
+                break;
+            case "quot":
+                result.append('"');
+                break;
+            case "apos":
+                result.append('\'');
+                break;
+            default:
+                if (name.startsWith("#x")) {
+                    result.appendCodePoint(Integer.parseInt(name.substring(2), 16));
+                } else if (name.startsWith("#")) {
+                    result.appendCodePoint(Integer.parseInt(name.substring(1)));
+                } else {
+                    throw new IllegalArgumentException("Unknown entity reference: &" + name + ";");
+                }
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (text != null) return text;
+        return srcMlPath + "@" + offset + "+" + length;
+    }
+}
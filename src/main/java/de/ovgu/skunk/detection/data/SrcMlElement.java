@@ -0,0 +1,123 @@
+package de.ovgu.skunk.detection.data;
+
+import org.w3c.dom.Node;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The srcML elements that matter for the granularity and discipline of feature references, see
+ * {@link FeatureReference#SetGranularity(SrcMlElement, SrcMlElement)} and
+ * {@link FeatureReference#SetDiscipline(SrcMlElement, boolean, boolean)}.  All other elements are {@link #OTHER}.
+ */
+public enum SrcMlElement {
+    //@formatter:off
+    //               srcML name        granularity                         discipline                     granularity of a <name> child
+    NAME            ("name",           EnumGranularity.NOTDEFINED,         EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED),
+    PARAMETER_LIST  ("parameter_list", EnumGranularity.FUNCTIONSIGNATURE,  EnumDiscipline.UNDISC_PARAM,   EnumGranularity.NOTDEFINED),
+    PARAM           ("param",          EnumGranularity.FUNCTIONSIGNATURE,  EnumDiscipline.UNDISC_PARAM,   EnumGranularity.NOTDEFINED),
+    ARGUMENT        ("argument",       EnumGranularity.EXPRESSION,         EnumDiscipline.UNDISC_PARAM,   EnumGranularity.NOTDEFINED),
+    ARGUMENT_LIST   ("argument_list",  EnumGranularity.EXPRESSION,         EnumDiscipline.UNDISC_PARAM,   EnumGranularity.NOTDEFINED),
+    CALL            ("call",           EnumGranularity.EXPRESSION,         EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED),
+    EXPR            ("expr",           EnumGranularity.EXPRESSION,         EnumDiscipline.UNDISC_EXPRESSION, EnumGranularity.EXPRESSION),
+    EMPTY_STMT      ("empty_stmt",     EnumGranularity.FUNCTION,           EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED),
+    DO              ("do",             EnumGranularity.FUNCTION,           EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED),
+    CASE            ("case",           EnumGranularity.FUNCTION,           EnumDiscipline.UNDISC_CASE,    EnumGranularity.NOTDEFINED),
+    BLOCK           ("block",          EnumGranularity.FUNCTION,           EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED),
+    SWITCH          ("switch",         EnumGranularity.FUNCTION,           EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED),
+    RETURN          ("return",         EnumGranularity.FUNCTION,           EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED),
+    EXPR_STMT       ("expr_stmt",      EnumGranularity.FUNCTION,           EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED),
+    DECL_STMT       ("decl_stmt",      EnumGranularity.FUNCTION,           EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED),
+    /** Depends on its <code>else</code> child, see {@link #discipline(boolean, boolean)} */
+    IF              ("if",             EnumGranularity.FUNCTION,           EnumDiscipline.NOTDEFINED,     EnumGranularity.NOTDEFINED),
+    ELSE            ("else",           EnumGranularity.FUNCTION,           EnumDiscipline.UNDISC_ELSE_IF, EnumGranularity.NOTDEFINED),
+    WHILE           ("while",          EnumGranularity.FUNCTION,           EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED),
+    FUNCTION        ("function",       EnumGranularity.GLOBAL,             EnumDiscipline.DISCIPLINED,    EnumGranularity.FUNCTIONSIGNATURE),
+    TYPEDEF         ("typedef",        EnumGranularity.GLOBAL,             EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED),
+    STRUCT          ("struct",         EnumGranularity.GLOBAL,             EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED),
+    UNION           ("union",          EnumGranularity.GLOBAL,             EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED),
+    FUNCTION_DECL   ("function_decl",  EnumGranularity.GLOBAL,             EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED),
+    TYPE            ("type",           EnumGranularity.NOTDEFINED,         EnumDiscipline.DISCIPLINED,    EnumGranularity.STATEMENT),
+    /** Any other element, including preprocessor elements such as <code>cpp:if</code> */
+    OTHER           ("",               EnumGranularity.NOTDEFINED,         EnumDiscipline.DISCIPLINED,    EnumGranularity.NOTDEFINED);
+    //@formatter:on
+
+    private static final Map<String, SrcMlElement> byName = new HashMap<>();
+
+    static {
+        for (SrcMlElement e : values()) {
+            if (e != OTHER) byName.put(e.srcMlName, e);
+        }
+    }
+
+    /**
+     * Name of the element in srcML files, the empty string for {@link #OTHER}
+     */
+    public final String srcMlName;
+    private final EnumGranularity granularity;
+    private final EnumDiscipline discipline;
+    private final EnumGranularity granularityOfNameChild;
+
+    SrcMlElement(String srcMlName, EnumGranularity granularity, EnumDiscipline discipline,
+                 EnumGranularity granularityOfNameChild) {
+        this.srcMlName = srcMlName;
+        this.granularity = granularity;
+        this.discipline = discipline;
+        this.granularityOfNameChild = granularityOfNameChild;
+    }
+
+    /**
+     * @param srcMlName the name of an element, e.g., <code>expr</code>
+     * @return the corresponding constant, or {@link #OTHER}
+     */
+    public static SrcMlElement fromName(String srcMlName) {
+        SrcMlElement result = byName.get(srcMlName);
+        return (result == null) ? OTHER : result;
+    }
+
+    /**
+     * @param parent the parent of this element
+     * @return the granularity of an annotation of this element
+     */
+    public EnumGranularity granularity(SrcMlElement parent) {
+        return (this == NAME) ? parent.granularityOfNameChild : granularity;
+    }
+
+    /**
+     * An <code>if</code> element with an <code>else</code> child is disciplined if the <code>else</code> follows the
+     * <code>then</code> element and undisciplined otherwise, e.g., if a directive comes between the two.  Without an
+     * <code>else</code> child, its discipline is not defined.
+     *
+     * @param hasElseChild  whether this element has an <code>else</code> child element
+     * @param elseAfterThen whether the element preceding the first <code>else</code> child is a <code>then</code>
+     *                      element
+     * @return the discipline of an annotation of this element
+     */
+    public EnumDiscipline discipline(boolean hasElseChild, boolean elseAfterThen) {
+        if (this != IF || !hasElseChild) return discipline;
+        return elseAfterThen ? EnumDiscipline.DISCIPLINED : EnumDiscipline.UNDISC_IF;
+    }
+
+    /**
+     * @param node a DOM node
+     * @return the first <code>else</code> child element of the node, or <code>null</code>
+     */
+    public static Node findElseChild(Node node) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if ((child.getNodeType() == Node.ELEMENT_NODE) && child.getNodeName().equals("else")) return child;
+        }
+        return null;
+    }
+
+    /**
+     * @param elseNode an <code>else</code> element
+     * @return whether the element preceding it, skipping text, is a <code>then</code> element
+     */
+    public static boolean isPrecededByThen(Node elseNode) {
+        Node previous = elseNode.getPreviousSibling();
+        while ((previous != null) && (previous.getNodeType() != Node.ELEMENT_NODE)) {
+            previous = previous.getPreviousSibling();
+        }
+        return (previous != null) && previous.getNodeName().equals("then");
+    }
+}
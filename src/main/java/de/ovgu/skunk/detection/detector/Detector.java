@@ -6,57 +6,132 @@ import de.ovgu.skunk.detection.data.FeatureReference;
 import de.ovgu.skunk.detection.data.Method;
 import de.ovgu.skunk.util.FileUtils;
 
+import org.apache.log4j.Logger;
+
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
 
 /**
  * The Class Detector.
  */
 public class Detector {
+    private static final Logger LOG = Logger.getLogger(Detector.class);
+
+    /**
+     * Order in which the reasons of a feature reference are reported.  This is the order in which the checks are
+     * performed, not the declaration order of {@link SmellReason}.
+     */
+    private static final SmellReason[] REPORTING_ORDER = {
+            SmellReason.SHOTGUNSURGERY_NOFCOSUMNOFC,
+            SmellReason.SHOTGUNSURGERY_NUMBERCOMPILATIONUNITS,
+            SmellReason.LARGEFEATURE_NUMBERNOFC,
+            SmellReason.LARGEFEATURE_NUMBERLOFC,
+            SmellReason.LARGEFEATURE_LOFCTOLOC,
+            SmellReason.LARGEFEATURE_LOFCTOMEANLOFC,
+            SmellReason.ANNOTATIONBUNDLE_LOFCTOLOC,
+            SmellReason.ANNOTATIONBUNDLE_LOACTOLOC,
+            SmellReason.ANNOTATIONBUNDLE_NUMBERFEATURECONSTANTS,
+            SmellReason.ANNOTATIONBUNDLE_NUMBERFEATURELOC,
+            SmellReason.ANNOTATIONBUNDLE_NUMBERFEATURECONSTNONDUP,
+            SmellReason.ANNOTATIONBUNDLE_NUMBERNEGATIONS,
+            SmellReason.ANNOTATIONBUNDLE_NUMBERNESTINGSUM,
+            SmellReason.ANNOTATIONBUNDLE_NUMBERNESTINGDEPTHMIN,
+            SmellReason.ANNOTATIONFILE_LOFCTOLOC,
+            SmellReason.ANNOTATIONFILE_LOACTOLOC,
+            SmellReason.ANNOTATIONFILE_NUMBERFEATURECONSTANTS,
+            SmellReason.ANNOTATIONFILE_NUMBERFEATURELOC,
+            SmellReason.ANNOTATIONFILE_NUMBERFEATURECONSTNONDUP,
+            SmellReason.ANNOTATIONFILE_NUMBERNEGATIONS,
+            SmellReason.ANNOTATIONFILE_NUMBERNESTINGSUM,
+            SmellReason.ANNOTATIONFILE_NUMBERNESTINGDEPTHMIN};
+
     /**
      * The config contains the definition of the code smell.
      */
     private Context ctx;
     /**
-     * Fitting feature locations with an explanation.
+     * Number of threads used to run the checks
      */
-    private Map<FeatureReference, List<SmellReason>> featureResult;
+    private final int numThreads;
 
     /**
-     * Instantiates a new detector.
+     * Instantiates a new detector that performs all checks on the calling thread.
      *
      * @param ctx the codesmell configuration and context
      */
     public Detector(Context ctx) {
+        this(ctx, 1);
+    }
+
+    /**
+     * Instantiates a new detector.
+     *
+     * @param ctx        the codesmell configuration and context
+     * @param numThreads number of threads used to run the checks; <code>1</code> performs all checks on the calling
+     *                   thread
+     */
+    public Detector(Context ctx, int numThreads) {
+        if (numThreads < 1) throw new IllegalArgumentException("Number of threads must be at least 1: " + numThreads);
         this.ctx = ctx;
-        this.featureResult = new HashMap<>();
+        this.numThreads = numThreads;
     }
 
     /**
      * Perform the detection based on the configuration and return fitting
      * features.
      *
-     * @return a list with fitting features
+     * @return fitting feature references with the reasons why they fit, ordered by reference id
      */
     public Map<FeatureReference, List<SmellReason>> Perform() {
         System.out.println(
                 "... Start detection based on the config file " + FileUtils.relPath(ctx.config.configFilePath()) + " ...");
-        checkFeatureCollection();
-        checkMethodCollection();
-        checkFileCollection();
-        filterResults();
+        final List<Feature> features = new ArrayList<>(ctx.featureExpressions.GetFeatures());
+        final List<Method> methods = new ArrayList<>();
+        for (Method meth : ctx.functions.AllMethods())
+            methods.add(meth);
+        final List<de.ovgu.skunk.detection.data.File> files = new ArrayList<>(ctx.files.AllFiles());
+        final EnumSet<SmellReason> mandatories = getMandatoryReasons();
+        final SmellResult result;
+        final FeatureReference[] constants;
+        if (numThreads == 1) {
+            result = new SmellResult();
+            for (Feature feat : features)
+                checkFeature(feat, result);
+            for (Method meth : methods)
+                checkMethod(meth, result);
+            for (de.ovgu.skunk.detection.data.File file : files)
+                checkFile(file, result);
+            constants = result.constantsById();
+            new MandatoryReasonsTask(result, constants, mandatories, 0, constants.length).compute();
+        } else {
+            LOG.debug("Running detection on " + numThreads + " threads.");
+            ForkJoinPool pool = new ForkJoinPool(numThreads);
+            try {
+                result = pool.invoke(new CheckTask<>(features, 0, features.size(), this::checkFeature));
+                result.merge(pool.invoke(new CheckTask<>(methods, 0, methods.size(), this::checkMethod)));
+                result.merge(pool.invoke(new CheckTask<>(files, 0, files.size(), this::checkFile)));
+                constants = result.constantsById();
+                pool.invoke(new MandatoryReasonsTask(result, constants, mandatories, 0, constants.length));
+            } finally {
+                pool.shutdown();
+            }
+        }
         System.out.println("... detection done!");
         // return the result
-        return this.featureResult;
+        return result.toReasonLists(constants);
     }
 
     /**
-     * Filter results based on the mandatory values of the configuration.
+     * @return reasons that every fitting feature location must have, based on the mandatory values of the
+     * configuration
      */
-    private void filterResults() {
+    private EnumSet<SmellReason> getMandatoryReasons() {
         final DetectionConfig config = ctx.config;
         // check for mandatory attributes in the detection configuration
-        ArrayList<SmellReason> mandatories = new ArrayList<>();
+        EnumSet<SmellReason> mandatories = EnumSet.noneOf(SmellReason.class);
         if (config.Feature_MeanLofcRatio_Mand) mandatories.add(SmellReason.LARGEFEATURE_LOFCTOMEANLOFC);
         if (config.Feature_ProjectLocRatio_Mand) mandatories.add(SmellReason.LARGEFEATURE_LOFCTOLOC);
         if (config.Feature_NumberLofc_Mand) mandatories.add(SmellReason.LARGEFEATURE_NUMBERLOFC);
@@ -81,77 +156,55 @@ public class Detector {
             mandatories.add(SmellReason.ANNOTATIONFILE_NUMBERFEATURECONSTNONDUP);
         if (config.File_NumberOfFeatureConstants_Mand)
             mandatories.add(SmellReason.ANNOTATIONFILE_NUMBERFEATURECONSTANTS);
-        // delete featurelocations from the result if it does not contain a
-        // mandatory attribute
-        ArrayList<FeatureReference> toDelete = new ArrayList<>();
-        for (FeatureReference key : featureResult.keySet()) {
-            for (SmellReason mandatory : mandatories) {
-                if (!featureResult.get(key).contains(mandatory)) toDelete.add(key);
-            }
-        }
-        for (FeatureReference key : toDelete)
-            featureResult.remove(key);
+        return mandatories;
     }
 
     /**
-     * Checks the method collection for suitable locations in a method.
+     * Performs all checks of a single method.
      */
-    private void checkMethodCollection() {
-        for (Method meth : ctx.functions.AllMethods()) {
-            // sort functions
-            // Collections.sort(meth.featureLocations);
-            this.sortByValues(meth.featureReferences);
-            // ratio lofc to loc
-            checkForMethodLofcToLoc(meth);
-            // ratio loac to loc
-            checkForMethodLoacToLoc(meth);
-            checkMethodForNumberOfFeatureConstants(meth);
-            checkMethodForNumberOfFeatureLocations(meth);
-            checkMethodForNumberFeatureConstantsNonDup(meth);
-            checkMethodForNumberNegations(meth);
-            checkForMethodNestingSum(meth);
-            checkForMethodNestingDepthMax(meth);
-        }
+    private void checkMethod(Method meth, SmellResult result) {
+        // ratio lofc to loc
+        checkForMethodLofcToLoc(meth, result);
+        // ratio loac to loc
+        checkForMethodLoacToLoc(meth, result);
+        checkMethodForNumberOfFeatureConstants(meth, result);
+        checkMethodForNumberOfFeatureLocations(meth, result);
+        checkMethodForNumberFeatureConstantsNonDup(meth, result);
+        checkMethodForNumberNegations(meth, result);
+        checkForMethodNestingSum(meth, result);
+        checkForMethodNestingDepthMax(meth, result);
     }
 
     /**
-     * Checks the file for suitable locations in a method.
+     * Performs all checks of a single file.
      */
-    private void checkFileCollection() {
-        for (de.ovgu.skunk.detection.data.File file : ctx.files.AllFiles()) {
-            // sort functions
-            // Collections.sort(meth.featureLocations);
-            this.sortByValues(file.featureConstants);
-            // ratio lofc to loc
-            checkForFileLofcToLoc(file);
-            // ratio loac to loc
-            checkForFileLoacToLoc(file);
-            checkFileForNumberOfFeatureConstants(file);
-            checkFileForNumberOfFeatureLocations(file);
-            checkFileForNumberFeatureConstantsNonDup(file);
-            checkFileForNumberNegations(file);
-            checkForFileNestingSum(file);
-            checkForFileNestingDepthMax(file);
-        }
+    private void checkFile(de.ovgu.skunk.detection.data.File file, SmellResult result) {
+        // ratio lofc to loc
+        checkForFileLofcToLoc(file, result);
+        // ratio loac to loc
+        checkForFileLoacToLoc(file, result);
+        checkFileForNumberOfFeatureConstants(file, result);
+        checkFileForNumberOfFeatureLocations(file, result);
+        checkFileForNumberFeatureConstantsNonDup(file, result);
+        checkFileForNumberNegations(file, result);
+        checkForFileNestingSum(file, result);
+        checkForFileNestingDepthMax(file, result);
     }
 
     /**
-     * Check the feature collection for suitable feature locations.
+     * Performs all checks of a single feature and its locations.
      */
-    private void checkFeatureCollection() {
-        // check each feature and location
-        for (Feature feat : ctx.featureExpressions.GetFeatures()) {
-            checkForFeatureNoFeatureConstantsToSum(feat);
-            checkForFeatureCompilUnits(feat);
-            checkForFeatureNofc(feat);
-            checkForFeatureLofc(feat);
-            for (FeatureReference constant : feat.getReferences()) {
-                // check for features that take up a huge part of the project
-                // loc
-                checkForFeatureToProjectRatio(feat, constant);
-                // check for features that are bigger than the mean lofc
-                checkForFeatureToFeatureRatio(constant);
-            }
+    private void checkFeature(Feature feat, SmellResult result) {
+        checkForFeatureNoFeatureConstantsToSum(feat, result);
+        checkForFeatureCompilUnits(feat, result);
+        checkForFeatureNofc(feat, result);
+        checkForFeatureLofc(feat, result);
+        for (FeatureReference constant : feat.getReferences()) {
+            // check for features that take up a huge part of the project
+            // loc
+            checkForFeatureToProjectRatio(feat, constant, result);
+            // check for features that are bigger than the mean lofc
+            checkForFeatureToFeatureRatio(constant, result);
         }
     }
 
@@ -162,16 +215,15 @@ public class Detector {
      *
      * @param meth the method
      */
-    private void checkForMethodLofcToLoc(Method meth) {
+    private void checkForMethodLofcToLoc(Method meth, SmellResult result) {
         final DetectionConfig config = ctx.config;
 
         if (!Double.isNaN(config.Method_LofcToLocRatio)) {
             double minLofc = (config.Method_LofcToLocRatio * meth.getNetLoc());
             if (meth.lofc >= minLofc) {
-                for (UUID id : meth.featureReferences.keySet()) {
-                    FeatureReference loc = ctx.featureExpressions.GetFeatureConstant(meth.featureReferences.get(id),
-                            id);
-                    this.addFeatureLocWithReason(loc, SmellReason.ANNOTATIONBUNDLE_LOFCTOLOC);
+                for (int id : meth.featureReferences.toArray()) {
+                    FeatureReference loc = ctx.featureExpressions.GetFeatureConstant(id);
+                    result.add(loc, SmellReason.ANNOTATIONBUNDLE_LOFCTOLOC);
                 }
             }
         }
@@ -184,16 +236,15 @@ public class Detector {
      *
      * @param meth the method
      */
-    private void checkForMethodLoacToLoc(Method meth) {
+    private void checkForMethodLoacToLoc(Method meth, SmellResult result) {
         final DetectionConfig config = ctx.config;
 
         if (!Double.isNaN(config.Method_LoacToLocRatio)) {
             double minLoac = (config.Method_LoacToLocRatio * meth.getNetLoc());
             if (meth.GetLinesOfAnnotatedCode() >= minLoac) {
-                for (UUID id : meth.featureReferences.keySet()) {
-                    FeatureReference loc = ctx.featureExpressions.GetFeatureConstant(meth.featureReferences.get(id),
-                            id);
-                    this.addFeatureLocWithReason(loc, SmellReason.ANNOTATIONBUNDLE_LOACTOLOC);
+                for (int id : meth.featureReferences.toArray()) {
+                    FeatureReference loc = ctx.featureExpressions.GetFeatureConstant(id);
+                    result.add(loc, SmellReason.ANNOTATIONBUNDLE_LOACTOLOC);
                 }
             }
         }
@@ -206,15 +257,14 @@ public class Detector {
      *
      * @param meth the meth
      */
-    private void checkMethodForNumberOfFeatureConstants(Method meth) {
+    private void checkMethodForNumberOfFeatureConstants(Method meth, SmellResult result) {
         final DetectionConfig config = ctx.config;
 
         if (config.Method_NumberOfFeatureConstants != -1) {
             if (meth.GetFeatureConstantCount() > config.Method_NumberOfFeatureConstants) {
-                for (UUID id : meth.featureReferences.keySet()) {
-                    FeatureReference constant = ctx.featureExpressions
-                            .GetFeatureConstant(meth.featureReferences.get(id), id);
-                    this.addFeatureLocWithReason(constant, SmellReason.ANNOTATIONBUNDLE_NUMBERFEATURECONSTANTS);
+                for (int id : meth.featureReferences.toArray()) {
+                    FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
+                    result.add(constant, SmellReason.ANNOTATIONBUNDLE_NUMBERFEATURECONSTANTS);
                 }
             }
         }
@@ -227,15 +277,14 @@ public class Detector {
      *
      * @param meth the meth
      */
-    private void checkMethodForNumberOfFeatureLocations(Method meth) {
+    private void checkMethodForNumberOfFeatureLocations(Method meth, SmellResult result) {
         final DetectionConfig config = ctx.config;
 
         if (config.Method_NumberOfFeatureLocations != -1) {
             if (meth.GetFeatureConstantCount() > config.Method_NumberOfFeatureLocations) {
-                for (UUID id : meth.featureReferences.keySet()) {
-                    FeatureReference constant = ctx.featureExpressions
-                            .GetFeatureConstant(meth.featureReferences.get(id), id);
-                    this.addFeatureLocWithReason(constant, SmellReason.ANNOTATIONBUNDLE_NUMBERFEATURELOC);
+                for (int id : meth.featureReferences.toArray()) {
+                    FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
+                    result.add(constant, SmellReason.ANNOTATIONBUNDLE_NUMBERFEATURELOC);
                 }
             }
         }
@@ -248,15 +297,14 @@ public class Detector {
      *
      * @param meth the meth
      */
-    private void checkMethodForNumberFeatureConstantsNonDup(Method meth) {
+    private void checkMethodForNumberFeatureConstantsNonDup(Method meth, SmellResult result) {
         final DetectionConfig config = ctx.config;
 
         if (config.Method_NumberOfFeatureConstantsNonDup != -1) {
             if (meth.numberFeatureConstantsNonDup > config.Method_NumberOfFeatureConstantsNonDup) {
-                for (UUID id : meth.featureReferences.keySet()) {
-                    FeatureReference constant = ctx.featureExpressions
-                            .GetFeatureConstant(meth.featureReferences.get(id), id);
-                    this.addFeatureLocWithReason(constant, SmellReason.ANNOTATIONBUNDLE_NUMBERFEATURECONSTNONDUP);
+                for (int id : meth.featureReferences.toArray()) {
+                    FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
+                    result.add(constant, SmellReason.ANNOTATIONBUNDLE_NUMBERFEATURECONSTNONDUP);
                 }
             }
         }
@@ -268,14 +316,13 @@ public class Detector {
      *
      * @param meth the method
      */
-    private void checkMethodForNumberNegations(Method meth) {
+    private void checkMethodForNumberNegations(Method meth, SmellResult result) {
         final DetectionConfig config = ctx.config;
 
         if (config.Method_NegationCount != -1) {
-            if (meth.negationCount > config.Method_NegationCount) for (UUID id : meth.featureReferences.keySet()) {
-                FeatureReference constant = ctx.featureExpressions
-                        .GetFeatureConstant(meth.featureReferences.get(id), id);
-                this.addFeatureLocWithReason(constant, SmellReason.ANNOTATIONBUNDLE_NUMBERNEGATIONS);
+            if (meth.negationCount > config.Method_NegationCount) for (int id : meth.featureReferences.toArray()) {
+                FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
+                result.add(constant, SmellReason.ANNOTATIONBUNDLE_NUMBERNEGATIONS);
             }
         }
     }
@@ -287,13 +334,12 @@ public class Detector {
      *
      * @param meth the method
      */
-    private void checkForMethodNestingSum(Method meth) {
+    private void checkForMethodNestingSum(Method meth, SmellResult result) {
         final DetectionConfig config = ctx.config;
         if (config.Method_NestingSum != -1) {
-            if (meth.nestingSum >= config.Method_NestingSum) for (UUID id : meth.featureReferences.keySet()) {
-                FeatureReference constant = ctx.featureExpressions
-                        .GetFeatureConstant(meth.featureReferences.get(id), id);
-                this.addFeatureLocWithReason(constant, SmellReason.ANNOTATIONBUNDLE_NUMBERNESTINGSUM);
+            if (meth.nestingSum >= config.Method_NestingSum) for (int id : meth.featureReferences.toArray()) {
+                FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
+                result.add(constant, SmellReason.ANNOTATIONBUNDLE_NUMBERNESTINGSUM);
             }
         }
     }
@@ -305,15 +351,14 @@ public class Detector {
      *
      * @param meth the method
      */
-    private void checkForMethodNestingDepthMax(Method meth) {
+    private void checkForMethodNestingDepthMax(Method meth, SmellResult result) {
         final DetectionConfig config = ctx.config;
         if (config.Method_NestingDepthMin != -1) {
             // check nesting via stacks and nesting depth
             Stack<FeatureReference> nestingStack = new Stack<>();
             int beginNesting = -1;
-            for (UUID id : meth.featureReferences.keySet()) {
-                FeatureReference constant = ctx.featureExpressions
-                        .GetFeatureConstant(meth.featureReferences.get(id), id);
+            for (int id : meth.featureReferences.toArray()) {
+                FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
                 // add the item instantly if the stack is empty, set the
                 // beginning nesting depth to the nd of the loc (nesting depth
                 // is file-based not method based)
@@ -336,7 +381,7 @@ public class Detector {
                         // configuration add all to the result
                         if (ndm >= config.Method_NestingDepthMin) {
                             while (!nestingStack.isEmpty())
-                                this.addFeatureLocWithReason(nestingStack.pop(),
+                                result.add(nestingStack.pop(),
                                         SmellReason.ANNOTATIONBUNDLE_NUMBERNESTINGDEPTHMIN);
                         } else nestingStack.empty();
                     }
@@ -350,7 +395,7 @@ public class Detector {
                     if ((current.nestingDepth - beginNesting) > ndm) ndm = current.nestingDepth - beginNesting;
                 if (ndm >= config.Method_NestingDepthMin) {
                     while (!nestingStack.isEmpty())
-                        this.addFeatureLocWithReason(nestingStack.pop(),
+                        result.add(nestingStack.pop(),
                                 SmellReason.ANNOTATIONBUNDLE_NUMBERNESTINGDEPTHMIN);
                 } else nestingStack.empty();
             }
@@ -364,15 +409,14 @@ public class Detector {
      *
      * @param file
      */
-    private void checkForFileLofcToLoc(de.ovgu.skunk.detection.data.File file) {
+    private void checkForFileLofcToLoc(de.ovgu.skunk.detection.data.File file, SmellResult result) {
         final DetectionConfig config = ctx.config;
         if (!Double.isNaN(config.File_LofcToLocRatio)) {
             double minLofc = (config.File_LofcToLocRatio * file.loc);
             if (file.lofc >= minLofc) {
-                for (UUID id : file.featureConstants.keySet()) {
-                    FeatureReference loc = ctx.featureExpressions.GetFeatureConstant(file.featureConstants.get(id),
-                            id);
-                    this.addFeatureLocWithReason(loc, SmellReason.ANNOTATIONFILE_LOFCTOLOC);
+                for (int id : file.featureConstants.toArray()) {
+                    FeatureReference loc = ctx.featureExpressions.GetFeatureConstant(id);
+                    result.add(loc, SmellReason.ANNOTATIONFILE_LOFCTOLOC);
                 }
             }
         }
@@ -385,15 +429,14 @@ public class Detector {
      *
      * @param file
      */
-    private void checkForFileLoacToLoc(de.ovgu.skunk.detection.data.File file) {
+    private void checkForFileLoacToLoc(de.ovgu.skunk.detection.data.File file, SmellResult result) {
         final DetectionConfig config = ctx.config;
         if (!Double.isNaN(config.File_LoacToLocRatio)) {
             double minLoac = (config.File_LoacToLocRatio * file.loc);
             if (file.GetLinesOfAnnotatedCode() >= minLoac) {
-                for (UUID id : file.featureConstants.keySet()) {
-                    FeatureReference loc = ctx.featureExpressions.GetFeatureConstant(file.featureConstants.get(id),
-                            id);
-                    this.addFeatureLocWithReason(loc, SmellReason.ANNOTATIONFILE_LOACTOLOC);
+                for (int id : file.featureConstants.toArray()) {
+                    FeatureReference loc = ctx.featureExpressions.GetFeatureConstant(id);
+                    result.add(loc, SmellReason.ANNOTATIONFILE_LOACTOLOC);
                 }
             }
         }
@@ -406,14 +449,13 @@ public class Detector {
      *
      * @param file
      */
-    private void checkFileForNumberOfFeatureConstants(de.ovgu.skunk.detection.data.File file) {
+    private void checkFileForNumberOfFeatureConstants(de.ovgu.skunk.detection.data.File file, SmellResult result) {
         final DetectionConfig config = ctx.config;
         if (config.File_NumberOfFeatureConstants != -1) {
             if (file.GetFeatureConstantCount() > config.File_NumberOfFeatureConstants) {
-                for (UUID id : file.featureConstants.keySet()) {
-                    FeatureReference constant = ctx.featureExpressions
-                            .GetFeatureConstant(file.featureConstants.get(id), id);
-                    this.addFeatureLocWithReason(constant, SmellReason.ANNOTATIONFILE_NUMBERFEATURECONSTANTS);
+                for (int id : file.featureConstants.toArray()) {
+                    FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
+                    result.add(constant, SmellReason.ANNOTATIONFILE_NUMBERFEATURECONSTANTS);
                 }
             }
         }
@@ -426,14 +468,13 @@ public class Detector {
      *
      * @param file
      */
-    private void checkFileForNumberOfFeatureLocations(de.ovgu.skunk.detection.data.File file) {
+    private void checkFileForNumberOfFeatureLocations(de.ovgu.skunk.detection.data.File file, SmellResult result) {
         final DetectionConfig config = ctx.config;
         if (config.File_NumberOfFeatureLocations != -1) {
             if (file.GetFeatureConstantCount() > config.File_NumberOfFeatureLocations) {
-                for (UUID id : file.featureConstants.keySet()) {
-                    FeatureReference constant = ctx.featureExpressions
-                            .GetFeatureConstant(file.featureConstants.get(id), id);
-                    this.addFeatureLocWithReason(constant, SmellReason.ANNOTATIONFILE_NUMBERFEATURELOC);
+                for (int id : file.featureConstants.toArray()) {
+                    FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
+                    result.add(constant, SmellReason.ANNOTATIONFILE_NUMBERFEATURELOC);
                 }
             }
         }
@@ -446,14 +487,13 @@ public class Detector {
      *
      * @param file
      */
-    private void checkFileForNumberFeatureConstantsNonDup(de.ovgu.skunk.detection.data.File file) {
+    private void checkFileForNumberFeatureConstantsNonDup(de.ovgu.skunk.detection.data.File file, SmellResult result) {
         final DetectionConfig config = ctx.config;
         if (config.File_NumberOfFeatureConstantsNonDup != -1) {
             if (file.numberFeatureConstantsNonDup > config.File_NumberOfFeatureConstantsNonDup) {
-                for (UUID id : file.featureConstants.keySet()) {
-                    FeatureReference constant = ctx.featureExpressions
-                            .GetFeatureConstant(file.featureConstants.get(id), id);
-                    this.addFeatureLocWithReason(constant, SmellReason.ANNOTATIONFILE_NUMBERFEATURECONSTNONDUP);
+                for (int id : file.featureConstants.toArray()) {
+                    FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
+                    result.add(constant, SmellReason.ANNOTATIONFILE_NUMBERFEATURECONSTNONDUP);
                 }
             }
         }
@@ -465,13 +505,12 @@ public class Detector {
      *
      * @param file
      */
-    private void checkFileForNumberNegations(de.ovgu.skunk.detection.data.File file) {
+    private void checkFileForNumberNegations(de.ovgu.skunk.detection.data.File file, SmellResult result) {
         final DetectionConfig config = ctx.config;
         if (config.File_NegationCount != -1) {
-            if (file.negationCount > config.File_NegationCount) for (UUID id : file.featureConstants.keySet()) {
-                FeatureReference constant = ctx.featureExpressions
-                        .GetFeatureConstant(file.featureConstants.get(id), id);
-                this.addFeatureLocWithReason(constant, SmellReason.ANNOTATIONFILE_NUMBERNEGATIONS);
+            if (file.negationCount > config.File_NegationCount) for (int id : file.featureConstants.toArray()) {
+                FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
+                result.add(constant, SmellReason.ANNOTATIONFILE_NUMBERNEGATIONS);
             }
         }
     }
@@ -483,13 +522,12 @@ public class Detector {
      *
      * @param file
      */
-    private void checkForFileNestingSum(de.ovgu.skunk.detection.data.File file) {
+    private void checkForFileNestingSum(de.ovgu.skunk.detection.data.File file, SmellResult result) {
         final DetectionConfig config = ctx.config;
         if (config.File_NestingSum != -1) {
-            if (file.nestingSum >= config.File_NestingSum) for (UUID id : file.featureConstants.keySet()) {
-                FeatureReference constant = ctx.featureExpressions
-                        .GetFeatureConstant(file.featureConstants.get(id), id);
-                this.addFeatureLocWithReason(constant, SmellReason.ANNOTATIONFILE_NUMBERNESTINGSUM);
+            if (file.nestingSum >= config.File_NestingSum) for (int id : file.featureConstants.toArray()) {
+                FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
+                result.add(constant, SmellReason.ANNOTATIONFILE_NUMBERNESTINGSUM);
             }
         }
     }
@@ -501,15 +539,14 @@ public class Detector {
      *
      * @param file
      */
-    private void checkForFileNestingDepthMax(de.ovgu.skunk.detection.data.File file) {
+    private void checkForFileNestingDepthMax(de.ovgu.skunk.detection.data.File file, SmellResult result) {
         final DetectionConfig config = ctx.config;
         if (config.File_NestingDepthMin != -1) {
             // check nesting via stacks and nesting depth
             Stack<FeatureReference> nestingStack = new Stack<>();
             int beginNesting = -1;
-            for (UUID id : file.featureConstants.keySet()) {
-                FeatureReference constant = ctx.featureExpressions
-                        .GetFeatureConstant(file.featureConstants.get(id), id);
+            for (int id : file.featureConstants.toArray()) {
+                FeatureReference constant = ctx.featureExpressions.GetFeatureConstant(id);
                 // add the item instantly if the stack is empty, set the
                 // beginning nesting depth to the nd of the loc (nesting depth
                 // is file-based not method based)
@@ -532,7 +569,7 @@ public class Detector {
                         // configuration add all to the result
                         if (ndm >= config.File_NestingDepthMin) {
                             while (!nestingStack.isEmpty())
-                                this.addFeatureLocWithReason(nestingStack.pop(),
+                                result.add(nestingStack.pop(),
                                         SmellReason.ANNOTATIONFILE_NUMBERNESTINGDEPTHMIN);
                         } else nestingStack.empty();
                     }
@@ -546,7 +583,7 @@ public class Detector {
                     if ((current.nestingDepth - beginNesting) > ndm) ndm = current.nestingDepth - beginNesting;
                 if (ndm >= config.File_NestingDepthMin) {
                     while (!nestingStack.isEmpty())
-                        this.addFeatureLocWithReason(nestingStack.pop(),
+                        result.add(nestingStack.pop(),
                                 SmellReason.ANNOTATIONFILE_NUMBERNESTINGDEPTHMIN);
                 } else nestingStack.empty();
             }
@@ -559,7 +596,7 @@ public class Detector {
      *
      * @param loc the feature constant to examine
      */
-    private void checkForFeatureToFeatureRatio(FeatureReference loc) {
+    private void checkForFeatureToFeatureRatio(FeatureReference loc, SmellResult result) {
         final DetectionConfig config = ctx.config;
         if (!Double.isNaN(config.Feature_MeanLofcRatio)) {
             // calculate the minimal lofc a feature location should have to be
@@ -568,7 +605,7 @@ public class Detector {
             double minLofc = (config.Feature_MeanLofcRatio * ctx.featureExpressions.GetMeanLofc());
             // add the feature location if the feature lofc is bigger than the
             // minimal
-            if (lofc >= minLofc) this.addFeatureLocWithReason(loc, SmellReason.LARGEFEATURE_LOFCTOMEANLOFC);
+            if (lofc >= minLofc) result.add(loc, SmellReason.LARGEFEATURE_LOFCTOMEANLOFC);
         }
     }
 
@@ -579,14 +616,14 @@ public class Detector {
      * @param feat the feature
      * @param loc  the current location
      */
-    private void checkForFeatureToProjectRatio(Feature feat, FeatureReference loc) {
+    private void checkForFeatureToProjectRatio(Feature feat, FeatureReference loc, SmellResult result) {
         final DetectionConfig config = ctx.config;
         if (!Double.isNaN(config.Feature_ProjectLocRatio)) {
             // calculate the minimal lofc the feature must have to be a large
             // feature
             double minLofc = (ctx.featureExpressions.GetLoc() * config.Feature_ProjectLocRatio);
             // add the feature location
-            if (feat.getLofc() >= minLofc) this.addFeatureLocWithReason(loc, SmellReason.LARGEFEATURE_LOFCTOLOC);
+            if (feat.getLofc() >= minLofc) result.add(loc, SmellReason.LARGEFEATURE_LOFCTOLOC);
         }
     }
 
@@ -596,7 +633,7 @@ public class Detector {
      *
      * @param feat the feat
      */
-    private void checkForFeatureNoFeatureConstantsToSum(Feature feat) {
+    private void checkForFeatureNoFeatureConstantsToSum(Feature feat, SmellResult result) {
         final DetectionConfig config = ctx.config;
         if (!Double.isNaN(config.Feature_NoFeatureConstantsRatio)) {
             // amount of nofls the feature has to exceed for a smell
@@ -604,7 +641,7 @@ public class Detector {
                     * config.Feature_NoFeatureConstantsRatio;
             if (feat.getReferences().size() > minNofl) {
                 for (FeatureReference loc : feat.getReferences())
-                    this.addFeatureLocWithReason(loc, SmellReason.SHOTGUNSURGERY_NOFCOSUMNOFC);
+                    result.add(loc, SmellReason.SHOTGUNSURGERY_NOFCOSUMNOFC);
             }
         }
     }
@@ -616,13 +653,13 @@ public class Detector {
      *
      * @param feat the feat
      */
-    private void checkForFeatureCompilUnits(Feature feat) {
+    private void checkForFeatureCompilUnits(Feature feat, SmellResult result) {
         final DetectionConfig config = ctx.config;
 
         if (config.Feature_NumberOfCompilUnits != -1) {
             if (feat.GetAmountCompilationFiles() > config.Feature_NumberOfCompilUnits) {
                 for (FeatureReference loc : feat.getReferences())
-                    this.addFeatureLocWithReason(loc, SmellReason.SHOTGUNSURGERY_NUMBERCOMPILATIONUNITS);
+                    result.add(loc, SmellReason.SHOTGUNSURGERY_NUMBERCOMPILATIONUNITS);
             }
         }
     }
@@ -632,12 +669,12 @@ public class Detector {
      *
      * @param feat the feat
      */
-    private void checkForFeatureLofc(Feature feat) {
+    private void checkForFeatureLofc(Feature feat, SmellResult result) {
         final DetectionConfig config = ctx.config;
         if (config.Feature_NumberLofc != -1) {
             if (feat.getLofc() > config.Feature_NumberLofc) {
                 for (FeatureReference loc : feat.getReferences())
-                    this.addFeatureLocWithReason(loc, SmellReason.LARGEFEATURE_NUMBERLOFC);
+                    result.add(loc, SmellReason.LARGEFEATURE_NUMBERLOFC);
             }
         }
     }
@@ -647,57 +684,149 @@ public class Detector {
      *
      * @param feat the feat
      */
-    private void checkForFeatureNofc(Feature feat) {
+    private void checkForFeatureNofc(Feature feat, SmellResult result) {
         final DetectionConfig config = ctx.config;
 
         if (config.Feature_NumberNofc != -1) {
             if (feat.references.size() > config.Feature_NumberNofc) {
                 for (FeatureReference loc : feat.getReferences())
-                    this.addFeatureLocWithReason(loc, SmellReason.LARGEFEATURE_NUMBERNOFC);
+                    result.add(loc, SmellReason.LARGEFEATURE_NUMBERNOFC);
             }
         }
     }
 
     /**
-     * Adds the feature constant to the result list with the specified reason,
-     * or appends another reason if the location is already inside the result
-     * list.
-     *
-     * @param constant the feature constant to add
-     * @param reason   the reason
-     */
-    private void addFeatureLocWithReason(FeatureReference constant, SmellReason reason) {
-        if (this.featureResult.containsKey(constant))
-            this.featureResult.get(constant).add(reason);
-        else {
-            List<SmellReason> enumReason = new ArrayList<>();
-            enumReason.add(reason);
-            this.featureResult.put(constant, enumReason);
+     * Reasons found for feature locations.  Each fork/join task fills its own instance; instances of subtasks are
+     * merged afterwards, so no locking is needed.
+     */
+    private static class SmellResult {
+        final Map<FeatureReference, EnumSet<SmellReason>> reasons = new HashMap<>();
+
+        /**
+         * Adds the feature constant to the result with the specified reason, or adds another reason if the location
+         * is already part of the result.
+         *
+         * @param constant the feature constant to add
+         * @param reason   the reason
+         */
+        void add(FeatureReference constant, SmellReason reason) {
+            EnumSet<SmellReason> constantReasons = reasons.get(constant);
+            if (constantReasons == null) {
+                constantReasons = EnumSet.of(reason);
+                reasons.put(constant, constantReasons);
+            } else {
+                constantReasons.add(reason);
+            }
+        }
+
+        /**
+         * Adds all reasons of the other result to this one.
+         */
+        void merge(SmellResult other) {
+            for (Map.Entry<FeatureReference, EnumSet<SmellReason>> e : other.reasons.entrySet()) {
+                EnumSet<SmellReason> constantReasons = reasons.get(e.getKey());
+                if (constantReasons == null) reasons.put(e.getKey(), e.getValue());
+                else constantReasons.addAll(e.getValue());
+            }
+        }
+
+        /**
+         * @return the feature locations, ordered by id
+         */
+        FeatureReference[] constantsById() {
+            FeatureReference[] constants = reasons.keySet().toArray(new FeatureReference[0]);
+            Arrays.sort(constants, Comparator.comparingInt(constant -> constant.id));
+            return constants;
+        }
+
+        /**
+         * @param constants feature locations of this result, ordered by id, with <code>null</code> in place of those
+         *                  to leave out, see {@link MandatoryReasonsTask}
+         * @return the feature locations, ordered by id, each with its reasons in reporting order
+         */
+        Map<FeatureReference, List<SmellReason>> toReasonLists(FeatureReference[] constants) {
+            Map<FeatureReference, List<SmellReason>> lists = new LinkedHashMap<>();
+            for (FeatureReference constant : constants) {
+                if (constant == null) continue;
+                EnumSet<SmellReason> constantReasons = reasons.get(constant);
+                List<SmellReason> list = new ArrayList<>(constantReasons.size());
+                for (SmellReason reason : REPORTING_ORDER)
+                    if (constantReasons.contains(reason)) list.add(reason);
+                lists.put(constant, list);
+            }
+            return lists;
         }
     }
 
     /**
-     * Sort a hashmap by values
-     *
-     * @param <K> the key type
-     * @param <V> the value type
-     * @param map the map
-     * @return A fresh copy of the given map, where entries are sorted by their values
-     */
-    public <K extends Comparable<K>, V extends Comparable<V>> Map<K, V> sortByValues(Map<K, V> map) {
-        List<Map.Entry<K, V>> entries = new ArrayList<>(map.entrySet());
-        Collections.sort(entries, new Comparator<Map.Entry<K, V>>() {
-            @Override
-            public int compare(Entry<K, V> o1, Entry<K, V> o2) {
-                return o1.getValue().compareTo(o2.getValue());
+     * Leaves out the feature locations that lack one of the mandatory reasons, by replacing them with
+     * <code>null</code> in a range of the array of feature locations, splitting the range between subtasks while it is
+     * large and the task runs in a fork/join pool.  The result itself is only read, so subtasks need not be merged.
+     */
+    private static class MandatoryReasonsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 256;
+        private final SmellResult result;
+        private final FeatureReference[] constants;
+        private final EnumSet<SmellReason> mandatories;
+        private final int from;
+        private final int to;
+
+        MandatoryReasonsTask(SmellResult result, FeatureReference[] constants, EnumSet<SmellReason> mandatories,
+                             int from, int to) {
+            this.result = result;
+            this.constants = constants;
+            this.mandatories = mandatories;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD || !inForkJoinPool()) {
+                for (int i = from; i < to; i++) {
+                    if (!result.reasons.get(constants[i]).containsAll(mandatories)) constants[i] = null;
+                }
+                return;
             }
-        });
-        // LinkedHashMap will keep the keys in the order they are inserted
-        // which is currently sorted on natural ordering
-        Map<K, V> sortedMap = new LinkedHashMap<>();
-        for (Map.Entry<K, V> entry : entries) {
-            sortedMap.put(entry.getKey(), entry.getValue());
-        }
-        return sortedMap;
+            int mid = (from + to) >>> 1;
+            invokeAll(new MandatoryReasonsTask(result, constants, mandatories, from, mid),
+                    new MandatoryReasonsTask(result, constants, mandatories, mid, to));
+        }
+    }
+
+    /**
+     * Runs a check on a range of elements, splitting the range between subtasks while it is large.
+     */
+    private static class CheckTask<T> extends RecursiveTask<SmellResult> {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 16;
+        private final List<T> elements;
+        private final int from;
+        private final int to;
+        private final BiConsumer<T, SmellResult> check;
+
+        CheckTask(List<T> elements, int from, int to, BiConsumer<T, SmellResult> check) {
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+            this.check = check;
+        }
+
+        @Override
+        protected SmellResult compute() {
+            if (to - from <= THRESHOLD) {
+                SmellResult result = new SmellResult();
+                for (int i = from; i < to; i++)
+                    check.accept(elements.get(i), result);
+                return result;
+            }
+            int mid = (from + to) >>> 1;
+            CheckTask<T> left = new CheckTask<>(elements, from, mid, check);
+            left.fork();
+            SmellResult result = new CheckTask<>(elements, mid, to, check).compute();
+            result.merge(left.join());
+            return result;
+        }
     }
 }
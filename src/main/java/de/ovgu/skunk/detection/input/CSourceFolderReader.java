@@ -0,0 +1,136 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.Context;
+import de.ovgu.skunk.detection.data.FeatureReference;
+import de.ovgu.skunk.detection.data.File;
+import de.ovgu.skunk.detection.data.FilePath;
+import de.ovgu.skunk.detection.data.Method;
+import de.ovgu.skunk.util.FileUtils;
+import de.ovgu.skunk.util.MappedInput;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads the <code>.c</code> files of a source folder directly, without cppstats and srcML, using a
+ * {@link CSourceScanner}.  Yields the same feature constants as cppstats' feature location analysis, but function
+ * boundaries are only approximated, and the granularity and discipline of annotations are not determined.
+ */
+public class CSourceFolderReader {
+    private static final Logger LOG = Logger.getLogger(CSourceFolderReader.class);
+    /**
+     * Name of the phase in which C files are scanned for directives and functions, see {@link Context#inputStatistics}
+     */
+    public static final String INPUT_PHASE = "C files for directives and functions";
+    private final Context ctx;
+
+    /**
+     * The folder containing the C files
+     */
+    private final String pathToSourceFolder;
+
+    /**
+     * @param ctx                the context to populate
+     * @param pathToSourceFolder folder containing the C files, possibly in subfolders
+     */
+    public CSourceFolderReader(Context ctx, String pathToSourceFolder) {
+        this.ctx = ctx;
+        this.pathToSourceFolder = pathToSourceFolder;
+    }
+
+    /**
+     * Processes all C files.  The empty lines of the files are determined in the background, using the given number
+     * of threads.
+     *
+     * @param numThreads number of threads to use for reading source files; if 1, everything is done on the calling
+     *                   thread
+     */
+    public void ProcessFiles(int numThreads) {
+        System.out.println("Processing C files in folder " + FileUtils.relPathForDisplay(pathToSourceFolder) + " ...");
+        final List<String> filePaths = findSourceFiles();
+        final List<Method[]> functionsByFile = new ArrayList<>(filePaths.size());
+        ctx.files.StartScanning(numThreads);
+        try {
+            FeatureConstantStack constants = new FeatureConstantStack(ctx);
+            for (String filePath : filePaths) {
+                ctx.files.InternFile(filePath);
+                final String contents = readFile(filePath);
+                CSourceScanner scanner = CSourceScanner.scan(contents);
+                for (FeatureLocation loc : scanner.getFeatureLocations()) {
+                    constants.add(filePath, loc.start, loc.end, loc.type, loc.expression);
+                }
+                functionsByFile.add(toFunctions(filePath, contents, scanner.getFunctions()));
+            }
+            constants.finish();
+            ctx.featureExpressions.PostAction();
+            ctx.files.FinishScanning();
+        } finally {
+            ctx.files.StopScanning();
+        }
+        for (int i = 0; i < filePaths.size(); i++) {
+            final String filePath = filePaths.get(i);
+            final FilePath fp = ctx.internFilePath(filePath);
+            final File file = ctx.files.FindFile(fp);
+            ctx.featureExpressions.AddLoc(file.loc);
+            final Method[] functions = functionsByFile.get(i);
+            for (Method function : functions) {
+                ctx.functions.AddFunctionToFile(fp, function);
+                ctx.files.InternFunctionIntoExistingFile(fp, function);
+            }
+            final List<FeatureReference> references = ctx.featureExpressions.GetReferencesInFile(filePath);
+            final Method[] enclosingFunctions = new FunctionIntervals(functions).enclosingFunctions(references);
+            for (int j = 0; j < enclosingFunctions.length; j++) {
+                file.AddFeatureConstant(references.get(j));
+                if (enclosingFunctions[j] != null) enclosingFunctions[j].AddFeatureConstant(references.get(j));
+            }
+        }
+        System.out.println("... C file processing done. Found " + filePaths.size() + " source files. Read "
+                + ctx.inputStatistics.describe(INPUT_PHASE) + ".");
+    }
+
+    /**
+     * @return the paths of all <code>.c</code> files in the source folder and its subfolders, in lexicographic order
+     */
+    private List<String> findSourceFiles() {
+        try (Stream<Path> paths = Files.walk(Paths.get(pathToSourceFolder))) {
+            return paths.filter(p -> p.getFileName().toString().endsWith(".c") && Files.isRegularFile(p))
+                    .map(Path::toString).sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("I/O exception listing C files in folder " + pathToSourceFolder, e);
+        }
+    }
+
+    private String readFile(String filePath) {
+        try (InputStream is = MappedInput.open(filePath, ctx.inputStatistics, INPUT_PHASE).openStream()) {
+            return IOUtils.toString(is, FileUtils.DEFAULT_CHARSET);
+        } catch (IOException e) {
+            throw new RuntimeException("I/O exception reading C file " + filePath, e);
+        }
+    }
+
+    private Method[] toFunctions(String filePath, String contents, List<CSourceScanner.Function> scannedFunctions) {
+        if (scannedFunctions.isEmpty()) return new Method[0];
+        final List<String> lines = Arrays.asList(contents.split("\\r?\\n", -1));
+        Method[] result = new Method[scannedFunctions.size()];
+        for (int i = 0; i < result.length; i++) {
+            CSourceScanner.Function f = scannedFunctions.get(i);
+            final int grossLoc = f.end - f.start + 1;
+            final String sourceCode = String.join("\n", lines.subList(f.start - 1, Math.min(f.end, lines.size())));
+            result[i] = new Method(ctx, f.signature, filePath, f.start, grossLoc, f.signatureLines, sourceCode);
+        }
+        LOG.debug("Found " + result.length + " functions in `" + filePath + "'.");
+        SrcMlFolderReader.adjustImprobableFunctionEndPositions(result);
+        SrcMlFolderReader.adjustDuplicateFunctionSignatures(result);
+        return result;
+    }
+}
@@ -0,0 +1,419 @@
+package de.ovgu.skunk.detection.input;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Line-oriented scanner for raw C files that finds the conditional blocks of a file and, heuristically, its function
+ * definitions, without building a syntax tree.  Line continuations, comments and the contents of string and
+ * character literals are taken into account.
+ * <p>
+ * Function boundaries are found by counting braces.  Each branch of an <code>#if</code> is scanned starting from the
+ * state before the <code>#if</code>, so that alternative definitions of a function are all found.  After the
+ * <code>#endif</code>, scanning continues from the state at the end of the first branch, so that alternative function
+ * headers, e.g., one per branch of an <code>#ifdef</code>, do not open two bodies.  Branches disabled by
+ * <code>#if 0</code> are not scanned.  A function definition is a top-level <code>{</code> preceded by something that
+ * looks like a function header: an identifier followed by a parenthesized parameter list, optionally followed by
+ * K&amp;R-style parameter declarations.
+ * </p>
+ */
+public class CSourceScanner {
+    private static final Logger LOG = Logger.getLogger(CSourceScanner.class);
+    private static final Pattern HEADER_NAME = Pattern.compile(".*\\w\\s*$", Pattern.DOTALL);
+    private static final Pattern NOT_A_FUNCTION = Pattern.compile("^(struct|union|enum|typedef)\\b.*", Pattern.DOTALL);
+    private static final Pattern EXTERN_BLOCK = Pattern.compile("^extern\\s*\"[^\"]*\"\\s*$");
+    private static final Pattern DIRECTIVE = Pattern.compile("^\\s*#\\s*(\\w+)");
+
+    /**
+     * A function definition found by the scanner
+     */
+    public static class Function {
+        /**
+         * The function's signature, on a single line
+         */
+        public final String signature;
+        /**
+         * Line of the first token of the function's header
+         */
+        public final int start;
+        /**
+         * Line of the function's closing brace
+         */
+        public final int end;
+        /**
+         * Number of lines from the first token of the header to the opening brace
+         */
+        public final int signatureLines;
+
+        Function(String signature, int start, int end, int signatureLines) {
+            this.signature = signature;
+            this.start = start;
+            this.end = end;
+            this.signatureLines = signatureLines;
+        }
+
+        @Override
+        public String toString() {
+            return start + "," + end + "," + signatureLines + "," + signature;
+        }
+    }
+
+    /**
+     * What is known about the code scanned so far
+     */
+    private static class CodeState {
+        /**
+         * Braces currently open, innermost last; <code>true</code> for braces of <code>extern "C"</code> blocks
+         */
+        final List<Boolean> braces = new ArrayList<>();
+        int depth = 0;
+        /**
+         * Top-level code seen since the last declaration or definition
+         */
+        final StringBuilder header = new StringBuilder();
+        int headerLine;
+        int parens = 0;
+        /**
+         * Length of {@link #header} after the closing parenthesis of the parameter list, or -1
+         */
+        int parameterListEnd = -1;
+        /**
+         * Signature of the function whose body is open, or <code>null</code>
+         */
+        String functionSignature;
+        int functionStart;
+        int functionSignatureLines;
+
+        CodeState copy() {
+            CodeState result = new CodeState();
+            result.braces.addAll(braces);
+            result.depth = depth;
+            result.header.append(header);
+            result.headerLine = headerLine;
+            result.parens = parens;
+            result.parameterListEnd = parameterListEnd;
+            result.functionSignature = functionSignature;
+            result.functionStart = functionStart;
+            result.functionSignatureLines = functionSignatureLines;
+            return result;
+        }
+
+        void resetHeader() {
+            header.setLength(0);
+            parens = 0;
+            parameterListEnd = -1;
+        }
+    }
+
+    /**
+     * An open <code>#if</code> directive
+     */
+    private static class Group {
+        /**
+         * The current branch is scanned
+         */
+        boolean scanned;
+        /**
+         * The <code>#if</code> is nested in a branch that is not scanned, so none of its branches is
+         */
+        final boolean skipped;
+        /**
+         * State before the <code>#if</code>, or <code>null</code> if skipped
+         */
+        final CodeState before;
+        /**
+         * State at the end of the first scanned branch, or <code>null</code> if none has ended yet
+         */
+        CodeState afterFirstBranch;
+
+        Group(boolean scanned, boolean skipped, CodeState before) {
+            this.scanned = scanned;
+            this.skipped = skipped;
+            this.before = before;
+        }
+    }
+
+    private final ConditionalBlockCollector blocks = new ConditionalBlockCollector();
+    private final List<Function> functions = new ArrayList<>();
+
+    /**
+     * The open <code>#if</code> directives, innermost last
+     */
+    private final List<Group> groups = new ArrayList<>();
+    /**
+     * Number of open <code>#if</code> directives whose current branch is not scanned
+     */
+    private int unscannedGroups = 0;
+    private CodeState code = new CodeState();
+
+    private boolean inBlockComment = false;
+    /**
+     * The text of a directive continued on the next line, or <code>null</code>
+     */
+    private StringBuilder directive = null;
+    private int directiveLine;
+    private int lastLine = 0;
+
+    /**
+     * Scans the given file contents.
+     *
+     * @param contents the contents of a C file
+     * @return the scanner, for querying the results
+     */
+    public static CSourceScanner scan(CharSequence contents) {
+        CSourceScanner scanner = new CSourceScanner();
+        final int len = contents.length();
+        int line = 1;
+        int lineStart = 0;
+        for (int i = 0; i <= len; i++) {
+            if (i == len || contents.charAt(i) == '\n') {
+                int lineEnd = i;
+                if (lineEnd > lineStart && contents.charAt(lineEnd - 1) == '\r') lineEnd--;
+                if (i < len || lineEnd > lineStart) scanner.scanLine(line, contents.subSequence(lineStart, lineEnd));
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        scanner.finishFile();
+        return scanner;
+    }
+
+    /**
+     * @return the conditional blocks of the file, ordered by start line
+     */
+    public List<FeatureLocation> getFeatureLocations() {
+        return blocks.finish(lastLine);
+    }
+
+    /**
+     * @return the function definitions of the file, ordered by start line
+     */
+    public List<Function> getFunctions() {
+        return functions;
+    }
+
+    private void scanLine(int line, CharSequence text) {
+        lastLine = line;
+        final boolean continued = text.length() > 0 && text.charAt(text.length() - 1) == '\\';
+        String stripped = stripCommentsAndLiterals(continued ? text.subSequence(0, text.length() - 1) : text);
+        if (directive != null) {
+            directive.append(' ').append(stripped);
+            if (!continued) {
+                processDirective(directiveLine, directive.toString());
+                directive = null;
+            }
+        } else if (stripped.trim().startsWith("#")) {
+            if (continued) {
+                directive = new StringBuilder(stripped);
+                directiveLine = line;
+            } else {
+                processDirective(line, stripped);
+            }
+        } else if (unscannedGroups == 0) {
+            scanCode(line, stripped);
+        }
+    }
+
+    private void finishFile() {
+        if (directive != null) processDirective(directiveLine, directive.toString());
+        directive = null;
+        if (code.functionSignature != null) {
+            LOG.warn("Missing closing brace of function " + code.functionSignature + " in line " + code.functionStart);
+            endFunction(lastLine);
+        }
+        functions.sort(Comparator.comparingInt(f -> f.start));
+    }
+
+    /**
+     * Removes comments and the contents of string and character literals.  Block comments may span lines.
+     */
+    private String stripCommentsAndLiterals(CharSequence text) {
+        StringBuilder result = new StringBuilder(text.length());
+        final int len = text.length();
+        int i = 0;
+        while (i < len) {
+            char c = text.charAt(i);
+            if (inBlockComment) {
+                if (c == '*' && i + 1 < len && text.charAt(i + 1) == '/') {
+                    inBlockComment = false;
+                    result.append(' ');
+                    i += 2;
+                } else {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < len && text.charAt(i + 1) == '*') {
+                inBlockComment = true;
+                i += 2;
+            } else if (c == '/' && i + 1 < len && text.charAt(i + 1) == '/') {
+                break;
+            } else if (c == '"' || c == '\'') {
+                result.append(c);
+                i++;
+                while (i < len && text.charAt(i) != c) {
+                    if (text.charAt(i) == '\\') i++;
+                    i++;
+                }
+                result.append(c);
+                i++;
+            } else {
+                result.append(c);
+                i++;
+            }
+        }
+        return result.toString();
+    }
+
+    private void processDirective(int line, String text) {
+        Matcher m = DIRECTIVE.matcher(text);
+        if (!m.lookingAt()) return;
+        final String type = m.group(1);
+        final String condition = text.substring(m.end()).trim();
+        switch (type) {
+            case "if":
+            case "ifdef":
+            case "ifndef": {
+                final Group group;
+                if (unscannedGroups > 0) group = new Group(false, true, null);
+                else group = new Group(!isFalse(type, condition), false, code.copy());
+                groups.add(group);
+                if (!group.scanned) unscannedGroups++;
+                break;
+            }
+            case "elif":
+            case "else": {
+                if (groups.isEmpty()) break;
+                final Group group = groups.get(groups.size() - 1);
+                if (group.skipped) break;
+                if (group.scanned) {
+                    if (group.afterFirstBranch == null) group.afterFirstBranch = code;
+                } else {
+                    unscannedGroups--;
+                }
+                code = group.before.copy();
+                group.scanned = !isFalse(type, condition);
+                if (!group.scanned) unscannedGroups++;
+                break;
+            }
+            case "endif": {
+                if (groups.isEmpty()) break;
+                final Group group = groups.remove(groups.size() - 1);
+                if (!group.scanned) unscannedGroups--;
+                if (group.afterFirstBranch != null) code = group.afterFirstBranch;
+                break;
+            }
+            default:
+                return;
+        }
+        blocks.add(type, line, text);
+    }
+
+    private static boolean isFalse(String type, String condition) {
+        return (type.equals("if") || type.equals("elif")) && condition.equals("0");
+    }
+
+    private void scanCode(int line, String text) {
+        final CodeState code = this.code;
+        final int len = text.length();
+        for (int i = 0; i < len; i++) {
+            final char c = text.charAt(i);
+            if (code.depth > 0) {
+                if (c == '{') {
+                    openBrace(false);
+                } else if (c == '}') {
+                    closeBrace(line);
+                }
+                continue;
+            }
+            switch (c) {
+                case '{':
+                    if (code.parens == 0) {
+                        topLevelBrace(line);
+                        continue;
+                    }
+                    break;
+                case '}':
+                    closeBrace(line);
+                    code.resetHeader();
+                    continue;
+                case ';':
+                    // Parameter declarations of a K&R-style function definition follow the parameter list
+                    if (code.parens == 0 && (code.parameterListEnd == -1
+                            || code.header.substring(code.parameterListEnd).trim().isEmpty()
+                            || !isFunctionHeader(code.header.substring(0, code.parameterListEnd)))) {
+                        code.resetHeader();
+                        continue;
+                    }
+                    break;
+                case '(':
+                    code.parens++;
+                    break;
+                case ')':
+                    if (code.parens > 0) code.parens--;
+                    break;
+            }
+            if (code.header.length() == 0) {
+                if (Character.isWhitespace(c)) continue;
+                code.headerLine = line;
+            }
+            code.header.append(c);
+            if (c == ')' && code.parens == 0) code.parameterListEnd = code.header.length();
+        }
+        if (code.header.length() > 0) code.header.append(' ');
+    }
+
+    private void topLevelBrace(int line) {
+        final String text = code.header.toString().trim();
+        if (EXTERN_BLOCK.matcher(text).matches()) {
+            openBrace(true);
+        } else {
+            if (code.parameterListEnd != -1 && isFunctionHeader(code.header.substring(0, code.parameterListEnd))) {
+                code.functionSignature = normalizeSignature(text);
+                code.functionStart = code.headerLine;
+                code.functionSignatureLines = line - code.headerLine + 1;
+            }
+            openBrace(false);
+        }
+        code.resetHeader();
+    }
+
+    private void openBrace(boolean transparent) {
+        code.braces.add(transparent);
+        if (!transparent) code.depth++;
+    }
+
+    private void closeBrace(int line) {
+        if (code.braces.isEmpty()) return;
+        if (code.braces.remove(code.braces.size() - 1)) return;
+        code.depth--;
+        if (code.depth == 0 && code.functionSignature != null) endFunction(line);
+    }
+
+    private void endFunction(int line) {
+        functions.add(new Function(code.functionSignature, code.functionStart, line, code.functionSignatureLines));
+        code.functionSignature = null;
+    }
+
+    /**
+     * @param text top-level code up to and including the closing parenthesis of a parameter list
+     * @return <code>true</code> if the text looks like the header of a function definition
+     */
+    private static boolean isFunctionHeader(String text) {
+        final String trimmed = text.trim();
+        if (NOT_A_FUNCTION.matcher(trimmed).matches()) return false;
+        final int paren = trimmed.indexOf('(');
+        if (paren <= 0) return false;
+        final String beforeParameters = trimmed.substring(0, paren);
+        if (beforeParameters.indexOf('=') != -1) return false;
+        return HEADER_NAME.matcher(beforeParameters).matches();
+    }
+
+    private static String normalizeSignature(String header) {
+        return header.replaceAll("\\s+", " ").replaceAll("(\\w) \\(", "$1(").replaceAll("\\( ", "(")
+                .replaceAll(" ([,)])", "$1");
+    }
+}
@@ -0,0 +1,129 @@
+package de.ovgu.skunk.detection.input;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns the conditional directives of a file, given in the order in which they appear, into {@link FeatureLocation
+ * conditional blocks}, the way cppstats does.
+ */
+class ConditionalBlockCollector {
+    private static final Logger LOG = Logger.getLogger(ConditionalBlockCollector.class);
+    private static final Pattern MACRO_NAME = Pattern.compile("\\w+");
+    private static final Pattern NEGATED_DEFINED = Pattern.compile("!\\s*(defined\\s*\\(\\s*\\w+\\s*\\))");
+
+    private final List<FeatureLocation> result = new ArrayList<>();
+    /**
+     * Branches of the open <code>#if</code> directives, innermost last
+     */
+    private final List<List<FeatureLocation>> open = new ArrayList<>();
+
+    /**
+     * @param type the name of the directive: <code>if</code>, <code>ifdef</code>, <code>ifndef</code>,
+     *             <code>elif</code>, <code>else</code> or <code>endif</code>
+     * @param line the line of the directive
+     * @param text the text of the directive, e.g., <code>#ifdef A</code>, possibly spanning several lines
+     */
+    void add(String type, int line, String text) {
+        final String condition = conditionOf(type, text);
+        switch (type) {
+            case "if":
+            case "ifdef":
+            case "ifndef": {
+                final String expression;
+                if (type.equals("ifdef")) expression = "defined(" + macroName(condition) + ")";
+                else if (type.equals("ifndef")) expression = "!defined(" + macroName(condition) + ")";
+                else expression = condition;
+                List<FeatureLocation> branches = new ArrayList<>();
+                open.add(branches);
+                openBranch(branches, line, type, expression);
+                break;
+            }
+            case "elif":
+            case "else": {
+                if (open.isEmpty()) {
+                    LOG.warn("Ignoring #" + type + " without #if in line " + line);
+                    break;
+                }
+                List<FeatureLocation> branches = open.get(open.size() - 1);
+                branches.get(branches.size() - 1).end = line;
+                final String expression;
+                if (type.equals("elif")) {
+                    expression = condition;
+                } else {
+                    StringBuilder negation = new StringBuilder();
+                    for (FeatureLocation branch : branches) {
+                        if (negation.length() > 0) negation.append(" && ");
+                        negation.append(negate(branch.expression));
+                    }
+                    expression = negation.toString();
+                }
+                openBranch(branches, line, type, expression);
+                break;
+            }
+            case "endif": {
+                if (open.isEmpty()) {
+                    LOG.warn("Ignoring #endif without #if in line " + line);
+                    break;
+                }
+                List<FeatureLocation> branches = open.remove(open.size() - 1);
+                branches.get(branches.size() - 1).end = line;
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Not a conditional directive: " + type);
+        }
+    }
+
+    /**
+     * Ends the blocks that are still open, i.e., lack an <code>#endif</code>, at the given line.
+     *
+     * @param lastLine the last line of the file
+     * @return the conditional blocks of the file, ordered by start line
+     */
+    List<FeatureLocation> finish(int lastLine) {
+        for (List<FeatureLocation> branches : open) {
+            FeatureLocation last = branches.get(branches.size() - 1);
+            LOG.warn("Missing #endif for " + last.type + " in line " + last.start);
+            last.end = Math.max(last.start, lastLine);
+        }
+        open.clear();
+        return result;
+    }
+
+    private void openBranch(List<FeatureLocation> branches, int line, String type, String expression) {
+        FeatureLocation location = new FeatureLocation(line, "#" + type, expression);
+        branches.add(location);
+        result.add(location);
+    }
+
+    /**
+     * @param type the name of the directive, e.g., <code>ifdef</code>
+     * @param text the text of the directive, e.g., <code>#ifdef A</code>
+     * @return the text following the name of the directive, on a single line
+     */
+    private static String conditionOf(String type, String text) {
+        String result = text.replace("\\\r\n", " ").replace("\\\n", " ").trim();
+        if (result.startsWith("#")) result = result.substring(1).trim();
+        if (result.startsWith(type)) result = result.substring(type.length());
+        return result.replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * @return the macro name of an <code>#ifdef</code> or <code>#ifndef</code> directive, without trailing comments
+     */
+    private static String macroName(String condition) {
+        Matcher m = MACRO_NAME.matcher(condition);
+        return m.lookingAt() ? m.group() : condition;
+    }
+
+    private static String negate(String expression) {
+        Matcher m = NEGATED_DEFINED.matcher(expression);
+        if (m.matches()) return m.group(1);
+        return "!(" + expression + ")";
+    }
+}
@@ -0,0 +1,219 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.Condition;
+import de.ovgu.skunk.detection.data.ConditionTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the condition of an <code>#if</code> or <code>#elif</code> directive into a {@link Condition}, following the
+ * operator precedence of C.  Comments are ignored.
+ */
+class CppConditionParser {
+    /**
+     * Binary operators other than <code>&amp;&amp;</code> and <code>||</code>, by increasing precedence
+     */
+    private static final String[][] BINARY_OPERATORS = {
+            {"|"}, {"^"}, {"&"}, {"==", "!="}, {"<", ">", "<=", ">="}, {"<<", ">>"}, {"+", "-"}, {"*", "/", "%"}
+    };
+    /**
+     * Punctuators, longer ones before their prefixes
+     */
+    private static final String[] PUNCTUATORS = {
+            "&&", "||", "==", "!=", "<=", ">=", "<<", ">>",
+            "(", ")", ",", "!", "~", "&", "|", "^", "<", ">", "+", "-", "*", "/", "%", "?", ":"
+    };
+    /**
+     * Unary operators other than <code>!</code>
+     */
+    private static final String[] UNARY_OPERATORS = {"~", "-", "+"};
+
+    private final String text;
+    private final ConditionTable table;
+    private final List<String> tokens = new ArrayList<>();
+    private int pos = 0;
+
+    private CppConditionParser(String text, ConditionTable table) {
+        this.text = text;
+        this.table = table;
+    }
+
+    /**
+     * @param text  the condition
+     * @param table the table in which the condition and its symbols are interned
+     * @return the parsed condition
+     * @throws IllegalArgumentException if the condition is malformed
+     */
+    static Condition parse(String text, ConditionTable table) {
+        CppConditionParser parser = new CppConditionParser(text, table);
+        parser.tokenize();
+        if (parser.tokens.isEmpty()) throw new IllegalArgumentException("Empty condition");
+        Condition result = parser.parseConditional();
+        if (parser.pos < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected `" + parser.tokens.get(parser.pos) + "' in condition: "
+                    + text);
+        }
+        return result;
+    }
+
+    private void tokenize() {
+        final int len = text.length();
+        int i = 0;
+        outer:
+        while (i < len) {
+            final char c = text.charAt(i);
+            if (Character.isWhitespace(c) || c == '\\') {
+                i++;
+            } else if (text.startsWith("/*", i)) {
+                int end = text.indexOf("*/", i + 2);
+                i = (end == -1) ? len : end + 2;
+            } else if (text.startsWith("//", i)) {
+                break;
+            } else if (isIdentifierChar(c)) {
+                // Identifiers and numbers, including suffixes such as in `10UL'
+                int start = i;
+                while (i < len && (isIdentifierChar(text.charAt(i)) || text.charAt(i) == '.')) i++;
+                tokens.add(text.substring(start, i));
+            } else if (c == '\'') {
+                int start = i++;
+                while (i < len && text.charAt(i) != '\'') {
+                    if (text.charAt(i) == '\\') i++;
+                    i++;
+                }
+                if (i >= len) throw new IllegalArgumentException("Unterminated character literal in condition: "
+                        + text);
+                tokens.add(text.substring(start, ++i));
+            } else {
+                for (String p : PUNCTUATORS) {
+                    if (text.startsWith(p, i)) {
+                        tokens.add(p);
+                        i += p.length();
+                        continue outer;
+                    }
+                }
+                throw new IllegalArgumentException("Unexpected character `" + c + "' in condition: " + text);
+            }
+        }
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private String peek() {
+        return (pos < tokens.size()) ? tokens.get(pos) : null;
+    }
+
+    private boolean accept(String token) {
+        if (token.equals(peek())) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private String next() {
+        String token = peek();
+        if (token == null) throw new IllegalArgumentException("Unexpected end of condition: " + text);
+        pos++;
+        return token;
+    }
+
+    private void expect(String token) {
+        String actual = next();
+        if (!actual.equals(token)) {
+            throw new IllegalArgumentException("Expected `" + token + "' instead of `" + actual + "' in condition: "
+                    + text);
+        }
+    }
+
+    private Condition parseConditional() {
+        Condition result = parseOr();
+        if (accept("?")) {
+            Condition ifTrue = parseConditional();
+            expect(":");
+            Condition ifFalse = parseConditional();
+            result = table.operator("?:", result, ifTrue, ifFalse);
+        }
+        return result;
+    }
+
+    private Condition parseOr() {
+        Condition result = parseAnd();
+        while (accept("||")) {
+            result = table.or(result, parseAnd());
+        }
+        return result;
+    }
+
+    private Condition parseAnd() {
+        Condition result = parseBinary(0);
+        while (accept("&&")) {
+            result = table.and(result, parseBinary(0));
+        }
+        return result;
+    }
+
+    private Condition parseBinary(int level) {
+        if (level == BINARY_OPERATORS.length) return parseUnary();
+        Condition result = parseBinary(level + 1);
+        String op;
+        while ((op = acceptAny(BINARY_OPERATORS[level])) != null) {
+            result = table.operator(op, result, parseBinary(level + 1));
+        }
+        return result;
+    }
+
+    private String acceptAny(String[] operators) {
+        String token = peek();
+        for (String op : operators) {
+            if (op.equals(token)) {
+                pos++;
+                return op;
+            }
+        }
+        return null;
+    }
+
+    private Condition parseUnary() {
+        if (accept("!")) return table.not(parseUnary());
+        String op = acceptAny(UNARY_OPERATORS);
+        if (op != null) return table.operator(op, parseUnary());
+        return parsePrimary();
+    }
+
+    private Condition parsePrimary() {
+        String token = next();
+        if (token.equals("(")) {
+            Condition result = parseConditional();
+            expect(")");
+            return result;
+        }
+        final char first = token.charAt(0);
+        if (first == '\'' || Character.isDigit(first)) return table.number(token);
+        if (!isIdentifierChar(first)) {
+            throw new IllegalArgumentException("Unexpected `" + token + "' in condition: " + text);
+        }
+        if (token.equals("defined")) {
+            boolean parenthesized = accept("(");
+            String name = next();
+            if (!isIdentifierChar(name.charAt(0)) || Character.isDigit(name.charAt(0))) {
+                throw new IllegalArgumentException("Expected a macro name after `defined' in condition: " + text);
+            }
+            if (parenthesized) expect(")");
+            return table.defined(table.symbol(name));
+        }
+        if (accept("(")) {
+            List<Condition> arguments = new ArrayList<>();
+            if (!accept(")")) {
+                do {
+                    arguments.add(parseConditional());
+                } while (accept(","));
+                expect(")");
+            }
+            return table.call(table.symbol(token), arguments.toArray(new Condition[0]));
+        }
+        return table.macro(table.symbol(token));
+    }
+}
@@ -0,0 +1,181 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.Condition;
+import de.ovgu.skunk.detection.data.ConditionTable;
+import org.apache.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The features mentioned in the condition of a preprocessor directive, as given in the <code>EXPRESSION</code> column
+ * of <code>cppstats_featurelocations.csv</code>, each with a flag telling whether it is negated.  Instances are
+ * immutable, so that the result of parsing an expression can be shared by all directives with the same expression, see
+ * {@link Cache}.
+ * <p>
+ * The condition is split into words made up of letters, digits, underscores and exclamation marks.  A word containing
+ * an exclamation mark negates the next feature.  Words that contain <code>defined</code> or start with a digit or an
+ * exclamation mark are not features.  Comments are ignored: block comments up to their end, line comments
+ * (<code>//</code>) up to the end of the condition.
+ */
+public final class CppStatsConditionFeatures {
+    private static Logger LOG = Logger.getLogger(CppStatsConditionFeatures.class);
+    private static final String DEFINED = "defined";
+    private static final String[] NO_NAMES = new String[0];
+    private static final boolean[] NO_FLAGS = new boolean[0];
+
+    private final String[] names;
+    private final boolean[] negated;
+    /**
+     * The parsed condition, or <code>null</code>
+     */
+    private Condition condition;
+
+    private CppStatsConditionFeatures(String[] names, boolean[] negated) {
+        this.names = names;
+        this.negated = negated;
+    }
+
+    /**
+     * Remembers the features of the conditions parsed so far, so that each distinct condition is parsed only once.
+     * Not thread-safe.
+     */
+    public static class Cache {
+        private final Map<String, CppStatsConditionFeatures> featuresByCondition = new HashMap<>();
+        private final ConditionTable table;
+
+        /**
+         * @param table the table in which the parsed conditions are interned, or <code>null</code> if conditions need
+         *              not be parsed
+         */
+        public Cache(ConditionTable table) {
+            this.table = table;
+        }
+
+        /**
+         * @param condition the condition of a preprocessor directive
+         * @return the features of the condition, shared with all previous calls for the same condition
+         */
+        public CppStatsConditionFeatures get(String condition) {
+            CppStatsConditionFeatures result = featuresByCondition.get(condition);
+            if (result == null) {
+                result = parse(condition);
+                if (table != null) result.condition = parseCondition(condition, table);
+                featuresByCondition.put(condition, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @param condition the condition of a preprocessor directive
+     * @return the features of the condition
+     */
+    public static CppStatsConditionFeatures parse(String condition) {
+        String[] names = NO_NAMES;
+        boolean[] negated = NO_FLAGS;
+        int numFeatures = 0;
+        boolean notFlag = false;
+        final int len = condition.length();
+        int i = 0;
+        while (i < len) {
+            final char c = condition.charAt(i);
+            if (c == '/' && i + 1 < len && condition.charAt(i + 1) == '*') {
+                int end = condition.indexOf("*/", i + 2);
+                i = (end == -1) ? len : end + 2;
+                continue;
+            }
+            if (c == '/' && i + 1 < len && condition.charAt(i + 1) == '/') {
+                // line comment, nothing after it belongs to the condition
+                break;
+            }
+            if (!isWordChar(c)) {
+                i++;
+                continue;
+            }
+            final int start = i;
+            boolean containsNot = false;
+            while (i < len && isWordChar(condition.charAt(i))) {
+                if (condition.charAt(i) == '!') containsNot = true;
+                i++;
+            }
+            if (containsNot) notFlag = true;
+            if (containsDefined(condition, start, i) || Character.isDigit(c) || c == '!') continue;
+            if (numFeatures == names.length) {
+                names = Arrays.copyOf(names, Math.max(2, 2 * numFeatures));
+                negated = Arrays.copyOf(negated, names.length);
+            }
+            names[numFeatures] = condition.substring(start, i);
+            negated[numFeatures] = notFlag;
+            numFeatures++;
+            notFlag = false;
+        }
+        return new CppStatsConditionFeatures(Arrays.copyOf(names, numFeatures), Arrays.copyOf(negated, numFeatures));
+    }
+
+    private static Condition parseCondition(String condition, ConditionTable table) {
+        try {
+            return CppConditionParser.parse(condition, table);
+        } catch (IllegalArgumentException e) {
+            LOG.debug("Cannot parse condition `" + condition + "': " + e.getMessage());
+            return table.unknown(condition.trim());
+        }
+    }
+
+    /**
+     * Same as the regular expression character class <code>[\w!]</code>
+     */
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '!';
+    }
+
+    private static boolean containsDefined(String s, int start, int end) {
+        final int last = end - DEFINED.length();
+        for (int i = start; i <= last; i++) {
+            if (s.startsWith(DEFINED, i)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the parsed condition, or <code>null</code> if it was not parsed, see {@link Cache#Cache(ConditionTable)}
+     */
+    public Condition getCondition() {
+        return condition;
+    }
+
+    /**
+     * @return the number of features, counting features mentioned more than once repeatedly
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @param i index of a feature, in the order in which the features are mentioned
+     * @return the name of the feature
+     */
+    public String getName(int i) {
+        return names[i];
+    }
+
+    /**
+     * @param i index of a feature, in the order in which the features are mentioned
+     * @return <code>true</code> iff the feature is negated
+     */
+    public boolean isNegated(int i) {
+        return negated[i];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) result.append(", ");
+            if (negated[i]) result.append('!');
+            result.append(names[i]);
+        }
+        return result.append(']').toString();
+    }
+}
@@ -1,13 +1,11 @@
 package de.ovgu.skunk.detection.input;
 
+import de.ovgu.skunk.detection.data.Condition;
 import de.ovgu.skunk.detection.data.Context;
 import de.ovgu.skunk.detection.data.FeatureReference;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * The Class CppStatsFeatureConstant.
@@ -25,6 +23,10 @@ public class CppStatsFeatureConstant {
     public int end;
 
     public CppStatsFeatureConstant parent;
+    /**
+     * The parsed condition of the directive, or <code>null</code>
+     */
+    public Condition condition;
 
     /**
      * Instantiates a new feature location.
@@ -38,6 +40,22 @@ public class CppStatsFeatureConstant {
      * @param parent   the parent
      */
     public CppStatsFeatureConstant(Context ctx, String entry, String filePath, String type, int start, int end, CppStatsFeatureConstant parent) {
+        this(ctx, CppStatsConditionFeatures.parse(entry), filePath, type, start, end, parent);
+    }
+
+    /**
+     * Instantiates a new feature location.
+     *
+     * @param ctx       VARISCAN Context holding global data
+     * @param condition the features of the entry
+     * @param filePath  the file path
+     * @param type      the type
+     * @param start     the start1
+     * @param end       the end1
+     * @param parent    the parent
+     */
+    public CppStatsFeatureConstant(Context ctx, CppStatsConditionFeatures condition, String filePath, String type,
+                                   int start, int end, CppStatsFeatureConstant parent) {
         this.ctx = ctx;
         this.filePath = filePath;
         this.type = type;
@@ -46,12 +64,16 @@ public class CppStatsFeatureConstant {
         this.end = end;
 
         this.parent = parent;
+        this.condition = condition.getCondition();
 
         // get features from entry
-        this.featureExpressions = new LinkedList<>();
-        this.notFlags = new LinkedList<>();
-
-        this.getFeaturesFromEntry(entry);
+        final int numFeatures = condition.size();
+        this.featureExpressions = new ArrayList<>(numFeatures);
+        this.notFlags = new ArrayList<>(numFeatures);
+        for (int i = 0; i < numFeatures; i++) {
+            this.featureExpressions.add(condition.getName(i));
+            this.notFlags.add(condition.isNegated(i));
+        }
 
         // remove features from parent;
         if (parent != null)
@@ -72,6 +94,7 @@ public class CppStatsFeatureConstant {
             // end1-1 = #endif does not belong to lines of code????
             FeatureReference ref = new FeatureReference(this.filePath, this.start, this.end, stackSize,
                     this.notFlags.get(this.featureExpressions.indexOf(featureName)));
+            ref.condition = this.condition;
             ctx.featureExpressions.InternFeature(featureName).AddReference(ref);
 
             // remember created locations for combinations
@@ -86,52 +109,6 @@ public class CppStatsFeatureConstant {
             }
     }
 
-    /**
-     * Gets the features from the entry
-     *
-     * @param entry the entry
-     * @return the features from entry
-     */
-    private void getFeaturesFromEntry(String entry) {
-        // remove comments from entry
-        final int commentStart = entry.indexOf("/*");
-        if (commentStart != -1) {
-            String comment = entry.substring(commentStart, entry.indexOf("*/", commentStart + 2) + 2);
-            entry = entry.replace(comment, "");
-        }
-
-        Pattern pattern = Pattern.compile("[\\w!]+");
-        Matcher matcher = pattern.matcher(entry);
-
-        // get each feature from entry
-        boolean notFlag = false;
-        while (matcher.find()) {
-            String match = matcher.group();
-
-            // set notFlag and replace !
-            if (match.contains("!"))
-                notFlag = true;
-
-            // defined is not a feature
-            if (match.contains("defined"))
-                continue;
-
-                // numbers only, or it begins with a number --> version numbers or whatever
-            else if (match.matches("(\\d)+$") || Character.isDigit(match.charAt(0)) || match.charAt(0) == '!')
-                continue;
-
-            // save feature expression and save boolean
-            this.featureExpressions.add(match);
-
-            if (notFlag) {
-                this.notFlags.add(true);
-                notFlag = false;
-            } else
-                this.notFlags.add(false);
-
-        }
-    }
-
     /**
      * Removes features that are already included in the parent.
      *
@@ -139,8 +116,8 @@ public class CppStatsFeatureConstant {
      */
     private void removeFeaturesFromParents(final CppStatsFeatureConstant parent) {
         // get features that are in both collection
-        List<String> toRemove = new LinkedList<>();
-        List<Boolean> toRemoveFlags = new LinkedList<>();
+        List<String> toRemove = new ArrayList<>();
+        List<Boolean> toRemoveFlags = new ArrayList<>();
 
         // remove features that are already included in of the item's parents
         CppStatsFeatureConstant nextParent = parent;
@@ -2,19 +2,28 @@ package de.ovgu.skunk.detection.input;
 
 import de.ovgu.skunk.detection.data.Context;
 import de.ovgu.skunk.util.FileUtils;
+import de.ovgu.skunk.util.MappedInput;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 
+import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
-import java.util.Stack;
+import java.util.List;
 
 /**
- * The Class CppStatsFolderReader for reading and processing csv files.
+ * The Class CppStatsFolderReader for reading and processing csv files.  If the folder contains no
+ * <code>cppstats_featurelocations.csv</code> file, the feature locations are extracted from the srcML files listed in
+ * <code>cppstats.csv</code> instead, see {@link SrcMlFeatureLocationReader}.
  */
 public class CppStatsFolderReader {
+    /**
+     * Name of the phase in which srcML files are read for feature locations, see {@link Context#inputStatistics}
+     */
+    public static final String FEATURE_LOCATIONS_INPUT_PHASE = "srcML files for feature locations";
     private final Context ctx;
 
     /**
@@ -37,14 +46,39 @@ public class CppStatsFolderReader {
      * Processes all CppStatsFiles
      */
     public void ProcessFiles() {
+        ProcessFiles(1);
+    }
+
+    /**
+     * Processes all CppStatsFiles.  The files mentioned in the CSV files are read in the background while the CSV
+     * files are parsed, using the given number of threads.
+     *
+     * @param numThreads number of threads to use for reading source files; if 1, everything is done on the calling
+     *                   thread
+     */
+    public void ProcessFiles(int numThreads) {
         System.out.println("Processing CppStats CSV files in folder "
                 + FileUtils.relPathForDisplay(pathToCppStatsFolder) + " ...");
-        // this.getFeatureNames(new File(this.pathToCppStatsFolder +
-        // "/merged_scattering_degrees.csv"));
-        this.getFeatureConstants(new File(this.pathToCppStatsFolder + "/cppstats_featurelocations.csv"));
-        this.internRemainingFilesAndCalculateProjectLoc(new File(this.pathToCppStatsFolder + "/cppstats.csv"));
+        ctx.files.StartScanning(numThreads);
+        try {
+            // this.getFeatureNames(new File(this.pathToCppStatsFolder +
+            // "/merged_scattering_degrees.csv"));
+            File featureLocationsCsv = new File(this.pathToCppStatsFolder + "/cppstats_featurelocations.csv");
+            if (featureLocationsCsv.exists()) {
+                this.getFeatureConstants(featureLocationsCsv);
+                this.internRemainingFilesAndCalculateProjectLoc(new File(this.pathToCppStatsFolder + "/cppstats.csv"));
+            } else {
+                // Without cppstats' feature location analysis, we get the same information from the srcML files.
+                this.internRemainingFilesAndCalculateProjectLoc(new File(this.pathToCppStatsFolder + "/cppstats.csv"));
+                this.extractFeatureConstantsFromSrcMl();
+            }
+            ctx.files.FinishScanning();
+        } finally {
+            ctx.files.StopScanning();
+        }
         System.out.println("... CppStats processing done. Found (non-header) " + ctx.files.AllFiles().size()
-                + " source files.");
+                + " source files. Read "
+                + ctx.inputStatistics.describe(de.ovgu.skunk.detection.data.File.EMPTY_LINES_INPUT_PHASE) + ".");
     }
 
     /**
@@ -54,71 +88,59 @@ public class CppStatsFolderReader {
      */
     private void getFeatureConstants(File csvFile) {
         System.out.print("... getting feature position metrics  ...");
+        FeatureConstantStack constants = new FeatureConstantStack(ctx);
         try {
-            Stack<CppStatsFeatureConstant> constants = new Stack<>();
             CSVParser parser = CSVParser.parse(csvFile, Charset.defaultCharset(), CSVFormat.DEFAULT);
             for (CSVRecord rec : parser) {
                 // first lines are not necessary
                 if ((rec.get(0).equals("sep=,")) || (rec.get(0).equals("FILENAME")))
                     continue;
-                else {
-                    // assemble feature information
-                    String filePath = rec.get(0);
-                    // don't use header files
-                    if (filePath.endsWith(".h.xml")) {
-                        continue;
-                    }
-                    ctx.files.InternFile(filePath);
-                    int start = Integer.parseInt(rec.get(1));
-                    int end = Integer.parseInt(rec.get(2));
-                    String type = rec.get(3);
-                    String entry = rec.get(4);
-                    // if file changes, empty stack and save all information
-                    if ((constants.size() > 0) && (!constants.peek().filePath.equals(filePath))) {
-                        while (constants.size() > 0)
-                            constants.pop().SaveFeatureConstantInformation(constants.size() + 1);
-                    }
-                    // if stack is empty, add feature constant without parent
-                    if (constants.size() == 0) {
-                        CppStatsFeatureConstant constant = new CppStatsFeatureConstant(ctx, entry, filePath, type, start,
-                                end, null);
-                        if (constant.featureExpressions.size() != 0) constants.push(constant);
-                    } else {
-                        // if end1 of top element is bigger than start1, the
-                        // current element is nested in the top element --> push
-                        // on stack
-                        if (constants.peek().end > start) {
-                            CppStatsFeatureConstant constant = new CppStatsFeatureConstant(ctx, entry, filePath, type, start,
-                                    end, constants.peek());
-                            if (constant.featureExpressions.size() != 0) constants.push(constant);
-                        } else {
-                            // save feature constant if the endline of the top
-                            // element is lower than the curent start1 location
-                            while ((constants.size() > 0) && (constants.peek().end <= start))
-                                constants.pop().SaveFeatureConstantInformation(constants.size() + 1);
-                            // item has to be put on stack, use top as reference
-                            // for current feature constant, else push first
-                            // element
-                            if (constants.size() > 0) {
-                                CppStatsFeatureConstant fl = new CppStatsFeatureConstant(ctx, entry, filePath, type, start,
-                                        end, constants.peek());
-                                if (fl.featureExpressions.size() != 0) constants.push(fl);
-                            } else {
-                                CppStatsFeatureConstant fl = new CppStatsFeatureConstant(ctx, entry, filePath, type, start,
-                                        end, null);
-                                if (fl.featureExpressions.size() != 0) constants.push(fl);
-                            }
-                        }
-                    }
+                // assemble feature information
+                // Share one path string among all references to the same file
+                String filePath = ctx.internFilePath(rec.get(0)).actualPath;
+                // don't use header files
+                if (filePath.endsWith(".h.xml")) {
+                    continue;
                 }
+                ctx.files.InternFile(filePath);
+                constants.add(filePath, Integer.parseInt(rec.get(1)), Integer.parseInt(rec.get(2)), rec.get(3),
+                        rec.get(4));
             }
-            // if there is still an element
-            while (constants.size() > 0)
-                constants.pop().SaveFeatureConstantInformation(constants.size() + 1);
         } catch (IOException e) {
             throw new RuntimeException("Failed to read feature constants from CSV file " + csvFile.getAbsolutePath(),
                     e);
         }
+        constants.finish();
+        ctx.featureExpressions.PostAction();
+        System.out.println(" done.");
+    }
+
+    /**
+     * Get feature constants and lofc from the preprocessor directives in the srcML files of all (non-header) files
+     * known so far.  Yields the same feature constants as {@link #getFeatureConstants(File)} would for the
+     * <code>cppstats_featurelocations.csv</code> file of the same srcML files.
+     */
+    private void extractFeatureConstantsFromSrcMl() {
+        System.out.print("... extracting feature position metrics from srcML files ...");
+        FeatureConstantStack constants = new FeatureConstantStack(ctx);
+        SrcMlFeatureLocationReader reader = new SrcMlFeatureLocationReader();
+        for (de.ovgu.skunk.detection.data.File file : ctx.files.AllFiles()) {
+            final String filePath = file.filePath;
+            if (filePath.endsWith(".h.xml")) continue;
+            List<FeatureLocation> locations;
+            try (InputStream is = MappedInput.open(filePath, ctx.inputStatistics, FEATURE_LOCATIONS_INPUT_PHASE)
+                    .openStream()) {
+                locations = reader.read(is);
+            } catch (IOException e) {
+                throw new RuntimeException("I/O exception reading srcML file " + filePath, e);
+            } catch (XMLStreamException e) {
+                throw new RuntimeException("Cannot parse srcML file " + filePath, e);
+            }
+            for (FeatureLocation loc : locations) {
+                constants.add(filePath, loc.start, loc.end, loc.type, loc.expression);
+            }
+        }
+        constants.finish();
         ctx.featureExpressions.PostAction();
         System.out.println(" done.");
     }
@@ -0,0 +1,71 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.Context;
+
+import java.util.Stack;
+
+/**
+ * Turns the rows of <code>cppstats_featurelocations.csv</code>, or the equivalent information extracted from
+ * srcML, into feature constants.  Rows must be added file by file, each file's rows in the order of their start
+ * lines.
+ */
+class FeatureConstantStack {
+    private final Context ctx;
+    private final Stack<CppStatsFeatureConstant> constants = new Stack<>();
+    // The same conditions appear over and over again, so each is parsed only once.
+    private final CppStatsConditionFeatures.Cache conditions;
+
+    FeatureConstantStack(Context ctx) {
+        this.ctx = ctx;
+        this.conditions = new CppStatsConditionFeatures.Cache(ctx.conditions);
+    }
+
+    void add(String filePath, int start, int end, String type, String expression) {
+        CppStatsConditionFeatures condition = conditions.get(expression);
+        // Directives without features still contribute to the presence conditions of nested lines
+        ctx.presenceConditions.AddDirective(filePath, type, start, end, condition.getCondition());
+        // if file changes, empty stack and save all information
+        if ((constants.size() > 0) && (!constants.peek().filePath.equals(filePath))) {
+            while (constants.size() > 0)
+                constants.pop().SaveFeatureConstantInformation(constants.size() + 1);
+        }
+        // if stack is empty, add feature constant without parent
+        if (constants.size() == 0) {
+            CppStatsFeatureConstant constant = new CppStatsFeatureConstant(ctx, condition, filePath, type, start,
+                    end, null);
+            if (constant.featureExpressions.size() != 0) constants.push(constant);
+        } else {
+            // if end1 of top element is bigger than start1, the
+            // current element is nested in the top element --> push
+            // on stack
+            if (constants.peek().end > start) {
+                CppStatsFeatureConstant constant = new CppStatsFeatureConstant(ctx, condition, filePath, type, start,
+                        end, constants.peek());
+                if (constant.featureExpressions.size() != 0) constants.push(constant);
+            } else {
+                // save feature constant if the endline of the top
+                // element is lower than the curent start1 location
+                while ((constants.size() > 0) && (constants.peek().end <= start))
+                    constants.pop().SaveFeatureConstantInformation(constants.size() + 1);
+                // item has to be put on stack, use top as reference
+                // for current feature constant, else push first
+                // element
+                if (constants.size() > 0) {
+                    CppStatsFeatureConstant fl = new CppStatsFeatureConstant(ctx, condition, filePath, type, start,
+                            end, constants.peek());
+                    if (fl.featureExpressions.size() != 0) constants.push(fl);
+                } else {
+                    CppStatsFeatureConstant fl = new CppStatsFeatureConstant(ctx, condition, filePath, type, start,
+                            end, null);
+                    if (fl.featureExpressions.size() != 0) constants.push(fl);
+                }
+            }
+        }
+    }
+
+    void finish() {
+        // if there is still an element
+        while (constants.size() > 0)
+            constants.pop().SaveFeatureConstantInformation(constants.size() + 1);
+    }
+}
@@ -0,0 +1,38 @@
+package de.ovgu.skunk.detection.input;
+
+/**
+ * A conditional block, i.e., one branch of an <code>#if</code>, corresponding to one row of
+ * <code>cppstats_featurelocations.csv</code>
+ */
+public class FeatureLocation {
+    /**
+     * Line of the directive starting the block
+     */
+    public final int start;
+    /**
+     * Line of the directive ending the block, i.e., of the next <code>#elif</code>, <code>#else</code> or
+     * <code>#endif</code> of the same <code>#if</code>
+     */
+    public int end;
+    /**
+     * The directive starting the block, e.g., <code>#ifdef</code>
+     */
+    public final String type;
+    /**
+     * The condition of the block.  For <code>#else</code> blocks, this is the conjunction of the negated conditions
+     * of the preceding branches.
+     */
+    public final String expression;
+
+    FeatureLocation(int start, String type, String expression) {
+        this.start = start;
+        this.end = -1;
+        this.type = type;
+        this.expression = expression;
+    }
+
+    @Override
+    public String toString() {
+        return start + "," + end + "," + type + "," + expression;
+    }
+}
@@ -0,0 +1,80 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.FeatureReference;
+import de.ovgu.skunk.detection.data.Method;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The line ranges of the function definitions of a file, for finding the functions containing feature references.
+ * Functions must be ordered by start line and must not overlap, which is what
+ * {@link SrcMlFolderReader#adjustImprobableFunctionEndPositions(Method[])} ensures.  Alternative definitions of the
+ * same function occupy different lines and are, therefore, told apart.
+ */
+class FunctionIntervals {
+    private final Method[] functions;
+    private final int[] starts;
+    private final int[] ends;
+
+    /**
+     * @param functionsByStartPos the function definitions of a file, ordered by start line
+     */
+    FunctionIntervals(Method[] functionsByStartPos) {
+        this.functions = functionsByStartPos;
+        final int n = functionsByStartPos.length;
+        this.starts = new int[n];
+        this.ends = new int[n];
+        for (int i = 0; i < n; i++) {
+            starts[i] = functionsByStartPos[i].start1;
+            ends[i] = functionsByStartPos[i].end1;
+        }
+    }
+
+    /**
+     * Finds the function containing the directive of each reference in a single merge of the references and the
+     * functions, both ordered by start line.
+     *
+     * @param references feature references of the file, usually ordered by start line
+     * @return for each reference, the function whose lines include the reference's directive, or <code>null</code>
+     */
+    Method[] enclosingFunctions(List<FeatureReference> references) {
+        final int numRefs = references.size();
+        Method[] result = new Method[numRefs];
+        if (functions.length == 0 || numRefs == 0) return result;
+        final int[] order = orderByStart(references);
+        int f = 0;
+        for (int i = 0; i < numRefs; i++) {
+            final int ix = (order == null) ? i : order[i];
+            final int line = references.get(ix).start;
+            while (f < functions.length && ends[f] < line) f++;
+            if (f == functions.length) break;
+            if (starts[f] <= line) result[ix] = functions[f];
+        }
+        return result;
+    }
+
+    /**
+     * @return the indexes of the references ordered by start line, or <code>null</code> if the references are already
+     * in that order
+     */
+    private static int[] orderByStart(List<FeatureReference> references) {
+        final int numRefs = references.size();
+        boolean sorted = true;
+        for (int i = 1; sorted && i < numRefs; i++) {
+            sorted = references.get(i - 1).start <= references.get(i).start;
+        }
+        if (sorted) return null;
+        // Sort start lines and indexes together, packed into longs
+        long[] keys = new long[numRefs];
+        for (int i = 0; i < numRefs; i++) {
+            keys[i] = ((long) references.get(i).start << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] result = new int[numRefs];
+        for (int i = 0; i < numRefs; i++) {
+            result[i] = (int) keys[i];
+        }
+        return result;
+    }
+}
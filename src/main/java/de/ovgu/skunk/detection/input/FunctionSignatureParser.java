@@ -26,15 +26,22 @@ public class FunctionSignatureParser {
 
     private static final ThreadLocal<XPath> tlXPath = ThreadLocal.withInitial(() -> XPathFactory.newInstance().newXPath());
 
-    private final String functionNodeTextContent;
+    /**
+     * Text content of the whole function node, including its body.  Only computed if needed, see
+     * {@link #getFunctionNodeTextContent()}.
+     */
+    private String functionNodeTextContent = null;
     private final Node functionNode;
     private final FilePath filePath;
     StringBuilder result;
     boolean debugParseExceptions = false;
+    /**
+     * Whether nodes are located by evaluating XPath expressions, even if walking the child nodes would do
+     */
+    private boolean alwaysUseXPath = false;
 
     public FunctionSignatureParser(Node functionNode, FilePath filePath) {
         this.functionNode = functionNode;
-        this.functionNodeTextContent = functionNode.getTextContent();
         this.filePath = filePath;
         if (LOG.isDebugEnabled()) {
             enableDebugParseExceptions();
@@ -48,6 +55,15 @@ public class FunctionSignatureParser {
         this.debugParseExceptions = true;
     }
 
+    /**
+     * Makes the parser locate nodes and determine the text preceding the function body the way it did before it
+     * learned to walk the DOM itself: by evaluating XPath expressions and by copying the text content of the whole
+     * function.  This is much slower, but should yield the same results.  Meant for differential testing.
+     */
+    void enableXPathOnly() {
+        this.alwaysUseXPath = true;
+    }
+
     /**
      * Parses K&R-style function definitions, such as
      * <p>
@@ -234,13 +250,15 @@ public class FunctionSignatureParser {
         return lastNode;
     }
 
-    private ParsedFunctionSignature parseFunctionSignatureQuickAndDirty() {
-        // get the text content of the node (signature + method content),
-        // and remove method content until beginning of block
+    /**
+     * @param textBeforeBody text of the function definition up to, but excluding, the first <code>{</code>, or
+     *                       <code>null</code> if the function contains no <code>{</code>
+     */
+    private ParsedFunctionSignature parseFunctionSignatureQuickAndDirty(String textBeforeBody) {
+        // remove method content until beginning of block
         //deleteComments();
         final String noBodyResult;
-        final int openBraceIx = functionNodeTextContent.indexOf('{');
-        if (openBraceIx == -1) {
+        if (textBeforeBody == null) {
             /*
              * This warning will also be triggered by K&R-style function definitions, such as
              *
@@ -267,13 +285,30 @@ public class FunctionSignatureParser {
              *     </decl_stmt>
              * </function>
              */
+            final String textContent = getFunctionNodeTextContent();
             LOG.warn("Encountered strange function node (no opening `{' found) at " +
                     funcLocForReporting() +
-                    ": " + functionNodeTextContent);
-            noBodyResult = functionNodeTextContent;
+                    ": " + textContent);
+            noBodyResult = textContent;
         } else {
-            noBodyResult = functionNodeTextContent.substring(0, openBraceIx);
+            noBodyResult = textBeforeBody;
         }
+
+        int cStartLoc = FunctionSignatureParser.parseFunctionStartLoc(functionNode);
+
+        return parseSignatureFromTextBeforeBody(noBodyResult, cStartLoc);
+    }
+
+    /**
+     * Parses a function signature from the text of a function definition that precedes the opening brace of the
+     * function's body.  This is what the parser falls back to if the signature cannot be parsed from the srcML
+     * elements of the function.  It only needs the text, not the XML node.
+     *
+     * @param noBodyResult text of the function definition up to, but excluding, the first <code>{</code>
+     * @param cStartLoc    line of the function definition in the C file, counted from 1
+     * @return the function's signature
+     */
+    public static ParsedFunctionSignature parseSignatureFromTextBeforeBody(String noBodyResult, int cStartLoc) {
         // Delete line and block comments (yeah, there are some cases where these are part of the function signature ...)
         String noComments = removeComments(noBodyResult, true);
 
@@ -283,8 +318,6 @@ public class FunctionSignatureParser {
             loc = 1;
         }
 
-        int cStartLoc = FunctionSignatureParser.parseFunctionStartLoc(functionNode);
-
         return postProcessSignature(noComments, cStartLoc, loc);
     }
 
@@ -474,11 +507,16 @@ public class FunctionSignatureParser {
 //    }
 
     public ParsedFunctionSignature parseFunctionSignature() {
-        // get the text content of the node (signature + method content),
-        // and remove method content until beginning of block
-
-        final int openBraceIx = functionNodeTextContent.indexOf('{');
-        if (openBraceIx == -1) {
+        // get the text of the node up to the beginning of the body
+        final String textBeforeBody;
+        if (alwaysUseXPath) {
+            final String textContent = getFunctionNodeTextContent();
+            final int openBraceIx = textContent.indexOf('{');
+            textBeforeBody = (openBraceIx == -1) ? null : textContent.substring(0, openBraceIx);
+        } else {
+            textBeforeBody = textBeforeFirstOpenBrace(functionNode);
+        }
+        if (textBeforeBody == null) {
             /*
              * This may happen for K&R-style function definitions, such as
              *
@@ -500,7 +538,50 @@ public class FunctionSignatureParser {
             }
         }
 
-        return parseFunctionSignatureQuickAndDirty();
+        return parseFunctionSignatureQuickAndDirty(textBeforeBody);
+    }
+
+    private String getFunctionNodeTextContent() {
+        if (functionNodeTextContent == null) {
+            functionNodeTextContent = functionNode.getTextContent();
+        }
+        return functionNodeTextContent;
+    }
+
+    /**
+     * Walks the text nodes below the given node in document order up to the first <code>{</code>, which usually
+     * starts the function's <code>&lt;block&gt;</code>.  Unlike {@link Node#getTextContent()}, this does not copy
+     * the function body.
+     *
+     * @param root a function node
+     * @return the text content of the node up to, but excluding, the first <code>{</code>, or <code>null</code> if
+     * the text content contains no <code>{</code>
+     */
+    static String textBeforeFirstOpenBrace(Node root) {
+        StringBuilder text = new StringBuilder();
+        Node n = root.getFirstChild();
+        while (n != null) {
+            final short type = n.getNodeType();
+            if ((type == Node.TEXT_NODE) || (type == Node.CDATA_SECTION_NODE)) {
+                final String value = n.getNodeValue();
+                final int openBraceIx = value.indexOf('{');
+                if (openBraceIx != -1) {
+                    text.append(value, 0, openBraceIx);
+                    return text.toString();
+                }
+                text.append(value);
+            } else if ((type == Node.ELEMENT_NODE) && (n.getFirstChild() != null)) {
+                n = n.getFirstChild();
+                continue;
+            }
+            // Advance to the next node in document order, without leaving the subtree of the root
+            while (n.getNextSibling() == null) {
+                n = n.getParentNode();
+                if (n == root) return null;
+            }
+            n = n.getNextSibling();
+        }
+        return null;
     }
 
     private void deleteFunctionBody(Node node) {
@@ -567,7 +648,7 @@ public class FunctionSignatureParser {
         return result.toString();
     }
 
-    private ParsedFunctionSignature postProcessSignature(String signature, int cStartLoc, int loc) {
+    private static ParsedFunctionSignature postProcessSignature(String signature, int cStartLoc, int loc) {
         // Squeeze multiple space signs into a single space
         String trimmed = normalizeWhitespace(signature);
         // Determine start location
@@ -678,6 +759,12 @@ public class FunctionSignatureParser {
     }
 
     private Optional<Node> getOptionalNode(Node nodeOfInterest, String xpathExpression) throws FunctionSignatureParseException {
+        final String[] childPath = alwaysUseXPath ? null : parseChildPath(xpathExpression);
+        if (childPath != null) {
+            List<Node> matches = new ArrayList<>(1);
+            collectChildPath(nodeOfInterest, childPath, 0, matches, true);
+            return matches.isEmpty() ? Optional.empty() : Optional.of(matches.get(0));
+        }
         Node result = null;
         try {
             result = (Node) ensureXPath().evaluate(xpathExpression, nodeOfInterest, XPathConstants.NODE);
@@ -694,6 +781,12 @@ public class FunctionSignatureParser {
     }
 
     private List<Node> getPossiblyEmptyNodeList(Node nodeOfInterest, String xpathExpression) throws FunctionSignatureParseException {
+        final String[] childPath = alwaysUseXPath ? null : parseChildPath(xpathExpression);
+        if (childPath != null) {
+            List<Node> matches = new ArrayList<>();
+            collectChildPath(nodeOfInterest, childPath, 0, matches, false);
+            return matches;
+        }
         NodeList result = null;
         try {
             result = (NodeList) ensureXPath().evaluate(xpathExpression,
@@ -717,6 +810,45 @@ public class FunctionSignatureParser {
         return resultList;
     }
 
+    /**
+     * @param xpathExpression an XPath expression
+     * @return the element names of the expression if it is of the form <code>./a/b/...</code>, i.e., if it selects
+     * child elements by name only, or <code>null</code> if the expression has to be evaluated by an XPath processor
+     */
+    private static String[] parseChildPath(String xpathExpression) {
+        if (!xpathExpression.startsWith("./")) return null;
+        final String[] steps = xpathExpression.substring(2).split("/", -1);
+        for (String step : steps) {
+            if (step.isEmpty()) return null;
+            for (int i = 0; i < step.length(); i++) {
+                final char c = step.charAt(i);
+                if (!Character.isLetterOrDigit(c) && (c != '_') && (c != '-')) return null;
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Collects the elements selected by a path of child element names, in document order, as XPath would.
+     *
+     * @return <code>true</code> iff collecting can stop because <code>firstOnly</code> is set and a match was found
+     */
+    private static boolean collectChildPath(Node context, String[] steps, int stepIx, List<Node> result,
+                                            boolean firstOnly) {
+        final String name = steps[stepIx];
+        final boolean lastStep = (stepIx == steps.length - 1);
+        for (Node child = context.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if ((child.getNodeType() != Node.ELEMENT_NODE) || !name.equals(child.getNodeName())) continue;
+            if (lastStep) {
+                result.add(child);
+                if (firstOnly) return true;
+            } else if (collectChildPath(child, steps, stepIx + 1, result, firstOnly)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private String funcLocForReporting() {
         int startLoc = parseFunctionStartLoc(functionNode);
         return filePath.pathKey + ":" + startLoc;
@@ -733,6 +865,14 @@ public class FunctionSignatureParser {
 
     private static int get1BasedNodeLineNumber(Node node) {
         int xmlStartLoc = PositionalXmlReader.getElementLineNumberAsIs((Element) node);
+        return cLineNumberFromLineNumberAsIs(xmlStartLoc);
+    }
+
+    /**
+     * @param xmlStartLoc line number of an element within the srcML file, as reported by the XML parser
+     * @return the corresponding line number within the C file, counted from 1
+     */
+    public static int cLineNumberFromLineNumberAsIs(int xmlStartLoc) {
         // The srcML representation starts with a one-line XML declaration, which we subtract here.
         return xmlStartLoc - 1;
     }
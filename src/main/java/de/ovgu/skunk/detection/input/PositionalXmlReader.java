@@ -24,15 +24,22 @@ public class PositionalXmlReader {
      * The Constant LINE_NUMBER_KEY_NAME.
      */
     private final static String LINE_NUMBER_KEY_NAME = "lineNumber";
-    private SAXParser parser;
-    private DocumentBuilder docBuilder;
-    private Document doc;
+    /**
+     * SAX parsers and DOM builders are not thread-safe.  Hence, each thread gets its own.  They are shared by all
+     * readers so that projects analyzed one after the other in batch mode do not create them again.
+     */
+    private static final ThreadLocal<SAXParser> tlParser = ThreadLocal.withInitial(PositionalXmlReader::newSaxParser);
+    private static final ThreadLocal<DocumentBuilder> tlDocBuilder = ThreadLocal.withInitial(PositionalXmlReader::newDocumentBuilder);
 
     public static int getElementLineNumberAsIs(Element element) {
         int xmlStartLoc = (Integer) element.getUserData(PositionalXmlReader.LINE_NUMBER_KEY_NAME);
         return xmlStartLoc;
     }
 
+    static void setElementLineNumberAsIs(Element element, int lineNumberAsIs) {
+        element.setUserData(LINE_NUMBER_KEY_NAME, lineNumberAsIs, null);
+    }
+
     private static class SkunkXmlHandler extends DefaultHandler {
         private final Stack<Element> elementStack = new Stack<Element>();
         private final StringBuilder textBuffer = new StringBuilder();
@@ -63,7 +70,7 @@ public class PositionalXmlReader {
                 el.setAttribute(attrQName, attrValue);
             }
 
-            el.setUserData(LINE_NUMBER_KEY_NAME, this.locator.getLineNumber(), null);
+            setElementLineNumberAsIs(el, this.locator.getLineNumber());
             elementStack.push(el);
         }
 
@@ -98,12 +105,41 @@ public class PositionalXmlReader {
         }
     }
 
+    /**
+     * Fills a {@link SrcMlTree} instead of building a DOM
+     */
+    private static class TreeHandler extends DefaultHandler {
+        private final SrcMlTree.Builder builder = new SrcMlTree.Builder();
+        private Locator locator;
+
+        @Override
+        public void setDocumentLocator(final Locator locator) {
+            this.locator = locator;
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName,
+                                 final Attributes attributes) {
+            builder.startElement(qName, this.locator.getLineNumber());
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) {
+            builder.endElement();
+        }
+
+        @Override
+        public void characters(final char[] ch, final int start, final int length) {
+            builder.characters(ch, start, length);
+        }
+    }
+
     public PositionalXmlReader() {
 
     }
 
     /**
-     * Read xml.
+     * Read xml.  This method may be called concurrently from different threads.
      *
      * @param is the input
      * @return the document
@@ -111,8 +147,8 @@ public class PositionalXmlReader {
      * @throws SAXException the SAX exception
      */
     public Document readXML(final InputStream is) throws IOException, SAXException {
-        ensureInitialized();
-        Document doc = docBuilder.newDocument();
+        final SAXParser parser = tlParser.get();
+        Document doc = tlDocBuilder.get().newDocument();
         DefaultHandler handler = new SkunkXmlHandler(doc);
         try {
             parser.parse(is, handler);
@@ -122,19 +158,39 @@ public class PositionalXmlReader {
         return doc;
     }
 
-    private boolean initialized = false;
+    /**
+     * Reads an XML file into a compact tree, which takes far less memory than the DOM built by
+     * {@link #readXML(InputStream)}.  This method may be called concurrently from different threads.
+     *
+     * @param is the input
+     * @return the tree
+     * @throws IOException  Signals that an I/O exception has occurred.
+     * @throws SAXException the SAX exception
+     */
+    public SrcMlTree readTree(final InputStream is) throws IOException, SAXException {
+        final SAXParser parser = tlParser.get();
+        TreeHandler handler = new TreeHandler();
+        try {
+            parser.parse(is, handler);
+        } finally {
+            parser.reset();
+        }
+        return handler.builder.build();
+    }
+
+    private static SAXParser newSaxParser() {
+        try {
+            return SAXParserFactory.newInstance().newSAXParser();
+        } catch (final ParserConfigurationException | SAXException e) {
+            throw new RuntimeException("Can't create SAX parser.", e);
+        }
+    }
 
-    private synchronized void ensureInitialized() throws SAXException {
-        if (initialized) return;
+    static DocumentBuilder newDocumentBuilder() {
         try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            parser = factory.newSAXParser();
-            final DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
-            docBuilder = docBuilderFactory.newDocumentBuilder();
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder();
         } catch (final ParserConfigurationException e) {
-            throw new RuntimeException(
-                    "Can't create SAX parser / DOM builder.", e);
+            throw new RuntimeException("Can't create DOM builder.", e);
         }
-        initialized = true;
     }
 }
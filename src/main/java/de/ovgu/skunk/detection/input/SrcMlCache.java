@@ -0,0 +1,150 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.FeatureReference;
+import de.ovgu.skunk.detection.data.SourceText;
+import de.ovgu.skunk.util.BinaryDecoder;
+import de.ovgu.skunk.util.BinaryEncoder;
+import de.ovgu.skunk.util.MappedInput;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A directory of {@link SrcMlFileSummary summaries} of srcML files, keyed by a hash of the srcML file's contents and
+ * of the positions of the feature references in the file.  Thus, a summary is reused as long as neither the srcML
+ * file nor the file's rows in <code>cppstats_featurelocations.csv</code> change.  Lookups may happen concurrently.
+ */
+public class SrcMlCache {
+    private static Logger LOG = Logger.getLogger(SrcMlCache.class);
+    /**
+     * Version of the cache entries.  Increase whenever the encoding of {@link SrcMlFileSummary} or the information it
+     * holds changes, so that entries of older versions are no longer found.
+     */
+    private static final int VERSION = 4;
+    private static final String SUFFIX = ".bin";
+
+    private final File dir;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * @param dir the cache directory.  It is created if it does not exist.
+     */
+    public SrcMlCache(File dir) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new RuntimeException("Cannot create cache directory `" + dir + "'");
+        }
+        this.dir = dir;
+    }
+
+    /**
+     * @param srcMlContents the contents of a srcML file
+     * @param references    the feature references in the file
+     * @return the key under which the summary of the file is cached
+     * @throws IOException if the srcML file cannot be read
+     */
+    String key(MappedInput srcMlContents, List<FeatureReference> references) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+        BinaryEncoder header = new BinaryEncoder();
+        header.writeVarInt(VERSION);
+        header.writeSignedVarLong(srcMlContents.size());
+        digest.update(header.toByteArray());
+        srcMlContents.forEachChunk(digest::update);
+        BinaryEncoder positions = new BinaryEncoder();
+        positions.writeVarInt(references.size());
+        for (FeatureReference ref : references) {
+            positions.writeSignedVarInt(ref.start);
+            positions.writeSignedVarInt(ref.end);
+        }
+        digest.update(positions.toByteArray());
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @param key           the key of the summary
+     * @param srcMlPath     path of the srcML file whose summary is loaded
+     * @param stamp         current size and modification time of the srcML file
+     * @param numReferences number of feature references in the file
+     * @return the cached summary, or <code>null</code> if there is none.  Unreadable entries and entries that do not
+     * describe the given number of feature references count as missing.
+     */
+    SrcMlFileSummary load(String key, String srcMlPath, SourceText.FileStamp stamp, int numReferences) {
+        File entry = new File(dir, key + SUFFIX);
+        if (entry.isFile()) {
+            try {
+                BinaryDecoder in = new BinaryDecoder(Files.readAllBytes(entry.toPath()));
+                SrcMlFileSummary summary = SrcMlFileSummary.decode(in, srcMlPath, stamp);
+                if (in.remaining() != 0) throw new IOException(in.remaining() + " trailing bytes");
+                if (summary.references.size() != numReferences) {
+                    throw new IOException("Entry describes " + summary.references.size()
+                            + " feature references, but the file has " + numReferences);
+                }
+                hits.incrementAndGet();
+                return summary;
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Ignoring unreadable cache entry " + entry, e);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Saves the summary under the given key.  Failure to do so is logged, but not fatal.
+     *
+     * @param key     the key of the summary
+     * @param summary the summary
+     */
+    void store(String key, SrcMlFileSummary summary) {
+        File entry = new File(dir, key + SUFFIX);
+        BinaryEncoder out = new BinaryEncoder();
+        summary.encode(out);
+        try {
+            // Write to a temporary file first so that readers never see partially written entries.
+            File tmp = File.createTempFile(key, ".tmp", dir);
+            try {
+                Files.write(tmp.toPath(), out.toByteArray());
+                Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp.toPath());
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to write cache entry " + entry, e);
+        }
+    }
+
+    /**
+     * @return the number of lookups that found a summary
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that did not find a summary
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    public File getDir() {
+        return dir;
+    }
+}
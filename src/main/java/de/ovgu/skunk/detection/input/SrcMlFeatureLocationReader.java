@@ -0,0 +1,99 @@
+package de.ovgu.skunk.detection.input;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Extracts the conditional blocks of a srcML file from its <code>cpp:if</code>, <code>cpp:ifdef</code>,
+ * <code>cpp:ifndef</code>, <code>cpp:elif</code>, <code>cpp:else</code> and <code>cpp:endif</code> elements.  The
+ * result is what cppstats writes to <code>cppstats_featurelocations.csv</code> for the file, so that the feature
+ * locations can be read without running cppstats' feature location analysis.
+ * <p>
+ * Line numbers are those of the C file, see {@link FunctionSignatureParser#cLineNumberFromLineNumberAsIs(int)}.
+ * </p>
+ */
+public class SrcMlFeatureLocationReader {
+    private static final ThreadLocal<XMLInputFactory> tlInputFactory = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return factory;
+    });
+
+    /**
+     * Reads a srcML file.
+     *
+     * @param is input stream providing the srcML file
+     * @return the conditional blocks of the file, ordered by start line
+     * @throws XMLStreamException if the file cannot be parsed
+     */
+    public List<FeatureLocation> read(InputStream is) throws XMLStreamException {
+        XMLStreamReader reader = tlInputFactory.get().createXMLStreamReader(is);
+        try {
+            return read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private List<FeatureLocation> read(XMLStreamReader reader) throws XMLStreamException {
+        final ConditionalBlockCollector blocks = new ConditionalBlockCollector();
+        String directive = null;
+        int directiveLine = -1;
+        int depth = 0;
+        final StringBuilder text = new StringBuilder();
+        int lastLine = 1;
+
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    lastLine = reader.getLocation().getLineNumber();
+                    if (directive != null) {
+                        depth++;
+                    } else {
+                        String name = reader.getLocalName();
+                        if (isConditionalDirective(name)) {
+                            directive = name;
+                            directiveLine = FunctionSignatureParser.cLineNumberFromLineNumberAsIs(lastLine);
+                            depth = 0;
+                            text.setLength(0);
+                        }
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (directive != null) text.append(reader.getText());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (directive == null) break;
+                    if (depth > 0) {
+                        depth--;
+                        break;
+                    }
+                    blocks.add(directive.substring("cpp:".length()), directiveLine, text.toString());
+                    directive = null;
+                    break;
+            }
+        }
+
+        return blocks.finish(FunctionSignatureParser.cLineNumberFromLineNumberAsIs(lastLine));
+    }
+
+    private static boolean isConditionalDirective(String name) {
+        switch (name) {
+            case "cpp:if":
+            case "cpp:ifdef":
+            case "cpp:ifndef":
+            case "cpp:elif":
+            case "cpp:else":
+            case "cpp:endif":
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.SourceText;
+import de.ovgu.skunk.detection.data.SrcMlElement;
+import de.ovgu.skunk.util.BinaryDecoder;
+import de.ovgu.skunk.util.BinaryEncoder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What Skunk extracts from a srcML file: the function definitions and, for each feature reference in the file, the
+ * elements annotated by the reference.  References are assigned to functions by their lines, see
+ * {@link FunctionIntervals}.  Everything else is computed from this
+ * summary, so it can be cached in place of the srcML file, see {@link SrcMlCache}.
+ */
+class SrcMlFileSummary {
+    /**
+     * A function definition, as read from the srcML file, i.e., before its end position and signature are adjusted
+     */
+    static class FunctionSummary {
+        final ParsedFunctionSignature signature;
+        /**
+         * Code of the function, usually the position of the function element within the srcML file
+         */
+        final SourceText source;
+
+        FunctionSummary(ParsedFunctionSignature signature, SourceText source) {
+            this.signature = signature;
+            this.source = source;
+        }
+    }
+
+    /**
+     * An element annotated by a feature reference, i.e., the element enclosing the reference's directive or one of
+     * its following siblings
+     */
+    static class ElementSummary {
+        final SrcMlElement element;
+        /**
+         * Whether this element has an <code>else</code> child element
+         */
+        final boolean hasElseChild;
+        /**
+         * Whether the element preceding the first <code>else</code> child, if any, is a <code>then</code> element
+         */
+        final boolean elseAfterThen;
+
+        ElementSummary(SrcMlElement element, boolean hasElseChild, boolean elseAfterThen) {
+            this.element = element;
+            this.hasElseChild = hasElseChild;
+            this.elseAfterThen = elseAfterThen;
+        }
+    }
+
+    /**
+     * The parts of the srcML file that matter for a single feature reference
+     */
+    static class ReferenceSummary {
+        /**
+         * Summary of a reference whose directive is not in the srcML file
+         */
+        static final ReferenceSummary DIRECTIVE_NOT_FOUND = new ReferenceSummary(false, null,
+                Collections.emptyList());
+
+        final boolean directiveFound;
+        /**
+         * The parent of the annotated elements
+         */
+        final SrcMlElement parent;
+        /**
+         * The annotated elements, in document order, up to the end of the reference
+         */
+        final List<ElementSummary> elements;
+
+        ReferenceSummary(boolean directiveFound, SrcMlElement parent, List<ElementSummary> elements) {
+            this.directiveFound = directiveFound;
+            this.parent = parent;
+            this.elements = elements;
+        }
+    }
+
+    /**
+     * The function definitions of the file, in document order
+     */
+    final List<FunctionSummary> functions;
+    /**
+     * One summary per feature reference in the file, in the order of
+     * {@link de.ovgu.skunk.detection.data.FeatureExpressionCollection#GetReferencesInFile(String)}
+     */
+    final List<ReferenceSummary> references;
+
+    SrcMlFileSummary(List<FunctionSummary> functions, List<ReferenceSummary> references) {
+        this.functions = functions;
+        this.references = references;
+    }
+
+    void encode(BinaryEncoder out) {
+        out.writeVarInt(functions.size());
+        for (FunctionSummary f : functions) {
+            encodeSignature(out, f.signature);
+            if (f.source.isInMemory()) {
+                out.writeVarInt(0);
+                out.writeUtf8(f.source.get());
+            } else {
+                out.writeVarInt(1);
+                out.writeVarInt(f.source.getOffset());
+                out.writeVarInt(f.source.getLength());
+            }
+            out.writeVarInt(f.source.getLineCount());
+        }
+        out.writeVarInt(references.size());
+        for (ReferenceSummary r : references) {
+            if (!r.directiveFound) {
+                out.writeVarInt(0);
+                continue;
+            }
+            out.writeVarInt(1);
+            out.writeUtf8(r.parent.srcMlName);
+            out.writeVarInt(r.elements.size());
+            for (ElementSummary e : r.elements) {
+                out.writeUtf8(e.element.srcMlName);
+                out.writeVarInt((e.hasElseChild ? 1 : 0) | (e.elseAfterThen ? 2 : 0));
+            }
+        }
+    }
+
+    /**
+     * @param srcMlPath path of the srcML file whose summary is decoded
+     * @param stamp     current size and modification time of the srcML file
+     */
+    static SrcMlFileSummary decode(BinaryDecoder in, String srcMlPath, SourceText.FileStamp stamp) throws IOException {
+        int numFunctions = in.readVarInt();
+        List<FunctionSummary> functions = new ArrayList<>(numFunctions);
+        for (int i = 0; i < numFunctions; i++) {
+            ParsedFunctionSignature signature = decodeSignature(in);
+            final int sourceKind = in.readVarInt();
+            final SourceText source;
+            if (sourceKind == 0) {
+                String text = in.readUtf8();
+                source = SourceText.of(text, in.readVarInt());
+            } else if (sourceKind == 1) {
+                int offset = in.readVarInt();
+                int length = in.readVarInt();
+                source = SourceText.inSrcMlFile(srcMlPath, stamp, offset, length, in.readVarInt());
+            } else {
+                throw new IOException("Invalid kind of function source: " + sourceKind);
+            }
+            functions.add(new FunctionSummary(signature, source));
+        }
+        int numReferences = in.readVarInt();
+        List<ReferenceSummary> references = new ArrayList<>(numReferences);
+        for (int i = 0; i < numReferences; i++) {
+            int kind = in.readVarInt();
+            if (kind == 0) {
+                references.add(ReferenceSummary.DIRECTIVE_NOT_FOUND);
+                continue;
+            }
+            if (kind != 1) throw new IOException("Invalid kind of reference summary: " + kind);
+            SrcMlElement parent = SrcMlElement.fromName(in.readUtf8());
+            int numElements = in.readVarInt();
+            List<ElementSummary> elements = new ArrayList<>(numElements);
+            for (int j = 0; j < numElements; j++) {
+                SrcMlElement element = SrcMlElement.fromName(in.readUtf8());
+                final int flags = in.readVarInt();
+                elements.add(new ElementSummary(element, (flags & 1) != 0, (flags & 2) != 0));
+            }
+            references.add(new ReferenceSummary(true, parent, elements));
+        }
+        return new SrcMlFileSummary(functions, references);
+    }
+
+    private static void encodeSignature(BinaryEncoder out, ParsedFunctionSignature signature) {
+        out.writeUtf8(signature.signature);
+        out.writeSignedVarInt(signature.cStartLoc);
+        out.writeSignedVarInt(signature.originalLinesOfCode);
+    }
+
+    private static ParsedFunctionSignature decodeSignature(BinaryDecoder in) throws IOException {
+        String signature = in.readUtf8();
+        int cStartLoc = in.readSignedVarInt();
+        int originalLinesOfCode = in.readSignedVarInt();
+        return new ParsedFunctionSignature(signature, cStartLoc, originalLinesOfCode);
+    }
+}
@@ -2,6 +2,7 @@ package de.ovgu.skunk.detection.input;
 
 import de.ovgu.skunk.detection.data.*;
 import de.ovgu.skunk.util.GroupingListMap;
+import de.ovgu.skunk.util.MappedInput;
 import org.apache.log4j.Logger;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -9,25 +10,52 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
-import java.io.ByteArrayInputStream;
+import javax.xml.stream.XMLStreamException;
+
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * The Class SrcMlFolderReader.
  */
 public class SrcMlFolderReader {
     private static Logger LOG = Logger.getLogger(SrcMlFolderReader.class);
+    /**
+     * Name of the phase under which reading srcML files is accounted for in {@link Context#inputStatistics}
+     */
+    public static final String INPUT_PHASE = "srcML files";
+
+    /**
+     * The ways in which srcML files can be read
+     */
+    public enum XmlReaderType {
+        /**
+         * Build a DOM of each file using {@link PositionalXmlReader}
+         */
+        DOM,
+        /**
+         * Extract only the required information in a single pass, using {@link SrcMlStreamReader}
+         */
+        STAX,
+        /**
+         * Build a compact {@link SrcMlTree} of each file using {@link PositionalXmlReader}
+         */
+        TREE
+    }
 
     private final Context ctx;
     private final PositionalXmlReader reader;
     private final IMethodFactory methodFactory;
+    private final XmlReaderType xmlReaderType;
+    private SrcMlCache cache = null;
 
     /**
      * Instantiates a new srcML folder reader.
@@ -38,6 +66,16 @@ public class SrcMlFolderReader {
         this(ctx, new PositionalXmlReader());
     }
 
+    /**
+     * Instantiates a new srcML folder reader that reads files in the given way
+     *
+     * @param ctx           Context object
+     * @param xmlReaderType how to read srcML files
+     */
+    public SrcMlFolderReader(Context ctx, XmlReaderType xmlReaderType) {
+        this(ctx, new PositionalXmlReader(), Method::new, xmlReaderType);
+    }
+
     /**
      * Instantiates a new srcML folder reader using the given XML reader
      *
@@ -53,53 +91,362 @@ public class SrcMlFolderReader {
      * @param ctx Context object
      */
     public SrcMlFolderReader(Context ctx, PositionalXmlReader reader, IMethodFactory methodFactory) {
+        this(ctx, reader, methodFactory, XmlReaderType.TREE);
+    }
+
+    private SrcMlFolderReader(Context ctx, PositionalXmlReader reader, IMethodFactory methodFactory,
+                              XmlReaderType xmlReaderType) {
         this.ctx = ctx;
         this.reader = reader;
         this.methodFactory = methodFactory;
+        this.xmlReaderType = xmlReaderType;
+    }
+
+    /**
+     * Reuse the results of previous runs for srcML files that have not changed since.
+     *
+     * @param cache the cache to read and update, or <code>null</code> to parse all files
+     */
+    public void setCache(SrcMlCache cache) {
+        this.cache = cache;
     }
 
     /**
      * Process files to get metrics from srcMl
      */
     public void ProcessFiles() {
-        LOG.info("Processing SrcML files ...");
+        ProcessFiles(1);
+    }
+
+    /**
+     * Process files to get metrics from srcMl.  Reading and parsing of the srcML files is distributed over the given
+     * number of threads.  Parse results are merged into the context on the calling thread, in the same order in which
+     * the files appear in {@link FileCollection#AllFiles()}.  Thus, results do not depend on the number of threads.
+     *
+     * @param numThreads number of threads to use for parsing srcML files; if 1, everything is done on the calling
+     *                   thread
+     */
+    public void ProcessFiles(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive, not " + numThreads);
+        }
+        LOG.info("Processing SrcML files using the " + xmlReaderType + " reader"
+                + (numThreads > 1 ? (" and " + numThreads + " threads") : "") + " ...");
+        final long startTime = System.currentTimeMillis();
+        resetPeakHeapUsage();
         final Collection<File> allFiles = ctx.files.AllFiles();
         int processed = 0;
         final int numAllFiles = allFiles.size();
         final int logDiv = Math.max(1, Math.round(numAllFiles / 100f));
 
-        for (File file : allFiles) {
-            final String filePath = file.filePath;
-            final FilePath fp = ctx.internFilePath(filePath);
+        ExecutorService executor = (numThreads > 1) ? Executors.newFixedThreadPool(numThreads) : null;
+        try {
+            // Parsed DOMs are big.  Hence, we only parse a limited number of files ahead of the merge step.
+            final int maxFilesAhead = 2 * numThreads;
+            Deque<Future<ParsedSrcMlFile>> pending = new ArrayDeque<>(maxFilesAhead);
+            Iterator<File> fileIt = allFiles.iterator();
+            while (fileIt.hasNext() || !pending.isEmpty()) {
+                final ParsedSrcMlFile parsed;
+                if (executor == null) {
+                    parsed = parseSrcmlFile(fileIt.next());
+                } else {
+                    while (fileIt.hasNext() && (pending.size() < maxFilesAhead)) {
+                        final File file = fileIt.next();
+                        pending.addLast(executor.submit(() -> parseSrcmlFile(file)));
+                    }
+                    parsed = awaitParsedFile(pending.removeFirst());
+                }
+
+                internNewlyReadFunctions(parsed.functions, parsed.fp);
+                List<SrcMlFileSummary.ReferenceSummary> referenceSummaries = processFeatureLocationsInFile(parsed);
+                if (parsed.cacheKey != null) cache.store(parsed.cacheKey, parsed.summarize(referenceSummaries));
 
-            Document document = readSrcmlFile(filePath);
-            DocWithFileAndCppDirectives extDoc = new DocWithFileAndCppDirectives(file, fp, document, ctx);
+                if ((++processed) % logDiv == 0) {
+                    int percent = Math.round((100f * processed) / numAllFiles);
+                    LOG.info("Parsed SrcML file " + processed + "/" + numAllFiles
+                            + " (" + percent + "%) (" + (numAllFiles - processed) + " to go)");
+                }
+            }
+        } finally {
+            if (executor != null) executor.shutdownNow();
+        }
 
-            internAllFunctionsInFile(file, document);
-            processFeatureLocationsInFile(extDoc);
+        LOG.info("Parsed all " + processed + " SrcML file(s) in " + (System.currentTimeMillis() - startTime)
+                + "ms. Peak heap usage: " + (getPeakHeapUsage() / (1024 * 1024)) + "MB. Read "
+                + ctx.inputStatistics.describe(INPUT_PHASE) + ".");
+        if (cache != null) {
+            LOG.info("Restored " + cache.getHits() + " of " + processed + " SrcML file(s) from cache `"
+                    + cache.getDir() + "', parsed " + cache.getMisses() + ".");
+        }
+    }
 
-            if ((++processed) % logDiv == 0) {
-                int percent = Math.round((100f * processed) / numAllFiles);
-                LOG.info("Parsed SrcML file " + processed + "/" + numAllFiles
-                        + " (" + percent + "%) (" + (numAllFiles - processed) + " to go)");
+    private static void resetPeakHeapUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    private static long getPeakHeapUsage() {
+        long result = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) result += pool.getPeakUsage().getUsed();
+        }
+        return result;
+    }
+
+    private ParsedSrcMlFile parseSrcmlFile(File file) {
+        final FilePath fp = ctx.internFilePath(file.filePath);
+        final List<FeatureReference> references = ctx.featureExpressions.GetReferencesInFile(fp.actualPath);
+        final SourceText.FileStamp stamp = SourceText.FileStamp.of(fp.actualPath);
+        final MappedInput contents = openSrcmlFile(fp.actualPath);
+        String cacheKey = null;
+        if (cache != null) {
+            try {
+                cacheKey = cache.key(contents, references);
+            } catch (IOException e) {
+                throw new RuntimeException("I/O exception reading contents of file " + fp.actualPath, e);
+            }
+            SrcMlFileSummary summary = cache.load(cacheKey, fp.actualPath, stamp, references.size());
+            if (summary != null) {
+                LOG.debug("Restoring functions in file " + file + " from cache");
+                return restoreSrcmlFile(file, fp, references, summary);
             }
         }
+        LOG.debug("Parsing functions in file " + file);
+        final ParsedSrcMlFile parsed;
+        switch (xmlReaderType) {
+            case DOM:
+                parsed = parseSrcmlFileIntoDom(file, fp, references, contents, stamp);
+                break;
+            case STAX:
+                parsed = parseSrcmlFileUsingStax(file, fp, references, contents, stamp);
+                break;
+            case TREE:
+                parsed = parseSrcmlFileIntoTree(file, fp, references, contents, stamp);
+                break;
+            default:
+                throw new IllegalStateException("Unknown XML reader type: " + xmlReaderType);
+        }
+        parsed.cacheKey = cacheKey;
+        return parsed;
+    }
 
-        LOG.info("Parsed all " + processed + " SrcML file(s).");
+    private ParsedSrcMlFile parseSrcmlFileIntoDom(File file, FilePath fp, List<FeatureReference> references,
+                                                  MappedInput contents, SourceText.FileStamp stamp) {
+        Document document = readSrcmlFile(contents, fp.actualPath);
+        Method[] functions = parseAllFunctionsInFile(document, fp, locateFunctions(contents, fp), stamp);
+        DocWithFileAndCppDirectives extDoc = new DocWithFileAndCppDirectives(file, fp, ctx, functions, references,
+                document);
+        extDoc.ensureCppDirectivesIndexed();
+        return extDoc;
     }
 
-    private static class DocWithFileAndCppDirectives {
-        private final Document doc;
-        private final File file;
-        private final FilePath fp;
-        private final Context ctx;
-        private Map<Integer, Node> cppDirectivesByLineNumberAsIs = null;
+    private ParsedSrcMlFile parseSrcmlFileIntoTree(File file, FilePath fp, List<FeatureReference> references,
+                                                   MappedInput contents, SourceText.FileStamp stamp) {
+        final SrcMlTree tree;
+        try (InputStream inputStream = contents.openStream()) {
+            tree = reader.readTree(inputStream);
+        } catch (IOException e) {
+            throw new RuntimeException("I/O exception reading srcml file " + fp.actualPath, e);
+        } catch (SAXException e) {
+            throw new RuntimeException("Cannot parse file " + fp.actualPath, e);
+        }
+
+        final int[] functionNodes = tree.elementsByTag(SrcMlVocabulary.FUNCTION);
+        final int numFunctions = functionNodes.length;
+        final int[] functionRanges = checkFunctionRanges(locateFunctions(contents, fp), numFunctions, fp);
+        Method[] functions = new Method[numFunctions];
+        Document doc = null;
+        for (int i = 0; i < numFunctions; i++) {
+            final int funcNode = functionNodes[i];
+            final ParsedFunctionSignature functionSignature;
+            final int ixBody = tree.indexOf(funcNode, '{');
+            if (ixBody != -1) {
+                final String noBodyResult = tree.textContent(funcNode).substring(0, ixBody);
+                final int cStartLoc = FunctionSignatureParser.cLineNumberFromLineNumberAsIs(
+                        tree.lineNumberAsIs(funcNode));
+                functionSignature = FunctionSignatureParser.parseSignatureFromTextBeforeBody(noBodyResult, cStartLoc);
+            } else {
+                // Rare case of a function without body, which needs to be looked at element by element
+                if (doc == null) doc = PositionalXmlReader.newDocumentBuilder().newDocument();
+                functionSignature = parseFunctionSignature(tree.toElement(funcNode, doc), fp);
+            }
+            final int lineCount = tree.countLines(funcNode);
+            final String textContent = (functionRanges == null) ? tree.textContent(funcNode) : null;
+            functions[i] = createFunction(fp, functionSignature,
+                    sourceText(fp, stamp, textContent, lineCount, functionRanges, i));
+        }
+        LOG.debug("Found " + numFunctions + " functions in `" + fp.pathKey + "'.");
+        adjustImprobableFunctionEndPositions(functions);
+        adjustDuplicateFunctionSignatures(functions);
+
+        return new TreeWithCppDirectives(file, fp, ctx, functions, references, tree);
+    }
+
+    private ParsedSrcMlFile parseSrcmlFileUsingStax(File file, FilePath fp, List<FeatureReference> references,
+                                                    MappedInput contents, SourceText.FileStamp stamp) {
+        // Only directives mentioned by feature references are of interest, along with the elements following them up
+        // to the end of the respective reference.
+        Map<Integer, Integer> maxLineNumberByDirectiveLine = new HashMap<>();
+        for (FeatureReference ref : references) {
+            maxLineNumberByDirectiveLine.merge(ref.start + 1, ref.end + 1, Math::max);
+        }
+
+        final SrcMlStreamReader.Result streamed;
+        try (InputStream inputStream = contents.openStream()) {
+            streamed = new SrcMlStreamReader().read(inputStream, maxLineNumberByDirectiveLine);
+        } catch (IOException e) {
+            throw new RuntimeException("I/O exception closing srcml file " + fp.actualPath, e);
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("Cannot parse file " + fp.actualPath, e);
+        }
+
+        final int numFunctions = streamed.functions.size();
+        final int[] functionRanges = checkFunctionRanges(locateFunctions(contents, fp), numFunctions, fp);
+        Method[] functions = new Method[numFunctions];
+        for (int i = 0; i < numFunctions; i++) {
+            SrcMlStreamReader.FunctionInfo funcInfo = streamed.functions.get(i);
+            ParsedFunctionSignature functionSignature = parseFunctionSignature(funcInfo, fp);
+            final int lineCount = countLines(funcInfo.textContent);
+            functions[i] = createFunction(fp, functionSignature,
+                    sourceText(fp, stamp, funcInfo.textContent, lineCount, functionRanges, i));
+        }
+        LOG.debug("Found " + numFunctions + " functions in `" + fp.pathKey + "'.");
+        adjustImprobableFunctionEndPositions(functions);
+        adjustDuplicateFunctionSignatures(functions);
+
+        return new StreamedFileWithCppDirectives(file, fp, ctx, functions, references,
+                streamed.directivesByLineNumberAsIs);
+    }
+
+    private ParsedSrcMlFile restoreSrcmlFile(File file, FilePath fp, List<FeatureReference> references,
+                                             SrcMlFileSummary summary) {
+        final int numFunctions = summary.functions.size();
+        Method[] functions = new Method[numFunctions];
+        for (int i = 0; i < numFunctions; i++) {
+            SrcMlFileSummary.FunctionSummary f = summary.functions.get(i);
+            functions[i] = createFunction(fp, f.signature, f.source);
+        }
+        adjustImprobableFunctionEndPositions(functions);
+        adjustDuplicateFunctionSignatures(functions);
+        return new CachedSrcMlFile(file, fp, ctx, functions, references, summary.references);
+    }
+
+    private static ParsedSrcMlFile awaitParsedFile(Future<ParsedSrcMlFile> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for srcML file to be parsed.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException("Error parsing srcML file.", cause);
+        }
+    }
+
+    /**
+     * Result of the part of srcML processing that does not modify the context and can, therefore, be run
+     * concurrently for different files.  What remains to be done is processing the file's feature references, which
+     * has to happen on the thread that owns the context.
+     */
+    private static abstract class ParsedSrcMlFile {
+        protected final File file;
+        protected final FilePath fp;
+        protected final Context ctx;
+        protected final Method[] functions;
+        protected final List<FeatureReference> references;
+        /**
+         * Key under which the summary of this file is to be cached, or <code>null</code> if it is not to be cached
+         */
+        String cacheKey;
 
-        public DocWithFileAndCppDirectives(File file, FilePath fp, Document doc, Context ctx) {
+        protected ParsedSrcMlFile(File file, FilePath fp, Context ctx, Method[] functions,
+                                  List<FeatureReference> references) {
             this.file = file;
             this.fp = fp;
-            this.doc = doc;
             this.ctx = ctx;
+            this.functions = functions;
+            this.references = references;
+        }
+
+        /**
+         * Extracts what is needed to process a feature reference from the srcML file.  Does not modify the
+         * reference.
+         *
+         * @param featureRef a reference to a feature constant in this file
+         * @return the summary of the reference
+         */
+        protected abstract SrcMlFileSummary.ReferenceSummary summarizeReference(FeatureReference featureRef);
+
+        /**
+         * Calculate granularity and discipline of the feature location by checking the annotated elements.  The
+         * reference is assigned to its function by {@link #assignFeatureConstantReferencesToMethods(List)}.
+         *
+         * @param featureRef the reference to a feature constant
+         * @return the summary of the reference that has been processed
+         */
+        public SrcMlFileSummary.ReferenceSummary processFeatureReference(final FeatureReference featureRef) {
+            final SrcMlFileSummary.ReferenceSummary summary = summarizeReference(featureRef);
+            this.file.AddFeatureConstant(featureRef);
+            if (!summary.directiveFound) {
+                LOG.warn("Failed to find the CPP directive for feature constant reference " + featureRef);
+                return summary;
+            }
+
+            // calculate the granularity by checking the annotation and its
+            // siblings from start1 to end1 of the annotation
+            for (SrcMlFileSummary.ElementSummary element : summary.elements) {
+                featureRef.SetGranularity(element.element, summary.parent);
+                featureRef.SetDiscipline(element.element, element.hasElseChild, element.elseAfterThen);
+            }
+            return summary;
+        }
+
+        /**
+         * @param referenceSummaries summaries of all references of this file, in order
+         * @return a summary of this file that can be cached
+         */
+        SrcMlFileSummary summarize(List<SrcMlFileSummary.ReferenceSummary> referenceSummaries) {
+            List<SrcMlFileSummary.FunctionSummary> functionSummaries = new ArrayList<>(functions.length);
+            for (Method f : functions) {
+                ParsedFunctionSignature signature = new ParsedFunctionSignature(f.originalFunctionSignature, f.start1,
+                        f.getSignatureGrossLinesOfCode());
+                functionSummaries.add(new SrcMlFileSummary.FunctionSummary(signature, f.getSourceText()));
+            }
+            return new SrcMlFileSummary(functionSummaries, referenceSummaries);
+        }
+
+        /**
+         * Assigns the feature constant references whose directives have been found to the functions containing
+         * them, matching references and functions by their lines.
+         *
+         * @param summaries the summaries of {@link #references}, in the same order
+         */
+        void assignFeatureConstantReferencesToMethods(List<SrcMlFileSummary.ReferenceSummary> summaries) {
+            Method[] enclosingFunctions = new FunctionIntervals(functions).enclosingFunctions(references);
+            for (int i = 0; i < enclosingFunctions.length; i++) {
+                final FeatureReference featureRef = references.get(i);
+                if (!summaries.get(i).directiveFound) continue;
+                if (enclosingFunctions[i] == null) {
+                    LOG.debug("Feature reference is not part of a function definition. Treated as a top-level"
+                            + " reference: " + featureRef);
+                    continue;
+                }
+                enclosingFunctions[i].AddFeatureConstant(featureRef);
+            }
+        }
+    }
+
+    private static class DocWithFileAndCppDirectives extends ParsedSrcMlFile {
+        private final Document doc;
+        private Map<Integer, Node> cppDirectivesByLineNumberAsIs = null;
+
+        public DocWithFileAndCppDirectives(File file, FilePath fp, Context ctx, Method[] functions,
+                                           List<FeatureReference> references, Document doc) {
+            super(file, fp, ctx, functions, references);
+            this.doc = doc;
         }
 
         private static Map<Integer, Node> getCppDirectivesByLineNumberAsIs(Document doc) {
@@ -113,27 +460,26 @@ public class SrcMlFolderReader {
             return result;
         }
 
-        /**
-         * Calculate granularity of the feature location by checking parent nodes
-         *
-         * @param featureRef the reference to a feature constant
-         */
-        public void processFeatureReference(final FeatureReference featureRef) {
+        public void ensureCppDirectivesIndexed() {
             if (cppDirectivesByLineNumberAsIs == null) {
                 cppDirectivesByLineNumberAsIs = getCppDirectivesByLineNumberAsIs(doc);
             }
+        }
+
+        @Override
+        protected SrcMlFileSummary.ReferenceSummary summarizeReference(final FeatureReference featureRef) {
+            ensureCppDirectivesIndexed();
 
-            this.file.AddFeatureConstant(featureRef);
             Node correspondingCppDirective = this.findCppDirectiveForFeatureLocation(featureRef);
-            if (correspondingCppDirective != null) {
-                // calculate the granularity by checking each sibling node
-                // from start1 to end1 of the annotation
-                calculateGranularityOfFeatureConstantReference(featureRef, correspondingCppDirective);
-                // assign this location to its corresponding method
-                assignFeatureConstantReferenceToMethod(featureRef, correspondingCppDirective);
-            } else {
-                LOG.warn("Failed to find the CPP directive for feature constant reference " + featureRef);
+            if (correspondingCppDirective == null) {
+                return SrcMlFileSummary.ReferenceSummary.DIRECTIVE_NOT_FOUND;
             }
+            // the granularity is calculated from each sibling node from
+            // start1 to end1 of the annotation
+            List<SrcMlFileSummary.ElementSummary> elements =
+                    collectAnnotatedElements(featureRef, correspondingCppDirective);
+            final SrcMlElement parent = SrcMlElement.fromName(correspondingCppDirective.getParentNode().getNodeName());
+            return new SrcMlFileSummary.ReferenceSummary(true, parent, elements);
         }
 
         private Node findCppDirectiveForFeatureLocation(FeatureReference featureRef) {
@@ -149,89 +495,173 @@ public class SrcMlFolderReader {
             return null;
         }
 
-        private static void calculateGranularityOfFeatureConstantReference(FeatureReference featureRef, Node current) {
-            // check sibling nodes until a granularity defining tag is found or
-            // until the end1 of the annotation
+        private static List<SrcMlFileSummary.ElementSummary> collectAnnotatedElements(FeatureReference featureRef,
+                                                                                     Node current) {
+            // check sibling nodes until the end1 of the annotation
+            List<SrcMlFileSummary.ElementSummary> result = new ArrayList<>();
             Node sibling = current;
             final int featureRefEnd1 = featureRef.end + 1;
             while (sibling != null && (PositionalXmlReader.getElementLineNumberAsIs((Element) sibling) <= featureRefEnd1)) {
-                // set granularity and try to assign a discipline
-                featureRef.SetGranularity(sibling);
-                featureRef.SetDiscipline(sibling);
+                result.add(summarizeElement(sibling));
                 // text nodes do not contain line numbers --> next until not #text
                 sibling = sibling.getNextSibling();
                 while (sibling != null && sibling.getNodeName().equals("#text"))
                     sibling = sibling.getNextSibling();
             }
+            return result;
         }
+    }
 
+    /**
+     * A srcML file that has been read into a {@link SrcMlTree}
+     */
+    private static class TreeWithCppDirectives extends ParsedSrcMlFile {
+        private final SrcMlTree tree;
         /**
-         * Assign feature constant reference to method.
-         *
-         * @param featureRef     the feature constant reference
-         * @param annotationNode the annotation node where the reference occurred
+         * The <code>cpp:directive</code> element of each line, or {@link SrcMlTree#NONE}, indexed by the line number
+         * as reported by the XML parser
          */
-        private void assignFeatureConstantReferenceToMethod(FeatureReference featureRef, Node annotationNode) {
-            // check parent nodes of the annotation until it is of type
-            // function/unit
-            Node funcNode = findParentFunctionNode(annotationNode);
-            if (funcNode == null) {
-                LOG.debug("Feature reference is not part of a function definition. Treated as a top-level reference: "
-                        + featureRef);
-                return;
+        private final int[] cppDirectivesByLineNumberAsIs;
+
+        public TreeWithCppDirectives(File file, FilePath fp, Context ctx, Method[] functions,
+                                     List<FeatureReference> references, SrcMlTree tree) {
+            super(file, fp, ctx, functions, references);
+            this.tree = tree;
+            final int[] directives = tree.elementsByTag(SrcMlVocabulary.CPP_DIRECTIVE);
+            final int maxLine = (directives.length == 0) ? 0
+                    : tree.lineNumberAsIs(directives[directives.length - 1]);
+            this.cppDirectivesByLineNumberAsIs = new int[maxLine + 1];
+            Arrays.fill(cppDirectivesByLineNumberAsIs, SrcMlTree.NONE);
+            for (int directive : directives) {
+                cppDirectivesByLineNumberAsIs[tree.lineNumberAsIs(directive)] = directive;
+            }
+        }
+
+        @Override
+        protected SrcMlFileSummary.ReferenceSummary summarizeReference(final FeatureReference featureRef) {
+            final int directiveLine = featureRef.start + 1;
+            final int directive = (directiveLine >= 0 && directiveLine < cppDirectivesByLineNumberAsIs.length)
+                    ? cppDirectivesByLineNumberAsIs[directiveLine] : SrcMlTree.NONE;
+            if (directive == SrcMlTree.NONE) {
+                return SrcMlFileSummary.ReferenceSummary.DIRECTIVE_NOT_FOUND;
+            }
+            // parent contains the if/endif values
+            final int annotation = tree.parent(directive);
+            final int featureRefEnd1 = featureRef.end + 1;
+            List<SrcMlFileSummary.ElementSummary> elements = new ArrayList<>();
+            for (int sibling = annotation; sibling != SrcMlTree.NONE && tree.lineNumberAsIs(sibling) <= featureRefEnd1;
+                 sibling = tree.nextSibling(sibling)) {
+                elements.add(summarizeElement(tree, sibling));
             }
+            final int annotationParent = tree.parent(annotation);
+            final SrcMlElement parent = (annotationParent == SrcMlTree.NONE) ? SrcMlElement.OTHER
+                    : tree.element(annotationParent);
+            return new SrcMlFileSummary.ReferenceSummary(true, parent, elements);
+        }
+    }
 
-            // get or create function
-            final Method function = findFunctionUsingNode(funcNode);
-            final int existingFunctionStartLoc = function.start1;
-            final int actualFunctionStartLoc = FunctionSignatureParser.parseFunctionStartLoc(funcNode);
+    /**
+     * @param node an element of a DOM built by {@link PositionalXmlReader}
+     * @return what is needed to classify an annotation of the element
+     */
+    static SrcMlFileSummary.ElementSummary summarizeElement(Node node) {
+        final SrcMlElement element = SrcMlElement.fromName(node.getNodeName());
+        final Node elseChild = (element == SrcMlElement.IF) ? SrcMlElement.findElseChild(node) : null;
+        return new SrcMlFileSummary.ElementSummary(element, elseChild != null,
+                (elseChild != null) && SrcMlElement.isPrecededByThen(elseChild));
+    }
 
-            if (existingFunctionStartLoc != actualFunctionStartLoc) {
-                LOG.info("Ignoring feature reference " + featureRef + ". It refers to an alternative definition of the same function within the same file. We cannot currently handle this case. Existing function is " + function);
-                return;
+    /**
+     * @param node an element of the tree
+     * @return what is needed to classify an annotation of the element
+     */
+    static SrcMlFileSummary.ElementSummary summarizeElement(SrcMlTree tree, int node) {
+        final int elseChild = (tree.tag(node) == SrcMlVocabulary.IF)
+                ? tree.childByTag(node, SrcMlVocabulary.ELSE) : SrcMlTree.NONE;
+        final int beforeElse = (elseChild == SrcMlTree.NONE) ? SrcMlTree.NONE : tree.previousSibling(elseChild);
+        return new SrcMlFileSummary.ElementSummary(tree.element(node), elseChild != SrcMlTree.NONE,
+                (beforeElse != SrcMlTree.NONE) && (tree.tag(beforeElse) == SrcMlVocabulary.THEN));
+    }
+
+    /**
+     * Feature-reference-related information about a srcML file that has been read by the {@link SrcMlStreamReader}
+     */
+    private static class StreamedFileWithCppDirectives extends ParsedSrcMlFile {
+        private final Map<Integer, SrcMlStreamReader.DirectiveInfo> cppDirectivesByLineNumberAsIs;
+
+        public StreamedFileWithCppDirectives(File file, FilePath fp, Context ctx, Method[] functions,
+                                             List<FeatureReference> references,
+                                             Map<Integer, SrcMlStreamReader.DirectiveInfo> cppDirectivesByLineNumberAsIs) {
+            super(file, fp, ctx, functions, references);
+            this.cppDirectivesByLineNumberAsIs = cppDirectivesByLineNumberAsIs;
+        }
+
+        @Override
+        protected SrcMlFileSummary.ReferenceSummary summarizeReference(final FeatureReference featureRef) {
+            SrcMlStreamReader.DirectiveInfo directive = cppDirectivesByLineNumberAsIs.get(featureRef.start + 1);
+            if (directive == null) {
+                return SrcMlFileSummary.ReferenceSummary.DIRECTIVE_NOT_FOUND;
             }
 
-            // add location to the function
-            function.AddFeatureConstant(featureRef);
+            final int featureRefEnd1 = featureRef.end + 1;
+            List<SrcMlFileSummary.ElementSummary> elements = new ArrayList<>();
+            for (SrcMlStreamReader.ElementInfo sibling : directive.siblings) {
+                if (sibling.lineNumberAsIs > featureRefEnd1) break;
+                elements.add(new SrcMlFileSummary.ElementSummary(SrcMlElement.fromName(sibling.name),
+                        sibling.hasElseChild, sibling.elseAfterThen));
+            }
+            return new SrcMlFileSummary.ReferenceSummary(true,
+                    SrcMlElement.fromName(directive.parentName), elements);
         }
+    }
 
-        private Method findFunctionUsingNode(Node funcNode) {
-            ParsedFunctionSignature functionSignature = parseFunctionSignature(funcNode, fp);
-            Method function = ctx.functions.FindFunction(fp, functionSignature);
-            return function;
+    /**
+     * A srcML file whose summary has been restored from the {@link SrcMlCache}
+     */
+    private static class CachedSrcMlFile extends ParsedSrcMlFile {
+        private final Map<FeatureReference, SrcMlFileSummary.ReferenceSummary> summaries = new IdentityHashMap<>();
+
+        public CachedSrcMlFile(File file, FilePath fp, Context ctx, Method[] functions,
+                               List<FeatureReference> references,
+                               List<SrcMlFileSummary.ReferenceSummary> referenceSummaries) {
+            super(file, fp, ctx, functions, references);
+            for (int i = 0; i < references.size(); i++) {
+                summaries.put(references.get(i), referenceSummaries.get(i));
+            }
+        }
+
+        @Override
+        protected SrcMlFileSummary.ReferenceSummary summarizeReference(FeatureReference featureRef) {
+            return summaries.get(featureRef);
         }
     }
 
-    private void processFeatureLocationsInFile(DocWithFileAndCppDirectives extDoc) {
+    /**
+     * @return summaries of the processed references, in order
+     */
+    private List<SrcMlFileSummary.ReferenceSummary> processFeatureLocationsInFile(ParsedSrcMlFile parsedFile) {
         // go through each feature location and calculate granularity
-        GroupingListMap<String, FeatureReference> featureReferencesByFilePath = groupFeatureReferencesByFilePath();
-
-        final String filePath = extDoc.fp.actualPath;
-        final List<FeatureReference> references = featureReferencesByFilePath.get(filePath);
-        if (references == null) {
-            LOG.debug("No feature locations in " + extDoc.fp.pathKey);
-            return;
+        if (parsedFile.references.isEmpty()) {
+            LOG.debug("No feature locations in " + parsedFile.fp.pathKey);
+            return Collections.emptyList();
         }
 
-        for (FeatureReference ref : references) {
-            extDoc.processFeatureReference(ref);
+        List<SrcMlFileSummary.ReferenceSummary> summaries = new ArrayList<>(parsedFile.references.size());
+        for (FeatureReference ref : parsedFile.references) {
+            summaries.add(parsedFile.processFeatureReference(ref));
         }
+        parsedFile.assignFeatureConstantReferencesToMethods(summaries);
 
-        LOG.debug("Done processing feature locations in " + extDoc.fp.pathKey);
+        LOG.debug("Done processing feature locations in " + parsedFile.fp.pathKey);
+        return summaries;
     }
 
-    private GroupingListMap<String, FeatureReference> groupFeatureReferencesByFilePath() {
-        GroupingListMap<String, FeatureReference> featureReferencesByFilePath = new GroupingListMap<>();
-        for (Feature feat : ctx.featureExpressions.GetFeatures()) {
-            for (FeatureReference ref : feat.getReferences()) {
-                featureReferencesByFilePath.put(ref.filePath, ref);
-            }
-        }
-        return featureReferencesByFilePath;
+    public Document readSrcmlFile(String filePath) {
+        return readSrcmlFile(openSrcmlFile(filePath), filePath);
     }
 
-    public Document readSrcmlFile(String filePath) {
-        try (InputStream inputStream = new ByteArrayInputStream(getFileBytes(filePath))) {
+    private Document readSrcmlFile(MappedInput contents, String filePath) {
+        try (InputStream inputStream = contents.openStream()) {
             return readSrcmlFile(inputStream, filePath);
         } catch (IOException e) {
             throw new RuntimeException("I/O exception closing srcml file " + filePath, e);
@@ -249,34 +679,23 @@ public class SrcMlFolderReader {
     }
 
     /**
-     * Gets the file contents as a byte stream.
+     * Maps the file into memory, or prepares streaming it if it is too large.
      *
      * @param filePath the file path
-     * @return the bytes in the file
+     * @return the contents of the file
      */
-    private static byte[] getFileBytes(String filePath) {
+    private MappedInput openSrcmlFile(String filePath) {
         try {
-            return Files.readAllBytes(Paths.get(filePath));
+            return MappedInput.open(filePath, ctx.inputStatistics, INPUT_PHASE);
         } catch (IOException e) {
             throw new RuntimeException("I/O exception reading contents of file " + filePath, e);
         }
     }
 
-    private static Node findParentFunctionNode(Node annotationNode) {
-        Node parent = annotationNode.getParentNode();
-        while (!parent.getNodeName().equals("function")) {
-            // if parent node is unit, it does not belong to a function
-            if (parent.getNodeName().equals("unit")) {
-                return null;
-            }
-            parent = parent.getParentNode();
-        }
-        return parent;
-    }
-
-    private Method parseFunction(Node funcNode, FilePath fp) {
+    private Method parseFunction(Node funcNode, FilePath fp, int[] functionRanges, SourceText.FileStamp stamp,
+                                 int functionIx) {
         ParsedFunctionSignature functionSignature = parseFunctionSignature(funcNode, fp);
-        return parseFunctionUsingSignature(funcNode, fp, functionSignature);
+        return parseFunctionUsingSignature(funcNode, fp, functionSignature, functionRanges, stamp, functionIx);
     }
 
     /**
@@ -303,13 +722,99 @@ public class SrcMlFolderReader {
      * @param funcNode
      * @param filePath
      * @param functionSignature
+     * @param functionRanges    byte ranges of the file's functions, see {@link SrcMlFunctionLocator}, or
+     *                          <code>null</code> to keep the function's code in memory
+     * @param stamp             size and modification time of the srcML file when the function ranges were determined
+     * @param functionIx        index of the function node among the function nodes of the file
      * @return the method parsed from this Node, never <code>null</code>
      */
-    private Method parseFunctionUsingSignature(Node funcNode, FilePath filePath, ParsedFunctionSignature functionSignature) {
-        String textContent = funcNode.getTextContent();
-        int len = countLines(textContent);
-        return methodFactory.create(ctx, functionSignature.signature, filePath.actualPath, functionSignature.cStartLoc, len,
-                functionSignature.originalLinesOfCode, textContent);
+    private Method parseFunctionUsingSignature(Node funcNode, FilePath filePath, ParsedFunctionSignature functionSignature,
+                                               int[] functionRanges, SourceText.FileStamp stamp, int functionIx) {
+        final SourceText source;
+        if (functionRanges != null) {
+            source = sourceText(filePath, stamp, null, countLinesOfTextContent(funcNode), functionRanges, functionIx);
+        } else {
+            String textContent = funcNode.getTextContent();
+            source = SourceText.of(textContent, countLines(textContent));
+        }
+        return createFunction(filePath, functionSignature, source);
+    }
+
+    private Method createFunction(FilePath filePath, ParsedFunctionSignature functionSignature, SourceText source) {
+        return methodFactory.create(ctx, functionSignature.signature, filePath.actualPath, functionSignature.cStartLoc,
+                source.getLineCount(), functionSignature.originalLinesOfCode, source);
+    }
+
+    /**
+     * @param stamp          size and modification time of the srcML file when the function ranges were determined
+     * @param textContent    the code of the function, only used if <code>functionRanges</code> is <code>null</code>
+     * @param functionRanges byte ranges of the file's functions, see {@link SrcMlFunctionLocator}, or
+     *                       <code>null</code>
+     * @return the function's code, read from the srcML file on demand if its range is known
+     */
+    private static SourceText sourceText(FilePath fp, SourceText.FileStamp stamp, String textContent, int lineCount,
+                                         int[] functionRanges, int functionIx) {
+        if (functionRanges == null) return SourceText.of(textContent, lineCount);
+        return SourceText.inSrcMlFile(fp.actualPath, stamp, functionRanges[2 * functionIx],
+                functionRanges[2 * functionIx + 1], lineCount);
+    }
+
+    /**
+     * @return the byte ranges of the functions in the given srcML file, or <code>null</code> if they cannot be
+     * determined
+     */
+    private static int[] locateFunctions(MappedInput contents, FilePath fp) {
+        if (!contents.isMapped()) {
+            LOG.info("SrcML file " + fp.pathKey + " is too large to be mapped. Its functions' code will be kept in"
+                    + " memory.");
+            return null;
+        }
+        try {
+            return SrcMlFunctionLocator.locateFunctions(contents.view());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Cannot locate functions in " + fp.pathKey + ". Their code will be kept in memory.", e);
+            return null;
+        }
+    }
+
+    private static int[] checkFunctionRanges(int[] functionRanges, int numFunctions, FilePath fp) {
+        if (functionRanges == null || functionRanges.length == 2 * numFunctions) return functionRanges;
+        LOG.warn("Found " + (functionRanges.length / 2) + " function elements in " + fp.pathKey + ", but the parser"
+                + " reported " + numFunctions + ". Their code will be kept in memory.");
+        return null;
+    }
+
+    /**
+     * Same as <code>countLines(node.getTextContent())</code>, but without copying the text
+     */
+    static int countLinesOfTextContent(Node node) {
+        int result = 0;
+        boolean empty = true;
+        char lastChar = '\0';
+        Node n = node.getFirstChild();
+        while (n != null) {
+            final short type = n.getNodeType();
+            if ((type == Node.TEXT_NODE) || (type == Node.CDATA_SECTION_NODE)) {
+                final String value = n.getNodeValue();
+                final int len = value.length();
+                for (int i = 0; i < len; i++) {
+                    if (value.charAt(i) == '\n') result++;
+                }
+                if (len > 0) {
+                    empty = false;
+                    lastChar = value.charAt(len - 1);
+                }
+            } else if ((type == Node.ELEMENT_NODE) && (n.getFirstChild() != null)) {
+                n = n.getFirstChild();
+                continue;
+            }
+            while (n.getNextSibling() == null) {
+                n = n.getParentNode();
+                if (n == node) return (!empty && lastChar != '\n') ? result + 1 : result;
+            }
+            n = n.getNextSibling();
+        }
+        return (!empty && lastChar != '\n') ? result + 1 : result;
     }
 
     public void internAllFunctionsInFile(File file, Document doc) {
@@ -325,12 +830,23 @@ public class SrcMlFolderReader {
     }
 
     public Method[] parseAllFunctionsInFile(Document doc, FilePath fp) {
+        return parseAllFunctionsInFile(doc, fp, null, null);
+    }
+
+    /**
+     * @param functionRanges byte ranges of the functions in the srcML file, see {@link SrcMlFunctionLocator}, or
+     *                       <code>null</code> to keep the code of the functions in memory
+     * @param stamp          size and modification time of the srcML file when the function ranges were determined
+     */
+    private Method[] parseAllFunctionsInFile(Document doc, FilePath fp, int[] functionRanges,
+                                             SourceText.FileStamp stamp) {
         NodeList functionNodes = doc.getElementsByTagName("function");
         final int numFunctions = functionNodes.getLength();
+        functionRanges = checkFunctionRanges(functionRanges, numFunctions, fp);
         Method[] result = new Method[numFunctions];
         for (int i = 0; i < numFunctions; i++) {
             Node funcNode = functionNodes.item(i);
-            Method func = parseFunction(funcNode, fp);
+            Method func = parseFunction(funcNode, fp, functionRanges, stamp, i);
             result[i] = func;
         }
         LOG.debug("Found " + numFunctions + " functions in `" + fp.pathKey + "'.");
@@ -350,7 +866,7 @@ public class SrcMlFolderReader {
         }
     }
 
-    private static void adjustImprobableFunctionEndPositions(Method[] functionsByStartPos) {
+    static void adjustImprobableFunctionEndPositions(Method[] functionsByStartPos) {
         int len = functionsByStartPos.length;
         if (len < 2) return;
         Method previousFunc = functionsByStartPos[0];
@@ -361,7 +877,7 @@ public class SrcMlFolderReader {
         }
     }
 
-    private void adjustDuplicateFunctionSignatures(Method[] functionsByOccurrence) {
+    static void adjustDuplicateFunctionSignatures(Method[] functionsByOccurrence) {
         final boolean logDebug = LOG.isDebugEnabled();
         GroupingListMap<String, Method> functionsByOriginalSignature = new GroupingListMap<>();
         for (Method f : functionsByOccurrence) {
@@ -397,6 +913,22 @@ public class SrcMlFolderReader {
         return result;
     }
 
+    /**
+     * Extracts the function signature from a function read by the {@link SrcMlStreamReader}
+     *
+     * @param funcInfo the function definition
+     * @return the function's signature
+     */
+    public static ParsedFunctionSignature parseFunctionSignature(SrcMlStreamReader.FunctionInfo funcInfo, FilePath fp) {
+        if (funcInfo.element != null) {
+            return parseFunctionSignature(funcInfo.element, fp);
+        }
+        final String textContent = funcInfo.textContent;
+        final String noBodyResult = textContent.substring(0, textContent.indexOf('{'));
+        final int cStartLoc = FunctionSignatureParser.cLineNumberFromLineNumberAsIs(funcInfo.lineNumberAsIs);
+        return FunctionSignatureParser.parseSignatureFromTextBeforeBody(noBodyResult, cStartLoc);
+    }
+
     /**
      * Count the number of lines in a string. A line is interpreted to end at a linefeed character (&quot;\n&quot;). An
      * empty string is defined to have no lines. If the last line does not end in a linefeed character, the return value
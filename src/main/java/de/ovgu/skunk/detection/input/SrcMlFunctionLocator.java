@@ -0,0 +1,118 @@
+package de.ovgu.skunk.detection.input;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Finds the byte ranges of the <code>function</code> elements of a srcML file without parsing it, so that the code of
+ * a function can later be read from the file instead of being kept in memory, see
+ * {@link de.ovgu.skunk.detection.data.SourceText}.
+ */
+class SrcMlFunctionLocator {
+    private static final byte[] FUNCTION_START = "<function".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FUNCTION_END = "</function".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] COMMENT_START = "<!--".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] COMMENT_END = "-->".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CDATA_START = "<![CDATA[".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CDATA_END = "]]>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PI_START = "<?".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PI_END = "?>".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * @param contents the bytes of a srcML file, from its position to its limit.  The buffer's position is not
+     *                 changed, and offsets are relative to the position.
+     * @return for each <code>function</code> element, in document order (i.e., the order of
+     * {@link org.w3c.dom.Document#getElementsByTagName(String)}), the offset of the start tag and the length of the
+     * element up to and including its end tag, one after the other.  Thus, the array holds twice as many numbers as
+     * there are functions.
+     */
+    static int[] locateFunctions(ByteBuffer contents) {
+        contents = contents.slice();
+        int[] result = new int[16];
+        int numFunctions = 0;
+        Deque<Integer> open = new ArrayDeque<>();
+        final int len = contents.limit();
+        int i = 0;
+        while (i < len) {
+            if (contents.get(i) != '<') {
+                i++;
+                continue;
+            }
+            if (startsWith(contents, i, COMMENT_START)) {
+                i = indexAfter(contents, COMMENT_END, i + COMMENT_START.length);
+            } else if (startsWith(contents, i, CDATA_START)) {
+                i = indexAfter(contents, CDATA_END, i + CDATA_START.length);
+            } else if (startsWith(contents, i, PI_START)) {
+                i = indexAfter(contents, PI_END, i + PI_START.length);
+            } else if (startsWith(contents, i, FUNCTION_START) && endsName(contents, i + FUNCTION_START.length)) {
+                final int tagEnd = endOfTag(contents, i + 1);
+                if (numFunctions * 2 == result.length) result = Arrays.copyOf(result, result.length * 2);
+                result[numFunctions * 2] = i;
+                if (contents.get(tagEnd - 2) == '/') {
+                    // Empty element
+                    result[numFunctions * 2 + 1] = tagEnd - i;
+                } else {
+                    open.push(numFunctions);
+                }
+                numFunctions++;
+                i = tagEnd;
+            } else if (startsWith(contents, i, FUNCTION_END) && endsName(contents, i + FUNCTION_END.length)) {
+                final int tagEnd = endOfTag(contents, i + 1);
+                if (open.isEmpty()) throw new IllegalArgumentException("Unmatched </function> at offset " + i);
+                int ix = open.pop();
+                result[ix * 2 + 1] = tagEnd - result[ix * 2];
+                i = tagEnd;
+            } else {
+                i = endOfTag(contents, i + 1);
+            }
+        }
+        if (!open.isEmpty()) throw new IllegalArgumentException("Unterminated <function> element");
+        return Arrays.copyOf(result, numFunctions * 2);
+    }
+
+    private static boolean startsWith(ByteBuffer contents, int pos, byte[] prefix) {
+        if (pos + prefix.length > contents.limit()) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (contents.get(pos + i) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> iff the element name ends at the given position, i.e., the name is not merely a
+     * prefix of a longer name, such as <code>function_decl</code>
+     */
+    private static boolean endsName(ByteBuffer contents, int pos) {
+        if (pos >= contents.limit()) return false;
+        final byte b = contents.get(pos);
+        return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static int indexAfter(ByteBuffer contents, byte[] what, int from) {
+        for (int i = from; i < contents.limit(); i++) {
+            if (startsWith(contents, i, what)) return i + what.length;
+        }
+        return contents.limit();
+    }
+
+    /**
+     * @return the position after the <code>&gt;</code> that ends the tag, skipping quoted attribute values
+     */
+    private static int endOfTag(ByteBuffer contents, int i) {
+        byte quote = 0;
+        while (i < contents.limit()) {
+            byte b = contents.get(i++);
+            if (quote != 0) {
+                if (b == quote) quote = 0;
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                break;
+            }
+        }
+        return i;
+    }
+}
@@ -0,0 +1,349 @@
+package de.ovgu.skunk.detection.input;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Reads a srcML file in a single pass using StAX and extracts only the information that {@link SrcMlFolderReader}
+ * needs: the function definitions and the CPP directives referenced by feature constants, along with the elements
+ * following them.  In contrast to {@link PositionalXmlReader}, no DOM of the whole file is built.
+ * <p>
+ * Line numbers are the ones reported by the XML parser for start elements, just like the ones recorded by {@link
+ * PositionalXmlReader}.
+ * </p>
+ */
+public class SrcMlStreamReader {
+    private static final ThreadLocal<XMLInputFactory> tlInputFactory = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // Like our SAX parser: element names are reported as they appear in the file, e.g., `cpp:directive'.
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return factory;
+    });
+    private static final ThreadLocal<DocumentBuilder> tlDocBuilder = ThreadLocal.withInitial(PositionalXmlReader::newDocumentBuilder);
+
+    /**
+     * A <code>function</code> element of the srcML file
+     */
+    public static class FunctionInfo {
+        /**
+         * Line number of the function element, as reported by the XML parser
+         */
+        public final int lineNumberAsIs;
+        /**
+         * Text content of the function element, i.e., the C code of the function definition
+         */
+        public final String textContent;
+        /**
+         * The function element along with all its descendants.  It is only kept if the function's text does not
+         * contain an opening brace, because only then does {@link FunctionSignatureParser} need to look at the
+         * elements of the signature.  Otherwise, it is <code>null</code>.
+         */
+        public final Element element;
+
+        FunctionInfo(int lineNumberAsIs, String textContent, Element element) {
+            this.lineNumberAsIs = lineNumberAsIs;
+            this.textContent = textContent;
+            this.element = element;
+        }
+    }
+
+    /**
+     * Name and position of an element following a CPP directive
+     */
+    public static class ElementInfo {
+        public final String name;
+        public final int lineNumberAsIs;
+        /**
+         * Whether this element has an <code>else</code> child element
+         */
+        public boolean hasElseChild;
+        /**
+         * Whether the element preceding the first <code>else</code> child, if any, is a <code>then</code> element
+         */
+        public boolean elseAfterThen;
+
+        ElementInfo(String name, int lineNumberAsIs, boolean hasElseChild, boolean elseAfterThen) {
+            this.name = name;
+            this.lineNumberAsIs = lineNumberAsIs;
+            this.hasElseChild = hasElseChild;
+            this.elseAfterThen = elseAfterThen;
+        }
+    }
+
+    /**
+     * The element enclosing a <code>cpp:directive</code> element, e.g., <code>cpp:ifdef</code>, along with the
+     * elements following it
+     */
+    public static class DirectiveInfo {
+        /**
+         * Name of the parent of the annotation element
+         */
+        public final String parentName;
+        /**
+         * The annotation element itself, followed by its next siblings, in document order.  Siblings are only
+         * recorded up to the last line requested when reading the file.
+         */
+        public final List<ElementInfo> siblings = new ArrayList<>();
+        /**
+         * Index into {@link Result#functions} of the function definition containing the annotation, or
+         * <code>-1</code>, if the annotation is not part of a function
+         */
+        public final int functionIndex;
+
+        DirectiveInfo(String parentName, int functionIndex) {
+            this.parentName = parentName;
+            this.functionIndex = functionIndex;
+        }
+    }
+
+    public static class Result {
+        /**
+         * All function elements of the file, in document order
+         */
+        public final List<FunctionInfo> functions = new ArrayList<>();
+        /**
+         * The requested CPP directives, keyed by the line number of their <code>cpp:directive</code> element.
+         */
+        public final Map<Integer, DirectiveInfo> directivesByLineNumberAsIs = new HashMap<>();
+    }
+
+    private static class OpenElement {
+        final String name;
+        final int lineNumberAsIs;
+        int functionIndex = -1;
+        boolean hasElseChild = false;
+        boolean elseAfterThen = false;
+        /**
+         * Name of the last child element that has been closed
+         */
+        String lastChildName = null;
+        ElementInfo info = null;
+        /**
+         * Directives whose siblings are children of this element and are still being recorded
+         */
+        List<SiblingRecorder> recorders = null;
+
+        OpenElement(String name, int lineNumberAsIs) {
+            this.name = name;
+            this.lineNumberAsIs = lineNumberAsIs;
+        }
+
+        ElementInfo ensureInfo() {
+            if (info == null) info = new ElementInfo(name, lineNumberAsIs, hasElseChild, elseAfterThen);
+            return info;
+        }
+    }
+
+    private static class SiblingRecorder {
+        final DirectiveInfo directive;
+        final int maxLineNumberAsIs;
+
+        SiblingRecorder(DirectiveInfo directive, int maxLineNumberAsIs) {
+            this.directive = directive;
+            this.maxLineNumberAsIs = maxLineNumberAsIs;
+        }
+    }
+
+    /**
+     * Collects the text of a function element and, as long as it has not seen an opening brace, a copy of its
+     * elements.
+     */
+    private static class FunctionCapture {
+        final int index;
+        final int lineNumberAsIs;
+        final StringBuilder text = new StringBuilder();
+        Element root = null;
+        Element current = null;
+        boolean sawOpeningBrace = false;
+
+        FunctionCapture(int index, int lineNumberAsIs) {
+            this.index = index;
+            this.lineNumberAsIs = lineNumberAsIs;
+        }
+
+        void startElement(Document doc, XMLStreamReader reader, String name, int lineNumberAsIs) {
+            if (sawOpeningBrace) return;
+            Element el = doc.createElement(name);
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                el.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            }
+            PositionalXmlReader.setElementLineNumberAsIs(el, lineNumberAsIs);
+            if (current == null) root = el;
+            else current.appendChild(el);
+            current = el;
+        }
+
+        void endElement() {
+            if (sawOpeningBrace) return;
+            Node parent = current.getParentNode();
+            current = (parent instanceof Element) ? (Element) parent : null;
+        }
+
+        void characters(Document doc, String chars) {
+            text.append(chars);
+            if (sawOpeningBrace) return;
+            if (chars.indexOf('{') != -1) {
+                sawOpeningBrace = true;
+                root = null;
+                current = null;
+                return;
+            }
+            Node last = current.getLastChild();
+            if ((last != null) && (last.getNodeType() == Node.TEXT_NODE)) {
+                ((org.w3c.dom.Text) last).appendData(chars);
+            } else {
+                current.appendChild(doc.createTextNode(chars));
+            }
+        }
+
+        FunctionInfo finish() {
+            return new FunctionInfo(lineNumberAsIs, text.toString(), sawOpeningBrace ? null : root);
+        }
+    }
+
+    /**
+     * Reads a srcML file.
+     *
+     * @param is                            input stream providing the srcML file
+     * @param maxLineNumberByDirectiveLine  the line numbers of the <code>cpp:directive</code> elements to record.
+     *                                      The value for each line is the last line up to which elements following
+     *                                      the directive are recorded.  All line numbers are as reported by the XML
+     *                                      parser.
+     * @return the information extracted from the file
+     * @throws XMLStreamException if the file cannot be parsed
+     */
+    public Result read(InputStream is, Map<Integer, Integer> maxLineNumberByDirectiveLine) throws XMLStreamException {
+        XMLStreamReader reader = tlInputFactory.get().createXMLStreamReader(is);
+        try {
+            return read(reader, maxLineNumberByDirectiveLine);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private Result read(XMLStreamReader reader, Map<Integer, Integer> maxLineNumberByDirectiveLine)
+            throws XMLStreamException {
+        final Result result = new Result();
+        final ArrayList<OpenElement> stack = new ArrayList<>();
+        final ArrayList<FunctionCapture> openFunctions = new ArrayList<>();
+        Document doc = null;
+
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT: {
+                    final String name = reader.getLocalName();
+                    final int line = reader.getLocation().getLineNumber();
+                    final OpenElement el = new OpenElement(name, line);
+                    final OpenElement parent = stack.isEmpty() ? null : stack.get(stack.size() - 1);
+                    if (parent != null) {
+                        if (name.equals("else") && !parent.hasElseChild) {
+                            parent.hasElseChild = true;
+                            parent.elseAfterThen = "then".equals(parent.lastChildName);
+                            if (parent.info != null) {
+                                parent.info.hasElseChild = true;
+                                parent.info.elseAfterThen = parent.elseAfterThen;
+                            }
+                        }
+                        if (parent.recorders != null) recordSibling(parent, el);
+                    }
+
+                    if (!openFunctions.isEmpty()) {
+                        for (FunctionCapture f : openFunctions) f.startElement(doc, reader, name, line);
+                    }
+                    if (name.equals("function")) {
+                        if (doc == null) doc = tlDocBuilder.get().newDocument();
+                        el.functionIndex = result.functions.size();
+                        result.functions.add(null);
+                        FunctionCapture f = new FunctionCapture(el.functionIndex, line);
+                        f.startElement(doc, reader, name, line);
+                        openFunctions.add(f);
+                    } else if ((parent != null) && name.equals("cpp:directive")) {
+                        Integer maxLine = maxLineNumberByDirectiveLine.get(line);
+                        if (maxLine != null) {
+                            DirectiveInfo directive = recordDirective(stack, maxLine);
+                            result.directivesByLineNumberAsIs.put(line, directive);
+                        }
+                    }
+
+                    stack.add(el);
+                    break;
+                }
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (!openFunctions.isEmpty()) {
+                        final String chars = reader.getText();
+                        for (FunctionCapture f : openFunctions) f.characters(doc, chars);
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT: {
+                    final OpenElement el = stack.remove(stack.size() - 1);
+                    if (!stack.isEmpty()) stack.get(stack.size() - 1).lastChildName = el.name;
+                    if (!openFunctions.isEmpty()) {
+                        for (FunctionCapture f : openFunctions) f.endElement();
+                        if (el.functionIndex != -1) {
+                            FunctionCapture f = openFunctions.remove(openFunctions.size() - 1);
+                            result.functions.set(f.index, f.finish());
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Records the annotation element on top of the stack (the parent of the <code>cpp:directive</code> element about
+     * to be pushed) and starts recording its following siblings.
+     */
+    private static DirectiveInfo recordDirective(List<OpenElement> stack, int maxLineNumberAsIs) {
+        final int ixAnnotation = stack.size() - 1;
+        final OpenElement annotation = stack.get(ixAnnotation);
+        final OpenElement annotationParent = (ixAnnotation > 0) ? stack.get(ixAnnotation - 1) : null;
+
+        int functionIndex = -1;
+        for (int i = ixAnnotation - 1; i >= 0; i--) {
+            OpenElement ancestor = stack.get(i);
+            if (ancestor.name.equals("function")) {
+                functionIndex = ancestor.functionIndex;
+                break;
+            }
+            // if an ancestor is unit, it does not belong to a function
+            if (ancestor.name.equals("unit")) break;
+        }
+
+        final String parentName = (annotationParent != null) ? annotationParent.name : "#document";
+        DirectiveInfo directive = new DirectiveInfo(parentName, functionIndex);
+        directive.siblings.add(annotation.ensureInfo());
+        if (annotationParent != null) {
+            if (annotationParent.recorders == null) annotationParent.recorders = new ArrayList<>();
+            annotationParent.recorders.add(new SiblingRecorder(directive, maxLineNumberAsIs));
+        }
+        return directive;
+    }
+
+    private static void recordSibling(OpenElement parent, OpenElement sibling) {
+        Iterator<SiblingRecorder> it = parent.recorders.iterator();
+        while (it.hasNext()) {
+            SiblingRecorder recorder = it.next();
+            if (sibling.lineNumberAsIs > recorder.maxLineNumberAsIs) {
+                // Line numbers only increase.  Hence, this recorder is done.
+                it.remove();
+            } else {
+                recorder.directive.siblings.add(sibling.ensureInfo());
+            }
+        }
+        if (parent.recorders.isEmpty()) parent.recorders = null;
+    }
+}
@@ -0,0 +1,258 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.SrcMlElement;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.util.Arrays;
+
+/**
+ * Compact, read-only representation of a srcML file, built by {@link PositionalXmlReader#readTree}.  Only elements
+ * are nodes.  They are numbered in document order, the root being node 0, and described by parallel
+ * <code>int</code> arrays.  All character data of the file is kept in a single buffer, in document order, so that
+ * the text content of an element is a contiguous range of that buffer.  Attributes are not kept.
+ */
+public final class SrcMlTree {
+    /**
+     * Stands for a missing parent, child or sibling
+     */
+    public static final int NONE = -1;
+
+    private final int size;
+    private final int[] tag;
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] line;
+    private final int[] textStart;
+    private final int[] textEnd;
+    private final char[] text;
+
+    private SrcMlTree(Builder b) {
+        this.size = b.size;
+        this.tag = b.tag;
+        this.parent = b.parent;
+        this.firstChild = b.firstChild;
+        this.nextSibling = b.nextSibling;
+        this.line = b.line;
+        this.textStart = b.textStart;
+        this.textEnd = b.textEnd;
+        this.text = b.text;
+    }
+
+    /**
+     * @return the number of elements
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the id of the element's name in the {@link SrcMlVocabulary}
+     */
+    public int tag(int node) {
+        return tag[node];
+    }
+
+    public String name(int node) {
+        return SrcMlVocabulary.name(tag[node]);
+    }
+
+    /**
+     * @return the element as classified for granularity and discipline
+     */
+    public SrcMlElement element(int node) {
+        return SrcMlVocabulary.element(tag[node]);
+    }
+
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    /**
+     * @return the line of the element's start tag, as reported by the XML parser
+     */
+    public int lineNumberAsIs(int node) {
+        return line[node];
+    }
+
+    /**
+     * @return the text content of the element, like {@link org.w3c.dom.Node#getTextContent()}
+     */
+    public String textContent(int node) {
+        return new String(text, textStart[node], textEnd[node] - textStart[node]);
+    }
+
+    /**
+     * @return the position of the first occurrence of <code>c</code> in the text content of the element, relative to
+     * the start of that content, or <code>-1</code>
+     */
+    public int indexOf(int node, char c) {
+        final int start = textStart[node];
+        final int end = textEnd[node];
+        for (int i = start; i < end; i++) {
+            if (text[i] == c) return i - start;
+        }
+        return -1;
+    }
+
+    /**
+     * Same as <code>SrcMlFolderReader.countLines(textContent(node))</code>, but without copying the text
+     */
+    public int countLines(int node) {
+        final int start = textStart[node];
+        final int end = textEnd[node];
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            if (text[i] == '\n') result++;
+        }
+        if ((end > start) && (text[end - 1] != '\n')) result++;
+        return result;
+    }
+
+    /**
+     * @return <code>true</code> iff the element has a child with the given name
+     */
+    public boolean hasChild(int node, int childTag) {
+        return childByTag(node, childTag) != NONE;
+    }
+
+    /**
+     * @return the first child of the element with the given name, or {@link #NONE}
+     */
+    public int childByTag(int node, int childTag) {
+        for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) {
+            if (tag[c] == childTag) return c;
+        }
+        return NONE;
+    }
+
+    /**
+     * @return the element preceding the given one among the children of its parent, or {@link #NONE}
+     */
+    public int previousSibling(int node) {
+        final int p = parent[node];
+        if (p == NONE) return NONE;
+        int previous = NONE;
+        for (int c = firstChild[p]; c != node; c = nextSibling[c]) {
+            previous = c;
+        }
+        return previous;
+    }
+
+    /**
+     * @return all elements with the given name, in document order
+     */
+    public int[] elementsByTag(int tagId) {
+        int[] result = new int[16];
+        int count = 0;
+        for (int n = 0; n < size; n++) {
+            if (tag[n] != tagId) continue;
+            if (count == result.length) result = Arrays.copyOf(result, 2 * count);
+            result[count++] = n;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Converts a subtree into DOM elements, with line numbers as set by {@link PositionalXmlReader}, for code that
+     * works on the DOM.
+     *
+     * @param node the root of the subtree
+     * @param doc  the document creating the elements
+     * @return the converted element, which is not attached to the document
+     */
+    public Element toElement(int node, Document doc) {
+        Element el = doc.createElement(name(node));
+        PositionalXmlReader.setElementLineNumberAsIs(el, line[node]);
+        int pos = textStart[node];
+        for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) {
+            if (textStart[c] > pos) el.appendChild(doc.createTextNode(new String(text, pos, textStart[c] - pos)));
+            el.appendChild(toElement(c, doc));
+            pos = textEnd[c];
+        }
+        if (textEnd[node] > pos) el.appendChild(doc.createTextNode(new String(text, pos, textEnd[node] - pos)));
+        return el;
+    }
+
+    /**
+     * Builds a tree from the start tags, end tags and character data of a document, in the order reported by the
+     * parser.
+     */
+    static final class Builder {
+        private int size = 0;
+        private int[] tag = new int[256];
+        private int[] parent = new int[256];
+        private int[] firstChild = new int[256];
+        private int[] nextSibling = new int[256];
+        private int[] line = new int[256];
+        private int[] textStart = new int[256];
+        private int[] textEnd = new int[256];
+        private char[] text = new char[4096];
+        private int textLength = 0;
+        /**
+         * The element whose end tag has not been seen yet and that was started last
+         */
+        private int current = NONE;
+        /**
+         * The last child of {@link #current} that has been completed
+         */
+        private int lastChild = NONE;
+
+        void startElement(String qName, int lineNumberAsIs) {
+            if (size == tag.length) grow();
+            final int n = size++;
+            tag[n] = SrcMlVocabulary.intern(qName);
+            parent[n] = current;
+            firstChild[n] = NONE;
+            nextSibling[n] = NONE;
+            line[n] = lineNumberAsIs;
+            textStart[n] = textLength;
+            if (current != NONE) {
+                if (lastChild == NONE) firstChild[current] = n;
+                else nextSibling[lastChild] = n;
+            }
+            current = n;
+            lastChild = NONE;
+        }
+
+        void endElement() {
+            textEnd[current] = textLength;
+            lastChild = current;
+            current = parent[current];
+        }
+
+        void characters(char[] ch, int start, int length) {
+            if (current == NONE) return;
+            if (textLength + length > text.length) {
+                text = Arrays.copyOf(text, Math.max(2 * text.length, textLength + length));
+            }
+            System.arraycopy(ch, start, text, textLength, length);
+            textLength += length;
+        }
+
+        private void grow() {
+            final int newLength = 2 * tag.length;
+            tag = Arrays.copyOf(tag, newLength);
+            parent = Arrays.copyOf(parent, newLength);
+            firstChild = Arrays.copyOf(firstChild, newLength);
+            nextSibling = Arrays.copyOf(nextSibling, newLength);
+            line = Arrays.copyOf(line, newLength);
+            textStart = Arrays.copyOf(textStart, newLength);
+            textEnd = Arrays.copyOf(textEnd, newLength);
+        }
+
+        SrcMlTree build() {
+            if (current != NONE) throw new IllegalStateException("Unclosed element: " + SrcMlVocabulary.name(tag[current]));
+            return new SrcMlTree(this);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.SrcMlElement;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interned element names of srcML files.  Each distinct name is assigned a small integer id once, which all
+ * {@link SrcMlTree}s share, along with the {@link SrcMlElement} the name stands for.  The names Skunk looks for
+ * have fixed ids.  This class is thread-safe.
+ */
+public final class SrcMlVocabulary {
+    public static final int UNIT = 0;
+    public static final int FUNCTION = 1;
+    public static final int CPP_DIRECTIVE = 2;
+    public static final int IF = 3;
+    public static final int ELSE = 4;
+    public static final int THEN = 5;
+
+    private static final ConcurrentHashMap<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private static volatile String[] namesById = new String[0];
+    private static volatile SrcMlElement[] elementsById = new SrcMlElement[0];
+
+    static {
+        intern("unit");
+        intern("function");
+        intern("cpp:directive");
+        intern("if");
+        intern("else");
+        intern("then");
+    }
+
+    private SrcMlVocabulary() {
+    }
+
+    /**
+     * @param name qualified name of an element, such as <code>cpp:directive</code>
+     * @return the id of the name, which is assigned if the name has not been seen before
+     */
+    public static int intern(String name) {
+        Integer id = idsByName.get(name);
+        if (id != null) return id;
+        synchronized (SrcMlVocabulary.class) {
+            id = idsByName.get(name);
+            if (id != null) return id;
+            final int newId = namesById.length;
+            String[] newNames = Arrays.copyOf(namesById, newId + 1);
+            newNames[newId] = name;
+            SrcMlElement[] newElements = Arrays.copyOf(elementsById, newId + 1);
+            newElements[newId] = SrcMlElement.fromName(name);
+            // Publish the element before the name so that readers of a name's id see its element
+            elementsById = newElements;
+            namesById = newNames;
+            idsByName.put(name, newId);
+            return newId;
+        }
+    }
+
+    /**
+     * @param id an id returned by {@link #intern(String)}
+     * @return the name of the element
+     */
+    public static String name(int id) {
+        return namesById[id];
+    }
+
+    /**
+     * @param id an id returned by {@link #intern(String)}
+     * @return the element the name stands for, possibly {@link SrcMlElement#OTHER}
+     */
+    public static SrcMlElement element(int id) {
+        return elementsById[id];
+    }
+}
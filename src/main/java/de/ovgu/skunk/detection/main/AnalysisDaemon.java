@@ -0,0 +1,376 @@
+package de.ovgu.skunk.detection.main;
+
+import de.ovgu.skunk.detection.data.Context;
+import de.ovgu.skunk.detection.data.Feature;
+import de.ovgu.skunk.detection.data.FeatureReference;
+import de.ovgu.skunk.detection.data.Method;
+import de.ovgu.skunk.detection.data.SourceText;
+import de.ovgu.skunk.detection.detector.DetectionConfig;
+import de.ovgu.skunk.detection.detector.Detector;
+import de.ovgu.skunk.detection.detector.SmellReason;
+import de.ovgu.skunk.detection.output.AnalyzedDataHandler;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves smell detection requests on a local TCP port, keeping the data of recently used projects in memory so that
+ * repeated detections on the same project do not have to load the project again.
+ * <p>
+ * Clients connect to the loopback interface and send requests, one per line.  Arguments are separated by white
+ * space.  An argument containing white space or double quotes is enclosed in double quotes, with <code>\"</code>
+ * and <code>\\</code> standing for a double quote and a backslash within it, e.g.,
+ * <code>DETECT "/home/me/my project" smells.csm</code>.  Directories in responses are quoted the same way.  The
+ * following requests are understood:
+ * <dl>
+ * <dt><code>DETECT DIR CONFIG</code></dt>
+ * <dd>Detects smells in the processed data saved in directory <code>DIR</code> (see <code>--save-intermediate</code>)
+ * using the configuration file <code>CONFIG</code>.  For each result file written by {@link AnalyzedDataHandler}, the
+ * response contains a line <code>FILE NAME LENGTH</code>, followed by the <code>LENGTH</code> bytes of the file.  The
+ * response ends with a line <code>OK MILLIS</code>.</dd>
+ * <dt><code>STATUS</code></dt>
+ * <dd>Responds with one line <code>PROJECT DIR SIZE</code> per project held in memory, least recently used first,
+ * where <code>SIZE</code> is the estimated number of bytes the project occupies, followed by a line
+ * <code>OK TOTAL_SIZE HEAP_BUDGET</code>, also in bytes.</dd>
+ * <dt><code>QUIT</code></dt>
+ * <dd>Closes the connection.</dd>
+ * </dl>
+ * A request that cannot be served is answered with a single line <code>ERROR MESSAGE</code>.
+ * <p>
+ * A project is loaded again if its processed data files have changed since it was loaded.  When the estimated size
+ * of the projects held in memory exceeds the heap budget after loading a project, the least recently used projects
+ * are dropped.
+ */
+public class AnalysisDaemon {
+    private static Logger LOG = Logger.getLogger(AnalysisDaemon.class);
+    private static final String PROCESSED_DATA_FILENAME_PREFIX = new Context(null).getProcessedDataFilenamePrefix();
+    /**
+     * Estimated number of bytes occupied by each feature, feature reference, function and file of a loaded project,
+     * see {@link #estimateSize(Context)}
+     */
+    private static final long BYTES_PER_FEATURE = 256;
+    private static final long BYTES_PER_REFERENCE = 192;
+    private static final long BYTES_PER_FUNCTION = 512;
+    private static final long BYTES_PER_FILE = 384;
+
+    /**
+     * Data of a project, as loaded from a processed data directory
+     */
+    static class LoadedProject {
+        final String dir;
+        /**
+         * Modification times and sizes of the processed data files in the directory when the project was loaded
+         */
+        String fingerprint;
+        Context ctx;
+        /**
+         * Estimated number of bytes occupied by {@link #ctx}, zero while it is being loaded
+         */
+        volatile long estimatedSize;
+
+        LoadedProject(String dir) {
+            this.dir = dir;
+        }
+    }
+
+    private final int port;
+    private final long heapBudget;
+    private final int numThreads;
+    /**
+     * Loaded projects by canonical directory path, in access order
+     */
+    private final LinkedHashMap<String, LoadedProject> projects = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param port       the TCP port to listen on
+     * @param heapBudget number of bytes of heap that may be used before loaded projects are dropped
+     * @param numThreads number of requests served concurrently
+     */
+    public AnalysisDaemon(int port, long heapBudget, int numThreads) {
+        this.port = port;
+        this.heapBudget = heapBudget;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Serves requests until the process is terminated.
+     */
+    public void serve() {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            serve(server);
+        } catch (IOException e) {
+            throw new RuntimeException("Error serving detection requests on port " + port, e);
+        }
+    }
+
+    /**
+     * Serves requests on the given socket until it is closed.
+     *
+     * @param server a bound server socket
+     */
+    void serve(ServerSocket server) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try {
+            System.out.println("Serving detection requests on " + server.getInetAddress().getHostAddress() + ":"
+                    + server.getLocalPort() + " (heap budget: " + toMegabytes(heapBudget) + " MB).");
+            while (true) {
+                final Socket client;
+                try {
+                    client = server.accept();
+                } catch (IOException e) {
+                    if (server.isClosed()) return;
+                    throw e;
+                }
+                pool.execute(() -> handleConnection(client));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void handleConnection(Socket client) {
+        try (Socket s = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(),
+                     StandardCharsets.UTF_8));
+             OutputStream out = new BufferedOutputStream(s.getOutputStream())) {
+            String request;
+            while ((request = in.readLine()) != null) {
+                try {
+                    List<String> args = splitArguments(request);
+                    if (args.isEmpty()) continue;
+                    String command = args.get(0).toUpperCase();
+                    if (command.equals("QUIT")) break;
+                    if (command.equals("DETECT") && args.size() == 3) {
+                        detect(args.get(1), args.get(2), out);
+                    } else if (command.equals("STATUS") && args.size() == 1) {
+                        status(out);
+                    } else {
+                        throw new IllegalArgumentException("Malformed request: " + request);
+                    }
+                } catch (Exception e) {
+                    LOG.warn("Error serving request `" + request + "'", e);
+                    writeLine(out, "ERROR " + String.valueOf(e).replaceAll("\\s+", " "));
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            LOG.warn("Error communicating with client", e);
+        }
+    }
+
+    private void detect(String dir, String configPath, OutputStream out) throws Exception {
+        final long startTime = System.nanoTime();
+        final DetectionConfig config = new DetectionConfig(configPath);
+        detect(getProject(dir), config, startTime, out);
+    }
+
+    /**
+     * Detects smells in a project obtained from {@link #getProject(String)} and writes the response
+     *
+     * @param startTime value of {@link System#nanoTime()} when the request was received
+     */
+    void detect(LoadedProject project, DetectionConfig config, long startTime, OutputStream out) throws Exception {
+        File tmpDir = Files.createTempDirectory("skunk-daemon").toFile();
+        try {
+            // Detectors read the lazily built indexes of the project's data, hence, one detection per project at a
+            // time.  A concurrent reload replaces the data only once it has been loaded successfully, so the data is
+            // never missing here.
+            synchronized (project) {
+                Context ctx = project.ctx.withConfig(config, tmpDir);
+                Map<FeatureReference, List<SmellReason>> res = new Detector(ctx).Perform();
+                AnalyzedDataHandler presenter = new AnalyzedDataHandler(ctx);
+                presenter.SaveTextResults(res);
+                presenter.SaveCsvResults();
+            }
+            File[] results = tmpDir.listFiles();
+            Arrays.sort(results);
+            for (File f : results) {
+                writeLine(out, "FILE " + f.getName() + " " + f.length());
+                Files.copy(f.toPath(), out);
+            }
+        } finally {
+            org.apache.commons.io.FileUtils.deleteQuietly(tmpDir);
+        }
+        writeLine(out, "OK " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    private void status(OutputStream out) throws IOException {
+        List<LoadedProject> loaded;
+        synchronized (projects) {
+            loaded = new ArrayList<>(projects.values());
+        }
+        long totalSize = 0;
+        for (LoadedProject p : loaded) {
+            final long size = p.estimatedSize;
+            writeLine(out, "PROJECT " + quoteArgument(p.dir) + " " + size);
+            totalSize += size;
+        }
+        writeLine(out, "OK " + totalSize + " " + heapBudget);
+    }
+
+    /**
+     * @param dir a processed data directory
+     * @return the project whose data is in the given directory, loaded if it is not in memory or has changed.  Its
+     * data is never <code>null</code>: if loading fails, the previous data, if any, is kept, but the project is no
+     * longer held in memory.
+     */
+    LoadedProject getProject(String dir) throws IOException {
+        final File fDir = new File(dir).getCanonicalFile();
+        if (!fDir.isDirectory()) {
+            throw new FileNotFoundException("Not a directory: " + dir);
+        }
+        final String key = fDir.getPath();
+        LoadedProject project;
+        synchronized (projects) {
+            project = projects.get(key);
+            if (project == null) {
+                project = new LoadedProject(key);
+                projects.put(key, project);
+            }
+        }
+        boolean loaded = false;
+        synchronized (project) {
+            String fingerprint = fingerprint(fDir);
+            if (project.ctx == null || !fingerprint.equals(project.fingerprint)) {
+                LOG.info((project.ctx == null ? "Loading" : "Reloading changed") + " project " + key);
+                Context ctx = new Context(null);
+                try {
+                    ctx.processedDataHandler.LoadProcessedData(key);
+                } catch (RuntimeException e) {
+                    synchronized (projects) {
+                        projects.remove(key, project);
+                    }
+                    throw e;
+                }
+                project.ctx = ctx;
+                project.fingerprint = fingerprint;
+                project.estimatedSize = estimateSize(ctx);
+                synchronized (projects) {
+                    // in case a failed load by another request has dropped the project in the meantime
+                    projects.putIfAbsent(key, project);
+                }
+                loaded = true;
+            }
+        }
+        if (loaded) evictOverBudget(project);
+        return project;
+    }
+
+    /**
+     * Drops the least recently used projects, except for the given one, until the estimated size of the projects
+     * held in memory is within budget.
+     */
+    private void evictOverBudget(LoadedProject keep) {
+        synchronized (projects) {
+            long totalSize = 0;
+            for (LoadedProject p : projects.values()) totalSize += p.estimatedSize;
+            Iterator<LoadedProject> it = projects.values().iterator();
+            while (totalSize > heapBudget && it.hasNext()) {
+                LoadedProject eldest = it.next();
+                if (eldest == keep) continue;
+                it.remove();
+                totalSize -= eldest.estimatedSize;
+                LOG.info("Heap budget exceeded, dropping project " + eldest.dir);
+            }
+        }
+    }
+
+    /**
+     * Roughly estimates the number of bytes the data of a project occupies: a fixed number of bytes per feature,
+     * feature reference, function and file, plus the code of functions that is kept in memory.  Unlike the used heap,
+     * the estimate does not depend on when the garbage collector last ran or on other projects loaded concurrently.
+     *
+     * @param ctx the data of a project
+     * @return the estimated number of bytes
+     */
+    static long estimateSize(Context ctx) {
+        long result = 0;
+        for (Feature feat : ctx.featureExpressions.GetFeatures()) {
+            result += BYTES_PER_FEATURE + feat.getReferences().size() * BYTES_PER_REFERENCE;
+        }
+        for (Method meth : ctx.functions.AllMethods()) {
+            result += BYTES_PER_FUNCTION;
+            SourceText source = meth.getSourceText();
+            if (source.isInMemory()) result += 2L * source.get().length();
+        }
+        result += ctx.files.AllFiles().size() * BYTES_PER_FILE;
+        return result;
+    }
+
+    private static String fingerprint(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) return "";
+        Arrays.sort(files);
+        StringBuilder result = new StringBuilder();
+        for (File f : files) {
+            if (f.isFile() && f.getName().startsWith(PROCESSED_DATA_FILENAME_PREFIX)) {
+                result.append(f.getName()).append(':').append(f.lastModified()).append(':').append(f.length())
+                        .append('\n');
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Splits a request into its arguments, see {@link AnalysisDaemon} for the quoting rules
+     *
+     * @param request a request line
+     * @return the arguments, the first of which is the command
+     * @throws IllegalArgumentException if a quoted argument is not terminated
+     */
+    static List<String> splitArguments(String request) {
+        List<String> result = new ArrayList<>();
+        final int len = request.length();
+        int i = 0;
+        while (true) {
+            while (i < len && Character.isWhitespace(request.charAt(i))) i++;
+            if (i == len) return result;
+            StringBuilder arg = new StringBuilder();
+            if (request.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i == len) throw new IllegalArgumentException("Unterminated quoted argument: " + request);
+                    char c = request.charAt(i++);
+                    if (c == '"') break;
+                    if (c == '\\' && i < len) c = request.charAt(i++);
+                    arg.append(c);
+                }
+            } else {
+                while (i < len && !Character.isWhitespace(request.charAt(i))) arg.append(request.charAt(i++));
+            }
+            result.add(arg.toString());
+        }
+    }
+
+    /**
+     * @param arg an argument of a request or a response
+     * @return the argument, enclosed in double quotes if it contains white space or double quotes, see
+     * {@link #splitArguments(String)}
+     */
+    static String quoteArgument(String arg) {
+        boolean needsQuotes = arg.isEmpty();
+        for (int i = 0; i < arg.length() && !needsQuotes; i++) {
+            char c = arg.charAt(i);
+            needsQuotes = Character.isWhitespace(c) || c == '"';
+        }
+        if (!needsQuotes) return arg;
+        return '"' + arg.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    private static long toMegabytes(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    private static void writeLine(OutputStream out, String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+}
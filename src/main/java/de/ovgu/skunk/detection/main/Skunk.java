@@ -5,17 +5,29 @@ import de.ovgu.skunk.detection.data.FeatureReference;
 import de.ovgu.skunk.detection.detector.DetectionConfig;
 import de.ovgu.skunk.detection.detector.Detector;
 import de.ovgu.skunk.detection.detector.SmellReason;
+import de.ovgu.skunk.detection.input.CSourceFolderReader;
 import de.ovgu.skunk.detection.input.CppStatsFolderReader;
+import de.ovgu.skunk.detection.input.SrcMlCache;
 import de.ovgu.skunk.detection.input.SrcMlFolderReader;
 import de.ovgu.skunk.detection.output.AnalyzedDataHandler;
+import de.ovgu.skunk.detection.output.CsvFileWriterHelper;
+import de.ovgu.skunk.detection.output.ProcessedDataHandler;
+import de.ovgu.skunk.util.ThreadPrefixingOutputStream;
 import org.apache.commons.cli.*;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.log4j.MDC;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.io.PrintWriter;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Skunk main class
@@ -27,27 +39,102 @@ public class Skunk {
     private static final char OPT_SAVE_INTERMEDIATE = 'm';
     private static final char OPT_SOURCE = 's';
     private static final char OPT_PROCESSED = 'p';
+    private static final String OPT_C_SOURCE_L = "c-source";
     private static final char OPT_CONFIG = 'c';
+    private static final char OPT_THREADS = 't';
+    private static final String OPT_XML_READER_L = "xml-reader";
+    private static final String OPT_INTERMEDIATE_FORMAT_L = "intermediate-format";
+    private static final String OPT_CACHE_L = "cache";
+    private static final char OPT_OUTPUT = 'o';
+    private static final String OPT_BATCH_L = "batch";
+    private static final String OPT_SERVE_L = "serve";
+    private static final String OPT_HEAP_BUDGET_L = "heap-budget";
+    private static final String BATCH_TIMINGS_FILENAME = "skunk_batch_timings.csv";
+    /**
+     * Key of the log4j MDC entry holding the prefix of log messages of a project in batch mode, see
+     * <code>log4j.xml</code>
+     */
+    private static final String LOG_PROJECT_KEY = "project";
     /**
      * The code smell configuration.
      */
     private DetectionConfig conf = null;
+    /**
+     * Path of the code smell configuration file, or <code>null</code>
+     */
+    private String configPath = null;
 
     private Context ctx = null;
 
     /**
-     * The path of the source folder.  Mutually exclusive with {@link #processedDataDir}.
+     * The path of the source folder.  Mutually exclusive with {@link #processedDataDir} and {@link #cSourcePath}.
      */
     private Optional<String> sourcePath = Optional.empty();
 
     /**
-     * Directory from which preprocessed data will be loaded.  Mutually exclusive with {@link #sourcePath}.
+     * Folder of C files that are read directly, without cppstats and srcML.  Mutually exclusive with
+     * {@link #sourcePath} and {@link #processedDataDir}.
+     */
+    private Optional<String> cSourcePath = Optional.empty();
+
+    /**
+     * Directory from which preprocessed data will be loaded.  Mutually exclusive with {@link #sourcePath} and
+     * {@link #cSourcePath}.
      */
     private Optional<String> processedDataDir = Optional.empty();
     /**
      * A flag that defines if intermediate formats will be saved.
      */
     private boolean saveIntermediate = false;
+    /**
+     * Directory in which summaries of srcML files are cached between runs, or <code>null</code>
+     */
+    private File cacheDir = null;
+    /**
+     * Format in which intermediate results are saved
+     */
+    private ProcessedDataHandler.Format intermediateFormat = ProcessedDataHandler.Format.BINARY;
+    /**
+     * Number of threads used for reading source files, parsing srcML files and detecting smells
+     */
+    private int numThreads = 1;
+    /**
+     * How srcML files are read
+     */
+    private SrcMlFolderReader.XmlReaderType xmlReaderType = SrcMlFolderReader.XmlReaderType.TREE;
+    /**
+     * Directory in which output files are written, or <code>null</code> for the current working directory
+     */
+    private File outputDir = null;
+    /**
+     * The projects listed in the manifest given with <code>--batch</code>, or <code>null</code> if Skunk analyzes a
+     * single project.  Each project is represented by its own instance of this class.
+     */
+    private List<Skunk> batchProjects = null;
+    /**
+     * Where the project was declared in the batch manifest (<code>FILE:LINE</code>)
+     */
+    private String manifestLocation = null;
+    /**
+     * Port on which to serve detection requests (see {@link AnalysisDaemon}), or -1 if Skunk is not run as a daemon
+     */
+    private int servePort = -1;
+    /**
+     * Heap in bytes that the daemon may use for keeping projects in memory
+     */
+    private long heapBudget = Runtime.getRuntime().maxMemory() / 2;
+    /**
+     * Time in milliseconds spent reading the input of the project
+     */
+    private long loadMillis = -1;
+    /**
+     * Time in milliseconds spent detecting smells and writing the results
+     */
+    private long detectMillis = -1;
+    /**
+     * Why the analysis of the project in batch mode failed, or <code>null</code>
+     */
+    private Exception failure = null;
 
     /**
      * The main method.
@@ -85,25 +172,57 @@ public class Skunk {
             System.exit(1);
         }
 
-        ctx = new Context(conf);
+        if (servePort != -1) {
+            new AnalysisDaemon(servePort, heapBudget, numThreads).serve();
+        } else if (batchProjects != null) {
+            boolean success = runBatch();
+            System.out.println("Exiting Skunk.");
+            if (!success) System.exit(1);
+        } else {
+            analyze();
+            System.out.println("Exiting Skunk.");
+        }
+    }
+
+    /**
+     * Reads the input of the project, detects smells (if a configuration is given) and writes the results
+     */
+    private void analyze() {
+        if (outputDir != null && !outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new RuntimeException("Cannot create output directory `" + outputDir + "'");
+        }
+        final long startTime = System.nanoTime();
+        ctx = new Context(conf, outputDir);
 
         if (sourcePath.isPresent()) {
             // process necessary csv files in project folder
             CppStatsFolderReader cppReader = new CppStatsFolderReader(ctx, sourcePath.get());
-            cppReader.ProcessFiles();
+            cppReader.ProcessFiles(numThreads);
             // process srcML files
-            SrcMlFolderReader mlReader = new SrcMlFolderReader(ctx);
-            mlReader.ProcessFiles();
+            SrcMlFolderReader mlReader = new SrcMlFolderReader(ctx, xmlReaderType);
+            if (cacheDir != null) mlReader.setCache(new SrcMlCache(cacheDir));
+            mlReader.ProcessFiles(numThreads);
             // do post actions
             ctx.functions.PostAction();
             ctx.files.PostAction();
             // save processed data
-            if (saveIntermediate) ctx.processedDataHandler.SaveProcessedData();
+            if (saveIntermediate) ctx.processedDataHandler.SaveProcessedData(intermediateFormat);
+        } else if (cSourcePath.isPresent()) {
+            // read directives and functions from the C files
+            CSourceFolderReader cReader = new CSourceFolderReader(ctx, cSourcePath.get());
+            cReader.ProcessFiles(numThreads);
+            // do post actions
+            ctx.functions.PostAction();
+            ctx.files.PostAction();
+            // save processed data
+            if (saveIntermediate) ctx.processedDataHandler.SaveProcessedData(intermediateFormat);
         } else if (processedDataDir.isPresent()) {
             ctx.processedDataHandler.LoadProcessedData(processedDataDir.get());
         } else {
             throw new IllegalStateException("Exactly one of --sourcePath or --processedData must be specified!");
         }
+        final long loadEndTime = System.nanoTime();
+        loadMillis = TimeUnit.NANOSECONDS.toMillis(loadEndTime - startTime);
 
         // display loc, loac, #feat, NOFL and NOFC
         System.out.println();
@@ -122,13 +241,122 @@ public class Skunk {
         System.out.println("NOFL: " + nofl);
         // run detection with current configuration (if present)
         if (conf != null) {
-            Detector detector = new Detector(ctx);
+            Detector detector = new Detector(ctx, numThreads);
             Map<FeatureReference, List<SmellReason>> res = detector.Perform();
             AnalyzedDataHandler presenter = new AnalyzedDataHandler(ctx);
             presenter.SaveTextResults(res);
             presenter.SaveCsvResults();
         }
-        System.out.println("Exiting Skunk.");
+        detectMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadEndTime);
+    }
+
+    /**
+     * Analyzes the projects of the batch manifest on a pool of {@link #numThreads} threads.  The failure of one
+     * project does not affect the others.  While the projects are analyzed, each line of their progress output and
+     * of their log messages is prefixed with the project's name.  Afterwards, writes the time each project took to
+     * {@value #BATCH_TIMINGS_FILENAME}.
+     *
+     * @return <code>true</code> iff all projects were analyzed successfully
+     */
+    boolean runBatch() {
+        final int numProjects = batchProjects.size();
+        System.out.println("Analyzing " + numProjects + " project(s) using " + numThreads + " thread(s).");
+        final long startTime = System.nanoTime();
+        final PrintStream originalOut = System.out;
+        final ThreadPrefixingOutputStream prefixingOut = new ThreadPrefixingOutputStream(originalOut);
+        System.setOut(new PrintStream(prefixingOut, true));
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(numThreads, numProjects));
+        List<Future<?>> futures = new ArrayList<>(numProjects);
+        try {
+            for (final Skunk project : batchProjects) {
+                futures.add(pool.submit(() -> {
+                    System.out.println("Starting project " + project.getProjectName() + " ("
+                            + project.manifestLocation + ").");
+                    final String prefix = "[" + project.getProjectName() + "] ";
+                    try {
+                        prefixingOut.setPrefix(prefix);
+                        MDC.put(LOG_PROJECT_KEY, prefix);
+                        project.analyze();
+                    } catch (Exception e) {
+                        project.failure = e;
+                    } finally {
+                        MDC.remove(LOG_PROJECT_KEY);
+                        try {
+                            prefixingOut.setPrefix(null);
+                        } catch (IOException e) {
+                            // Cannot happen: the underlying stream is a PrintStream, which does not throw.
+                        }
+                        // Allow the project's data to be garbage collected while other projects are still running.
+                        project.ctx = null;
+                        project.conf = null;
+                    }
+                    if (project.failure == null) {
+                        System.out.println("Finished project " + project.getProjectName() + ".");
+                    } else {
+                        System.err.println("Error analyzing project " + project.getProjectName() + " ("
+                                + project.manifestLocation + "): " + project.failure);
+                        project.failure.printStackTrace();
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (Exception e) {
+                    throw new RuntimeException("Error waiting for batch to complete", e);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            System.setOut(originalOut);
+        }
+        final long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        return writeBatchTimings(totalMillis);
+    }
+
+    private boolean writeBatchTimings(long totalMillis) {
+        if (outputDir != null && !outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new RuntimeException("Cannot create output directory `" + outputDir + "'");
+        }
+        File timingsFile = (outputDir == null) ? new File(BATCH_TIMINGS_FILENAME)
+                : new File(outputDir, BATCH_TIMINGS_FILENAME);
+        new CsvFileWriterHelper() {
+            @Override
+            protected void actuallyDoStuff(CSVPrinter csv) throws IOException {
+                csv.printRecord("Project", "Input", "Config", "Status", "LoadMillis", "DetectMillis", "TotalMillis");
+                for (Skunk p : batchProjects) {
+                    boolean ok = (p.failure == null);
+                    csv.printRecord(p.getProjectName(), p.getInputPath(), (p.configPath == null) ? "" : p.configPath,
+                            ok ? "OK" : "FAILED", p.loadMillis, ok ? p.detectMillis : -1,
+                            ok ? p.loadMillis + p.detectMillis : -1);
+                }
+            }
+        }.write(timingsFile);
+
+        System.out.println();
+        System.out.println("Batch summary:");
+        int numFailed = 0;
+        for (Skunk p : batchProjects) {
+            if (p.failure == null) {
+                System.out.printf("  %s: load %d ms, detect %d ms\n", p.getProjectName(), p.loadMillis,
+                        p.detectMillis);
+            } else {
+                numFailed++;
+                System.out.printf("  %s: FAILED (%s)\n", p.getProjectName(), p.failure);
+            }
+        }
+        System.out.printf("%d of %d project(s) analyzed successfully in %d ms. Timings saved in `%s'\n",
+                batchProjects.size() - numFailed, batchProjects.size(), totalMillis, timingsFile);
+        return numFailed == 0;
+    }
+
+    private String getProjectName() {
+        return (outputDir == null) ? "." : outputDir.getPath();
+    }
+
+    private String getInputPath() {
+        if (sourcePath.isPresent()) return sourcePath.get();
+        return cSourcePath.isPresent() ? cSourcePath.get() : processedDataDir.orElse("");
     }
 
     /**
@@ -136,7 +364,7 @@ public class Skunk {
      *
      * @param args the input arguments
      */
-    private void parseCommandLineArgs(String[] args) {
+    void parseCommandLineArgs(String[] args) {
         CommandLineParser parser = new DefaultParser();
         Options fakeOptionsForHelp = makeOptions(true);
         Options actualOptions = makeOptions(false);
@@ -159,20 +387,100 @@ public class Skunk {
             System.exit(1);
             return;
         }
-        // --config=... get the path to the code smell configuration
-        if (line.hasOption(OPT_CONFIG)) {
-            String configPath = line.getOptionValue('c');
-            File fConfig = new File(configPath);
-            if (fConfig.exists() && !fConfig.isDirectory()) {
-                try {
-                    conf = new DetectionConfig(configPath);
-                } catch (NoSuchFieldException | SecurityException | IllegalArgumentException | IllegalAccessException
-                        | IOException e) {
-                    throw new RuntimeException("Error opening smell configuration file " + configPath, e);
+        applyOptions(line);
+        // --batch=FILE
+        if (line.hasOption(OPT_BATCH_L)) {
+            batchProjects = readBatchManifest(line.getOptionValue(OPT_BATCH_L));
+        }
+    }
+
+    /**
+     * Reads the projects to analyze in batch mode.  Each non-empty line of the manifest that does not start with
+     * <code>#</code> holds the options for one project, separated by white space, e.g. <code>--source=DIR
+     * --config=FILE --output=DIR</code>.  Projects without a <code>--config</code> option use the configuration of
+     * the batch.
+     *
+     * @param manifestPath path of the manifest file
+     * @return one instance per project, with the project's options applied
+     */
+    private List<Skunk> readBatchManifest(String manifestPath) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(new File(manifestPath).toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UsageError("Cannot read the batch manifest, " + manifestPath + ": " + e);
+        }
+        CommandLineParser parser = new DefaultParser();
+        Options options = makeOptions(false);
+        List<Skunk> projects = new ArrayList<>();
+        Map<File, String> locationsByOutputDir = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String text = lines.get(i).trim();
+            if (text.isEmpty() || text.startsWith("#")) continue;
+            String location = manifestPath + ":" + (i + 1);
+            Skunk project = new Skunk();
+            project.manifestLocation = location;
+            try {
+                CommandLine projectLine = parser.parse(options, text.split("\\s+"));
+                if (projectLine.hasOption(OPT_BATCH_L) || projectLine.hasOption(OPT_SERVE_L)) {
+                    throw new UsageError("projects of a batch need a source or processed data directory.");
                 }
-            } else {
-                throw new UsageError("The configuration file, " + configPath + ", does not exist or is a directory.");
+                if (!projectLine.hasOption(OPT_OUTPUT)) {
+                    throw new UsageError("each project needs its own output directory (option `--output').");
+                }
+                project.applyOptions(projectLine);
+                if (projectLine.hasOption(OPT_THREADS)) {
+                    System.err.println(location + ": The number of threads (option `--threads') is set for the"
+                            + " whole batch. The value given for the project will NOT be used.");
+                }
+            } catch (ParseException | UsageError e) {
+                throw new UsageError(location + ": " + e.getMessage().replaceFirst("^Usage error: ", ""));
+            }
+            project.numThreads = 1;
+            if (project.configPath == null && this.configPath != null) project.loadConfig(this.configPath);
+            File canonicalOutputDir;
+            try {
+                canonicalOutputDir = project.outputDir.getCanonicalFile();
+            } catch (IOException e) {
+                throw new RuntimeException("Error resolving output directory " + project.outputDir, e);
+            }
+            String previous = locationsByOutputDir.put(canonicalOutputDir, location);
+            if (previous != null) {
+                throw new UsageError(location + ": output directory " + project.outputDir
+                        + " is already used by the project in " + previous + ".");
             }
+            projects.add(project);
+        }
+        if (projects.isEmpty()) {
+            throw new UsageError("The batch manifest, " + manifestPath + ", does not list any projects.");
+        }
+        return projects;
+    }
+
+    private void loadConfig(String configPath) {
+        File fConfig = new File(configPath);
+        if (fConfig.exists() && !fConfig.isDirectory()) {
+            try {
+                conf = new DetectionConfig(configPath);
+            } catch (NoSuchFieldException | SecurityException | IllegalArgumentException | IllegalAccessException
+                    | IOException e) {
+                throw new RuntimeException("Error opening smell configuration file " + configPath, e);
+            }
+            this.configPath = configPath;
+        } else {
+            throw new UsageError("The configuration file, " + configPath + ", does not exist or is a directory.");
+        }
+    }
+
+    /**
+     * Applies the parsed options of a single invocation or of a single project of a batch to this instance
+     *
+     * @param line the parsed options
+     */
+    private void applyOptions(CommandLine line) {
+        // --config=... get the path to the code smell configuration
+        if (line.hasOption(OPT_CONFIG)) {
+            loadConfig(line.getOptionValue(OPT_CONFIG));
         }
         // Get the input (--source= or --processed= option)
         if (line.hasOption(OPT_SOURCE)) {
@@ -187,16 +495,103 @@ public class Skunk {
             } catch (Exception e) {
                 throw new RuntimeException("Error reading source path, " + path, e);
             }
+        } else if (line.hasOption(OPT_C_SOURCE_L)) {
+            String path = line.getOptionValue(OPT_C_SOURCE_L);
+            if (!new File(path).isDirectory()) {
+                throw new UsageError("The C source path, " + path + ", does not exist or is not a directory.");
+            }
+            cSourcePath = Optional.of(path);
         } else if (line.hasOption(OPT_PROCESSED)) {
             this.processedDataDir = Optional.of(line.getOptionValue(OPT_PROCESSED));
-        } else {
+        } else if (line.hasOption(OPT_SERVE_L)) {
+            String portStr = line.getOptionValue(OPT_SERVE_L);
+            try {
+                servePort = Integer.parseInt(portStr);
+            } catch (NumberFormatException e) {
+                servePort = -1;
+            }
+            if (servePort < 0 || servePort > 65535) {
+                throw new UsageError("The port must be an integer between 0 and 65535, not `" + portStr + "'.");
+            }
+        } else if (!line.hasOption(OPT_BATCH_L)) {
             throw new UsageError(
-                    "Either need to set a source folder (--source=DIR) or a processed data folder (--processed=DIR)!");
+                    "Either need to set a source folder (--source=DIR), a C source folder (--c-source=DIR) or a"
+                            + " processed data folder (--processed=DIR)!");
+        }
+        // --heap-budget=MB
+        if (line.hasOption(OPT_HEAP_BUDGET_L)) {
+            String budgetStr = line.getOptionValue(OPT_HEAP_BUDGET_L);
+            long budgetMegabytes;
+            try {
+                budgetMegabytes = Long.parseLong(budgetStr);
+            } catch (NumberFormatException e) {
+                budgetMegabytes = -1;
+            }
+            if (budgetMegabytes < 1) {
+                throw new UsageError("The heap budget must be a positive number of megabytes, not `" + budgetStr
+                        + "'.");
+            }
+            heapBudget = budgetMegabytes * 1024 * 1024;
+            if (servePort == -1) {
+                System.err.println("A heap budget was specified (option `--" + OPT_HEAP_BUDGET_L
+                        + "'), but Skunk does not run as a daemon (option `--" + OPT_SERVE_L
+                        + "'). The budget will NOT be used.");
+            }
+        }
+        // --output=DIR
+        if (line.hasOption(OPT_OUTPUT)) {
+            outputDir = new File(line.getOptionValue(OPT_OUTPUT));
+            if (outputDir.exists() && !outputDir.isDirectory()) {
+                throw new UsageError("The output directory, " + outputDir + ", is not a directory.");
+            }
+        }
+        // --threads=N
+        if (line.hasOption(OPT_THREADS)) {
+            String threadsStr = line.getOptionValue(OPT_THREADS);
+            try {
+                numThreads = Integer.parseInt(threadsStr);
+            } catch (NumberFormatException e) {
+                numThreads = -1;
+            }
+            if (numThreads < 1) {
+                throw new UsageError("The number of threads must be a positive integer, not `" + threadsStr + "'.");
+            }
+        }
+        // --xml-reader=tree|dom|stax
+        if (line.hasOption(OPT_XML_READER_L)) {
+            String readerName = line.getOptionValue(OPT_XML_READER_L);
+            try {
+                xmlReaderType = SrcMlFolderReader.XmlReaderType.valueOf(readerName.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new UsageError("Unknown XML reader `" + readerName + "'. Valid values are `tree', `dom' and `stax'.");
+            }
+        }
+        // --intermediate-format=binary|xml
+        if (line.hasOption(OPT_INTERMEDIATE_FORMAT_L)) {
+            String formatName = line.getOptionValue(OPT_INTERMEDIATE_FORMAT_L);
+            try {
+                intermediateFormat = ProcessedDataHandler.Format.valueOf(formatName.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new UsageError("Unknown intermediate format `" + formatName
+                        + "'. Valid values are `binary' and `xml'.");
+            }
+        }
+        // --cache=DIR
+        if (line.hasOption(OPT_CACHE_L)) {
+            cacheDir = new File(line.getOptionValue(OPT_CACHE_L));
+            if (cacheDir.exists() && !cacheDir.isDirectory()) {
+                throw new UsageError("The cache directory, " + cacheDir + ", is not a directory.");
+            }
+            if (!this.sourcePath.isPresent()) {
+                System.err.println("A cache directory was specified (option `--" + OPT_CACHE_L
+                        + "'), but no source path has been specified (option `-" + OPT_SOURCE
+                        + "). The cache will NOT be used.");
+            }
         }
         // --save-intermediate
         if (line.hasOption(OPT_SAVE_INTERMEDIATE)) {
             saveIntermediate = true;
-            if (!this.sourcePath.isPresent()) {
+            if (!this.sourcePath.isPresent() && !this.cSourcePath.isPresent()) {
                 System.err.println("Save intermdiate was requested (option `-" + OPT_SAVE_INTERMEDIATE
                         + "'), but no source path has been specified (option `-" + OPT_SOURCE
                         + "). Intermediates will NOT be saved.");
@@ -226,6 +621,58 @@ public class Skunk {
                 .longOpt("save-intermediate")
                 .desc("save intermediate analysis results to speed up future detection runs")
                 .build());
+        // --cache= option
+        options.addOption(Option.builder()
+                .longOpt(OPT_CACHE_L)
+                .desc("directory in which the results of parsing each srcML file are cached. Files whose srcML and"
+                        + " feature locations have not changed since a previous run are restored from the cache"
+                        + " instead of being parsed again.")
+                .hasArg()
+                .argName("DIR")
+                .build());
+        // --intermediate-format= option
+        options.addOption(Option.builder()
+                .longOpt(OPT_INTERMEDIATE_FORMAT_L)
+                .desc("format of the intermediate results saved with --save-intermediate: `binary' writes a single"
+                        + " compact file, `xml' writes XStream XML files [default: binary]. When loading, the format"
+                        + " is detected automatically.")
+                .hasArg()
+                .argName("FORMAT")
+                .build());
+        // --threads= option
+        options.addOption(Option.builder(String.valueOf(OPT_THREADS))
+                .longOpt("threads")
+                .desc("number of threads used to read source files, to parse srcML files and to detect smells. In"
+                        + " batch mode, the number of projects analyzed concurrently. As a daemon, the number of"
+                        + " requests served concurrently. [default: 1]")
+                .hasArg()
+                .argName("N")
+                .build());
+        // --heap-budget= option
+        options.addOption(Option.builder()
+                .longOpt(OPT_HEAP_BUDGET_L)
+                .desc("megabytes of heap the projects held in memory by the daemon may occupy, as estimated when they"
+                        + " are loaded, before the least recently used projects are dropped [default: half of the"
+                        + " maximum heap size]")
+                .hasArg()
+                .argName("MB")
+                .build());
+        // --output= option
+        options.addOption(Option.builder(String.valueOf(OPT_OUTPUT))
+                .longOpt("output")
+                .desc("directory in which result files are written [default: current directory]")
+                .hasArg()
+                .argName("DIR")
+                .build());
+        // --xml-reader= option
+        options.addOption(Option.builder()
+                .longOpt(OPT_XML_READER_L)
+                .desc("how to read srcML files: `tree' builds a compact tree of each file, `dom' builds a DOM tree"
+                        + " of each file, `stax' extracts the required information in a single streaming pass"
+                        + " [default: tree]")
+                .hasArg()
+                .argName("TYPE")
+                .build());
 
         // --source= and --processed= options
         OptionGroup inputOptions = new OptionGroup();
@@ -237,12 +684,38 @@ public class Skunk {
                 .hasArg()
                 .argName("DIR")
                 .build());
+        inputOptions.addOption(Option.builder()
+                .longOpt(OPT_C_SOURCE_L)
+                .desc("read the C files in DIR directly instead of cppstats and srcML output. Directives are"
+                        + " found exactly, function boundaries only approximately, and the granularity and"
+                        + " discipline of annotations are not determined.")
+                .hasArg()
+                .argName("DIR")
+                .build());
         inputOptions.addOption(Option.builder(String.valueOf(OPT_PROCESSED))
                 .longOpt("processed")
                 .desc("read preprocessed data saved during a previous run")
                 .hasArg()
                 .argName("DIR")
                 .build());
+        inputOptions.addOption(Option.builder()
+                .longOpt(OPT_BATCH_L)
+                .desc("analyze several projects in one process. Each line of FILE holds the options for one"
+                        + " project, including its own --output directory. Lines starting with `#' are ignored."
+                        + " Projects without a --config use the one given for the batch. A summary of the time taken"
+                        + " per project is written to " + BATCH_TIMINGS_FILENAME + ".")
+                .hasArg()
+                .argName("FILE")
+                .build());
+        inputOptions.addOption(Option.builder()
+                .longOpt(OPT_SERVE_L)
+                .desc("run as a daemon that serves detection requests on the given local TCP port, keeping the"
+                        + " processed data of recently used projects in memory. Send `DETECT DIR CONFIG' to detect"
+                        + " smells in the processed data in DIR; the result files are sent back. Enclose paths"
+                        + " containing spaces in double quotes.")
+                .hasArg()
+                .argName("PORT")
+                .build());
 
         options.addOptionGroup(inputOptions);
 
@@ -4,6 +4,7 @@ import de.ovgu.skunk.detection.data.*;
 import de.ovgu.skunk.detection.detector.DetectionConfig;
 import de.ovgu.skunk.detection.detector.SmellReason;
 import de.ovgu.skunk.util.FileUtils;
+import de.ovgu.skunk.util.LineSet;
 import org.apache.commons.csv.CSVPrinter;
 
 import java.io.IOException;
@@ -116,11 +117,11 @@ public class AnalyzedDataHandler {
         String fileNamePrefix = ctx.getDetectionOutputFilenamePrefix();
         SimpleFileWriter writer = new SimpleFileWriter();
         try {
-            writer.write(new java.io.File(fileNamePrefix + "overview.txt"), overview);
-            writer.write(new java.io.File(fileNamePrefix + "attributes.txt"), attributes);
-            writer.write(new java.io.File(fileNamePrefix + "files.txt"), files);
-            writer.write(new java.io.File(fileNamePrefix + "methods.txt"), methods);
-            writer.write(new java.io.File(fileNamePrefix + "features.txt"), features);
+            writer.write(ctx.getOutputFile(fileNamePrefix + "overview.txt"), overview);
+            writer.write(ctx.getOutputFile(fileNamePrefix + "attributes.txt"), attributes);
+            writer.write(ctx.getOutputFile(fileNamePrefix + "files.txt"), files);
+            writer.write(ctx.getOutputFile(fileNamePrefix + "methods.txt"), methods);
+            writer.write(ctx.getOutputFile(fileNamePrefix + "features.txt"), features);
             System.out.println("Detection result files (" + writer.prettyFileNameList() + ") saved in `"
                     + writer.getDirForDisplay() + "'");
         } catch (IOException e) {
@@ -264,7 +265,7 @@ public class AnalyzedDataHandler {
         // lofcs in project
         int completeLofc = 0;
         // loac in project
-        Map<String, List<Integer>> loacs = new HashMap<>();
+        Map<String, LineSet> loacs = new HashMap<>();
         int completeLoac = 0;
         float loacPercentage = 0;
         for (FeatureReference constant : results.keySet()) {
@@ -275,14 +276,16 @@ public class AnalyzedDataHandler {
             completeLofc += constant.end - constant.start;
             // add all lines per file to the data structure, that are part of
             // the feature constant... no doubling for loac calculation
-            if (!loacs.keySet().contains(constant.filePath)) loacs.put(constant.filePath, new ArrayList<>());
-            for (int i = constant.start; i <= constant.end; i++) {
-                if (!loacs.get(constant.filePath).contains(i)) loacs.get(constant.filePath).add(i);
+            LineSet loacOfFile = loacs.get(constant.filePath);
+            if (loacOfFile == null) {
+                loacOfFile = new LineSet();
+                loacs.put(constant.filePath, loacOfFile);
             }
+            loacOfFile.addRange(constant.start, constant.end);
         }
         // calculate max loac
-        for (String file : loacs.keySet())
-            completeLoac += loacs.get(file).size();
+        for (LineSet loacOfFile : loacs.values())
+            completeLoac += loacOfFile.size();
         // calculate percentages
         loacPercentage = completeLoac * 100.0f / ctx.featureExpressions.GetLoc();
         percentOfLocations = countLocations * 100.0f / ctx.featureExpressions.numberOfFeatureConstantReferences;
@@ -310,7 +313,7 @@ public class AnalyzedDataHandler {
         String fnFiles = fileNamePrefix + "files.csv";
         String dirName;
         try {
-            dirName = (new java.io.File(fnMethods)).getCanonicalFile().getParent();
+            dirName = ctx.getOutputFile(fnMethods).getCanonicalFile().getParent();
         } catch (IOException e) {
             throw new RuntimeException("I/O error writing CSV results", e);
         }
@@ -346,7 +349,7 @@ public class AnalyzedDataHandler {
                     csv.printRecord(record);
             }
         };
-        h.write(fileName);
+        h.write(ctx.getOutputFile(fileName));
     }
 
     /**
@@ -372,7 +375,7 @@ public class AnalyzedDataHandler {
                     csv.printRecord(record);
             }
         };
-        h.write(fileName);
+        h.write(ctx.getOutputFile(fileName));
     }
 
     /**
@@ -400,7 +403,7 @@ public class AnalyzedDataHandler {
                     csv.printRecord(record);
             }
         };
-        h.write(fileName);
+        h.write(ctx.getOutputFile(fileName));
     }
 
     /**
@@ -4,6 +4,7 @@ import de.ovgu.skunk.detection.data.Context;
 import de.ovgu.skunk.detection.data.FeatureExpressionCollection;
 import de.ovgu.skunk.detection.data.FeatureReference;
 import de.ovgu.skunk.detection.detector.SmellReason;
+import de.ovgu.skunk.util.LineSet;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -15,7 +16,7 @@ public class AttributeOverview {
     private ArrayList<String> featureConstants = null;
     private int noFeatureLocs = 0;
     private int lofc = 0;
-    private HashMap<String, ArrayList<Integer>> loacs = null;
+    private HashMap<String, LineSet> loacs = null;
 
     /**
      * Instantiates a new attribute overview.
@@ -45,13 +46,12 @@ public class AttributeOverview {
             this.featureConstants.add(constant.feature.Name);
 
         // add all lines per file to the data structure, that are part of the feature constant... no doubling for loac calculation
-        if (!loacs.keySet().contains(constant.filePath))
-            loacs.put(constant.filePath, new ArrayList<>());
-
-        for (int i = constant.start; i <= constant.end; i++) {
-            if (!loacs.get(constant.filePath).contains(i))
-                loacs.get(constant.filePath).add(i);
+        LineSet loacOfFile = loacs.get(constant.filePath);
+        if (loacOfFile == null) {
+            loacOfFile = new LineSet();
+            loacs.put(constant.filePath, loacOfFile);
         }
+        loacOfFile.addRange(constant.start, constant.end);
     }
 
     @Override
@@ -60,8 +60,8 @@ public class AttributeOverview {
 
         // calculate max loac
         int completeLoac = 0;
-        for (String file : loacs.keySet())
-            completeLoac += loacs.get(file).size();
+        for (LineSet loacOfFile : loacs.values())
+            completeLoac += loacOfFile.size();
 
         // calculate percentages
         float percentOfLoc = completeLoac * 100 / featureExpressions.GetLoc();
@@ -103,5 +103,17 @@ public enum FileMetricsColumns implements CsvColumnValueProvider<File, Context>
         public Integer csvColumnValue(File file, Context ctx) {
             return file.nestingSum;
         }
+    },
+    NOPC {
+        @Override
+        public Integer csvColumnValue(File file, Context ctx) {
+            return file.numberOfPresenceConditions;
+        }
+    },
+    LOVC {
+        @Override
+        public Integer csvColumnValue(File file, Context ctx) {
+            return file.lovc;
+        }
     };
 }
@@ -185,6 +185,34 @@ public enum MethodMetricsColumns implements CsvColumnValueProvider<Method, Conte
             return m.negationCount;
         }
 
+        @Override
+        public Integer parseCsvColumnValue(String value) {
+            return Integer.valueOf(value);
+        }
+    },
+    /**
+     * Number of distinct presence conditions of the function's lines
+     */
+    NOPC {
+        @Override
+        public Integer csvColumnValue(Method m, Context ctx) {
+            return m.numberOfPresenceConditions;
+        }
+
+        @Override
+        public Integer parseCsvColumnValue(String value) {
+            return Integer.valueOf(value);
+        }
+    },
+    /**
+     * Lines of variable code, each line counted once
+     */
+    LOVC {
+        @Override
+        public Integer csvColumnValue(Method m, Context ctx) {
+            return m.lovc;
+        }
+
         @Override
         public Integer parseCsvColumnValue(String value) {
             return Integer.valueOf(value);
@@ -1,5 +1,6 @@
 package de.ovgu.skunk.detection.output;
 
+import de.ovgu.skunk.detection.data.BinaryIntermediateFormat;
 import de.ovgu.skunk.detection.data.Context;
 import de.ovgu.skunk.util.FileUtils;
 import org.apache.log4j.Logger;
@@ -7,6 +8,7 @@ import org.apache.log4j.Logger;
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.file.Files;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
@@ -22,6 +24,20 @@ public class ProcessedDataHandler {
     private static Logger LOG = Logger.getLogger(ProcessedDataHandler.class);
     private final Context ctx;
 
+    /**
+     * Formats in which processed data can be saved
+     */
+    public enum Format {
+        /**
+         * A single file in the {@link BinaryIntermediateFormat}
+         */
+        BINARY,
+        /**
+         * XStream XML files for features, functions and files, plus a text file with general values
+         */
+        XML
+    }
+
     private enum ProcessedDataFile {
         FEATURES {
             @Override
@@ -32,7 +48,7 @@ public class ProcessedDataHandler {
             @Override
             public void save(Context ctx, SimpleFileWriter writer) throws IOException {
                 Consumer<Writer> xmlProvider = ctx.featureExpressions.SerializeFeatures();
-                writer.writeGzipped(new File(filename(ctx)), xmlProvider);
+                writer.writeGzipped(ctx.getOutputFile(filename(ctx)), xmlProvider);
             }
 
             @Override
@@ -49,7 +65,7 @@ public class ProcessedDataHandler {
             @Override
             public void save(Context ctx, SimpleFileWriter writer) throws IOException {
                 Consumer<Writer> xmlProvider = ctx.functions.SerializeMethods();
-                writer.writeGzipped(new File(filename(ctx)), xmlProvider);
+                writer.writeGzipped(ctx.getOutputFile(filename(ctx)), xmlProvider);
             }
 
             @Override
@@ -68,7 +84,7 @@ public class ProcessedDataHandler {
                 String generalInput = "FeatureExpressionCollection=" + ctx.featureExpressions.GetLoc() + ";"
                         + ctx.featureExpressions.GetMeanLofc() + ";"
                         + ctx.featureExpressions.numberOfFeatureConstantReferences;
-                writer.write(new File(filename(ctx)), generalInput);
+                writer.write(ctx.getOutputFile(filename(ctx)), generalInput);
             }
 
             @Override
@@ -93,7 +109,7 @@ public class ProcessedDataHandler {
             @Override
             public void save(Context ctx, SimpleFileWriter writer) throws IOException {
                 Consumer<Writer> xmlProvider = ctx.files.SerializeFiles();
-                writer.writeGzipped(new File(filename(ctx)), xmlProvider);
+                writer.writeGzipped(ctx.getOutputFile(filename(ctx)), xmlProvider);
             }
 
             @Override
@@ -123,36 +139,68 @@ public class ProcessedDataHandler {
         this.ctx = ctx;
     }
 
+    private String binaryFilename() {
+        return ctx.getProcessedDataFilenamePrefix() + "data.bin";
+    }
+
     /**
-     * Save the data processed during the operation into a general file,
-     * features file and a method file
+     * Save the data processed during the operation, either into a single binary file or into a general file, a
+     * features file, a files file and a method file.  Processed data files of the other format, left over from an
+     * earlier run, are deleted, so that they are not loaded instead.
+     *
+     * @param format the format of the saved data
      */
-    public void SaveProcessedData() {
+    public void SaveProcessedData(Format format) {
         LOG.info("Saving processed data ...");
 
         // Save files
         final SimpleFileWriter writer = new SimpleFileWriter();
-        ProcessedDataFile currentFile = null;
-        try {
+        if (format == Format.BINARY) {
             for (ProcessedDataFile f : ProcessedDataFile.values()) {
-                currentFile = f;
-                LOG.info("Writing output for " + f);
-                f.save(ctx, writer);
-                LOG.info("Done writing output for " + f);
-            }
-        } catch (IOException e) {
-            LOG.error("Writing output for " + currentFile + " failed.", e);
-            throw new RuntimeException("I/O exception while saving processed data files", e);
+                deleteLeftover(ctx.getOutputFile(f.filename(ctx)));
+            }
+            File binaryFile = ctx.getOutputFile(binaryFilename());
+            try {
+                writer.write(binaryFile, BinaryIntermediateFormat.Encode(ctx));
+            } catch (IOException e) {
+                LOG.error("Writing " + binaryFile + " failed.", e);
+                throw new RuntimeException("I/O exception while saving processed data file", e);
+            }
+        } else {
+            deleteLeftover(ctx.getOutputFile(binaryFilename()));
+            ProcessedDataFile currentFile = null;
+            try {
+                for (ProcessedDataFile f : ProcessedDataFile.values()) {
+                    currentFile = f;
+                    LOG.info("Writing output for " + f);
+                    f.save(ctx, writer);
+                    LOG.info("Done writing output for " + f);
+                }
+            } catch (IOException e) {
+                LOG.error("Writing output for " + currentFile + " failed.", e);
+                throw new RuntimeException("I/O exception while saving processed data files", e);
+            }
         }
 
         String msg = String.format("Done saving processed data. Files (%s) saved in `%s'.\n", writer.prettyFileNameList(), writer.getDirForDisplay());
         LOG.info(msg);
     }
 
+    private static void deleteLeftover(File file) {
+        if (!file.exists()) return;
+        LOG.info("Deleting processed data file " + file + " of the other format");
+        if (!file.delete()) {
+            throw new RuntimeException("Cannot delete processed data file " + file + " of the other format");
+        }
+    }
+
     /**
-     * Load processed data from the given folder
+     * Load processed data from the given folder.  If the folder contains a binary intermediate file, but no XML
+     * files, the data is loaded from that file.  If it contains only XML files, the data is loaded from those.  If it
+     * contains both, the data is loaded from the more recently modified format.
      *
      * @param folderPath the path of the folder containing processed data files
+     * @throws RuntimeException if the folder contains both formats and it cannot be told which one is more recent
      */
     public void LoadProcessedData(String folderPath) {
 
@@ -161,6 +209,17 @@ public class ProcessedDataHandler {
         // open the directory
         File directory = new File(folderPath);
 
+        File binaryFile = new File(directory, binaryFilename());
+        if (binaryFile.isFile() && isNewerThanXmlFiles(directory, binaryFile)) {
+            try {
+                BinaryIntermediateFormat.Decode(ctx, Files.readAllBytes(binaryFile.toPath()));
+            } catch (Exception e) {
+                throw new RuntimeException("Error loading processed data from " + binaryFile, e);
+            }
+            System.out.println(" done.");
+            return;
+        }
+
         Set<ProcessedDataFile> filesRead = EnumSet.noneOf(ProcessedDataFile.class);
         Set<ProcessedDataFile> filesToRead = EnumSet.allOf(ProcessedDataFile.class);
 
@@ -196,6 +255,34 @@ public class ProcessedDataHandler {
         }
     }
 
+    /**
+     * @return <code>true</code> if the binary file is newer than all XML files in the directory, <code>false</code>
+     * if one of them is newer
+     * @throws RuntimeException if the newest XML file is as old as the binary file
+     */
+    private boolean isNewerThanXmlFiles(File directory, File binaryFile) {
+        long newestXml = Long.MIN_VALUE;
+        File newestXmlFile = null;
+        for (ProcessedDataFile f : ProcessedDataFile.values()) {
+            File xmlFile = new File(directory, f.filename(ctx));
+            if (xmlFile.isFile() && xmlFile.lastModified() > newestXml) {
+                newestXml = xmlFile.lastModified();
+                newestXmlFile = xmlFile;
+            }
+        }
+        if (newestXmlFile == null) return true;
+        final long binary = binaryFile.lastModified();
+        if (binary == newestXml) {
+            throw new RuntimeException("Cannot tell which processed data in `" + directory + "' is more recent: "
+                    + binaryFile.getName() + " and " + newestXmlFile.getName() + " were modified at the same time."
+                    + " Delete the outdated files.");
+        }
+        final boolean binaryIsNewer = binary > newestXml;
+        LOG.warn("Folder `" + directory + "' contains processed data in both formats. Loading the more recent "
+                + (binaryIsNewer ? binaryFile.getName() : "XML files") + ".");
+        return binaryIsNewer;
+    }
+
     private void dieDueToMissingFilesToLoad(Set<ProcessedDataFile> filesRead, Set<ProcessedDataFile> filesToRead) {
         StringBuilder present = new StringBuilder();
         StringBuilder missing = new StringBuilder();
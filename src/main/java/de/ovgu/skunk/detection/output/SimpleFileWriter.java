@@ -16,6 +16,11 @@ public class SimpleFileWriter {
         rememberWrittenFile(f);
     }
 
+    public void write(File f, byte[] content) throws IOException {
+        org.apache.commons.io.FileUtils.writeByteArrayToFile(f, content);
+        rememberWrittenFile(f);
+    }
+
     public void writeGzipped(File f, Consumer<Writer> dataProvider) throws IOException {
         de.ovgu.skunk.util.FileUtils.writeGzipped(f, dataProvider);
         rememberWrittenFile(f);
@@ -0,0 +1,108 @@
+package de.ovgu.skunk.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the variable-length quantities written by {@link BinaryEncoder} from a byte array.
+ */
+public class BinaryDecoder {
+    private final byte[] buf;
+    private int pos;
+    private int limit;
+
+    /**
+     * @param buf the bytes to read.  The array is not copied.
+     */
+    public BinaryDecoder(byte[] buf) {
+        this.buf = buf;
+        this.pos = 0;
+        this.limit = buf.length;
+    }
+
+    /**
+     * Restricts reading to the given range of the underlying array.
+     *
+     * @param offset position of the first byte to read
+     * @param length number of bytes that may be read
+     * @throws EOFException if the range exceeds the underlying array
+     */
+    public void seek(int offset, int length) throws EOFException {
+        if (offset < 0 || length < 0 || offset > buf.length - length) {
+            throw new EOFException("Range " + offset + "+" + length + " exceeds data of length " + buf.length);
+        }
+        this.pos = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * @return the number of bytes that may still be read
+     */
+    public int remaining() {
+        return limit - pos;
+    }
+
+    public int readByte() throws EOFException {
+        if (pos >= limit) throw new EOFException("Unexpected end of data at position " + pos);
+        return buf[pos++] & 0xFF;
+    }
+
+    public byte[] readBytes(int length) throws EOFException {
+        if (length < 0 || length > remaining()) {
+            throw new EOFException("Cannot read " + length + " bytes at position " + pos);
+        }
+        byte[] result = new byte[length];
+        System.arraycopy(buf, pos, result, 0, length);
+        pos += length;
+        return result;
+    }
+
+    /**
+     * Reads a string written by {@link BinaryEncoder#writeUtf8(String)}.
+     */
+    public String readUtf8() throws IOException {
+        int length = readVarInt();
+        if (length > remaining()) throw new EOFException("Cannot read string of " + length + " bytes at position " + pos);
+        String result = new String(buf, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return result;
+    }
+
+    /**
+     * Reads a value written by {@link BinaryEncoder#writeVarInt(int)}.
+     */
+    public int readVarInt() throws IOException {
+        long value = readVarLongUnsigned();
+        if (value > Integer.MAX_VALUE) throw new IOException("Integer value too large: " + value);
+        return (int) value;
+    }
+
+    /**
+     * Reads a value written by {@link BinaryEncoder#writeSignedVarInt(int)}.
+     */
+    public int readSignedVarInt() throws IOException {
+        long zigZag = readVarLongUnsigned();
+        if (zigZag > 0xFFFFFFFFL) throw new IOException("Integer value too large: " + zigZag);
+        int value = (int) zigZag;
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a value written by {@link BinaryEncoder#writeSignedVarLong(long)}.
+     */
+    public long readSignedVarLong() throws IOException {
+        long zigZag = readVarLongUnsigned();
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+    private long readVarLongUnsigned() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed variable-length integer before position " + pos);
+    }
+}
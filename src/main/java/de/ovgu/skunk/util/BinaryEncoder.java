@@ -0,0 +1,114 @@
+package de.ovgu.skunk.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes integers as variable-length quantities (7 bits per byte, least significant group first) into a growable
+ * byte buffer.  Counterpart of {@link BinaryDecoder}.
+ */
+public class BinaryEncoder {
+    private byte[] buf;
+    private int size;
+
+    public BinaryEncoder() {
+        this.buf = new byte[256];
+        this.size = 0;
+    }
+
+    /**
+     * @return the number of bytes written so far
+     */
+    public int size() {
+        return size;
+    }
+
+    public void writeByte(int b) {
+        ensureCapacity(1);
+        buf[size++] = (byte) b;
+    }
+
+    public void writeBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, size, bytes.length);
+        size += bytes.length;
+    }
+
+    /**
+     * Writes a non-negative int in one to five bytes.
+     *
+     * @param value the value, must not be negative
+     */
+    public void writeVarInt(int value) {
+        if (value < 0) throw new IllegalArgumentException("Value must not be negative: " + value);
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buf[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[size++] = (byte) value;
+    }
+
+    /**
+     * Writes an int that may be negative.  Small absolute values take few bytes (zig-zag encoding).
+     */
+    public void writeSignedVarInt(int value) {
+        writeVarLongUnsigned(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes a long that may be negative.  Small absolute values take few bytes (zig-zag encoding).
+     */
+    public void writeSignedVarLong(long value) {
+        writeVarLongUnsigned((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarLongUnsigned(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[size++] = (byte) value;
+    }
+
+    /**
+     * Writes the length of the UTF-8 encoding of the string, followed by the encoding itself.
+     */
+    public void writeUtf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        writeBytes(bytes);
+    }
+
+    /**
+     * Writes the bytes written to this encoder so far.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, size);
+    }
+
+    /**
+     * Appends the bytes written to the other encoder so far.
+     */
+    public void writeTo(BinaryEncoder other) {
+        other.ensureCapacity(size);
+        System.arraycopy(buf, 0, other.buf, other.size, size);
+        other.size += size;
+    }
+
+    /**
+     * @return a copy of the bytes written so far
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    private void ensureCapacity(int additional) {
+        if (size + additional > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(2 * buf.length, size + additional));
+        }
+    }
+}
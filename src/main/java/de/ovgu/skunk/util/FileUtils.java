@@ -131,7 +131,8 @@ public final class FileUtils {
                 }
             }
         }
-        throw new IllegalArgumentException("Not a proper cppstats XML source file path: " + cppstatsSrcMlFilePath);
+        // Not a srcML file but a C file read directly, see CSourceFolderReader
+        return cppstatsSrcMlFilePath;
     }
 
     /**
@@ -153,7 +154,7 @@ public final class FileUtils {
      *                              <code>&quot;/Users/me/subjects/apache/_cppstats/src/support/suexec.c.xml&quot;</code>
      *                              .
      * @return The name of the actual C source file relative to the project repository root, e.g.
-     * <code>&quot;support/suexec.c&quot;</code>
+     * <code>&quot;support/suexec.c&quot;</code>, or the given pathname if it does not denote a srcML file
      */
     public static String projectRelativePathFromCppstatsSrcMlPath(String cppstatsSrcMlFilePath) {
         return projectRelativePathFromCppstatsSrcMlPath(Paths.get(cppstatsSrcMlFilePath)).toString();
@@ -0,0 +1,153 @@
+package de.ovgu.skunk.util;
+
+import java.util.BitSet;
+
+/**
+ * A set of non-negative line numbers, backed by a {@link BitSet}.  Used to keep track of lines of annotated code and
+ * of empty lines without boxing each line number.  Use {@link LineSetConverter} to serialize it with XStream.
+ */
+public class LineSet {
+    private final BitSet lines;
+
+    public LineSet() {
+        this.lines = new BitSet();
+    }
+
+    /**
+     * Adds a single line
+     *
+     * @param line the line number, must not be negative
+     */
+    public void add(int line) {
+        if (line < 0) throw new IllegalArgumentException("Line numbers must not be negative: " + line);
+        lines.set(line);
+    }
+
+    /**
+     * Adds all lines from <code>from</code> to <code>to</code>, both inclusive.  Does nothing if <code>from &gt;
+     * to</code>.
+     *
+     * @param from the first line to add, must not be negative
+     * @param to   the last line to add
+     */
+    public void addRange(int from, int to) {
+        if (from < 0) throw new IllegalArgumentException("Line numbers must not be negative: " + from);
+        if (from > to) return;
+        lines.set(from, to + 1);
+    }
+
+    /**
+     * Adds all lines from <code>from</code> to <code>to</code>, both inclusive, that are not contained in
+     * <code>excluded</code>.  Does nothing if <code>from &gt; to</code>.
+     *
+     * @param from     the first line to add, must not be negative
+     * @param to       the last line to add
+     * @param excluded lines not to add
+     */
+    public void addRangeExcept(int from, int to, LineSet excluded) {
+        if (from < 0) throw new IllegalArgumentException("Line numbers must not be negative: " + from);
+        final BitSet excludedLines = excluded.lines;
+        int line = from;
+        while (line <= to) {
+            final int runStart = excludedLines.nextClearBit(line);
+            if (runStart > to) break;
+            final int nextExcluded = excludedLines.nextSetBit(runStart);
+            final int runEnd = ((nextExcluded == -1) || (nextExcluded > to)) ? to + 1 : nextExcluded;
+            lines.set(runStart, runEnd);
+            line = runEnd;
+        }
+    }
+
+    public boolean contains(int line) {
+        return (line >= 0) && lines.get(line);
+    }
+
+    /**
+     * @param from the first line to consider
+     * @param to   the last line to consider
+     * @return the number of lines in this set from <code>from</code> to <code>to</code>, both inclusive
+     */
+    public int countInRange(int from, int to) {
+        from = Math.max(from, 0);
+        if (from > to) return 0;
+        return lines.get(from, to + 1).cardinality();
+    }
+
+    /**
+     * @return the number of lines in this set
+     */
+    public int size() {
+        return lines.cardinality();
+    }
+
+    /**
+     * @return the highest line in this set plus one, or zero if the set is empty
+     */
+    public int length() {
+        return lines.length();
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    public void clear() {
+        lines.clear();
+    }
+
+    /**
+     * @return the lines of this set as comma-separated ranges, e.g., <code>1-3,7,9-10</code>
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        int start = lines.nextSetBit(0);
+        while (start != -1) {
+            int end = lines.nextClearBit(start) - 1;
+            if (sb.length() > 0) sb.append(',');
+            sb.append(start);
+            if (end > start) sb.append('-').append(end);
+            start = lines.nextSetBit(end + 1);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses the representation produced by {@link #toString()}.
+     *
+     * @param ranges comma-separated line numbers or ranges of line numbers
+     * @return the lines
+     */
+    public static LineSet fromString(String ranges) {
+        LineSet result = new LineSet();
+        if (ranges == null) return result;
+        for (String range : ranges.split(",")) {
+            range = range.trim();
+            if (range.isEmpty()) continue;
+            int ixDash = range.indexOf('-');
+            try {
+                if (ixDash == -1) {
+                    result.add(Integer.parseInt(range));
+                } else {
+                    result.addRange(Integer.parseInt(range.substring(0, ixDash)),
+                            Integer.parseInt(range.substring(ixDash + 1)));
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid line range `" + range + "' in `" + ranges + "'", e);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LineSet)) return false;
+        return lines.equals(((LineSet) o).lines);
+    }
+
+    @Override
+    public int hashCode() {
+        return lines.hashCode();
+    }
+}
@@ -0,0 +1,25 @@
+package de.ovgu.skunk.util;
+
+import com.thoughtworks.xstream.converters.basic.AbstractSingleValueConverter;
+
+/**
+ * Lets XStream write a {@link LineSet} as a single string of line ranges, e.g., <code>1-3,7,9-10</code>, instead of
+ * one element per line.
+ */
+public class LineSetConverter extends AbstractSingleValueConverter {
+    @Override
+    @SuppressWarnings("rawtypes") // signature inherited from XStream
+    public boolean canConvert(Class type) {
+        return LineSet.class.equals(type);
+    }
+
+    @Override
+    public String toString(Object obj) {
+        return obj.toString();
+    }
+
+    @Override
+    public Object fromString(String str) {
+        return LineSet.fromString(str);
+    }
+}
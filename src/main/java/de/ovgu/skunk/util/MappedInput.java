@@ -0,0 +1,260 @@
+package de.ovgu.skunk.util;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * The contents of an input file, mapped into memory so that readers can access the bytes without copying them onto
+ * the heap.  Files too large to be mapped are streamed through a buffer instead.  Each file opened is accounted for in
+ * a {@link Statistics} object under the name of the phase in which it is read.
+ */
+public final class MappedInput {
+    private static Logger LOG = Logger.getLogger(MappedInput.class);
+    /**
+     * Size of the largest file that is mapped.  A single mapping cannot span more bytes.
+     */
+    public static final long MAX_MAPPED_SIZE = Integer.MAX_VALUE;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Number of bytes read in each phase, separately for mapped and streamed files.  Counts may be updated
+     * concurrently.
+     */
+    public static class Statistics {
+        private final Map<String, LongAdder[]> bytesByPhase = new ConcurrentHashMap<>();
+
+        private LongAdder[] counters(String phase) {
+            return bytesByPhase.computeIfAbsent(phase, k -> new LongAdder[]{new LongAdder(), new LongAdder()});
+        }
+
+        void recordMapped(String phase, long bytes) {
+            counters(phase)[0].add(bytes);
+        }
+
+        void recordStreamed(String phase, long bytes) {
+            counters(phase)[1].add(bytes);
+        }
+
+        /**
+         * @return number of bytes of mapped files read in the given phase
+         */
+        public long getMappedBytes(String phase) {
+            LongAdder[] c = bytesByPhase.get(phase);
+            return (c == null) ? 0 : c[0].sum();
+        }
+
+        /**
+         * @return number of bytes of streamed files read in the given phase
+         */
+        public long getStreamedBytes(String phase) {
+            LongAdder[] c = bytesByPhase.get(phase);
+            return (c == null) ? 0 : c[1].sum();
+        }
+
+        /**
+         * @return a summary of the bytes read in the given phase, suitable for logging
+         */
+        public String describe(String phase) {
+            long mapped = getMappedBytes(phase);
+            long streamed = getStreamedBytes(phase);
+            return (mapped + streamed) + " bytes of " + phase + " (" + mapped + " mapped, " + streamed + " streamed)";
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder();
+            for (String phase : new TreeMap<>(bytesByPhase).keySet()) {
+                if (result.length() > 0) result.append(", ");
+                result.append(describe(phase));
+            }
+            return result.toString();
+        }
+    }
+
+    private final Path path;
+    private final long size;
+    /**
+     * The mapped contents, or <code>null</code> if the file is streamed
+     */
+    private final ByteBuffer view;
+    private final Statistics stats;
+    private final String phase;
+
+    private MappedInput(Path path, long size, ByteBuffer view, Statistics stats, String phase) {
+        this.path = path;
+        this.size = size;
+        this.view = view;
+        this.stats = stats;
+        this.phase = phase;
+    }
+
+    /**
+     * @param path  the file to read
+     * @param stats receives the number of bytes read
+     * @param phase the phase under which the bytes read are accounted for
+     * @return the file's contents, mapped into memory unless the file is too large
+     * @throws IOException if the file cannot be opened
+     */
+    public static MappedInput open(String path, Statistics stats, String phase) throws IOException {
+        return open(Paths.get(path), stats, phase, MAX_MAPPED_SIZE);
+    }
+
+    static MappedInput open(Path path, Statistics stats, String phase, long maxMappedSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size <= maxMappedSize) {
+                ByteBuffer view = null;
+                try {
+                    view = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                } catch (IOException e) {
+                    LOG.warn("Cannot map " + path + ". Streaming it instead.", e);
+                }
+                if (view != null) {
+                    stats.recordMapped(phase, size);
+                    return new MappedInput(path, size, view, stats, phase);
+                }
+            }
+            return new MappedInput(path, size, null, stats, phase);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the file is mapped into memory, <code>false</code> if it is streamed
+     */
+    public boolean isMapped() {
+        return view != null;
+    }
+
+    /**
+     * @return the size of the file when it was opened
+     */
+    public long size() {
+        return size;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return a read-only view of the whole file, positioned at its start
+     * @throws IllegalStateException if the file is not mapped
+     */
+    public ByteBuffer view() {
+        if (view == null) throw new IllegalStateException("File is not mapped: " + path);
+        return view.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a stream of the file's contents.  Mapped files are read from memory.
+     * @throws IOException if a streamed file cannot be opened
+     */
+    public InputStream openStream() throws IOException {
+        if (view != null) return new ByteBufferInputStream(view());
+        return new CountingInputStream(Files.newInputStream(path));
+    }
+
+    /**
+     * Passes the file's contents to the given consumer, in order.  Mapped files are passed as a single buffer,
+     * streamed files in chunks of a fixed size.  Buffers must not be retained by the consumer.
+     *
+     * @param consumer receives the contents
+     * @throws IOException if a streamed file cannot be read
+     */
+    public void forEachChunk(Consumer<ByteBuffer> consumer) throws IOException {
+        if (view != null) {
+            consumer.accept(view());
+            return;
+        }
+        byte[] buf = new byte[STREAM_BUFFER_SIZE];
+        try (InputStream in = openStream()) {
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                consumer.accept(ByteBuffer.wrap(buf, 0, n));
+            }
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? (buf.get() & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buf.hasRemaining()) return -1;
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+
+    /**
+     * Reads a file through a buffer, accounting for the bytes read
+     */
+    private class CountingInputStream extends InputStream {
+        private final InputStream in;
+
+        CountingInputStream(InputStream in) {
+            this.in = new BufferedInputStream(in, STREAM_BUFFER_SIZE);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) stats.recordStreamed(phase, 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) stats.recordStreamed(phase, n);
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
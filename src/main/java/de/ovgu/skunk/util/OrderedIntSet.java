@@ -0,0 +1,98 @@
+package de.ovgu.skunk.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A set of non-negative ints that remembers the order in which its elements were added.  Elements are stored in an
+ * int array; membership is tracked in a {@link BitSet}.  Use {@link OrderedIntSetConverter} to serialize it with
+ * XStream.
+ */
+public class OrderedIntSet {
+    private int[] elements;
+    private int size;
+    private final BitSet members;
+
+    public OrderedIntSet() {
+        this.elements = new int[4];
+        this.size = 0;
+        this.members = new BitSet();
+    }
+
+    /**
+     * Adds the value unless it is already contained in this set.
+     *
+     * @param value the value to add, must not be negative
+     * @return <code>true</code> if the value was added, <code>false</code> if it was already contained
+     */
+    public boolean add(int value) {
+        if (value < 0) throw new IllegalArgumentException("Values must not be negative: " + value);
+        if (members.get(value)) return false;
+        if (size == elements.length) elements = Arrays.copyOf(elements, 2 * size);
+        elements[size++] = value;
+        members.set(value);
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return (value >= 0) && members.get(value);
+    }
+
+    /**
+     * @param index position of the element in order of insertion
+     * @return the element at the given position
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        return elements[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return a copy of the elements, in order of insertion
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    /**
+     * @return the elements, in order of insertion, separated by commas
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(elements[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses the representation produced by {@link #toString()}.
+     *
+     * @param values comma-separated values
+     * @return the set
+     */
+    public static OrderedIntSet fromString(String values) {
+        OrderedIntSet result = new OrderedIntSet();
+        if (values == null) return result;
+        for (String value : values.split(",")) {
+            value = value.trim();
+            if (value.isEmpty()) continue;
+            try {
+                result.add(Integer.parseInt(value));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value `" + value + "' in `" + values + "'", e);
+            }
+        }
+        return result;
+    }
+}
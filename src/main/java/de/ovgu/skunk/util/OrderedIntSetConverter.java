@@ -0,0 +1,24 @@
+package de.ovgu.skunk.util;
+
+import com.thoughtworks.xstream.converters.basic.AbstractSingleValueConverter;
+
+/**
+ * Lets XStream write an {@link OrderedIntSet} as a single string of comma-separated values.
+ */
+public class OrderedIntSetConverter extends AbstractSingleValueConverter {
+    @Override
+    @SuppressWarnings("rawtypes") // signature inherited from XStream
+    public boolean canConvert(Class type) {
+        return OrderedIntSet.class.equals(type);
+    }
+
+    @Override
+    public String toString(Object obj) {
+        return obj.toString();
+    }
+
+    @Override
+    public Object fromString(String str) {
+        return OrderedIntSet.fromString(str);
+    }
+}
@@ -0,0 +1,90 @@
+package de.ovgu.skunk.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Passes complete lines on to an underlying stream, each prefixed with a text that depends on the thread that wrote
+ * the line, e.g., the name of the project the thread works on.  Threads started by a thread with a prefix inherit the
+ * prefix.  Output of threads without a prefix is passed on unchanged.  Lines of different threads are not
+ * interleaved.
+ */
+public class ThreadPrefixingOutputStream extends OutputStream {
+    private final OutputStream out;
+    private final InheritableThreadLocal<byte[]> prefix = new InheritableThreadLocal<>();
+    /**
+     * The incomplete last line written by the current thread
+     */
+    private final ThreadLocal<ByteArrayOutputStream> pendingLine = ThreadLocal.withInitial(ByteArrayOutputStream::new);
+
+    /**
+     * @param out the underlying stream
+     */
+    public ThreadPrefixingOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Sets the prefix of the lines written by the current thread.  Removing the prefix passes on the thread's
+     * incomplete last line, if any, terminated by a line break.
+     *
+     * @param prefix the prefix, or <code>null</code> to remove it
+     */
+    public void setPrefix(String prefix) throws IOException {
+        if (prefix == null) {
+            ByteArrayOutputStream line = pendingLine.get();
+            if (line.size() > 0) {
+                line.write('\n');
+                writeLine(line);
+            }
+            this.prefix.remove();
+        } else {
+            this.prefix.set(prefix.getBytes());
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (prefix.get() == null) {
+            synchronized (out) {
+                out.write(b, off, len);
+            }
+            return;
+        }
+        ByteArrayOutputStream line = pendingLine.get();
+        final int end = off + len;
+        int start = off;
+        for (int i = off; i < end; i++) {
+            if (b[i] == '\n') {
+                line.write(b, start, i + 1 - start);
+                writeLine(line);
+                start = i + 1;
+            }
+        }
+        line.write(b, start, end - start);
+    }
+
+    private void writeLine(ByteArrayOutputStream line) throws IOException {
+        synchronized (out) {
+            out.write(prefix.get());
+            line.writeTo(out);
+        }
+        line.reset();
+    }
+
+    /**
+     * Flushes the underlying stream.  Incomplete lines are held back until they are complete.
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (out) {
+            out.flush();
+        }
+    }
+}
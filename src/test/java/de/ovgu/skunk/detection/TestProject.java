@@ -0,0 +1,189 @@
+package de.ovgu.skunk.detection;
+
+import de.ovgu.skunk.detection.data.*;
+import de.ovgu.skunk.detection.input.CppStatsFolderReader;
+import de.ovgu.skunk.detection.input.SrcMlCache;
+import de.ovgu.skunk.detection.input.SrcMlFolderReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * The small project in <code>test_project</code>: three C files with nested, negated and alternative
+ * <code>#if</code>s, a K&amp;R function and alternative definitions of a function, as preprocessed by cppstats and
+ * srcML.  The file names in the CSV files are relative to the placeholder {@value #PLACEHOLDER}, which
+ * {@link #copyTo(Path)} replaces by the actual location.
+ */
+public final class TestProject {
+    private static final String RESOURCE_DIR = "test_project/_cppstats/";
+    private static final String PLACEHOLDER = "@PROJECT@";
+    public static final String[] SRCML_FILES = {"a.c.xml", "b.c.xml", "c.c.xml"};
+    private static final String[] CSV_FILES = {"cppstats.csv", "cppstats_featurelocations.csv"};
+
+    private TestProject() {
+    }
+
+    /**
+     * Copies the project into the given directory
+     *
+     * @param projectDir the directory, which is created if necessary
+     * @return the <code>_cppstats</code> folder of the copy, to be passed to {@link #load(Path, int, SrcMlCache)}
+     */
+    public static Path copyTo(Path projectDir) throws IOException {
+        return copyTo(projectDir, 1);
+    }
+
+    /**
+     * Copies the files of the project into the given directory several times, yielding a larger project.  The
+     * <i>i</i>-th copy of a file, starting from zero, is prefixed with <code>i_</code>, except for the first copy.
+     *
+     * @param projectDir the directory, which is created if necessary
+     * @param copies     number of copies of each file
+     * @return the <code>_cppstats</code> folder of the copy, to be passed to {@link #load(Path, int, SrcMlCache)}
+     */
+    public static Path copyTo(Path projectDir, int copies) throws IOException {
+        Path cppStatsDir = projectDir.resolve("_cppstats");
+        Files.createDirectories(cppStatsDir);
+        for (int i = 0; i < copies; i++) {
+            for (String name : SRCML_FILES) {
+                Files.write(cppStatsDir.resolve(copyName(i, name)), readResource(name));
+            }
+        }
+        String location = projectDir.toAbsolutePath().toString();
+        for (String name : CSV_FILES) {
+            StringBuilder csv = new StringBuilder();
+            for (String line : new String(readResource(name), StandardCharsets.UTF_8).split("\n")) {
+                if (line.startsWith(PLACEHOLDER)) {
+                    for (int i = 0; i < copies; i++) {
+                        String fileName = line.substring(0, line.indexOf(','));
+                        String baseName = fileName.substring(fileName.lastIndexOf('/') + 1);
+                        String copyPath = location + "/_cppstats/" + copyName(i, baseName);
+                        csv.append(copyPath).append(line.substring(fileName.length())).append('\n');
+                    }
+                } else if (line.startsWith("ALL - MERGED,")) {
+                    // totals of all files
+                    String[] fields = line.split(",");
+                    csv.append(fields[0]);
+                    for (int j = 1; j < fields.length; j++) csv.append(',').append(Integer.parseInt(fields[j]) * copies);
+                    csv.append('\n');
+                } else {
+                    csv.append(line).append('\n');
+                }
+            }
+            Files.write(cppStatsDir.resolve(name), csv.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return cppStatsDir;
+    }
+
+    private static String copyName(int copy, String name) {
+        return (copy == 0) ? name : (copy + "_" + name);
+    }
+
+    public static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        List<Path> paths;
+        try (java.util.stream.Stream<Path> walk = Files.walk(dir)) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(java.util.stream.Collectors.toList());
+        }
+        for (Path p : paths) Files.delete(p);
+    }
+
+    public static byte[] readResource(String name) throws IOException {
+        try (InputStream is = TestProject.class.getResourceAsStream(RESOURCE_DIR + name)) {
+            if (is == null) throw new IOException("Missing test resource " + RESOURCE_DIR + name);
+            byte[] buf = new byte[8192];
+            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+            for (int n; (n = is.read(buf)) > 0; ) out.write(buf, 0, n);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Reads a copy of the project the way <code>Skunk --source</code> does
+     *
+     * @param cppStatsDir the <code>_cppstats</code> folder returned by {@link #copyTo(Path)}
+     * @param numThreads  number of threads for reading
+     * @param cache       cache of srcML summaries, may be <code>null</code>
+     * @return a context holding the features, functions and files of the project
+     */
+    public static Context load(Path cppStatsDir, int numThreads, SrcMlCache cache) {
+        Context ctx = new Context(null, cppStatsDir.getParent().toFile());
+        new CppStatsFolderReader(ctx, cppStatsDir.toString()).ProcessFiles(numThreads);
+        SrcMlFolderReader mlReader = new SrcMlFolderReader(ctx, SrcMlFolderReader.XmlReaderType.TREE);
+        if (cache != null) mlReader.setCache(cache);
+        mlReader.ProcessFiles(numThreads);
+        ctx.functions.PostAction();
+        ctx.files.PostAction();
+        return ctx;
+    }
+
+    /**
+     * Describes all processed data of a context that is saved as intermediate data, one line per feature, reference,
+     * function and file, so that two contexts can be compared with a readable diff.  The lines of annotated code and
+     * the empty lines are not saved and hence not described.
+     *
+     * @param ctx the context
+     * @return the description
+     */
+    public static List<String> describe(Context ctx) {
+        List<String> result = new ArrayList<>();
+        final FeatureExpressionCollection featureExpressions = ctx.featureExpressions;
+        result.add("loc=" + featureExpressions.GetLoc() + " meanLofc=" + featureExpressions.GetMeanLofc()
+                + " nofc=" + featureExpressions.numberOfFeatureConstantReferences);
+
+        List<Feature> features = new ArrayList<>(featureExpressions.GetFeatures());
+        features.sort(Comparator.comparing(f -> f.Name));
+        for (Feature f : features) {
+            List<Integer> refIds = new ArrayList<>();
+            for (FeatureReference ref : f.getReferences()) refIds.add(ref.id);
+            result.add("feature " + f.Name + " lofc=" + f.getLofc() + " nesting=" + f.minNestingDepth + ".."
+                    + f.maxNestingDepth + " granularity=" + f.minGranularity + ".." + f.maxGranularity
+                    + " compilationFiles=" + new TreeSet<>(f.compilationFiles) + " refs=" + refIds);
+        }
+
+        List<FeatureReference> references = new ArrayList<>();
+        for (Feature f : features) references.addAll(f.getReferences());
+        references.sort(Comparator.comparingInt(ref -> ref.id));
+        for (FeatureReference ref : references) {
+            result.add("ref " + ref.id + " " + ref.feature.Name + " " + ref.filePath + ":" + ref.start + "-" + ref.end
+                    + " nesting=" + ref.nestingDepth + " not=" + ref.notFlag + " combinedWith=" + ref.combinedWith
+                    + " " + ref.granularity + " " + ref.discipline + " in="
+                    + ((ref.inMethod == null) ? null : describeLocation(ref.inMethod)));
+        }
+
+        List<Method> functions = new ArrayList<>();
+        for (Method m : ctx.functions.AllMethods()) functions.add(m);
+        functions.sort(Comparator.comparing(TestProject::describeLocation));
+        for (Method m : functions) {
+            result.add("function " + describeLocation(m) + " " + m.uniqueFunctionSignature + " name="
+                    + m.functionName + " end=" + m.end1 + " grossLoc=" + m.getGrossLoc() + " signatureLoc="
+                    + m.getSignatureGrossLinesOfCode() + " netLoc=" + m.getNetLoc() + " lofc=" + m.lofc
+                    + " nesting=" + m.nestingSum + "/" + m.nestingDepthMax + " loac="
+                    + m.GetLinesOfAnnotatedCode() + " refs=" + m.featureReferences + " nofcNonDup="
+                    + m.numberFeatureConstantsNonDup + " nofl=" + m.numberFeatureLocations + " neg="
+                    + m.negationCount + " pcs=" + m.numberOfPresenceConditions + " lovc=" + m.lovc);
+            result.add("code " + describeLocation(m) + " " + m.getSourceCode());
+        }
+
+        List<File> files = new ArrayList<>(ctx.files.AllFiles());
+        files.sort(Comparator.comparing(f -> f.filePath));
+        for (File f : files) {
+            List<String> fileFunctions = new ArrayList<>();
+            for (Method m : f.methods) fileFunctions.add(describeLocation(m));
+            result.add("file " + f.filePath + " loc=" + f.loc + " lofc=" + f.lofc + " nesting=" + f.nestingSum + "/"
+                    + f.nestingDepthMax + " loac=" + f.GetLinesOfAnnotatedCode() + " refs=" + f.featureConstants
+                    + " functions=" + fileFunctions + " nofcNonDup=" + f.numberFeatureConstantsNonDup + " nofl="
+                    + f.numberOfFeatureLocations + " neg=" + f.negationCount + " pcs="
+                    + f.numberOfPresenceConditions + " lovc=" + f.lovc);
+        }
+        return result;
+    }
+
+    private static String describeLocation(Method m) {
+        return m.filePath + ":" + m.start1 + " " + m.originalFunctionSignature;
+    }
+}
@@ -0,0 +1,211 @@
+package de.ovgu.skunk.detection.data;
+
+import de.ovgu.skunk.detection.TestProject;
+import de.ovgu.skunk.detection.output.ProcessedDataHandler;
+import de.ovgu.skunk.util.BinaryDecoder;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Saves the processed data of the {@link TestProject} in the {@link BinaryIntermediateFormat} and reloads it
+ */
+public class BinaryIntermediateFormatTest {
+    private Path tmpDir;
+    private Path cppStatsDir;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("skunk-binary-test");
+        cppStatsDir = TestProject.copyTo(tmpDir.resolve("project"));
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        TestProject.deleteRecursively(tmpDir);
+    }
+
+    private Context load() {
+        return TestProject.load(cppStatsDir, 1, null);
+    }
+
+    private static Context decode(byte[] data) throws IOException {
+        Context ctx = new Context(null);
+        BinaryIntermediateFormat.Decode(ctx, data);
+        return ctx;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Context original = load();
+        byte[] data = BinaryIntermediateFormat.Encode(original);
+        List<String> expected = TestProject.describe(original);
+        Assert.assertTrue(expected.size() > 40, "Test project should yield features, functions and files");
+        Context restored = decode(data);
+        Assert.assertEquals(TestProject.describe(restored), expected);
+        for (Method m : restored.functions.AllMethods()) {
+            SourceText source = m.getSourceText();
+            Assert.assertEquals(source.getFileStamp(), SourceText.FileStamp.of(source.getSrcMlPath()), m.toString());
+        }
+    }
+
+    @Test
+    public void testObjectGraphIsShared() throws IOException {
+        Context ctx = decode(BinaryIntermediateFormat.Encode(load()));
+        Set<Method> functions = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Method m : ctx.functions.AllMethods()) functions.add(m);
+        for (File f : ctx.files.AllFiles()) {
+            for (Method m : f.methods) Assert.assertTrue(functions.contains(m), m.toString());
+        }
+        for (Feature feat : ctx.featureExpressions.GetFeatures()) {
+            for (FeatureReference ref : feat.getReferences()) {
+                Assert.assertSame(ref.feature, feat);
+                Assert.assertSame(ctx.featureExpressions.GetFeatureConstant(ref.id), ref);
+                if (ref.inMethod != null) Assert.assertTrue(functions.contains(ref.inMethod), ref.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testSameAsXml() throws IOException {
+        Path binaryDir = Files.createDirectory(tmpDir.resolve("binary"));
+        Path xmlDir = Files.createDirectory(tmpDir.resolve("xml"));
+        Context original = load();
+        original.withConfig(null, binaryDir.toFile()).processedDataHandler
+                .SaveProcessedData(ProcessedDataHandler.Format.BINARY);
+        original.withConfig(null, xmlDir.toFile()).processedDataHandler
+                .SaveProcessedData(ProcessedDataHandler.Format.XML);
+
+        Context fromBinary = new Context(null);
+        fromBinary.processedDataHandler.LoadProcessedData(binaryDir.toString());
+        Context fromXml = new Context(null);
+        fromXml.processedDataHandler.LoadProcessedData(xmlDir.toString());
+        List<String> expected = TestProject.describe(original);
+        Assert.assertEquals(TestProject.describe(fromXml), expected);
+        Assert.assertEquals(TestProject.describe(fromBinary), expected);
+    }
+
+    /**
+     * Each string is saved once in the string table.  The table holds, among others, the names of features and the
+     * paths of files.
+     */
+    @Test
+    public void testStringTable() throws IOException {
+        Context original = load();
+        byte[] data = BinaryIntermediateFormat.Encode(original);
+        Map<Integer, int[]> sections = readIndex(data);
+        int[] range = sections.get(1);
+        BinaryDecoder in = new BinaryDecoder(data);
+        in.seek(range[0], range[1]);
+        List<String> strings = new ArrayList<>();
+        for (int i = in.readVarInt(); i > 0; i--) strings.add(in.readUtf8());
+        Assert.assertEquals(in.remaining(), 0);
+        Assert.assertEquals(new HashSet<>(strings).size(), strings.size(), "Duplicate strings in " + strings);
+        for (Feature feat : original.featureExpressions.GetFeatures()) Assert.assertTrue(strings.contains(feat.Name));
+        for (File f : original.files.AllFiles()) Assert.assertTrue(strings.contains(f.filePath));
+        Assert.assertTrue(strings.contains(EnumGranularity.FUNCTION.name()));
+    }
+
+    /**
+     * The index lists each section once.  Sections follow the header without gaps and end where the index starts.
+     */
+    @Test
+    public void testIndex() throws IOException {
+        byte[] data = BinaryIntermediateFormat.Encode(load());
+        Map<Integer, int[]> sections = readIndex(data);
+        Assert.assertEquals(sections.keySet(), new HashSet<>(Arrays.asList(1, 2, 3, 4, 5, 6)));
+        List<int[]> ranges = new ArrayList<>(sections.values());
+        ranges.sort(Comparator.comparingInt(r -> r[0]));
+        int expectedOffset = 5; // magic plus version
+        for (int[] range : ranges) {
+            Assert.assertEquals(range[0], expectedOffset);
+            expectedOffset += range[1];
+        }
+        Assert.assertEquals(expectedOffset, indexOffset(data));
+    }
+
+    @Test
+    public void testReadsOlderVersions() throws IOException {
+        for (int version = 1; version < BinaryIntermediateFormat.VERSION; version++) {
+            Context original = load();
+            // Presence condition metrics were added in version 3.
+            for (Method m : original.functions.AllMethods()) {
+                m.numberOfPresenceConditions = 0;
+                m.lovc = 0;
+            }
+            for (File f : original.files.AllFiles()) {
+                f.numberOfPresenceConditions = 0;
+                f.lovc = 0;
+            }
+            byte[] data = BinaryIntermediateFormat.Encode(original, version);
+            Assert.assertEquals(data[4], version);
+            Context restored = decode(data);
+            Assert.assertEquals(TestProject.describe(restored), TestProject.describe(original), "version " + version);
+            for (Method m : restored.functions.AllMethods()) {
+                Assert.assertEquals(m.getSourceText().isInMemory(), version == 1, m.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testRejectsTruncatedData() throws IOException {
+        byte[] data = BinaryIntermediateFormat.Encode(load());
+        for (int length = 0; length < data.length; length++) {
+            try {
+                decode(Arrays.copyOf(data, length));
+                Assert.fail("Data truncated to " + length + " of " + data.length + " bytes should be rejected");
+            } catch (IOException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testRejectsWrongVersion() throws IOException {
+        byte[] data = BinaryIntermediateFormat.Encode(load());
+        for (int version : new int[]{0, BinaryIntermediateFormat.VERSION + 1}) {
+            data[4] = (byte) version;
+            try {
+                decode(data);
+                Assert.fail("Version " + version + " should be rejected");
+            } catch (IOException expected) {
+                Assert.assertTrue(expected.getMessage().contains("Unsupported version"), expected.getMessage());
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "Not a binary .*")
+    public void testRejectsOtherData() throws IOException {
+        byte[] data = BinaryIntermediateFormat.Encode(load());
+        data[0] = '<';
+        decode(data);
+    }
+
+    private static int indexOffset(byte[] data) {
+        int n = data.length;
+        return ((data[n - 4] & 0xFF) << 24) | ((data[n - 3] & 0xFF) << 16) | ((data[n - 2] & 0xFF) << 8)
+                | (data[n - 1] & 0xFF);
+    }
+
+    /**
+     * @return offset and length of each section, by section id
+     */
+    private static Map<Integer, int[]> readIndex(byte[] data) throws IOException {
+        BinaryDecoder in = new BinaryDecoder(data);
+        int indexOffset = indexOffset(data);
+        in.seek(indexOffset, data.length - 4 - indexOffset);
+        Map<Integer, int[]> result = new HashMap<>();
+        for (int i = in.readVarInt(); i > 0; i--) {
+            int id = in.readVarInt();
+            Assert.assertNull(result.put(id, new int[]{in.readVarInt(), in.readVarInt()}), "Section " + id);
+        }
+        Assert.assertEquals(in.remaining(), 0);
+        return result;
+    }
+}
@@ -0,0 +1,57 @@
+package de.ovgu.skunk.detection.data;
+
+import de.ovgu.skunk.util.LineSet;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class EmptyLineScannerTest {
+    @DataProvider(name = "files")
+    public static Object[][] files() {
+        //@formatter:off
+        return new Object[][]{
+                {false, "a = b / c; /* x */\n"    // 0
+                        + "/* x */ /* y\n"        // 1 empty
+                        + " */ // z\n"            // 2 empty
+                        + "s = \"/* no comment\";\n" // 3
+                        + "c = '\"'; // \\\n"      // 4, line comment continues
+                        + "d = 1;\n"              // 5 empty
+                        + "x = 1 /\n"             // 6
+                        + "/ 2;\r\n"              // 7
+                        + "\n"                    // 8 empty
+                        + " \t\n"                 // 9, white space only
+                        + "/*\n"                  // 10 empty
+                        + " \t\n"                 // 11 empty, white space in a comment
+                        + "*/"                    // 12 empty
+                , "1-2,5,8,10-12", 6},
+                {true, "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"    // 0, markup only
+                        + "<unit filename=\"a>b.c\"><comment type=\"block\">/* a\n"   // 1 empty
+                        + " * b */</comment>\n"                                       // 2 empty
+                        + "<expr_stmt><expr><name>s</name> = \"&lt;/*\"</expr>;</expr_stmt>\n"  // 3
+                        + "    <comment type=\"line\">// x &amp;&amp; y</comment>\n"   // 4 empty
+                        + "<return>return <expr><literal type=\"char\">'&quot;'</literal></expr>;</return>\n" // 5
+                        + "</unit>\n"                                                 // 6, markup only
+                , "1-2,4", 4},
+        };
+        //@formatter:on
+    }
+
+    @Test(dataProvider = "files")
+    public void testChunkBoundariesDoNotMatter(boolean srcMl, String text, String expectedEmptyLines,
+                                               int expectedLoc) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (int split = 0; split <= bytes.length; split++) {
+            LineSet emptyLines = new LineSet();
+            EmptyLineScanner scanner = new EmptyLineScanner(emptyLines, srcMl);
+            scanner.scan(ByteBuffer.wrap(bytes, 0, split));
+            scanner.scan(ByteBuffer.wrap(bytes, split, bytes.length - split));
+            scanner.finish();
+            Assert.assertEquals(emptyLines.toString(), expectedEmptyLines, "split at " + split);
+            Assert.assertEquals(scanner.getLoc(), expectedLoc, "split at " + split);
+            Assert.assertEquals(scanner.getLineCount(), emptyLines.size() + expectedLoc);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package de.ovgu.skunk.detection.data;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compares looking up feature constant references by id via {@link FeatureExpressionCollection#GetFeatureConstant(int)}
+ * to the linear scan over all features that was used before.  Not run as part of the test suite.  Run it via
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=de.ovgu.skunk.detection.data.FeatureReferenceLookupBenchmark [-Dexec.args="1000 2000 4000"]
+ * </pre>
+ * The arguments are the numbers of features to create.  Each feature is referenced once.
+ */
+public class FeatureReferenceLookupBenchmark {
+    private static final int[] DEFAULT_SIZES = {1000, 2000, 4000, 8000, 16000};
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+        }
+
+        Path file = Files.createTempFile("skunk-benchmark", ".c.xml");
+        try {
+            Files.write(file, Collections.singletonList("int x;"), StandardCharsets.UTF_8);
+            System.out.println("features\tlinear scan [ms]\tindexed [ms]");
+            for (int size : sizes) {
+                run(file.toString(), size);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void run(String filePath, int numFeatures) {
+        Context ctx = new Context(null);
+        ctx.files.InternFile(filePath);
+        List<FeatureReference> refs = new ArrayList<>(numFeatures);
+        for (int i = 0; i < numFeatures; i++) {
+            Feature feature = ctx.featureExpressions.InternFeature("FEATURE_" + i);
+            FeatureReference ref = new FeatureReference(filePath, i, i, 0, false);
+            feature.AddReference(ref);
+            refs.add(ref);
+        }
+        Collections.shuffle(refs);
+
+        // Warm up both variants before measuring
+        lookUpAllLinearly(ctx, refs);
+        lookUpAllIndexed(ctx, refs);
+
+        long linearNanos = lookUpAllLinearly(ctx, refs);
+        long indexedNanos = lookUpAllIndexed(ctx, refs);
+        System.out.println(numFeatures + "\t" + (linearNanos / 1000000.0) + "\t" + (indexedNanos / 1000000.0));
+    }
+
+    private static long lookUpAllLinearly(Context ctx, List<FeatureReference> refs) {
+        long start = System.nanoTime();
+        for (FeatureReference ref : refs) {
+            FeatureReference found = null;
+            for (Feature feature : ctx.featureExpressions.GetFeatures()) {
+                for (FeatureReference candidate : feature.references) {
+                    if (candidate.id == ref.id) {
+                        found = candidate;
+                        break;
+                    }
+                }
+                if (found != null) break;
+            }
+            if (found != ref) throw new AssertionError("Linear scan failed to find " + ref);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long lookUpAllIndexed(Context ctx, List<FeatureReference> refs) {
+        long start = System.nanoTime();
+        for (FeatureReference ref : refs) {
+            FeatureReference found = ctx.featureExpressions.GetFeatureConstant(ref.id);
+            if (found != ref) throw new AssertionError("Index failed to find " + ref);
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,36 @@
+package de.ovgu.skunk.detection.data;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class FileTest {
+    @Test
+    public void testEmptyLines() throws Exception {
+        //@formatter:off
+        String text = "int x;\r\n"       // 0
+                + "\n"                   // 1 empty
+                + "  // comment\r"       // 2 empty
+                + "  \t\n"               // 3 white space only, counts as code
+                + " /* start\n"          // 4 empty
+                + "ä */ int y;\r\n"      // 5 code after the end of the comment
+                + "/*/ z */\n"           // 6 empty, `/*/' does not end the comment
+                + "int z; /* x\n"        // 7
+                + "still comment */\n"   // 8 empty
+                + "}";                   // 9, no line break at the end
+        //@formatter:on
+        Path p = Files.createTempFile("emptylines", ".c");
+        try {
+            Files.write(p, text.getBytes(StandardCharsets.UTF_8));
+            File f = new File(new Context(null), p.toString());
+            f.AwaitEmptyLines();
+            Assert.assertEquals(f.emptyLines.toString(), "1-2,4,6,8");
+            Assert.assertEquals(f.loc, 5);
+        } finally {
+            Files.delete(p);
+        }
+    }
+}
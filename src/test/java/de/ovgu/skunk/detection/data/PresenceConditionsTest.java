@@ -0,0 +1,68 @@
+package de.ovgu.skunk.detection.data;
+
+import de.ovgu.skunk.util.LineSet;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PresenceConditionsTest {
+    @Test
+    public void testBddIsCanonical() {
+        Bdd bdd = new Bdd();
+        int a = bdd.var(0);
+        int b = bdd.var(1);
+        Assert.assertEquals(bdd.and(a, bdd.not(a)), Bdd.FALSE);
+        Assert.assertEquals(bdd.or(a, bdd.not(a)), Bdd.TRUE);
+        Assert.assertEquals(bdd.not(bdd.and(a, b)), bdd.or(bdd.not(a), bdd.not(b)));
+        Assert.assertEquals(bdd.and(b, a), bdd.and(a, b));
+        Assert.assertEquals(bdd.or(bdd.and(a, b), bdd.and(a, bdd.not(b))), a);
+    }
+
+    @Test
+    public void testBranchesAndNesting() {
+        ConditionTable table = new ConditionTable();
+        Condition a = table.macro(table.symbol("A"));
+        Condition b = table.defined(table.symbol("B"));
+        Condition definedA = table.defined(table.symbol("A"));
+        PresenceConditions pcs = new PresenceConditions();
+        final int pcA = pcs.toBdd(a);
+        final int pcB = pcs.toBdd(b);
+        Assert.assertEquals(pcs.toBdd(definedA), pcA);
+
+        Assert.assertEquals(pcs.AddDirective("f.c", "#if", 1, 9, a), pcA);
+        // Nested in the #if
+        Assert.assertEquals(pcs.AddDirective("f.c", "#ifdef", 2, 4, b), pcs.toBdd(table.and(a, b)));
+        Assert.assertEquals(pcs.AddDirective("f.c", "#else", 4, 6, table.not(b)),
+                pcs.toBdd(table.and(a, table.not(b))));
+        // #if 0 ... #elif B ... #else ... #endif
+        Assert.assertEquals(pcs.AddDirective("f.c", "#if", 10, 12, table.number("0")), Bdd.FALSE);
+        Assert.assertEquals(pcs.AddDirective("f.c", "#elif", 12, 14, b), pcB);
+        Assert.assertEquals(pcs.AddDirective("f.c", "#else", 14, 16, table.number("1")),
+                pcs.toBdd(table.not(b)));
+        // A new file starts without enclosing blocks
+        Assert.assertEquals(pcs.AddDirective("g.c", "#if", 1, 3, table.number("1")), Bdd.TRUE);
+    }
+
+    @Test
+    public void testMetrics() {
+        ConditionTable table = new ConditionTable();
+        Condition a = table.macro(table.symbol("A"));
+        Condition b = table.macro(table.symbol("B"));
+        Context ctx = new Context(null);
+        PresenceConditions pcs = new PresenceConditions();
+        pcs.AddDirective("f.c", "#ifdef", 3, 10, a);
+        pcs.AddDirective("f.c", "#ifdef", 5, 7, b);
+        pcs.AddDirective("f.c", "#if", 12, 14, table.number("1"));
+        LineSet emptyLines = new LineSet();
+        emptyLines.add(4);
+        File file = new File(ctx, "f.c", emptyLines);
+        Method function = new Method(ctx, "void f()", "f.c", 2, 7, 1, "");
+        file.methods.add(function);
+        pcs.SetMetrics(file);
+        // Lines 1-3, 10-14 are unconditional, 4 is empty, 5, 7-9 depend on A and 6 on A && B
+        Assert.assertEquals(file.numberOfPresenceConditions, 3);
+        Assert.assertEquals(file.lovc, 5);
+        // Lines 2-8
+        Assert.assertEquals(function.numberOfPresenceConditions, 3);
+        Assert.assertEquals(function.lovc, 4);
+    }
+}
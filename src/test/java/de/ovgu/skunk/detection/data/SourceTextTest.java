@@ -0,0 +1,99 @@
+package de.ovgu.skunk.detection.data;
+
+import de.ovgu.skunk.detection.TestProject;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads the code of functions from srcML files that change after the positions of the functions were determined
+ */
+public class SourceTextTest {
+    private static final String FUNCTION = "<function><type>int</type> <name>f</name>() <block>{ <return>return"
+            + " <expr>1 &lt; 2</expr>;</return> }</block></function>";
+    private static final String SRCML = "<unit filename=\"f.c\">\n" + FUNCTION + "\n</unit>\n";
+
+    private Path tmpDir;
+    private Path srcMlFile;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("skunk-source-test");
+        srcMlFile = tmpDir.resolve("f.c.xml");
+        Files.write(srcMlFile, SRCML.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        TestProject.deleteRecursively(tmpDir);
+    }
+
+    private SourceText locate() {
+        final String path = srcMlFile.toString();
+        return SourceText.inSrcMlFile(path, SourceText.FileStamp.of(path), SRCML.indexOf(FUNCTION),
+                FUNCTION.length(), 1);
+    }
+
+    private static void assertChanged(SourceText source) {
+        try {
+            source.get();
+            Assert.fail("Reading code from a changed file should fail: " + source);
+        } catch (RuntimeException expected) {
+            Assert.assertTrue(expected.getMessage().contains("has changed"), expected.getMessage());
+        }
+    }
+
+    @Test
+    public void testReadsUnchangedFile() {
+        SourceText source = locate();
+        Assert.assertEquals(source.get(), "int f() { return 1 < 2; }");
+        Assert.assertEquals(source.get(), "int f() { return 1 < 2; }");
+    }
+
+    @Test
+    public void testFailsIfModificationTimeChanged() throws IOException {
+        SourceText source = locate();
+        source.get();
+        // same size, different contents
+        Files.write(srcMlFile, SRCML.replace("<name>f</name>", "<name>g</name>").getBytes(StandardCharsets.UTF_8));
+        Assert.assertTrue(srcMlFile.toFile().setLastModified(source.getFileStamp().lastModified + 2000));
+        assertChanged(source);
+        Assert.assertEquals(locate().get(), "int g() { return 1 < 2; }");
+    }
+
+    @Test
+    public void testFailsIfSizeChanged() throws IOException {
+        SourceText source = locate();
+        Files.write(srcMlFile, ("<!-- moved -->" + SRCML).getBytes(StandardCharsets.UTF_8));
+        Assert.assertTrue(srcMlFile.toFile().setLastModified(source.getFileStamp().lastModified));
+        assertChanged(source);
+    }
+
+    @Test
+    public void testFailsAfterLoadingIntermediateDataOfChangedFile() throws IOException {
+        Path cppStatsDir = TestProject.copyTo(tmpDir.resolve("project"));
+        byte[] data = BinaryIntermediateFormat.Encode(TestProject.load(cppStatsDir, 1, null));
+        java.io.File aFile = cppStatsDir.resolve("a.c.xml").toFile();
+        Assert.assertTrue(aFile.setLastModified(aFile.lastModified() - 60000));
+
+        Context restored = new Context(null);
+        BinaryIntermediateFormat.Decode(restored, data);
+        int numChanged = 0;
+        for (Method m : restored.functions.AllMethods()) {
+            Assert.assertFalse(m.getSourceText().isInMemory(), m.toString());
+            if (m.getSourceText().getSrcMlPath().equals(aFile.getPath())) {
+                assertChanged(m.getSourceText());
+                numChanged++;
+            } else {
+                Assert.assertFalse(m.getSourceCode().isEmpty(), m.toString());
+            }
+        }
+        Assert.assertTrue(numChanged > 0);
+    }
+}
@@ -0,0 +1,71 @@
+package de.ovgu.skunk.detection.data;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+public class SrcMlElementTest {
+    @Test
+    public void testFromName() {
+        Assert.assertEquals(SrcMlElement.fromName("expr_stmt"), SrcMlElement.EXPR_STMT);
+        Assert.assertEquals(SrcMlElement.fromName("cpp:if"), SrcMlElement.OTHER);
+        Assert.assertEquals(SrcMlElement.fromName("#document"), SrcMlElement.OTHER);
+        Assert.assertEquals(SrcMlElement.fromName(""), SrcMlElement.OTHER);
+    }
+
+    @Test
+    public void testGranularityOfName() {
+        SrcMlElement name = SrcMlElement.NAME;
+        Assert.assertEquals(name.granularity(SrcMlElement.FUNCTION), EnumGranularity.FUNCTIONSIGNATURE);
+        Assert.assertEquals(name.granularity(SrcMlElement.EXPR), EnumGranularity.EXPRESSION);
+        Assert.assertEquals(name.granularity(SrcMlElement.TYPE), EnumGranularity.STATEMENT);
+        Assert.assertEquals(name.granularity(SrcMlElement.BLOCK), EnumGranularity.NOTDEFINED);
+        Assert.assertEquals(SrcMlElement.DECL_STMT.granularity(SrcMlElement.BLOCK), EnumGranularity.FUNCTION);
+    }
+
+    @Test
+    public void testDisciplineOfIf() {
+        Assert.assertEquals(SrcMlElement.IF.discipline(true, true), EnumDiscipline.DISCIPLINED);
+        Assert.assertEquals(SrcMlElement.IF.discipline(true, false), EnumDiscipline.UNDISC_IF);
+        Assert.assertEquals(SrcMlElement.IF.discipline(false, false), EnumDiscipline.NOTDEFINED);
+        Assert.assertEquals(SrcMlElement.ELSE.discipline(false, false), EnumDiscipline.UNDISC_ELSE_IF);
+        Assert.assertEquals(SrcMlElement.OTHER.discipline(true, false), EnumDiscipline.DISCIPLINED);
+    }
+
+    @Test
+    public void testElseAfterThen() throws Exception {
+        Element ifNode = parse("<if>if <condition>(x)</condition><then> <block>{ }</block></then>\n"
+                + "    <else>else <block>{ }</block></else></if>");
+        Node elseNode = SrcMlElement.findElseChild(ifNode);
+        Assert.assertNotNull(elseNode);
+        Assert.assertTrue(SrcMlElement.isPrecededByThen(elseNode));
+    }
+
+    @Test
+    public void testBareElse() throws Exception {
+        Element ifNode = parse("<if>if <condition>(x)</condition><then> <block>{ }</block></then>\n"
+                + "<cpp:ifdef>#<cpp:directive>ifdef</cpp:directive> <name>A</name></cpp:ifdef>\n"
+                + "    <else>else <block>{ }</block></else></if>");
+        Node elseNode = SrcMlElement.findElseChild(ifNode);
+        Assert.assertNotNull(elseNode);
+        Assert.assertFalse(SrcMlElement.isPrecededByThen(elseNode));
+
+        Element noThen = parse("<if>if <condition>(x)</condition> <else>else <block>{ }</block></else></if>");
+        Assert.assertFalse(SrcMlElement.isPrecededByThen(SrcMlElement.findElseChild(noThen)));
+
+        Element noElse = parse("<if>if <condition>(x)</condition><then> <block>{ }</block></then></if>");
+        Assert.assertNull(SrcMlElement.findElseChild(noElse));
+    }
+
+    private static Element parse(String xml) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        return doc.getDocumentElement();
+    }
+}
@@ -0,0 +1,107 @@
+package de.ovgu.skunk.detection.detector;
+
+import de.ovgu.skunk.detection.TestProject;
+import de.ovgu.skunk.detection.data.Context;
+import de.ovgu.skunk.detection.data.FeatureReference;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs the {@link Detector} on several copies of the {@link TestProject}, which are enough elements to split both the
+ * checks and the filtering of their results between threads
+ */
+public class DetectorTest {
+    private static final int COPIES = 16;
+
+    private Path tmpDir;
+    private Context ctx;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("skunk-detector-test");
+        ctx = TestProject.load(TestProject.copyTo(tmpDir.resolve("project"), COPIES), 1, null);
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        TestProject.deleteRecursively(tmpDir);
+    }
+
+    @DataProvider
+    public Object[][] configs() {
+        //@formatter:off
+        return new Object[][]{
+                {"without mandatory values", "Method_LoacToLocRatio=0.1\n"
+                        + "Method_NumberOfFeatureConstants=1\n"
+                        + "File_LoacToLocRatio=0.1\n"
+                        + "Feature_NumberNofc=1\n"},
+                {"with mandatory values", "Method_LoacToLocRatio=0.1;mandatory\n"
+                        + "Method_NumberOfFeatureConstants=1\n"
+                        + "File_LoacToLocRatio=0.1\n"
+                        + "Feature_NumberNofc=1\n"},
+        };
+        //@formatter:on
+    }
+
+    @Test(dataProvider = "configs")
+    public void testThreadsYieldSameResult(String description, String config) throws Exception {
+        Path configFile = Files.createTempFile(tmpDir, "smells", ".csm");
+        Files.write(configFile, config.getBytes(StandardCharsets.UTF_8));
+        Context configured = ctx.withConfig(new DetectionConfig(configFile.toString()), tmpDir.toFile());
+
+        Map<Integer, List<SmellReason>> expected = detect(configured, 1);
+        Assert.assertFalse(expected.isEmpty(), description);
+        for (int numThreads : new int[]{2, 4}) {
+            Assert.assertEquals(detect(configured, numThreads), expected, description + ", " + numThreads + " threads");
+        }
+    }
+
+    @Test
+    public void testMandatoryReasonsFilterResult() throws Exception {
+        Object[][] configs = configs();
+        Map<Integer, List<SmellReason>> unfiltered = null;
+        for (Object[] config : configs) {
+            Path configFile = Files.createTempFile(tmpDir, "smells", ".csm");
+            Files.write(configFile, ((String) config[1]).getBytes(StandardCharsets.UTF_8));
+            Context configured = ctx.withConfig(new DetectionConfig(configFile.toString()), tmpDir.toFile());
+            if (unfiltered == null) {
+                unfiltered = detect(configured, 1);
+                continue;
+            }
+            Map<Integer, List<SmellReason>> expected = new TreeMap<>();
+            for (Map.Entry<Integer, List<SmellReason>> e : unfiltered.entrySet()) {
+                // Method_LoacToLocRatio is mandatory for both functions and files.
+                if (e.getValue().contains(SmellReason.ANNOTATIONBUNDLE_LOACTOLOC)
+                        && e.getValue().contains(SmellReason.ANNOTATIONFILE_LOACTOLOC)) {
+                    expected.put(e.getKey(), e.getValue());
+                }
+            }
+            Assert.assertTrue(expected.size() < unfiltered.size());
+            for (int numThreads : new int[]{1, 4}) {
+                Assert.assertEquals(detect(configured, numThreads), expected, numThreads + " threads");
+            }
+        }
+    }
+
+    /**
+     * @return the reasons of each fitting feature reference, by reference id
+     */
+    private static Map<Integer, List<SmellReason>> detect(Context ctx, int numThreads) {
+        Map<Integer, List<SmellReason>> result = new TreeMap<>();
+        for (Map.Entry<FeatureReference, List<SmellReason>> e : new Detector(ctx, numThreads).Perform().entrySet()) {
+            result.put(e.getKey().id, e.getValue());
+        }
+        return result;
+    }
+}
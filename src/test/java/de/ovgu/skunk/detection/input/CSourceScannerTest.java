@@ -0,0 +1,80 @@
+package de.ovgu.skunk.detection.input;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CSourceScannerTest {
+    //@formatter:off
+    private static final String SOURCE = ""
+            + "/* #if NOT_A_DIRECTIVE\n"              // 1
+            + "   { */\n"                             // 2
+            + "#if defined(A) || \\\n"                // 3
+            + "    B // comment\n"                    // 4
+            + "int f(int a)\n"                        // 5
+            + "{\n"                                   // 6
+            + "    char *s = \"}\";\n"                // 7
+            + "#elif C > 2\n"                         // 8
+            + "int f(int a, int b) {\n"               // 9
+            + "#else\n"                               // 10
+            + "int f(void) {\n"                       // 11
+            + "#endif\n"                              // 12
+            + "    return '{';\n"                     // 13
+            + "}\n"                                   // 14
+            + "int knr(a)\n"                          // 15
+            + "int a;\n"                              // 16
+            + "{ return a; }\n"                       // 17
+            + "int proto(int);\n"                     // 18
+            + "struct s { int x; };\n"                // 19
+            + "int arr[] = { 1, 2 };\n"               // 20
+            + "#ifdef D\n"                            // 21
+            + "static int g(void) { return 1; }\n"    // 22
+            + "#else\n"                               // 23
+            + "static int g(void)\n"                  // 24
+            + "{\n"                                   // 25
+            + "    return 0;\n"                       // 26
+            + "}\n"                                   // 27
+            + "#endif\n"                              // 28
+            + "#if 0\n"                               // 29
+            + "int dead(void) {\n"                    // 30
+            + "#endif\n"                              // 31
+            + "extern \"C\" {\n"                      // 32
+            + "void h ( void ) {\n"                   // 33
+            + "}\n"                                   // 34
+            + "}\n";                                  // 35
+    //@formatter:on
+
+    @Test
+    public void testFeatureLocations() {
+        CSourceScanner scanner = CSourceScanner.scan(SOURCE);
+        List<String> actual = new ArrayList<>();
+        for (FeatureLocation loc : scanner.getFeatureLocations()) {
+            actual.add(loc.toString());
+        }
+        Assert.assertEquals(actual, Arrays.asList(
+                "3,8,#if,defined(A) || B",
+                "8,10,#elif,C > 2",
+                "10,12,#else,!(defined(A) || B) && !(C > 2)",
+                "21,23,#ifdef,defined(D)",
+                "23,28,#else,!(defined(D))",
+                "29,31,#if,0"));
+    }
+
+    @Test
+    public void testFunctions() {
+        CSourceScanner scanner = CSourceScanner.scan(SOURCE);
+        List<String> actual = new ArrayList<>();
+        for (CSourceScanner.Function f : scanner.getFunctions()) {
+            actual.add(f.toString());
+        }
+        Assert.assertEquals(actual, Arrays.asList(
+                "5,14,2,int f(int a)",
+                "15,17,3,int knr(a) int a;",
+                "22,22,1,static int g(void)",
+                "24,27,2,static int g(void)",
+                "33,34,1,void h(void)"));
+    }
+}
@@ -0,0 +1,50 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.Condition;
+import de.ovgu.skunk.detection.data.ConditionTable;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class CppConditionParserTest {
+    @DataProvider(name = "conditions")
+    public static Object[][] conditions() {
+        return new Object[][]{
+                {"FEATURE_A", "FEATURE_A"},
+                {"defined(FEATURE_B) && !defined FEATURE_C", "defined(FEATURE_B) && !defined(FEATURE_C)"},
+                {"!(defined(CONFIG_X) || CONFIG_Y) && !defined(CONFIG_Z)",
+                        "!(defined(CONFIG_X) || CONFIG_Y) && !defined(CONFIG_Z)"},
+                {"A || B && C", "A || (B && C)"},
+                {"A && B || C", "(A && B) || C"},
+                {"FEATURE_D > 2 /* two */", "FEATURE_D > 2"},
+                {"LINUX_VERSION_CODE >= KERNEL_VERSION(2,6,0)", "LINUX_VERSION_CODE >= KERNEL_VERSION(2, 6, 0)"},
+                {"X + 1 * 2 == -Y << 1", "(X + (1 * 2)) == ((-Y) << 1)"},
+                {"A ? B : C", "A ? B : C"},
+                {"V == 'a' && W >= 0x10UL", "(V == 'a') && (W >= 0x10UL)"},
+        };
+    }
+
+    @Test(dataProvider = "conditions")
+    public void testParse(String text, String expected) {
+        Assert.assertEquals(CppConditionParser.parse(text, new ConditionTable()).toString(), expected);
+    }
+
+    @Test
+    public void testHashConsing() {
+        ConditionTable table = new ConditionTable();
+        Condition first = CppConditionParser.parse("defined(A) && (B || !defined(C))", table);
+        Condition second = CppConditionParser.parse("defined A&&(B||!defined C)", table);
+        Assert.assertSame(second, first);
+        Condition sub = CppConditionParser.parse("B || !defined(C)", table);
+        Assert.assertSame(first.getOperand(1), sub);
+        Assert.assertSame(CppConditionParser.parse("defined(B)", table).symbol, sub.getOperand(0).symbol);
+        Assert.assertEquals(table.symbolCount(), 3);
+        Assert.assertEquals(table.symbol(0).name, "A");
+        Assert.assertNotSame(CppConditionParser.parse("defined(A) || B", table), first);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMalformed() {
+        CppConditionParser.parse("defined(A) &&", new ConditionTable());
+    }
+}
@@ -0,0 +1,78 @@
+package de.ovgu.skunk.detection.input;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class CppStatsConditionFeaturesTest {
+    @DataProvider(name = "conditions")
+    public static Object[][] conditions() {
+        return new Object[][]{
+                {"FEATURE_A"},
+                {"defined(FEATURE_B) && !defined(FEATURE_C)"},
+                {"!(FEATURE_B)"},
+                {"!defined(FEATURE_C)"},
+                {"FEATURE_D > 2"},
+                {"!(defined(CONFIG_X) || CONFIG_Y) && !defined(CONFIG_Z)"},
+                {"CONFIG_Y /* why */"},
+                {"LINUX_VERSION_CODE >= KERNEL_VERSION(2,6,0)"},
+                {"!FOO && BAR"},
+                {"A || A || !A"},
+                {"0x10 < 2ND_LEVEL"},
+                {"undefined_behaviour"},
+                {""},
+        };
+    }
+
+    /**
+     * The former, regular expression based extraction of features from a condition
+     */
+    private static String extractUsingRegex(String entry) {
+        final int commentStart = entry.indexOf("/*");
+        if (commentStart != -1) {
+            String comment = entry.substring(commentStart, entry.indexOf("*/", commentStart + 2) + 2);
+            entry = entry.replace(comment, "");
+        }
+        List<String> result = new ArrayList<>();
+        Matcher matcher = Pattern.compile("[\\w!]+").matcher(entry);
+        boolean notFlag = false;
+        while (matcher.find()) {
+            String match = matcher.group();
+            if (match.contains("!")) notFlag = true;
+            if (match.contains("defined")) continue;
+            else if (match.matches("(\\d)+$") || Character.isDigit(match.charAt(0)) || match.charAt(0) == '!')
+                continue;
+            result.add((notFlag ? "!" : "") + match);
+            notFlag = false;
+        }
+        return result.toString();
+    }
+
+    @Test(dataProvider = "conditions")
+    public void testSameFeaturesAsRegex(String condition) {
+        Assert.assertEquals(CppStatsConditionFeatures.parse(condition).toString(), extractUsingRegex(condition));
+    }
+
+    @Test
+    public void testLineCommentEndsCondition() {
+        Assert.assertEquals(CppStatsConditionFeatures.parse("CONFIG_Y // why not CONFIG_Z").toString(), "[CONFIG_Y]");
+        Assert.assertEquals(CppStatsConditionFeatures.parse("!defined(A) && /* B */ C // D").toString(), "[!A, C]");
+        Assert.assertEquals(CppStatsConditionFeatures.parse("// A").toString(), "[]");
+        Assert.assertEquals(CppStatsConditionFeatures.parse("A / B").toString(), "[A, B]");
+    }
+
+    @Test
+    public void testCacheSharesResults() {
+        CppStatsConditionFeatures.Cache cache = new CppStatsConditionFeatures.Cache(null);
+        CppStatsConditionFeatures first = cache.get(new String("defined(X)"));
+        Assert.assertSame(cache.get(new String("defined(X)")), first);
+        Assert.assertEquals(first.size(), 1);
+        Assert.assertEquals(first.getName(0), "X");
+        Assert.assertFalse(first.isNegated(0));
+    }
+}
@@ -0,0 +1,35 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.Context;
+import de.ovgu.skunk.detection.data.FeatureReference;
+import de.ovgu.skunk.detection.data.Method;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class FunctionIntervalsTest {
+    @Test
+    public void testEnclosingFunctions() {
+        Context ctx = new Context(null);
+        // Lines 3-6, and two alternative definitions of the same function in lines 8-10 and 12-15
+        Method f = new Method(ctx, "void f()", "a.c", 3, 4, 1, "");
+        Method g1 = new Method(ctx, "int g()", "a.c", 8, 3, 1, "");
+        Method g2 = new Method(ctx, "int g()", "a.c", 12, 4, 1, "");
+        List<FeatureReference> references = Arrays.asList(
+                ref(1), ref(4), ref(13), ref(9), ref(7), ref(10), ref(20));
+        Method[] actual = new FunctionIntervals(new Method[]{f, g1, g2}).enclosingFunctions(references);
+        Assert.assertEquals(actual, new Method[]{null, f, g2, g1, null, g1, null});
+    }
+
+    @Test
+    public void testNoFunctions() {
+        Method[] actual = new FunctionIntervals(new Method[0]).enclosingFunctions(Arrays.asList(ref(1), ref(2)));
+        Assert.assertEquals(actual, new Method[]{null, null});
+    }
+
+    private static FeatureReference ref(int start) {
+        return new FeatureReference("a.c", start, start + 1, 0, false);
+    }
+}
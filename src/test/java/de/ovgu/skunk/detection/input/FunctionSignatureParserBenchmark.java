@@ -0,0 +1,106 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.FilePath;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares parsing function signatures by walking the DOM, as {@link FunctionSignatureParser} does by default, to
+ * evaluating XPath expressions and copying the whole function text, as it did before
+ * ({@link FunctionSignatureParser#enableXPathOnly()}).  Not run as part of the test suite.  Run it via
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=de.ovgu.skunk.detection.input.FunctionSignatureParserBenchmark [-Dexec.args="DIR_OR_FILE ..."]
+ * </pre>
+ * The arguments are srcML files or folders containing them, e.g., the <code>_cppstats</code> folder of a project.
+ * Without arguments, the corpus of real-world function definitions in <code>signature_corpus.c.xml</code> is
+ * used, which includes K&amp;R definitions, macro-laden and multi-line headers.  Both variants must yield the same
+ * signatures.
+ */
+public class FunctionSignatureParserBenchmark {
+    private static final String CORPUS = "signature_corpus.c.xml";
+    /**
+     * Number of times the functions of each input are parsed per measurement
+     */
+    private static final int REPETITIONS = 200;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("input\tfunctions\tchild walk [ms]\tXPath [ms]");
+        if (args.length == 0) {
+            try (InputStream is = FunctionSignatureParserBenchmark.class.getResourceAsStream(CORPUS)) {
+                run(CORPUS, new PositionalXmlReader().readXML(is));
+            }
+            return;
+        }
+        for (String arg : args) {
+            for (Path file : findSrcMlFiles(Paths.get(arg))) {
+                try (InputStream is = Files.newInputStream(file)) {
+                    run(file.toString(), new PositionalXmlReader().readXML(is));
+                }
+            }
+        }
+    }
+
+    private static List<Path> findSrcMlFiles(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            List<Path> result = new ArrayList<>();
+            result.add(path);
+            return result;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            return paths.filter(p -> p.getFileName().toString().endsWith(".xml") && Files.isRegularFile(p)).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void run(String name, Document doc) {
+        final FilePath fp = new FilePath(name, name);
+        NodeList functionNodes = doc.getElementsByTagName("function");
+        List<Node> functions = new ArrayList<>(functionNodes.getLength());
+        for (int i = 0; i < functionNodes.getLength(); i++) functions.add(functionNodes.item(i));
+
+        List<String> childWalkSignatures = parseAll(functions, fp, false);
+        List<String> xpathSignatures = parseAll(functions, fp, true);
+        if (!childWalkSignatures.equals(xpathSignatures)) {
+            throw new AssertionError("Signatures differ in " + name + ": " + childWalkSignatures + " vs. "
+                    + xpathSignatures);
+        }
+
+        // Warm up both variants before measuring
+        time(functions, fp, false);
+        time(functions, fp, true);
+
+        long childWalkNanos = time(functions, fp, false);
+        long xpathNanos = time(functions, fp, true);
+        System.out.println(name + "\t" + functions.size() + "\t" + (childWalkNanos / 1000000.0) + "\t"
+                + (xpathNanos / 1000000.0));
+    }
+
+    private static long time(List<Node> functions, FilePath fp, boolean xpathOnly) {
+        long start = System.nanoTime();
+        for (int i = 0; i < REPETITIONS; i++) parseAll(functions, fp, xpathOnly);
+        return System.nanoTime() - start;
+    }
+
+    private static List<String> parseAll(List<Node> functions, FilePath fp, boolean xpathOnly) {
+        List<String> result = new ArrayList<>(functions.size());
+        for (Node function : functions) {
+            FunctionSignatureParser parser = new FunctionSignatureParser(function, fp);
+            if (xpathOnly) parser.enableXPathOnly();
+            ParsedFunctionSignature parsed = parser.parseFunctionSignature();
+            result.add(parsed.signature + "@" + parsed.cStartLoc + "+" + parsed.originalLinesOfCode);
+        }
+        return result;
+    }
+}
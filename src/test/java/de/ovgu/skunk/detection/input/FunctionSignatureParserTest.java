@@ -1,13 +1,118 @@
 package de.ovgu.skunk.detection.input;
 
+import de.ovgu.skunk.detection.data.FilePath;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Created by wfenske on 13.03.17.
  */
 public class FunctionSignatureParserTest {
+    private static final FilePath FP = new FilePath("/foo.c.xml", "foo.c");
+
+    /**
+     * Function definitions taken from real projects (Apache, OpenLDAP, Blender, ...), as srcML renders them
+     */
+    //@formatter:off
+    private static final String SRCML_CORPUS = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<unit xmlns=\"http://www.sdml.info/srcML/src\" xmlns:cpp=\"http://www.sdml.info/srcML/cpp\" language=\"C\" filename=\"foo.c\">"
+            + "<function><type><specifier>static</specifier> <specifier>const</specifier> <name>char</name> *</type><name>add_setenvif</name><parameter_list>(<param><decl><type><name>cmd_parms</name> *</type><name>cmd</name></decl></param>, <param><decl><type><name>void</name> *</type><name>mconfig</name></decl></param>,\n"
+            + "                                <param><decl><type><specifier>const</specifier> <name>char</name> *</type><name>args</name></decl></param>)</parameter_list>\n"
+            + "<block>{\n"
+            + "    <return>return <expr><call><name>add_setenvif_core</name><argument_list>(<argument><expr><name>cmd</name></expr></argument>)</argument_list></call></expr>;</return>\n"
+            + "}</block></function>\n"
+            + "<function><type><name>int</name></type> <name>os_init_job_environment</name><parameter_list>(<param><decl><type><name>server_rec</name> *</type><name>server</name></decl></param>, <param><decl><type><specifier>const</specifier> <name>char</name> *</type><name>user_name</name></decl></param>, <param><decl><type><name>int</name></type> <name>one_process</name></decl></param>)</parameter_list> <block>{ <return>return <expr><name>OK</name></expr>;</return> }</block></function>\n"
+            + "<function><type><specifier>static</specifier> <name>int</name></type>\n"
+            + "<name>newerf</name> <parameter_list>(<param><decl><type><name>f1</name></type></decl></param>, <param><decl><type><name>f2</name></type></decl></param>)</parameter_list>\n"
+            + "<decl_stmt><decl><type><name>char</name> *</type><name>f1</name></decl>, <decl><type ref=\"prev\"/>*<name>f2</name></decl>;</decl_stmt>\n"
+            + "<block>{ <return>return <expr>0</expr>;</return> }</block></function>\n"
+            + "<function><type><name>void</name></type> <name>ldif_sput</name><parameter_list>( <param><decl><type><name>char</name> **</type><name>out</name></decl></param>, <param><decl><type><name>int</name></type> <name>type</name></decl></param>, <comment type=\"block\">/* the name */</comment> <param><decl><type><name>LDAP_CONST</name> <name>char</name> *</type><name>name</name></decl></param> )</parameter_list>\n"
+            + "<block>{ }</block></function>\n"
+            + "<function><type><name>int</name></type> <name>my_printf</name><parameter_list>(<param><decl><type><name>char</name> *</type><name>format</name></decl></param>, <param><decl><type>...</type></decl></param>)</parameter_list> <block>{ <return>return <expr>0</expr>;</return> }</block></function>\n"
+            + "<function><type><name>int</name></type> <name>no_body</name><parameter_list>(<param><decl><type><name>int</name></type> <name>x</name></decl></param>,\n"
+            + "    <param><decl><type><name>long</name></type> <name>y</name></decl></param>)</parameter_list> <macro><name>BODY</name></macro></function>\n"
+            + "</unit>\n";
+    //@formatter:on
+
+    private static NodeList readCorpusFunctions() throws Exception {
+        return new PositionalXmlReader().readXML(new ByteArrayInputStream(SRCML_CORPUS.getBytes(StandardCharsets.UTF_8)))
+                .getElementsByTagName("function");
+    }
+
+    /**
+     * Parses the signature of the given function both by walking its children and by the XPath queries of the
+     * reference implementation and checks that both yield the same result
+     */
+    private static void assertChildWalkingMatchesXPath(Node function) {
+        ParsedFunctionSignature fast = new FunctionSignatureParser(function, FP).parseFunctionSignature();
+        FunctionSignatureParser xpathParser = new FunctionSignatureParser(function, FP);
+        xpathParser.enableXPathOnly();
+        ParsedFunctionSignature reference = xpathParser.parseFunctionSignature();
+        Assert.assertEquals(fast.signature, reference.signature);
+        Assert.assertEquals(fast.cStartLoc, reference.cStartLoc, fast.signature);
+        Assert.assertEquals(fast.originalLinesOfCode, reference.originalLinesOfCode, fast.signature);
+    }
+
+    @Test
+    public void testChildWalkingMatchesXPath() throws Exception {
+        NodeList functions = readCorpusFunctions();
+        Assert.assertEquals(functions.getLength(), 6);
+        for (int i = 0; i < functions.getLength(); i++) {
+            assertChildWalkingMatchesXPath(functions.item(i));
+        }
+    }
+
+    /**
+     * The larger corpus used by {@link FunctionSignatureParserBenchmark}
+     */
+    @Test
+    public void testChildWalkingMatchesXPathOnBenchmarkCorpus() throws Exception {
+        NodeList functions;
+        try (InputStream is = getClass().getResourceAsStream("signature_corpus.c.xml")) {
+            functions = new PositionalXmlReader().readXML(is).getElementsByTagName("function");
+        }
+        Assert.assertEquals(functions.getLength(), 20);
+        for (int i = 0; i < functions.getLength(); i++) {
+            assertChildWalkingMatchesXPath(functions.item(i));
+        }
+    }
+
+    @Test
+    public void testCorpusSignatures() throws Exception {
+        NodeList functions = readCorpusFunctions();
+        String[] expected = {
+                "static const char * add_setenvif(cmd_parms * cmd, void * mconfig, const char * args)"
+                , "int os_init_job_environment(server_rec * server, const char * user_name, int one_process)"
+                , "static int newerf(f1, f2) char * f1, * f2;"
+                , "void ldif_sput(char * * out, int type, LDAP_CONST char * name)"
+                , "int my_printf(char * format, ...)"
+                , "int no_body(int x, long y)"
+        };
+        int[] expectedLoc = {2, 1, 3, 1, 1, 2};
+        for (int i = 0; i < expected.length; i++) {
+            ParsedFunctionSignature parsed = new FunctionSignatureParser(functions.item(i), FP).parseFunctionSignature();
+            Assert.assertEquals(parsed.signature, expected[i]);
+            Assert.assertEquals(parsed.originalLinesOfCode, expectedLoc[i], expected[i]);
+        }
+    }
+
+    @Test
+    public void testTextBeforeFirstOpenBrace() throws Exception {
+        NodeList functions = readCorpusFunctions();
+        for (int i = 0; i < functions.getLength(); i++) {
+            String textContent = functions.item(i).getTextContent();
+            int openBraceIx = textContent.indexOf('{');
+            String expected = (openBraceIx == -1) ? null : textContent.substring(0, openBraceIx);
+            Assert.assertEquals(FunctionSignatureParser.textBeforeFirstOpenBrace(functions.item(i)), expected);
+        }
+    }
 
     @DataProvider(name = "normalizeWhitespaceInput")
     public static Object[][] normalizeWhitespaceTestCases() {
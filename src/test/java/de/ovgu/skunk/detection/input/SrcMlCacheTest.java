@@ -0,0 +1,183 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.TestProject;
+import de.ovgu.skunk.detection.data.FeatureReference;
+import de.ovgu.skunk.util.MappedInput;
+import org.apache.log4j.Logger;
+import org.apache.log4j.SimpleLayout;
+import org.apache.log4j.WriterAppender;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the {@link SrcMlFolderReader} on the {@link TestProject} with and without a {@link SrcMlCache}
+ */
+public class SrcMlCacheTest {
+    private Path tmpDir;
+    private Path cppStatsDir;
+    private File cacheDir;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("skunk-cache-test");
+        cppStatsDir = TestProject.copyTo(tmpDir.resolve("project"));
+        cacheDir = tmpDir.resolve("cache").toFile();
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        TestProject.deleteRecursively(tmpDir);
+    }
+
+    private static List<FeatureReference> references(int... startsAndEnds) {
+        List<FeatureReference> result = new ArrayList<>();
+        for (int i = 0; i < startsAndEnds.length; i += 2) {
+            result.add(new FeatureReference("a.c.xml", startsAndEnds[i], startsAndEnds[i + 1], 0, false));
+        }
+        return result;
+    }
+
+    private String key(SrcMlCache cache, Path file, List<FeatureReference> references) throws IOException {
+        MappedInput contents = MappedInput.open(file.toString(), new MappedInput.Statistics(), "test");
+        return cache.key(contents, references);
+    }
+
+    @Test
+    public void testKeyIsStable() throws IOException {
+        Path file = cppStatsDir.resolve("a.c.xml");
+        String key = key(new SrcMlCache(cacheDir), file, references(7, 9, 13, 18));
+        Assert.assertEquals(key(new SrcMlCache(cacheDir), file, references(7, 9, 13, 18)), key);
+        Assert.assertEquals(key(new SrcMlCache(tmpDir.resolve("other").toFile()), file, references(7, 9, 13, 18)),
+                key);
+        Path copy = Files.copy(file, tmpDir.resolve("copy.c.xml"));
+        Assert.assertEquals(key(new SrcMlCache(cacheDir), copy, references(7, 9, 13, 18)), key,
+                "Key should not depend on the location of the file");
+    }
+
+    @Test
+    public void testKeyChangesWithContents() throws IOException {
+        SrcMlCache cache = new SrcMlCache(cacheDir);
+        Path file = cppStatsDir.resolve("a.c.xml");
+        String key = key(cache, file, references(7, 9));
+        byte[] contents = Files.readAllBytes(file);
+        contents[contents.length / 2] ^= 1;
+        Files.write(file, contents);
+        Assert.assertNotEquals(key(cache, file, references(7, 9)), key);
+        Files.write(file, Arrays.copyOf(contents, contents.length - 1));
+        Assert.assertNotEquals(key(cache, file, references(7, 9)), key);
+    }
+
+    @Test
+    public void testKeyChangesWithReferencePositions() throws IOException {
+        SrcMlCache cache = new SrcMlCache(cacheDir);
+        Path file = cppStatsDir.resolve("a.c.xml");
+        final int[] positions = {7, 9, 13, 18, 15, 17};
+        String key = key(cache, file, references(positions));
+        for (int i = 0; i < positions.length; i++) {
+            int[] changed = positions.clone();
+            changed[i]++;
+            Assert.assertNotEquals(key(cache, file, references(changed)), key, "Position " + i + " changed");
+        }
+        Assert.assertNotEquals(key(cache, file, references(7, 9, 13, 18)), key);
+        Assert.assertNotEquals(key(cache, file, references(7, 9, 15, 17, 13, 18)), key);
+    }
+
+    @Test
+    public void testHitRestoresSameData() {
+        List<String> expected = TestProject.describe(TestProject.load(cppStatsDir, 1, null));
+
+        SrcMlCache cold = new SrcMlCache(cacheDir);
+        Assert.assertEquals(TestProject.describe(TestProject.load(cppStatsDir, 1, cold)), expected);
+        Assert.assertEquals(cold.getHits(), 0);
+        Assert.assertEquals(cold.getMisses(), TestProject.SRCML_FILES.length);
+
+        SrcMlCache warm = new SrcMlCache(cacheDir);
+        Assert.assertEquals(TestProject.describe(TestProject.load(cppStatsDir, 2, warm)), expected);
+        Assert.assertEquals(warm.getHits(), TestProject.SRCML_FILES.length);
+        Assert.assertEquals(warm.getMisses(), 0);
+    }
+
+    @Test
+    public void testCorruptEntriesAreMisses() throws IOException {
+        List<String> expected = TestProject.describe(TestProject.load(cppStatsDir, 1, new SrcMlCache(cacheDir)));
+        File[] entries = cacheDir.listFiles((dir, name) -> name.endsWith(".bin"));
+        Assert.assertEquals(entries.length, TestProject.SRCML_FILES.length);
+        List<byte[]> originals = new ArrayList<>();
+        for (File entry : entries) originals.add(Files.readAllBytes(entry.toPath()));
+
+        for (int variant = 0; variant < 5; variant++) {
+            for (int i = 0; i < entries.length; i++) {
+                byte[] data = originals.get(i);
+                final byte[] corrupt;
+                switch (variant) {
+                    case 0:
+                        corrupt = new byte[0];
+                        break;
+                    case 1:
+                        corrupt = Arrays.copyOf(data, data.length / 2);
+                        break;
+                    case 2:
+                        corrupt = Arrays.copyOf(data, data.length - 1);
+                        break;
+                    case 3:
+                        corrupt = Arrays.copyOf(data, data.length + 1);
+                        break;
+                    default:
+                        // the entry of a file with a different number of feature references
+                        corrupt = originals.get((i + 1) % entries.length);
+                        break;
+                }
+                Files.write(entries[i].toPath(), corrupt);
+            }
+            SrcMlCache cache = new SrcMlCache(cacheDir);
+            Assert.assertEquals(TestProject.describe(TestProject.load(cppStatsDir, 1, cache)), expected,
+                    "variant " + variant);
+            Assert.assertEquals(cache.getHits(), 0, "variant " + variant);
+            Assert.assertEquals(cache.getMisses(), entries.length, "variant " + variant);
+        }
+
+        // Corrupt entries have been replaced.
+        SrcMlCache cache = new SrcMlCache(cacheDir);
+        TestProject.load(cppStatsDir, 1, cache);
+        Assert.assertEquals(cache.getHits(), entries.length);
+    }
+
+    @Test
+    public void testReport() throws IOException {
+        TestProject.load(cppStatsDir, 1, new SrcMlCache(cacheDir));
+
+        // Moving a feature location invalidates the entry of its file only.
+        Path locations = cppStatsDir.resolve("cppstats_featurelocations.csv");
+        String csv = new String(Files.readAllBytes(locations), StandardCharsets.UTF_8);
+        String moved = csv.replace("a.c.xml,7,9,", "a.c.xml,7,10,");
+        Assert.assertNotEquals(moved, csv);
+        Files.write(locations, moved.getBytes(StandardCharsets.UTF_8));
+
+        StringWriter log = new StringWriter();
+        WriterAppender appender = new WriterAppender(new SimpleLayout(), log);
+        Logger logger = Logger.getLogger(SrcMlFolderReader.class);
+        logger.addAppender(appender);
+        SrcMlCache cache = new SrcMlCache(cacheDir);
+        try {
+            TestProject.load(cppStatsDir, 1, cache);
+        } finally {
+            logger.removeAppender(appender);
+        }
+        Assert.assertEquals(cache.getHits(), 2);
+        Assert.assertEquals(cache.getMisses(), 1);
+        String expected = "Restored 2 of 3 SrcML file(s) from cache `" + cacheDir + "', parsed 1.";
+        Assert.assertTrue(log.toString().contains(expected), log.toString());
+    }
+}
@@ -0,0 +1,102 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.TestProject;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class SrcMlFeatureLocationReaderTest {
+    //@formatter:off
+    private static final String SRCML = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<unit xmlns=\"http://www.sdml.info/srcML/src\" xmlns:cpp=\"http://www.sdml.info/srcML/cpp\" language=\"C\" filename=\"foo.c\">"
+            + "<cpp:if>#<cpp:directive>if</cpp:directive> <expr><call><name>defined</name><argument_list>(<argument><expr><name>A</name></expr></argument>)</argument_list></call> || <name>B</name></expr></cpp:if>\n"
+            + "<decl_stmt><decl><type><name>int</name></type> <name>a</name></decl>;</decl_stmt>\n"
+            + "<cpp:elif>#<cpp:directive>elif</cpp:directive> <expr><name>C</name> &gt; 2</expr></cpp:elif>\n"
+            + "<cpp:ifndef>#<cpp:directive>ifndef</cpp:directive> <name>D</name> <comment type=\"line\">// no D</comment></cpp:ifndef>\n"
+            + "<decl_stmt><decl><type><name>int</name></type> <name>c</name></decl>;</decl_stmt>\n"
+            + "<cpp:endif>#<cpp:directive>endif</cpp:directive></cpp:endif>\n"
+            + "<cpp:else>#<cpp:directive>else</cpp:directive></cpp:else>\n"
+            + "<decl_stmt><decl><type><name>int</name></type> <name>d</name></decl>;</decl_stmt>\n"
+            + "<cpp:endif>#<cpp:directive>endif</cpp:directive></cpp:endif>\n"
+            + "<cpp:ifdef>#<cpp:directive>ifdef</cpp:directive> <name>E</name></cpp:ifdef>\n"
+            + "<cpp:endif>#<cpp:directive>endif</cpp:directive></cpp:endif>\n"
+            + "</unit>\n";
+    //@formatter:on
+
+    @Test
+    public void testRead() throws Exception {
+        List<FeatureLocation> locations = new SrcMlFeatureLocationReader()
+                .read(new ByteArrayInputStream(SRCML.getBytes(StandardCharsets.UTF_8)));
+        List<String> actual = new ArrayList<>();
+        for (FeatureLocation loc : locations) {
+            actual.add(loc.toString());
+        }
+        Assert.assertEquals(actual, Arrays.asList(
+                "1,3,#if,defined(A) || B",
+                "3,7,#elif,C > 2",
+                "4,6,#ifndef,!defined(D)",
+                "7,9,#else,!(defined(A) || B) && !(C > 2)",
+                "10,11,#ifdef,defined(E)"));
+    }
+
+    /**
+     * @return start, end, type and feature constants of the location, but not the exact form of its condition, which
+     * cppstats does not normalize
+     */
+    private static String describe(int start, int end, String type, String expression) {
+        return start + "," + end + "," + type + "," + CppStatsConditionFeatures.parse(expression);
+    }
+
+    @Test
+    public void testSameLocationsAsCppStats() throws Exception {
+        Map<String, List<String>> expected = new TreeMap<>();
+        String csv = new String(TestProject.readResource("cppstats_featurelocations.csv"), StandardCharsets.UTF_8);
+        for (CSVRecord row : CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(new StringReader(csv))) {
+            String fileName = row.get("FILENAME").substring(row.get("FILENAME").lastIndexOf('/') + 1);
+            expected.computeIfAbsent(fileName, k -> new ArrayList<>()).add(describe(
+                    Integer.parseInt(row.get("LINE_START")), Integer.parseInt(row.get("LINE_END")), row.get("TYPE"),
+                    row.get("EXPRESSION")));
+        }
+        Assert.assertTrue(expected.get("c.c.xml").toString().contains("#elif"), expected.toString());
+        Assert.assertTrue(expected.get("c.c.xml").toString().contains("#else"), expected.toString());
+
+        Map<String, List<String>> actual = new TreeMap<>();
+        SrcMlFeatureLocationReader reader = new SrcMlFeatureLocationReader();
+        for (String fileName : TestProject.SRCML_FILES) {
+            final List<FeatureLocation> locations;
+            try (InputStream is = new ByteArrayInputStream(TestProject.readResource(fileName))) {
+                locations = reader.read(is);
+            }
+            if (locations.isEmpty()) continue;
+            List<String> described = new ArrayList<>();
+            for (FeatureLocation loc : locations) {
+                described.add(describe(loc.start, loc.end, loc.type, loc.expression));
+            }
+            actual.put(fileName, described);
+        }
+        Assert.assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testSameFeatureDataAsCppStats() throws IOException {
+        Path tmpDir = Files.createTempDirectory("skunk-locations-test");
+        try {
+            Path cppStatsDir = TestProject.copyTo(tmpDir.resolve("project"));
+            List<String> expected = TestProject.describe(TestProject.load(cppStatsDir, 1, null));
+            Files.delete(cppStatsDir.resolve("cppstats_featurelocations.csv"));
+            Assert.assertEquals(TestProject.describe(TestProject.load(cppStatsDir, 1, null)), expected);
+        } finally {
+            TestProject.deleteRecursively(tmpDir);
+        }
+    }
+}
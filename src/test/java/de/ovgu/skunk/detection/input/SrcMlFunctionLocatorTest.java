@@ -0,0 +1,46 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.SourceText;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks that the code of a function read back from its byte range in the srcML file matches the text content of the
+ * function's DOM node.
+ */
+public class SrcMlFunctionLocatorTest {
+    //@formatter:off
+    private static final String SRCML = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\r\n"
+            + "<unit xmlns=\"http://www.sdml.info/srcML/src\" xmlns:cpp=\"http://www.sdml.info/srcML/cpp\" language=\"C\" filename=\"foo.c\">"
+            + "<function_decl><type><name>int</name></type> <name>decl</name><parameter_list>()</parameter_list>;</function_decl>\r\n"
+            + "<function><type><name>int</name></type> <name>foo</name><parameter_list>(<param><decl><type><name>int</name></type> <name>x</name></decl></param>)</parameter_list>\r\n"
+            + "<block>{\r\n"
+            + "    <if>if <condition>(<expr><name>x</name> &lt; 0 &amp;&amp; <name>x</name> &gt; -10</expr>)</condition><then> <block>{ <return>return <expr>'&#x41;'</expr>;</return> }</block></then></if>\r\n"
+            + "    <comment type=\"line\">// done: \"&lt;tag attr='&gt;'&gt;\"</comment>\r\n"
+            + "    <return>return <expr><call><name>puts</name><argument_list>(<argument><expr>\"ä\"</expr></argument>)</argument_list></call></expr>;</return>\r\n"
+            + "}</block></function>\r\n"
+            + "<function><type><name>void</name></type> <name>bar</name><parameter_list>()</parameter_list> <block>{ }</block></function>"
+            + "</unit>\r\n";
+    //@formatter:on
+
+    @Test
+    public void testCodeMatchesDom() throws Exception {
+        byte[] bytes = SRCML.getBytes(StandardCharsets.UTF_8);
+        NodeList domFunctions = new PositionalXmlReader().readXML(new ByteArrayInputStream(bytes))
+                .getElementsByTagName("function");
+        int[] ranges = SrcMlFunctionLocator.locateFunctions(ByteBuffer.wrap(bytes));
+        Assert.assertEquals(ranges.length, 2 * domFunctions.getLength());
+        for (int i = 0; i < domFunctions.getLength(); i++) {
+            String element = new String(bytes, ranges[2 * i], ranges[2 * i + 1], StandardCharsets.UTF_8);
+            String expected = domFunctions.item(i).getTextContent();
+            Assert.assertEquals(SourceText.textContentOf(element), expected);
+            Assert.assertEquals(SrcMlFolderReader.countLinesOfTextContent(domFunctions.item(i)),
+                    SrcMlFolderReader.countLines(expected));
+        }
+    }
+}
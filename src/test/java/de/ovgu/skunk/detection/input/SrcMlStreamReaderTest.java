@@ -0,0 +1,161 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.FilePath;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compares the information extracted by the {@link SrcMlStreamReader} to what can be found in the DOM built by the
+ * {@link PositionalXmlReader}.
+ */
+public class SrcMlStreamReaderTest {
+    private static final FilePath FP = new FilePath("/foo.c.xml", "foo.c");
+
+    //@formatter:off
+    private static final String SRCML = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<unit xmlns=\"http://www.sdml.info/srcML/src\" xmlns:cpp=\"http://www.sdml.info/srcML/cpp\" language=\"C\" filename=\"foo.c\">"
+            + "<function><type><specifier>static</specifier> <name>int</name></type>\n"
+            + "<name>knr</name> <parameter_list>(<param><decl><type><name>a</name></type></decl></param>, <param><decl><type><name>b</name></type></decl></param>)</parameter_list>\n"
+            + "<decl_stmt><decl><type><name>int</name></type> <name>a</name></decl>;</decl_stmt>\n"
+            + "<decl_stmt><decl><type><name>int</name></type> <name>b</name></decl>;</decl_stmt></function>\n"
+            + "\n"
+            + "<function><type><name>int</name></type> <name>foo</name><parameter_list>(<param><decl><type><name>int</name></type> <name>x</name></decl></param>)</parameter_list>\n"
+            + "<block>{\n"
+            + "<cpp:ifdef>#<cpp:directive>ifdef</cpp:directive> <name>A</name></cpp:ifdef>\n"
+            + "    <if>if <condition>(<expr><name>x</name> &lt; 0</expr>)</condition><then> <block>{ <return>return <expr>0</expr>;</return> }</block></then>\n"
+            + "    <else>else <block>{ <return>return <expr>1</expr>;</return> }</block></else></if>\n"
+            + "<cpp:endif>#<cpp:directive>endif</cpp:directive></cpp:endif>\n"
+            + "    <return>return <expr><name>x</name></expr>;</return>\n"
+            + "}</block></function>\n"
+            + "<cpp:if>#<cpp:directive>if</cpp:directive> <expr><name>B</name></expr></cpp:if>\n"
+            + "<decl_stmt><decl><type><name>int</name></type> <name>y</name></decl>;</decl_stmt>\n"
+            + "<cpp:endif>#<cpp:directive>endif</cpp:directive></cpp:endif>\n"
+            + "<function><type><name>void</name></type> <name>bare</name><parameter_list>(<param><decl><type><name>int</name></type> <name>y</name></decl></param>)</parameter_list>\n"
+            + "<block>{\n"
+            + "<cpp:ifdef>#<cpp:directive>ifdef</cpp:directive> <name>D</name></cpp:ifdef>\n"
+            + "    <if>if <condition>(<expr><name>y</name></expr>)</condition><then> <block>{ }</block></then>\n"
+            + "<cpp:ifdef>#<cpp:directive>ifdef</cpp:directive> <name>C</name></cpp:ifdef>\n"
+            + "    <else>else <block>{ }</block></else></if>\n"
+            + "<cpp:endif>#<cpp:directive>endif</cpp:directive></cpp:endif>\n"
+            + "<cpp:endif>#<cpp:directive>endif</cpp:directive></cpp:endif>\n"
+            + "}</block></function>\n"
+            + "</unit>\n";
+    //@formatter:on
+
+    private static Document readDom() throws Exception {
+        return new PositionalXmlReader().readXML(new ByteArrayInputStream(SRCML.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static SrcMlStreamReader.Result readStreaming(Map<Integer, Integer> maxLineNumberByDirectiveLine)
+            throws Exception {
+        return new SrcMlStreamReader().read(new ByteArrayInputStream(SRCML.getBytes(StandardCharsets.UTF_8)),
+                maxLineNumberByDirectiveLine);
+    }
+
+    @Test
+    public void testFunctionsMatchDom() throws Exception {
+        NodeList domFunctions = readDom().getElementsByTagName("function");
+        List<SrcMlStreamReader.FunctionInfo> functions = readStreaming(Collections.emptyMap()).functions;
+        Assert.assertEquals(functions.size(), domFunctions.getLength());
+        for (int i = 0; i < functions.size(); i++) {
+            Element domFunction = (Element) domFunctions.item(i);
+            SrcMlStreamReader.FunctionInfo function = functions.get(i);
+            Assert.assertEquals(function.lineNumberAsIs, PositionalXmlReader.getElementLineNumberAsIs(domFunction));
+            Assert.assertEquals(function.textContent, domFunction.getTextContent());
+            ParsedFunctionSignature expected = SrcMlFolderReader.parseFunctionSignature(domFunction, FP);
+            ParsedFunctionSignature actual = SrcMlFolderReader.parseFunctionSignature(function, FP);
+            Assert.assertEquals(actual.signature, expected.signature);
+            Assert.assertEquals(actual.cStartLoc, expected.cStartLoc);
+            Assert.assertEquals(actual.originalLinesOfCode, expected.originalLinesOfCode);
+        }
+        // The K&R function has no body, so its elements are kept for signature parsing.
+        Assert.assertNotNull(functions.get(0).element);
+        Assert.assertEquals(SrcMlFolderReader.parseFunctionSignature(functions.get(0), FP).signature,
+                "static int knr(a, b)");
+        Assert.assertNull(functions.get(1).element);
+    }
+
+    @Test
+    public void testDirectivesMatchDom() throws Exception {
+        Document doc = readDom();
+        Map<Integer, Integer> maxLines = new HashMap<>();
+        NodeList domDirectives = doc.getElementsByTagName("cpp:directive");
+        for (int i = 0; i < domDirectives.getLength(); i++) {
+            maxLines.put(PositionalXmlReader.getElementLineNumberAsIs((Element) domDirectives.item(i)), 100);
+        }
+        SrcMlStreamReader.Result result = readStreaming(maxLines);
+        Assert.assertEquals(result.directivesByLineNumberAsIs.size(), domDirectives.getLength());
+
+        for (int i = 0; i < domDirectives.getLength(); i++) {
+            Element domDirective = (Element) domDirectives.item(i);
+            SrcMlStreamReader.DirectiveInfo directive = result.directivesByLineNumberAsIs.get(
+                    PositionalXmlReader.getElementLineNumberAsIs(domDirective));
+            Node annotation = domDirective.getParentNode();
+            Assert.assertEquals(directive.parentName, annotation.getParentNode().getNodeName());
+            List<String> expectedSiblings = new ArrayList<>();
+            for (Node sibling = annotation; sibling != null; sibling = sibling.getNextSibling()) {
+                if (sibling.getNodeType() != Node.ELEMENT_NODE) continue;
+                expectedSiblings.add(sibling.getNodeName() + "@"
+                        + PositionalXmlReader.getElementLineNumberAsIs((Element) sibling));
+            }
+            List<String> actualSiblings = new ArrayList<>();
+            for (SrcMlStreamReader.ElementInfo sibling : directive.siblings) {
+                actualSiblings.add(sibling.name + "@" + sibling.lineNumberAsIs);
+            }
+            Assert.assertEquals(actualSiblings, expectedSiblings);
+        }
+
+        SrcMlStreamReader.DirectiveInfo ifdefA = result.directivesByLineNumberAsIs.get(9);
+        Assert.assertEquals(ifdefA.functionIndex, 1);
+        Assert.assertEquals(ifdefA.siblings.get(1).name, "if");
+        Assert.assertTrue(ifdefA.siblings.get(1).hasElseChild);
+        Assert.assertTrue(ifdefA.siblings.get(1).elseAfterThen);
+        SrcMlStreamReader.DirectiveInfo ifB = result.directivesByLineNumberAsIs.get(15);
+        Assert.assertEquals(ifB.functionIndex, -1);
+        Assert.assertEquals(ifB.parentName, "unit");
+    }
+
+    @Test
+    public void testElseDisciplineMatchesDom() throws Exception {
+        Map<Integer, Integer> maxLines = new HashMap<>();
+        maxLines.put(9, 100);
+        maxLines.put(20, 100);
+        SrcMlStreamReader.Result result = readStreaming(maxLines);
+        NodeList domIfNodes = readDom().getElementsByTagName("if");
+        List<SrcMlStreamReader.ElementInfo> ifs = new ArrayList<>();
+        for (int line : new int[]{9, 20}) {
+            for (SrcMlStreamReader.ElementInfo sibling : result.directivesByLineNumberAsIs.get(line).siblings) {
+                if (sibling.name.equals("if")) ifs.add(sibling);
+            }
+        }
+        Assert.assertEquals(ifs.size(), domIfNodes.getLength());
+        for (int i = 0; i < ifs.size(); i++) {
+            SrcMlFileSummary.ElementSummary expected = SrcMlFolderReader.summarizeElement(domIfNodes.item(i));
+            Assert.assertEquals(ifs.get(i).hasElseChild, expected.hasElseChild);
+            Assert.assertEquals(ifs.get(i).elseAfterThen, expected.elseAfterThen);
+        }
+        // In the second function, a directive comes between then and else.
+        Assert.assertTrue(ifs.get(1).hasElseChild);
+        Assert.assertFalse(ifs.get(1).elseAfterThen);
+    }
+
+    @Test
+    public void testSiblingsAreOnlyRecordedUpToRequestedLine() throws Exception {
+        Map<Integer, Integer> maxLines = new HashMap<>();
+        maxLines.put(9, 10);
+        SrcMlStreamReader.Result result = readStreaming(maxLines);
+        Assert.assertEquals(result.directivesByLineNumberAsIs.keySet(), Collections.singleton(9));
+        List<SrcMlStreamReader.ElementInfo> siblings = result.directivesByLineNumberAsIs.get(9).siblings;
+        Assert.assertEquals(siblings.size(), 2);
+        Assert.assertEquals(siblings.get(0).name, "cpp:ifdef");
+        Assert.assertEquals(siblings.get(1).name, "if");
+    }
+}
@@ -0,0 +1,121 @@
+package de.ovgu.skunk.detection.input;
+
+import de.ovgu.skunk.detection.data.SrcMlElement;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares the {@link SrcMlTree} built by the {@link PositionalXmlReader} to its DOM.
+ */
+public class SrcMlTreeTest {
+    //@formatter:off
+    private static final String SRCML = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<unit xmlns=\"http://www.sdml.info/srcML/src\" xmlns:cpp=\"http://www.sdml.info/srcML/cpp\" language=\"C\" filename=\"foo.c\">"
+            + "<function><type><name>int</name></type> <name>foo</name><parameter_list>(<param><decl><type><name>int</name></type> <name>x</name></decl></param>)</parameter_list>\n"
+            + "<block>{\n"
+            + "<cpp:ifdef>#<cpp:directive>ifdef</cpp:directive> <name>A</name></cpp:ifdef>\n"
+            + "    <if>if <condition>(<expr><name>x</name> &lt; 0</expr>)</condition><then> <block>{ <return>return <expr>0</expr>;</return> }</block></then>\n"
+            + "    <else>else <block>{ <return>return <expr>1</expr>;</return> }</block></else></if>\n"
+            + "<cpp:endif>#<cpp:directive>endif</cpp:directive></cpp:endif>\n"
+            + "<cpp:ifdef>#<cpp:directive>ifdef</cpp:directive> <name>B</name></cpp:ifdef>\n"
+            + "    <if>if <condition>(<expr><name>x</name></expr>)</condition><then> <block>{ }</block></then>\n"
+            + "<cpp:ifdef>#<cpp:directive>ifdef</cpp:directive> <name>C</name></cpp:ifdef>\n"
+            + "    <else>else <block>{ }</block></else></if>\n"
+            + "<cpp:endif>#<cpp:directive>endif</cpp:directive></cpp:endif>\n"
+            + "<cpp:endif>#<cpp:directive>endif</cpp:directive></cpp:endif>\n"
+            + "}</block></function>\n"
+            + "<function_decl><type><name>void</name></type> <name>bar</name><parameter_list>()</parameter_list>;</function_decl>\n"
+            + "</unit>\n";
+    //@formatter:on
+
+    private static Document readDom() throws Exception {
+        return new PositionalXmlReader().readXML(new ByteArrayInputStream(SRCML.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static SrcMlTree readTree() throws Exception {
+        return new PositionalXmlReader().readTree(new ByteArrayInputStream(SRCML.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testTreeMatchesDom() throws Exception {
+        SrcMlTree tree = readTree();
+        int count = assertSameElements(tree, 0, readDom().getDocumentElement());
+        Assert.assertEquals(tree.size(), count);
+        Assert.assertEquals(tree.parent(0), SrcMlTree.NONE);
+    }
+
+    @Test
+    public void testQueries() throws Exception {
+        SrcMlTree tree = readTree();
+        int[] functions = tree.elementsByTag(SrcMlVocabulary.FUNCTION);
+        Assert.assertEquals(functions.length, 1);
+        int function = functions[0];
+        Assert.assertEquals(tree.countLines(function), SrcMlFolderReader.countLines(tree.textContent(function)));
+        Assert.assertEquals(tree.indexOf(function, '{'), tree.textContent(function).indexOf('{'));
+
+        int[] directives = tree.elementsByTag(SrcMlVocabulary.CPP_DIRECTIVE);
+        Assert.assertEquals(directives.length, 6);
+        int ifNode = tree.nextSibling(tree.parent(directives[0]));
+        Assert.assertEquals(tree.tag(ifNode), SrcMlVocabulary.IF);
+        Assert.assertTrue(tree.hasChild(ifNode, SrcMlVocabulary.ELSE));
+    }
+
+    @Test
+    public void testToElement() throws Exception {
+        SrcMlTree tree = readTree();
+        int function = tree.elementsByTag(SrcMlVocabulary.FUNCTION)[0];
+        Document doc = PositionalXmlReader.newDocumentBuilder().newDocument();
+        Element domFunction = (Element) readDom().getElementsByTagName("function").item(0);
+        assertSameElements(tree, function, tree.toElement(function, doc));
+        Assert.assertEquals(tree.toElement(function, doc).getTextContent(), domFunction.getTextContent());
+    }
+
+    @Test
+    public void testElseDisciplineMatchesDom() throws Exception {
+        SrcMlTree tree = readTree();
+        int[] ifNodes = tree.elementsByTag(SrcMlVocabulary.IF);
+        NodeList domIfNodes = readDom().getElementsByTagName("if");
+        Assert.assertEquals(ifNodes.length, 2);
+        Assert.assertEquals(domIfNodes.getLength(), 2);
+        for (int i = 0; i < ifNodes.length; i++) {
+            SrcMlFileSummary.ElementSummary expected = SrcMlFolderReader.summarizeElement(domIfNodes.item(i));
+            SrcMlFileSummary.ElementSummary actual = SrcMlFolderReader.summarizeElement(tree, ifNodes[i]);
+            Assert.assertEquals(actual.element, SrcMlElement.IF);
+            Assert.assertEquals(actual.hasElseChild, expected.hasElseChild);
+            Assert.assertEquals(actual.elseAfterThen, expected.elseAfterThen);
+        }
+        // if ... then ... else
+        Assert.assertTrue(SrcMlFolderReader.summarizeElement(tree, ifNodes[0]).hasElseChild);
+        Assert.assertTrue(SrcMlFolderReader.summarizeElement(tree, ifNodes[0]).elseAfterThen);
+        // if ... then ... #ifdef C ... else
+        Assert.assertTrue(SrcMlFolderReader.summarizeElement(tree, ifNodes[1]).hasElseChild);
+        Assert.assertFalse(SrcMlFolderReader.summarizeElement(tree, ifNodes[1]).elseAfterThen);
+    }
+
+    /**
+     * @return the number of elements in the subtree
+     */
+    private static int assertSameElements(SrcMlTree tree, int node, Element element) {
+        Assert.assertEquals(tree.name(node), element.getNodeName());
+        Assert.assertEquals(tree.lineNumberAsIs(node), PositionalXmlReader.getElementLineNumberAsIs(element));
+        Assert.assertEquals(tree.textContent(node), element.getTextContent());
+        int count = 1;
+        int child = tree.firstChild(node);
+        for (Node n = element.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() != Node.ELEMENT_NODE) continue;
+            Assert.assertNotEquals(child, SrcMlTree.NONE);
+            Assert.assertEquals(tree.parent(child), node);
+            count += assertSameElements(tree, child, (Element) n);
+            child = tree.nextSibling(child);
+        }
+        Assert.assertEquals(child, SrcMlTree.NONE);
+        return count;
+    }
+}
@@ -0,0 +1,293 @@
+package de.ovgu.skunk.detection.main;
+
+import de.ovgu.skunk.detection.TestProject;
+import de.ovgu.skunk.detection.data.Context;
+import de.ovgu.skunk.detection.data.FeatureReference;
+import de.ovgu.skunk.detection.detector.DetectionConfig;
+import de.ovgu.skunk.detection.detector.Detector;
+import de.ovgu.skunk.detection.detector.SmellReason;
+import de.ovgu.skunk.detection.output.AnalyzedDataHandler;
+import de.ovgu.skunk.detection.output.ProcessedDataHandler;
+import org.apache.log4j.Logger;
+import org.apache.log4j.SimpleLayout;
+import org.apache.log4j.WriterAppender;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Talks to an {@link AnalysisDaemon} over the loopback interface
+ */
+public class AnalysisDaemonTest {
+    //@formatter:off
+    private static final String CONFIG = "Method_LoacToLocRatio=0.1;mandatory\n"
+            + "Method_NumberOfFeatureConstants=1\n"
+            + "File_LoacToLocRatio=0.1\n"
+            + "Feature_NumberNofc=1\n";
+    //@formatter:on
+
+    private Path tmpDir;
+    private File projectA;
+    private File projectB;
+    private String configPath;
+    private long projectSize;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("skunk-daemon-test");
+        Path cppStatsDir = TestProject.copyTo(tmpDir.resolve("project"));
+        // names with spaces, which need to be quoted in requests
+        projectA = saveProcessedData(cppStatsDir, "project a");
+        projectB = saveProcessedData(cppStatsDir, "project b");
+        configPath = tmpDir.resolve("smells.csm").toString();
+        Files.write(Paths.get(configPath), CONFIG.getBytes(StandardCharsets.UTF_8));
+        projectSize = AnalysisDaemon.estimateSize(TestProject.load(cppStatsDir, 1, null));
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        TestProject.deleteRecursively(tmpDir);
+    }
+
+    private File saveProcessedData(Path cppStatsDir, String name) throws IOException {
+        File dir = Files.createDirectory(tmpDir.resolve(name)).toFile().getCanonicalFile();
+        TestProject.load(cppStatsDir, 1, null).withConfig(null, dir).processedDataHandler
+                .SaveProcessedData(ProcessedDataHandler.Format.BINARY);
+        return dir;
+    }
+
+    /**
+     * @return the result files of detecting smells in the given processed data without the daemon
+     */
+    private Map<String, String> detectDirectly(File processedDataDir) throws Exception {
+        File outputDir = Files.createTempDirectory(tmpDir, "direct").toFile();
+        Context loaded = new Context(null);
+        loaded.processedDataHandler.LoadProcessedData(processedDataDir.getPath());
+        Context ctx = loaded.withConfig(new DetectionConfig(configPath), outputDir);
+        Map<FeatureReference, List<SmellReason>> res = new Detector(ctx).Perform();
+        AnalyzedDataHandler presenter = new AnalyzedDataHandler(ctx);
+        presenter.SaveTextResults(res);
+        presenter.SaveCsvResults();
+        Map<String, String> result = new TreeMap<>();
+        for (File f : outputDir.listFiles()) {
+            result.put(f.getName(), new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    /**
+     * @return the next line of a response, or <code>null</code> at the end of the response
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b; (b = in.read()) != '\n'; ) {
+            if (b == -1) return (line.size() == 0) ? null : line.toString("UTF-8");
+            line.write(b);
+        }
+        return line.toString("UTF-8");
+    }
+
+    /**
+     * Reads the response to a <code>DETECT</code> request, which must be successful
+     *
+     * @return the result files, by name
+     */
+    private static Map<String, String> readDetectResponse(InputStream in) throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        String line;
+        while ((line = readLine(in)).startsWith("FILE ")) {
+            String[] fields = line.split(" ");
+            byte[] contents = new byte[Integer.parseInt(fields[2])];
+            new DataInputStream(in).readFully(contents);
+            files.put(fields[1], new String(contents, StandardCharsets.UTF_8));
+        }
+        Assert.assertTrue(line.startsWith("OK "), line);
+        return files;
+    }
+
+    /**
+     * A connection to the daemon
+     */
+    private static class Client implements Closeable {
+        final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+
+        Client(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            in = new BufferedInputStream(socket.getInputStream());
+            out = socket.getOutputStream();
+        }
+
+        void send(String request) throws IOException {
+            out.write((request + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        /**
+         * @return the next line of the response, or <code>null</code> if the daemon closed the connection
+         */
+        String readLine() throws IOException {
+            return AnalysisDaemonTest.readLine(in);
+        }
+
+        /**
+         * Sends a <code>DETECT</code> request
+         *
+         * @return the result files, by name
+         */
+        Map<String, String> detect(File dir, String configPath) throws IOException {
+            send("DETECT " + AnalysisDaemon.quoteArgument(dir.getPath()) + " "
+                    + AnalysisDaemon.quoteArgument(configPath));
+            return readDetectResponse(in);
+        }
+
+        /**
+         * Sends a <code>STATUS</code> request
+         *
+         * @return the estimated size of each project held in memory, by directory, least recently used first
+         */
+        LinkedHashMap<String, Long> status() throws IOException {
+            send("STATUS");
+            LinkedHashMap<String, Long> projects = new LinkedHashMap<>();
+            String line;
+            while ((line = readLine()).startsWith("PROJECT ")) {
+                List<String> fields = AnalysisDaemon.splitArguments(line);
+                Assert.assertEquals(fields.size(), 3, line);
+                projects.put(fields.get(1), Long.parseLong(fields.get(2)));
+            }
+            Assert.assertTrue(line.startsWith("OK "), line);
+            long total = 0;
+            for (long size : projects.values()) total += size;
+            Assert.assertEquals(Long.parseLong(line.split(" ")[1]), total);
+            return projects;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testSplitArguments() {
+        Assert.assertEquals(AnalysisDaemon.splitArguments("  DETECT  /a/b\tc.csm "),
+                Arrays.asList("DETECT", "/a/b", "c.csm"));
+        Assert.assertEquals(AnalysisDaemon.splitArguments("DETECT \"/my dir\" \"a \\\"b\\\\\""),
+                Arrays.asList("DETECT", "/my dir", "a \"b\\"));
+        Assert.assertEquals(AnalysisDaemon.splitArguments(""), Collections.emptyList());
+        for (String arg : new String[]{"plain", "with space", "\"quoted\"", "back\\slash", "", "\\ \""}) {
+            Assert.assertEquals(AnalysisDaemon.splitArguments("X " + AnalysisDaemon.quoteArgument(arg)),
+                    Arrays.asList("X", arg), arg);
+        }
+        try {
+            AnalysisDaemon.splitArguments("DETECT \"/my dir");
+            Assert.fail("Unterminated quote should be rejected");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testServe() throws Exception {
+        Map<String, String> expectedA = detectDirectly(projectA);
+        Assert.assertFalse(expectedA.isEmpty());
+
+        // Room for one project, but not for two
+        final long budget = projectSize * 3 / 2;
+        AnalysisDaemon daemon = new AnalysisDaemon(0, budget, 2);
+        StringWriter log = new StringWriter();
+        WriterAppender appender = new WriterAppender(new SimpleLayout(), log);
+        Logger logger = Logger.getLogger(AnalysisDaemon.class);
+        logger.addAppender(appender);
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread serving = new Thread(() -> {
+            try {
+                daemon.serve(server);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        serving.start();
+        try (Client client = new Client(server.getLocalPort())) {
+            Assert.assertEquals(client.status(), new LinkedHashMap<String, Long>());
+
+            Assert.assertEquals(client.detect(projectA, configPath), expectedA);
+            Assert.assertEquals(countOccurrences(log.toString(), "Loading project " + projectA), 1);
+
+            // served from memory
+            Assert.assertEquals(client.detect(projectA, configPath), expectedA);
+            Assert.assertEquals(countOccurrences(log.toString(), "Loading project " + projectA), 1);
+            Assert.assertEquals(client.status(), Collections.singletonMap(projectA.getPath(), projectSize));
+
+            // reloaded after the processed data has changed
+            File dataFile = projectA.listFiles()[0];
+            Assert.assertTrue(dataFile.setLastModified(dataFile.lastModified() - 60000));
+            Assert.assertEquals(client.detect(projectA, configPath), expectedA);
+            Assert.assertEquals(countOccurrences(log.toString(), "Reloading changed project " + projectA), 1);
+
+            // loading another project drops the first one
+            Assert.assertEquals(client.detect(projectB, configPath), expectedA);
+            Assert.assertEquals(countOccurrences(log.toString(), "dropping project " + projectA), 1);
+            Assert.assertEquals(client.status(), Collections.singletonMap(projectB.getPath(), projectSize));
+
+            client.send("DETECT " + tmpDir.resolve("missing") + " " + AnalysisDaemon.quoteArgument(configPath));
+            Assert.assertTrue(client.readLine().startsWith("ERROR "));
+            client.send("FROBNICATE");
+            Assert.assertTrue(client.readLine().startsWith("ERROR "));
+
+            client.send("QUIT");
+            Assert.assertNull(client.readLine());
+        } finally {
+            logger.removeAppender(appender);
+            server.close();
+            serving.join(10000);
+        }
+        Assert.assertFalse(serving.isAlive());
+    }
+
+    /**
+     * A failed reload of a project by one request while another request, which already holds the project, is about
+     * to detect smells in it
+     */
+    @Test
+    public void testFailedReloadDuringDetection() throws Exception {
+        File project = saveProcessedData(TestProject.copyTo(tmpDir.resolve("project")), "project c");
+        Map<String, String> expected = detectDirectly(project);
+        AnalysisDaemon daemon = new AnalysisDaemon(0, Long.MAX_VALUE, 2);
+        AnalysisDaemon.LoadedProject held = daemon.getProject(project.getPath());
+
+        File dataFile = project.listFiles()[0];
+        byte[] data = Files.readAllBytes(dataFile.toPath());
+        Files.write(dataFile.toPath(), Arrays.copyOf(data, data.length / 2));
+        Assert.assertTrue(dataFile.setLastModified(dataFile.lastModified() + 2000));
+        try {
+            daemon.getProject(project.getPath());
+            Assert.fail("Loading truncated processed data should fail");
+        } catch (RuntimeException expectedFailure) {
+            // expected
+        }
+
+        // The request holding the project still detects smells in the data loaded before.
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        daemon.detect(held, new DetectionConfig(configPath), System.nanoTime(), response);
+        Assert.assertEquals(readDetectResponse(new ByteArrayInputStream(response.toByteArray())), expected);
+    }
+
+    private static int countOccurrences(String text, String s) {
+        int count = 0;
+        for (int i = text.indexOf(s); i >= 0; i = text.indexOf(s, i + 1)) count++;
+        return count;
+    }
+}
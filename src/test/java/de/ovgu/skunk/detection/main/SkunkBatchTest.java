@@ -0,0 +1,96 @@
+package de.ovgu.skunk.detection.main;
+
+import de.ovgu.skunk.detection.TestProject;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs Skunk in batch mode on two copies of the {@link TestProject}
+ */
+public class SkunkBatchTest {
+    private Path tmpDir;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("skunk-batch-test");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        TestProject.deleteRecursively(tmpDir);
+    }
+
+    @Test
+    public void testTwoProjects() throws IOException {
+        Path source1 = TestProject.copyTo(tmpDir.resolve("project1"));
+        Path source2 = TestProject.copyTo(tmpDir.resolve("project2"));
+        Path config = tmpDir.resolve("smells.csm");
+        Files.write(config, "Method_NumberOfFeatureConstants=1\nFeature_NumberNofc=1\n"
+                .getBytes(StandardCharsets.UTF_8));
+        File out1 = tmpDir.resolve("out1").toFile();
+        File out2 = tmpDir.resolve("out2").toFile();
+        File batchOut = tmpDir.resolve("batch").toFile();
+        Path manifest = tmpDir.resolve("manifest.txt");
+        Files.write(manifest, Arrays.asList(
+                "# two projects",
+                "--source " + source1 + " --output " + out1 + " --save-intermediate",
+                "--source " + source2 + " --output " + out2),
+                StandardCharsets.UTF_8);
+
+        Skunk skunk = new Skunk();
+        skunk.parseCommandLineArgs(new String[]{"--batch", manifest.toString(), "--config", config.toString(),
+                "--threads", "2", "--output", batchOut.toString()});
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        PrintStream originalOut = System.out;
+        System.setOut(new PrintStream(stdout, true, "UTF-8"));
+        boolean success;
+        try {
+            success = skunk.runBatch();
+        } finally {
+            System.setOut(originalOut);
+        }
+        Assert.assertTrue(success, stdout.toString("UTF-8"));
+
+        // Results of each project are written to its own directory.
+        List<String> names1 = Arrays.asList(out1.list());
+        List<String> names2 = Arrays.asList(out2.list());
+        Assert.assertTrue(names1.contains("skunk_metrics_functions.csv"), names1.toString());
+        Assert.assertTrue(names2.contains("skunk_metrics_functions.csv"), names2.toString());
+        Assert.assertTrue(names1.contains("skunk_intermediate_data.bin"), names1.toString());
+        Assert.assertFalse(names2.contains("skunk_intermediate_data.bin"), names2.toString());
+        Assert.assertEquals(batchOut.list(), new String[]{"skunk_batch_timings.csv"});
+
+        List<CSVRecord> timings;
+        try (Reader r = Files.newBufferedReader(batchOut.toPath().resolve("skunk_batch_timings.csv"))) {
+            timings = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(r).getRecords();
+        }
+        Assert.assertEquals(timings.size(), 2);
+        Assert.assertEquals(timings.get(0).get("Project"), out1.getPath());
+        Assert.assertEquals(timings.get(1).get("Project"), out2.getPath());
+        for (CSVRecord row : timings) {
+            Assert.assertEquals(row.get("Status"), "OK");
+            Assert.assertEquals(row.get("Config"), config.toString());
+            Assert.assertTrue(Long.parseLong(row.get("TotalMillis")) >= 0);
+        }
+
+        // Progress output of each project is prefixed with the project's name.
+        List<String> locLines = new ArrayList<>();
+        for (String line : stdout.toString("UTF-8").split("\n")) {
+            if (line.contains("LOC: ")) locLines.add(line);
+        }
+        locLines.sort(null);
+        Assert.assertEquals(locLines, Arrays.asList("[" + out1 + "] LOC: 82", "[" + out2 + "] LOC: 82"));
+    }
+}
@@ -0,0 +1,116 @@
+package de.ovgu.skunk.detection.output;
+
+import de.ovgu.skunk.detection.TestProject;
+import de.ovgu.skunk.detection.data.Context;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Saves and loads the processed data of the {@link TestProject} in both formats
+ */
+public class ProcessedDataHandlerTest {
+    private static final String BINARY_FILE = "skunk_intermediate_data.bin";
+    private static final List<String> XML_FILES = Arrays.asList("skunk_intermediate_features.xml.gz",
+            "skunk_intermediate_files.xml.gz", "skunk_intermediate_functions.xml.gz",
+            "skunk_intermediate_general.txt");
+
+    private Path tmpDir;
+    private Context original;
+    private List<String> expected;
+    private File outputDir;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("skunk-processed-test");
+        original = TestProject.load(TestProject.copyTo(tmpDir.resolve("project")), 1, null);
+        expected = TestProject.describe(original);
+        outputDir = Files.createDirectory(tmpDir.resolve("out")).toFile();
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        TestProject.deleteRecursively(tmpDir);
+    }
+
+    private void save(ProcessedDataHandler.Format format) {
+        original.withConfig(null, outputDir).processedDataHandler.SaveProcessedData(format);
+    }
+
+    private List<String> load() {
+        Context ctx = new Context(null);
+        ctx.processedDataHandler.LoadProcessedData(outputDir.getPath());
+        return TestProject.describe(ctx);
+    }
+
+    private List<String> savedFiles() {
+        String[] names = outputDir.list();
+        Arrays.sort(names);
+        return Arrays.asList(names);
+    }
+
+    @Test
+    public void testSavingDeletesOtherFormat() {
+        save(ProcessedDataHandler.Format.BINARY);
+        Assert.assertEquals(savedFiles(), Arrays.asList(BINARY_FILE));
+        save(ProcessedDataHandler.Format.XML);
+        Assert.assertEquals(savedFiles(), XML_FILES);
+        Assert.assertEquals(load(), expected);
+        save(ProcessedDataHandler.Format.BINARY);
+        Assert.assertEquals(savedFiles(), Arrays.asList(BINARY_FILE));
+        Assert.assertEquals(load(), expected);
+    }
+
+    /**
+     * Puts processed data of both formats into the output directory, as an earlier version left it, with the older
+     * format corrupted, so that it cannot be loaded by mistake
+     */
+    private void saveBoth(boolean binaryIsNewer) throws IOException {
+        save(ProcessedDataHandler.Format.XML);
+        File otherDir = Files.createDirectory(tmpDir.resolve("other")).toFile();
+        original.withConfig(null, otherDir).processedDataHandler.SaveProcessedData(ProcessedDataHandler.Format.BINARY);
+        File binaryFile = new File(outputDir, BINARY_FILE);
+        Files.copy(new File(otherDir, BINARY_FILE).toPath(), binaryFile.toPath());
+        final long now = System.currentTimeMillis();
+        for (String name : XML_FILES) {
+            File xmlFile = new File(outputDir, name);
+            if (binaryIsNewer) Files.write(xmlFile.toPath(), new byte[]{'x'});
+            Assert.assertTrue(xmlFile.setLastModified(binaryIsNewer ? now - 60000 : now));
+        }
+        if (!binaryIsNewer) Files.write(binaryFile.toPath(), new byte[]{'x'});
+        Assert.assertTrue(binaryFile.setLastModified(binaryIsNewer ? now : now - 60000));
+    }
+
+    @Test
+    public void testLoadsNewerBinaryFile() throws IOException {
+        saveBoth(true);
+        Assert.assertEquals(load(), expected);
+    }
+
+    @Test
+    public void testLoadsNewerXmlFiles() throws IOException {
+        saveBoth(false);
+        Assert.assertEquals(load(), expected);
+    }
+
+    @Test
+    public void testRefusesFormatsOfSameAge() throws IOException {
+        saveBoth(true);
+        final long time = new File(outputDir, BINARY_FILE).lastModified();
+        Assert.assertTrue(new File(outputDir, XML_FILES.get(1)).setLastModified(time));
+        try {
+            load();
+            Assert.fail("Processed data of both formats with the same modification time should be refused");
+        } catch (RuntimeException expected) {
+            Assert.assertTrue(expected.getMessage().contains("more recent"), expected.getMessage());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package de.ovgu.skunk.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+public class BinaryEncoderTest {
+    @Test
+    public void testRoundTrip() throws IOException {
+        int[] unsigned = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE};
+        int[] signed = {0, -1, 1, -64, 64, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        long[] signedLongs = {0L, -1L, Long.MIN_VALUE, Long.MAX_VALUE};
+        BinaryEncoder out = new BinaryEncoder();
+        for (int v : unsigned) out.writeVarInt(v);
+        for (int v : signed) out.writeSignedVarInt(v);
+        for (long v : signedLongs) out.writeSignedVarLong(v);
+        out.writeUtf8("Größe");
+
+        BinaryDecoder in = new BinaryDecoder(out.toByteArray());
+        for (int v : unsigned) Assert.assertEquals(in.readVarInt(), v);
+        for (int v : signed) Assert.assertEquals(in.readSignedVarInt(), v);
+        for (long v : signedLongs) Assert.assertEquals(in.readSignedVarLong(), v);
+        Assert.assertEquals(in.readUtf8(), "Größe");
+        Assert.assertEquals(in.remaining(), 0);
+    }
+
+    @Test
+    public void testCompactEncoding() {
+        BinaryEncoder out = new BinaryEncoder();
+        out.writeVarInt(127);
+        Assert.assertEquals(out.size(), 1);
+        out.writeVarInt(128);
+        Assert.assertEquals(out.size(), 3);
+        out.writeSignedVarInt(-64);
+        Assert.assertEquals(out.size(), 4);
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testTruncated() throws IOException {
+        BinaryEncoder out = new BinaryEncoder();
+        out.writeVarInt(300);
+        byte[] bytes = out.toByteArray();
+        new BinaryDecoder(new byte[]{bytes[0]}).readVarInt();
+    }
+}
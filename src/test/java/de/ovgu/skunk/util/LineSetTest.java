@@ -0,0 +1,41 @@
+package de.ovgu.skunk.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LineSetTest {
+    @Test
+    public void testAddRangeExcept() {
+        LineSet empty = LineSet.fromString("3,5-6,10");
+        LineSet loac = new LineSet();
+        loac.addRangeExcept(2, 9, empty);
+        Assert.assertEquals(loac.toString(), "2,4,7-9");
+        Assert.assertEquals(loac.size(), 5);
+        loac.addRangeExcept(8, 12, empty);
+        Assert.assertEquals(loac.toString(), "2,4,7-9,11-12");
+        loac.addRangeExcept(3, 3, empty);
+        Assert.assertEquals(loac.size(), 7);
+    }
+
+    @Test
+    public void testCountInRange() {
+        LineSet lines = LineSet.fromString("0-2,5,8-9");
+        Assert.assertEquals(lines.countInRange(0, 9), 6);
+        Assert.assertEquals(lines.countInRange(2, 8), 3);
+        Assert.assertEquals(lines.countInRange(3, 4), 0);
+        Assert.assertEquals(lines.countInRange(-5, 0), 1);
+        Assert.assertEquals(lines.countInRange(6, 5), 0);
+    }
+
+    @Test
+    public void testStringRoundTrip() {
+        LineSet lines = new LineSet();
+        lines.add(1);
+        lines.addRange(3, 6);
+        lines.add(8);
+        lines.add(9);
+        Assert.assertEquals(lines.toString(), "1,3-6,8-9");
+        Assert.assertEquals(LineSet.fromString(lines.toString()), lines);
+        Assert.assertTrue(LineSet.fromString("").isEmpty());
+    }
+}
@@ -0,0 +1,66 @@
+package de.ovgu.skunk.util;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class MappedInputTest {
+    private Path file;
+    private byte[] contents;
+
+    @BeforeClass
+    public void createFile() throws IOException {
+        contents = new byte[200 * 1024 + 17];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = (byte) (i * 31);
+        }
+        file = Files.createTempFile("mapped-input", ".bin");
+        Files.write(file, contents);
+    }
+
+    @AfterClass
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testMappedAndStreamedContentsAreEqual() throws IOException {
+        MappedInput.Statistics stats = new MappedInput.Statistics();
+        MappedInput mapped = MappedInput.open(file, stats, "a", MappedInput.MAX_MAPPED_SIZE);
+        MappedInput streamed = MappedInput.open(file, stats, "b", contents.length - 1);
+        Assert.assertTrue(mapped.isMapped());
+        Assert.assertFalse(streamed.isMapped());
+        for (MappedInput input : new MappedInput[]{mapped, streamed}) {
+            Assert.assertEquals(input.size(), contents.length);
+            Assert.assertEquals(readStream(input), contents);
+            ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+            input.forEachChunk(chunk -> {
+                byte[] bytes = new byte[chunk.remaining()];
+                chunk.get(bytes);
+                chunks.write(bytes, 0, bytes.length);
+            });
+            Assert.assertEquals(chunks.toByteArray(), contents);
+        }
+        Assert.assertEquals(stats.getMappedBytes("a"), contents.length);
+        Assert.assertEquals(stats.getStreamedBytes("a"), 0);
+        Assert.assertEquals(stats.getMappedBytes("b"), 0);
+        Assert.assertEquals(stats.getStreamedBytes("b"), 2L * contents.length);
+    }
+
+    private static byte[] readStream(MappedInput input) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        try (InputStream in = input.openStream()) {
+            int n;
+            while ((n = in.read(buf)) != -1) result.write(buf, 0, n);
+        }
+        return result.toByteArray();
+    }
+}